@@ -0,0 +1,104 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.benchmark;
+
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieStore;
+import net.femtoparsec.cookie.RequestInfo;
+import net.femtoparsec.cookie.rfc6265.CookieParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full-jar operations of the single-lock in-memory store compared to the sharded store
+ * running on a pool of <code>parallelism</code> threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BulkOperationsBenchmark {
+
+    private static final int SHARD_COUNT = 256;
+
+    @Param({"1000000"})
+    public int jarSize;
+
+    @Param({"inMemory", "sharded"})
+    public String storeType;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private CookieStore store;
+
+    private ForkJoinPool pool;
+
+    private List<Cookie> cookies;
+
+    private final Instant now = Instant.now();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Corpus corpus = Corpus.create(42, Math.max(10, jarSize / 5));
+        cookies = new ArrayList<>(jarSize);
+        while (cookies.size() < jarSize) {
+            final URI uri = corpus.randomUri();
+            CookieParser.create(RequestInfo.create(uri)).parse(corpus.randomSetCookie(uri.getHost())).ifPresent(cookies::add);
+        }
+        pool = new ForkJoinPool(parallelism);
+        store = storeType.equals("sharded") ? CookieStore.sharded(SHARD_COUNT, pool) : CookieStore.inMemory();
+        store.initialize(cookies);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Object getAllCookies() {
+        return store.getAllCookies();
+    }
+
+    @Benchmark
+    public void cleanUp() {
+        store.cleanUp(now);
+    }
+
+    @Benchmark
+    public void initialize() {
+        store.initialize(cookies);
+    }
+}
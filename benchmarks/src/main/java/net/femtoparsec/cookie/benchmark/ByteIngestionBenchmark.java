@@ -0,0 +1,103 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.benchmark;
+
+import net.femtoparsec.cookie.CookieManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingestion of Set-Cookie headers held as byte buffers, as NIO clients receive them:
+ * decoded to strings and put in a header map, or parsed directly from the bytes.
+ * Run with <code>-prof gc</code> to compare the allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ByteIngestionBenchmark {
+
+    private static final int EXCHANGE_COUNT = 1024;
+
+    @Param({"1", "4"})
+    public int headersPerResponse;
+
+    private CookieManager cookieManager;
+
+    private final URI[] uris = new URI[EXCHANGE_COUNT];
+
+    private final List<List<ByteBuffer>> setCookies = new ArrayList<>(EXCHANGE_COUNT);
+
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Corpus corpus = Corpus.create(42, 200);
+        cookieManager = CookieManager.create();
+        for (int i = 0; i < EXCHANGE_COUNT; i++) {
+            uris[i] = corpus.randomUri();
+            final List<ByteBuffer> buffers = new ArrayList<>(headersPerResponse);
+            for (int j = 0; j < headersPerResponse; j++) {
+                final byte[] header = corpus.randomSetCookie(uris[i].getHost()).getBytes(StandardCharsets.ISO_8859_1);
+                final ByteBuffer buffer = ByteBuffer.allocateDirect(header.length);
+                buffer.put(header).flip();
+                buffers.add(buffer);
+            }
+            setCookies.add(buffers);
+        }
+    }
+
+    private int next() {
+        index = (index + 1) & (EXCHANGE_COUNT - 1);
+        return index;
+    }
+
+    @Benchmark
+    public void stringPath() {
+        final int i = next();
+        final List<ByteBuffer> buffers = setCookies.get(i);
+        final List<String> values = new ArrayList<>(buffers.size());
+        for (ByteBuffer buffer : buffers) {
+            values.add(StandardCharsets.ISO_8859_1.decode(buffer.duplicate()).toString());
+        }
+        cookieManager.put(uris[i], Map.of("Set-Cookie", values));
+    }
+
+    @Benchmark
+    public void bytePath() {
+        final int i = next();
+        cookieManager.putSetCookies(uris[i], setCookies.get(i));
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.CookieHandler;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replay the exchanges of a generated {@link Recording} on the JDK {@link java.net.CookieManager} and on
+ * {@link net.femtoparsec.cookie.CookieManager} through the {@link CookieHandler} API. Add <code>-prof gc</code>
+ * to compare allocations. {@link CookieHandlerComparison} checks that both handlers send the same cookies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CookieHandlerBenchmark {
+
+    private static final int EXCHANGE_COUNT = 1 << 14;
+
+    @Param({"jdk", "fpc"})
+    public String handler;
+
+    private CookieHandler cookieHandler;
+
+    private Recording.Exchange[] exchanges;
+
+    private final Map<String,List<String>> requestHeaders = Map.of();
+
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        cookieHandler = "jdk".equals(handler) ? new java.net.CookieManager() : net.femtoparsec.cookie.CookieManager.create();
+        exchanges = Recording.generate(Corpus.create(42, 500), EXCHANGE_COUNT).exchanges().toArray(Recording.Exchange[]::new);
+        for (Recording.Exchange exchange : exchanges) {
+            cookieHandler.put(exchange.uri(), exchange.responseHeaders());
+        }
+    }
+
+    private Recording.Exchange next() {
+        index = (index + 1) & (EXCHANGE_COUNT - 1);
+        return exchanges[index];
+    }
+
+    @Benchmark
+    public Object get() throws IOException {
+        return cookieHandler.get(next().uri(), requestHeaders);
+    }
+
+    @Benchmark
+    public Object exchange() throws IOException {
+        final Recording.Exchange exchange = next();
+        final Object cookies = cookieHandler.get(exchange.uri(), requestHeaders);
+        cookieHandler.put(exchange.uri(), exchange.responseHeaders());
+        return cookies;
+    }
+}
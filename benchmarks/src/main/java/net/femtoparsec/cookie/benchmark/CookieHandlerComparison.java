@@ -0,0 +1,233 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.benchmark;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.CookieHandler;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Replay the same recorded exchanges on the JDK {@link java.net.CookieManager} and on
+ * {@link net.femtoparsec.cookie.CookieManager}, through the {@link CookieHandler} API only.
+ * <p>
+ * The conformance pass compares, before each response is stored, the cookies each handler would send with the
+ * request. Requests where the sets of cookies differ, or only their order, are counted and the first ones are printed.
+ * The performance pass replays the recording on a fresh handler several times and reports, for each handler,
+ * the throughput, the latency percentiles of an exchange (get then put) and the bytes allocated per exchange.
+ * <p>
+ * Usage: <code>java -cp target/benchmarks.jar net.femtoparsec.cookie.benchmark.CookieHandlerComparison [options]</code>
+ * <ul>
+ *     <li><code>--recording FILE</code> replay the exchanges of a file (see {@link Recording}) instead of generated ones</li>
+ *     <li><code>--save FILE</code> save the replayed exchanges to a file</li>
+ *     <li><code>--exchanges N</code> and <code>--sites N</code> the size of the generated recording (default 20000 and 500)</li>
+ *     <li><code>--warmup N</code> and <code>--iterations N</code> the number of replays of the performance pass (default 5 and 10)</li>
+ *     <li><code>--max-diffs N</code> the number of differences printed (default 20)</li>
+ * </ul>
+ */
+public class CookieHandlerComparison {
+
+    private static final Map<String,Supplier<CookieHandler>> HANDLERS = createHandlers();
+
+    private static Map<String,Supplier<CookieHandler>> createHandlers() {
+        final Map<String,Supplier<CookieHandler>> handlers = new LinkedHashMap<>();
+        handlers.put("jdk", java.net.CookieManager::new);
+        handlers.put("fpc", net.femtoparsec.cookie.CookieManager::create);
+        return handlers;
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Options options = Options.parse(args);
+        final Recording recording = options.recording != null
+                                    ? Recording.read(options.recording)
+                                    : Recording.generate(Corpus.create(42, options.sites), options.exchanges);
+        if (options.save != null) {
+            recording.write(options.save);
+        }
+        System.out.printf("exchanges=%d%n%n", recording.exchanges().size());
+
+        compare(recording, options.maxDiffs);
+        System.out.println();
+
+        System.out.printf("%8s %14s %10s %10s %10s %10s %14s%n",
+                          "handler", "exchanges/s", "p50", "p99", "p99.9", "max", "bytes/exchange");
+        for (Map.Entry<String,Supplier<CookieHandler>> handler : HANDLERS.entrySet()) {
+            measure(handler.getKey(), handler.getValue(), recording, options);
+        }
+    }
+
+    private static void compare(Recording recording, int maxDiffs) throws IOException {
+        final CookieHandler expected = HANDLERS.get("jdk").get();
+        final CookieHandler actual = HANDLERS.get("fpc").get();
+        int differentCookies = 0;
+        int differentOrder = 0;
+        int index = 0;
+        for (Recording.Exchange exchange : recording.exchanges()) {
+            final List<String> expectedCookies = cookies(expected.get(exchange.uri(), Map.of()));
+            final List<String> actualCookies = cookies(actual.get(exchange.uri(), Map.of()));
+            if (!expectedCookies.equals(actualCookies)) {
+                final boolean sameSet = sorted(expectedCookies).equals(sorted(actualCookies));
+                if (sameSet) {
+                    differentOrder++;
+                } else {
+                    differentCookies++;
+                }
+                if (differentCookies + differentOrder <= maxDiffs) {
+                    System.out.printf("#%d %s %s%n  jdk: %s%n  fpc: %s%n", index, exchange.uri(),
+                                      sameSet ? "(order)" : "", expectedCookies, actualCookies);
+                }
+            }
+            expected.put(exchange.uri(), exchange.responseHeaders());
+            actual.put(exchange.uri(), exchange.responseHeaders());
+            index++;
+        }
+        final int total = recording.exchanges().size();
+        System.out.printf("requests with different cookies: %d (%.2f%%)%n", differentCookies, 100.0 * differentCookies / total);
+        System.out.printf("requests with a different order: %d (%.2f%%)%n", differentOrder, 100.0 * differentOrder / total);
+    }
+
+    /**
+     * @return the name=value pairs of the Cookie headers, in order. The JDK returns one value per cookie
+     * while this library returns all of them in a single value. The JDK also formats the cookies it considers
+     * as RFC 2965 cookies (for instance those with a Max-Age) with quoted values and <code>$</code> attributes.
+     * These attributes are removed and the values are unquoted, so quoted values of the recording are not compared.
+     */
+    private static List<String> cookies(Map<String,List<String>> requestHeaders) {
+        final List<String> cookies = new ArrayList<>();
+        for (String value : requestHeaders.getOrDefault("Cookie", List.of())) {
+            for (String cookie : value.split(";")) {
+                final String pair = cookie.strip();
+                if (!pair.isEmpty() && !pair.startsWith("$")) {
+                    cookies.add(unquote(pair));
+                }
+            }
+        }
+        return cookies;
+    }
+
+    private static String unquote(String pair) {
+        final int equal = pair.indexOf('=');
+        if (equal >= 0 && pair.length() >= equal + 3 && pair.charAt(equal + 1) == '"' && pair.endsWith("\"")) {
+            return pair.substring(0, equal + 1) + pair.substring(equal + 2, pair.length() - 1);
+        }
+        return pair;
+    }
+
+    private static List<String> sorted(List<String> cookies) {
+        final List<String> result = new ArrayList<>(cookies);
+        Collections.sort(result);
+        return result;
+    }
+
+    private static void measure(String name, Supplier<CookieHandler> factory, Recording recording, Options options) throws IOException {
+        final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final Histogram latencies = new Histogram(3);
+        final Map<String,List<String>> requestHeaders = Map.of();
+        long measuredNanos = 0;
+        long allocated = 0;
+        for (int iteration = 0; iteration < options.warmup + options.iterations; iteration++) {
+            final boolean measuring = iteration >= options.warmup;
+            final CookieHandler handler = factory.get();
+            final long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+            final long start = System.nanoTime();
+            for (Recording.Exchange exchange : recording.exchanges()) {
+                final long before = System.nanoTime();
+                handler.get(exchange.uri(), requestHeaders);
+                handler.put(exchange.uri(), exchange.responseHeaders());
+                if (measuring) {
+                    latencies.recordValue(System.nanoTime() - before);
+                }
+            }
+            if (measuring) {
+                measuredNanos += System.nanoTime() - start;
+                allocated += threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+            }
+        }
+        final long exchanges = (long) options.iterations * recording.exchanges().size();
+        System.out.printf("%8s %14.0f %10s %10s %10s %10s %14d%n",
+                          name,
+                          exchanges / (measuredNanos / 1e9),
+                          micros(latencies.getValueAtPercentile(50)),
+                          micros(latencies.getValueAtPercentile(99)),
+                          micros(latencies.getValueAtPercentile(99.9)),
+                          micros(latencies.getMaxValue()),
+                          allocated / exchanges);
+    }
+
+    private static String micros(long nanos) {
+        return String.format("%.1fus", nanos / 1000.0);
+    }
+
+    private static class Options {
+        private Path recording = null;
+        private Path save = null;
+        private int exchanges = 20_000;
+        private int sites = 500;
+        private int warmup = 5;
+        private int iterations = 10;
+        private int maxDiffs = 20;
+
+        private static Options parse(String[] args) {
+            final Options options = new Options();
+            final Deque<String> remaining = new ArrayDeque<>(Arrays.asList(args));
+            while (!remaining.isEmpty()) {
+                final String option = remaining.removeFirst();
+                switch (option) {
+                    case "--recording":
+                        options.recording = Path.of(remaining.removeFirst());
+                        break;
+                    case "--save":
+                        options.save = Path.of(remaining.removeFirst());
+                        break;
+                    case "--exchanges":
+                        options.exchanges = Integer.parseInt(remaining.removeFirst());
+                        break;
+                    case "--sites":
+                        options.sites = Integer.parseInt(remaining.removeFirst());
+                        break;
+                    case "--warmup":
+                        options.warmup = Integer.parseInt(remaining.removeFirst());
+                        break;
+                    case "--iterations":
+                        options.iterations = Integer.parseInt(remaining.removeFirst());
+                        break;
+                    case "--max-diffs":
+                        options.maxDiffs = Integer.parseInt(remaining.removeFirst());
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option '" + option + "'");
+                }
+            }
+            return options;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.benchmark;
+
+import net.femtoparsec.cookie.CookieManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CookieManagerBenchmark {
+
+    private static final int EXCHANGE_COUNT = 1024;
+
+    @Param({"100", "10000"})
+    public int jarSize;
+
+    private CookieManager cookieManager;
+
+    private final URI[] uris = new URI[EXCHANGE_COUNT];
+
+    private final List<Map<String,List<String>>> responseHeaders = new ArrayList<>(EXCHANGE_COUNT);
+
+    private final Map<String,List<String>> requestHeaders = Map.of("Accept", List.of("*/*"));
+
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Corpus corpus = Corpus.create(42, Math.max(10, jarSize / 5));
+        cookieManager = CookieManager.create();
+        for (int i = 0; i < jarSize; i++) {
+            final URI uri = corpus.randomUri();
+            cookieManager.put(uri, Map.of("Set-Cookie", List.of(corpus.randomSetCookie(uri.getHost()))));
+        }
+        responseHeaders.clear();
+        for (int i = 0; i < EXCHANGE_COUNT; i++) {
+            uris[i] = corpus.randomUri();
+            responseHeaders.add(Map.of("Content-Type", List.of("text/html"),
+                                       "Set-Cookie", List.of(corpus.randomSetCookie(uris[i].getHost()))));
+        }
+    }
+
+    private int next() {
+        index = (index + 1) & (EXCHANGE_COUNT - 1);
+        return index;
+    }
+
+    @Benchmark
+    public Object get() {
+        return cookieManager.get(uris[next()], requestHeaders);
+    }
+
+    @Benchmark
+    public Object roundTrip() {
+        final int i = next();
+        final Object cookies = cookieManager.get(uris[i], requestHeaders);
+        cookieManager.put(uris[i], responseHeaders.get(i));
+        return cookies;
+    }
+}
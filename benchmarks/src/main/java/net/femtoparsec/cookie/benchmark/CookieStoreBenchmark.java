@@ -0,0 +1,104 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.benchmark;
+
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieStore;
+import net.femtoparsec.cookie.RequestInfo;
+import net.femtoparsec.cookie.rfc6265.CookieParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CookieStoreBenchmark {
+
+    private static final int REQUEST_COUNT = 1024;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int jarSize;
+
+    private CookieStore store;
+
+    private final RequestInfo[] requests = new RequestInfo[REQUEST_COUNT];
+
+    private final Cookie[] updates = new Cookie[REQUEST_COUNT];
+
+    private final RequestInfo[] updateRequests = new RequestInfo[REQUEST_COUNT];
+
+    private final Instant now = Instant.now();
+
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Corpus corpus = Corpus.create(42, Math.max(10, jarSize / 5));
+        final List<Cookie> cookies = new ArrayList<>(jarSize);
+        final List<RequestInfo> cookieRequests = new ArrayList<>(jarSize);
+        while (cookies.size() < jarSize) {
+            final URI uri = corpus.randomUri();
+            final RequestInfo requestInfo = RequestInfo.create(uri);
+            CookieParser.create(requestInfo).parse(corpus.randomSetCookie(uri.getHost())).ifPresent(c -> {
+                cookies.add(c);
+                cookieRequests.add(requestInfo);
+            });
+        }
+        store = CookieStore.inMemory();
+        store.initialize(cookies);
+
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            requests[i] = RequestInfo.create(corpus.randomUri());
+            final int updated = i % cookies.size();
+            updates[i] = cookies.get(updated).toBuilder().value(corpus.randomCookieValue()).build();
+            updateRequests[i] = cookieRequests.get(updated);
+        }
+    }
+
+    private int next() {
+        index = (index + 1) & (REQUEST_COUNT - 1);
+        return index;
+    }
+
+    @Benchmark
+    public Object getCookies() {
+        return store.getCookies(requests[next()], now);
+    }
+
+    @Benchmark
+    public void addCookie() {
+        final int i = next();
+        store.addCookie(updateRequests[i], updates[i], now);
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.benchmark;
+
+import java.net.URI;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Deterministic generator of realistic hosts, paths, cookie dates and Set-Cookie headers.
+ * Two corpora created with the same seed produce the exact same sequence of values.
+ */
+public final class Corpus {
+
+    private static final String[] TLDS = {"com", "net", "org", "io", "co.uk", "fr", "de"};
+    private static final String[] SUBDOMAINS = {"www", "api", "cdn", "login", "shop", "m", "static"};
+    private static final String[] PATH_SEGMENTS = {"account", "api", "v1", "v2", "search", "cart", "img", "static", "en", "news"};
+    private static final String[] COOKIE_NAMES = {"SID", "session", "JSESSIONID", "_ga", "_gid", "consent", "csrftoken", "lang", "theme", "jwt"};
+    private static final String VALUE_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+
+    public static Corpus create(long seed, int siteCount) {
+        return new Corpus(new Random(seed), siteCount);
+    }
+
+    private final Random random;
+
+    private final List<String> sites;
+
+    private Corpus(Random random, int siteCount) {
+        this.random = random;
+        this.sites = new ArrayList<>(siteCount);
+        for (int i = 0; i < siteCount; i++) {
+            sites.add("site" + i + "." + TLDS[i % TLDS.length]);
+        }
+    }
+
+    public int siteCount() {
+        return sites.size();
+    }
+
+    public String site(int index) {
+        return sites.get(index);
+    }
+
+    public String randomSite() {
+        return sites.get(random.nextInt(sites.size()));
+    }
+
+    public String randomHost() {
+        return randomHost(randomSite());
+    }
+
+    public String randomHost(String site) {
+        if (random.nextInt(4) == 0) {
+            return site;
+        }
+        return SUBDOMAINS[random.nextInt(SUBDOMAINS.length)] + "." + site;
+    }
+
+    public String randomPath() {
+        final int depth = random.nextInt(4);
+        final StringBuilder path = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            path.append('/').append(PATH_SEGMENTS[random.nextInt(PATH_SEGMENTS.length)]);
+        }
+        return path.length() == 0 ? "/" : path.toString();
+    }
+
+    public URI randomUri() {
+        return randomUri(randomHost());
+    }
+
+    public URI randomUri(String host) {
+        final String scheme = random.nextInt(10) == 0 ? "http" : "https";
+        return URI.create(scheme + "://" + host + randomPath());
+    }
+
+    public String randomCookieName() {
+        final String name = COOKIE_NAMES[random.nextInt(COOKIE_NAMES.length)];
+        return random.nextBoolean() ? name : name + random.nextInt(100);
+    }
+
+    public String randomCookieValue() {
+        final int length = random.nextInt(10) == 0 ? 200 + random.nextInt(3000) : 8 + random.nextInt(40);
+        final StringBuilder value = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            value.append(VALUE_CHARS.charAt(random.nextInt(VALUE_CHARS.length())));
+        }
+        return value.toString();
+    }
+
+    /**
+     * @return a date in one of the formats actually found in Set-Cookie headers
+     */
+    public String randomCookieDate() {
+        final ZonedDateTime date = Instant.parse("2020-01-01T00:00:00Z")
+                                          .plusSeconds(random.nextInt(10 * 365 * 24 * 3600))
+                                          .atZone(ZoneOffset.UTC);
+        final DayOfWeek dayOfWeek = date.getDayOfWeek();
+        final String day = dayOfWeek.getDisplayName(TextStyle.SHORT, Locale.ENGLISH);
+        final String month = date.getMonth().getDisplayName(TextStyle.SHORT, Locale.ENGLISH);
+        final String time = String.format("%02d:%02d:%02d", date.getHour(), date.getMinute(), date.getSecond());
+        switch (random.nextInt(3)) {
+            case 0:
+                return String.format("%s, %02d %s %d %s GMT", day, date.getDayOfMonth(), month, date.getYear(), time);
+            case 1:
+                return String.format("%s, %02d-%s-%d %s GMT", day, date.getDayOfMonth(), month, date.getYear(), time);
+            default:
+                return String.format("%s, %02d-%s-%02d %s GMT", day, date.getDayOfMonth(), month, date.getYear() % 100, time);
+        }
+    }
+
+    /**
+     * @param host the host sending the header
+     * @return a Set-Cookie header value that is valid for the provided host
+     */
+    public String randomSetCookie(String host) {
+        final StringBuilder header = new StringBuilder();
+        header.append(randomCookieName()).append('=').append(randomCookieValue());
+        if (random.nextInt(3) > 0) {
+            header.append("; Path=").append(randomPath());
+        }
+        if (random.nextBoolean()) {
+            final int dot = host.indexOf('.');
+            final String domain = host.indexOf('.', dot + 1) > 0 ? host.substring(dot + 1) : host;
+            header.append("; Domain=").append(random.nextBoolean() ? "." : "").append(domain);
+        }
+        switch (random.nextInt(3)) {
+            case 0:
+                header.append("; Max-Age=").append(60 + random.nextInt(365 * 24 * 3600));
+                break;
+            case 1:
+                header.append("; Expires=").append(randomCookieDate());
+                break;
+            default:
+                break;
+        }
+        if (random.nextInt(3) > 0) {
+            header.append("; Secure");
+        }
+        if (random.nextBoolean()) {
+            header.append("; HttpOnly");
+        }
+        return header.toString();
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.benchmark;
+
+import net.femtoparsec.cookie.CookieManager;
+import net.femtoparsec.cookie.CookieStore;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Drive a shared {@link CookieManager} from several threads and report the latency
+ * percentiles of <code>get</code> and <code>put</code> as well as the throughput for each thread count.
+ * <p>
+ * Usage: <code>java -cp target/benchmarks.jar net.femtoparsec.cookie.benchmark.LoadHarness [options]</code>
+ * <ul>
+ *     <li><code>--store NAME</code> the store to test: inMemory, persistent, bounded or compressing (default inMemory)</li>
+ *     <li><code>--threads LIST</code> comma separated thread counts (default 1,2,4,8)</li>
+ *     <li><code>--virtual</code> use virtual threads (requires a JDK supporting them)</li>
+ *     <li><code>--read-ratio R</code> the fraction of <code>get</code> operations (default 0.9)</li>
+ *     <li><code>--sites N</code> the number of distinct sites (default 1000)</li>
+ *     <li><code>--zipf S</code> the exponent of the site popularity distribution (default 1.1)</li>
+ *     <li><code>--jar-size N</code> the number of Set-Cookie headers stored before measuring (default 10000)</li>
+ *     <li><code>--warmup SECONDS</code> and <code>--duration SECONDS</code> (default 5 and 10)</li>
+ * </ul>
+ */
+public class LoadHarness {
+
+    private static final int EXCHANGES_PER_SITE = 8;
+
+    private static final Map<String,Supplier<CookieStore>> STORES = Map.of(
+            "inMemory", CookieStore::inMemory,
+            "persistent", CookieStore::persistent,
+            "bounded", () -> CookieStore.memoryBounded(256L * 1024 * 1024),
+            "compressing", () -> CookieStore.compressing(CookieStore.inMemory())
+    );
+
+    public static void main(String[] args) throws Exception {
+        final Options options = Options.parse(args);
+        final LoadHarness harness = new LoadHarness(options);
+        System.out.printf("store=%s virtual=%s readRatio=%.2f sites=%d zipf=%.2f jarSize=%d%n",
+                          options.store, options.virtual, options.readRatio, options.sites, options.zipf, options.jarSize);
+        System.out.printf("%8s %14s %10s %10s %10s %10s %10s %10s %10s %10s%n",
+                          "threads", "ops/s", "get p50", "get p99", "get p99.9", "get max",
+                          "put p50", "put p99", "put p99.9", "put max");
+        for (int threadCount : options.threads) {
+            harness.run(threadCount);
+        }
+    }
+
+    private final Options options;
+
+    private final ZipfDistribution sitePopularity;
+
+    private final URI[][] uris;
+
+    private final List<List<Map<String,List<String>>>> responses;
+
+    private LoadHarness(Options options) {
+        this.options = options;
+        this.sitePopularity = new ZipfDistribution(options.sites, options.zipf);
+        final Corpus corpus = Corpus.create(42, options.sites);
+        this.uris = new URI[options.sites][EXCHANGES_PER_SITE];
+        this.responses = new ArrayList<>(options.sites);
+        for (int site = 0; site < options.sites; site++) {
+            final List<Map<String,List<String>>> siteResponses = new ArrayList<>(EXCHANGES_PER_SITE);
+            for (int i = 0; i < EXCHANGES_PER_SITE; i++) {
+                final URI uri = corpus.randomUri(corpus.randomHost(corpus.site(site)));
+                uris[site][i] = uri;
+                siteResponses.add(Map.of("Set-Cookie", List.of(corpus.randomSetCookie(uri.getHost()))));
+            }
+            responses.add(siteResponses);
+        }
+    }
+
+    private void run(int threadCount) throws Exception {
+        final CookieManager cookieManager = CookieManager.create(STORES.get(options.store).get());
+        final Random random = new Random(1);
+        for (int i = 0; i < options.jarSize; i++) {
+            final int site = sitePopularity.sample(random);
+            final int exchange = random.nextInt(EXCHANGES_PER_SITE);
+            cookieManager.put(uris[site][exchange], responses.get(site).get(exchange));
+        }
+
+        final Recorder getRecorder = new Recorder(3);
+        final Recorder putRecorder = new Recorder(3);
+        final LongAdder operations = new LongAdder();
+        final long start = System.nanoTime();
+        final long measureStart = start + TimeUnit.SECONDS.toNanos(options.warmupSeconds);
+        final long end = measureStart + TimeUnit.SECONDS.toNanos(options.durationSeconds);
+        final CountDownLatch done = new CountDownLatch(threadCount);
+
+        final Runnable worker = () -> {
+            try {
+                final ThreadLocalRandom threadRandom = ThreadLocalRandom.current();
+                final Map<String,List<String>> requestHeaders = Map.of();
+                boolean measuring = false;
+                while (true) {
+                    final long before = System.nanoTime();
+                    if (before >= end) {
+                        break;
+                    }
+                    measuring = measuring || before >= measureStart;
+                    final int site = sitePopularity.sample(threadRandom);
+                    final int exchange = threadRandom.nextInt(EXCHANGES_PER_SITE);
+                    final boolean read = threadRandom.nextDouble() < options.readRatio;
+                    if (read) {
+                        cookieManager.get(uris[site][exchange], requestHeaders);
+                    } else {
+                        cookieManager.put(uris[site][exchange], responses.get(site).get(exchange));
+                    }
+                    if (measuring) {
+                        final long latency = System.nanoTime() - before;
+                        (read ? getRecorder : putRecorder).recordValue(latency);
+                        operations.increment();
+                    }
+                }
+            } finally {
+                done.countDown();
+            }
+        };
+
+        for (int i = 0; i < threadCount; i++) {
+            startThread(worker);
+        }
+        done.await();
+
+        final Histogram get = getRecorder.getIntervalHistogram();
+        final Histogram put = putRecorder.getIntervalHistogram();
+        System.out.printf("%8d %14.0f %s %s%n",
+                          threadCount,
+                          operations.sum() / (double) options.durationSeconds,
+                          format(get), format(put));
+    }
+
+    private void startThread(Runnable runnable) throws Exception {
+        if (options.virtual) {
+            final Method startVirtualThread = Thread.class.getMethod("startVirtualThread", Runnable.class);
+            startVirtualThread.invoke(null, runnable);
+        } else {
+            final Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private static String format(Histogram histogram) {
+        return String.format("%10s %10s %10s %10s",
+                             micros(histogram.getValueAtPercentile(50)),
+                             micros(histogram.getValueAtPercentile(99)),
+                             micros(histogram.getValueAtPercentile(99.9)),
+                             micros(histogram.getMaxValue()));
+    }
+
+    private static String micros(long nanos) {
+        return String.format("%.1fus", nanos / 1000.0);
+    }
+
+    private static class Options {
+        private String store = "inMemory";
+        private int[] threads = {1, 2, 4, 8};
+        private boolean virtual = false;
+        private double readRatio = 0.9;
+        private int sites = 1000;
+        private double zipf = 1.1;
+        private int jarSize = 10_000;
+        private int warmupSeconds = 5;
+        private int durationSeconds = 10;
+
+        private static Options parse(String[] args) {
+            final Options options = new Options();
+            final Deque<String> remaining = new ArrayDeque<>(Arrays.asList(args));
+            while (!remaining.isEmpty()) {
+                final String option = remaining.removeFirst();
+                switch (option) {
+                    case "--store":
+                        options.store = remaining.removeFirst();
+                        if (!STORES.containsKey(options.store)) {
+                            throw new IllegalArgumentException("Unknown store '" + options.store + "', expected one of " + STORES.keySet());
+                        }
+                        break;
+                    case "--threads":
+                        options.threads = Arrays.stream(remaining.removeFirst().split(",")).mapToInt(Integer::parseInt).toArray();
+                        break;
+                    case "--virtual":
+                        options.virtual = true;
+                        break;
+                    case "--read-ratio":
+                        options.readRatio = Double.parseDouble(remaining.removeFirst());
+                        break;
+                    case "--sites":
+                        options.sites = Integer.parseInt(remaining.removeFirst());
+                        break;
+                    case "--zipf":
+                        options.zipf = Double.parseDouble(remaining.removeFirst());
+                        break;
+                    case "--jar-size":
+                        options.jarSize = Integer.parseInt(remaining.removeFirst());
+                        break;
+                    case "--warmup":
+                        options.warmupSeconds = Integer.parseInt(remaining.removeFirst());
+                        break;
+                    case "--duration":
+                        options.durationSeconds = Integer.parseInt(remaining.removeFirst());
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option '" + option + "'");
+                }
+            }
+            return options;
+        }
+    }
+}
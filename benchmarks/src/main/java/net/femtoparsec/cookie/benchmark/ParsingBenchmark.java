@@ -0,0 +1,84 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.benchmark;
+
+import net.femtoparsec.cookie.RequestInfo;
+import net.femtoparsec.cookie.rfc6265.CookieDateParser;
+import net.femtoparsec.cookie.rfc6265.CookieParser;
+import net.femtoparsec.cookie.rfc6265.SetCookieStringParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParsingBenchmark {
+
+    private static final int CORPUS_SIZE = 1024;
+
+    private final String[] setCookies = new String[CORPUS_SIZE];
+    private final String[] cookieDates = new String[CORPUS_SIZE];
+    private final CookieParser[] cookieParsers = new CookieParser[CORPUS_SIZE];
+
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Corpus corpus = Corpus.create(42, 200);
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            final URI uri = corpus.randomUri();
+            setCookies[i] = corpus.randomSetCookie(uri.getHost());
+            cookieDates[i] = corpus.randomCookieDate();
+            cookieParsers[i] = CookieParser.create(RequestInfo.create(uri));
+        }
+    }
+
+    private int next() {
+        index = (index + 1) & (CORPUS_SIZE - 1);
+        return index;
+    }
+
+    @Benchmark
+    public Object setCookieStringParser() {
+        return SetCookieStringParser.parse(setCookies[next()]);
+    }
+
+    @Benchmark
+    public Object cookieDateParser() {
+        return CookieDateParser.parse(cookieDates[next()]);
+    }
+
+    @Benchmark
+    public Object cookieParser() {
+        final int i = next();
+        return cookieParsers[i].parse(setCookies[i]);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.benchmark;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A sequence of request/response exchanges, replayed identically on several cookie handlers.
+ * <p>
+ * In a file, each exchange is one line: the URI of the request followed by the values of the
+ * Set-Cookie headers of the response, all separated by tabulations. Empty lines and lines
+ * starting with <code>#</code> are ignored.
+ */
+public final class Recording {
+
+    private static final char SEPARATOR = '\t';
+
+    public static final class Exchange {
+
+        private final URI uri;
+
+        private final List<String> setCookies;
+
+        private final Map<String,List<String>> responseHeaders;
+
+        public Exchange(URI uri, List<String> setCookies) {
+            this.uri = uri;
+            this.setCookies = List.copyOf(setCookies);
+            this.responseHeaders = Map.of("Set-Cookie", this.setCookies);
+        }
+
+        public URI uri() {
+            return uri;
+        }
+
+        public List<String> setCookies() {
+            return setCookies;
+        }
+
+        /**
+         * @return the headers of the response, as passed to {@link java.net.CookieHandler#put(URI, Map)}
+         */
+        public Map<String,List<String>> responseHeaders() {
+            return responseHeaders;
+        }
+    }
+
+    /**
+     * @param corpus the corpus generating the hosts and headers
+     * @param exchangeCount the number of exchanges
+     * @return a recording where one response out of three sets a cookie
+     */
+    public static Recording generate(Corpus corpus, int exchangeCount) {
+        final List<Exchange> exchanges = new ArrayList<>(exchangeCount);
+        final Random random = new Random(exchangeCount);
+        for (int i = 0; i < exchangeCount; i++) {
+            final URI uri = corpus.randomUri();
+            final List<String> setCookies = random.nextInt(3) == 0
+                                            ? List.of(corpus.randomSetCookie(uri.getHost()))
+                                            : List.of();
+            exchanges.add(new Exchange(uri, setCookies));
+        }
+        return new Recording(exchanges);
+    }
+
+    public static Recording read(Path file) throws IOException {
+        final List<Exchange> exchanges = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                final String[] fields = line.split(String.valueOf(SEPARATOR));
+                exchanges.add(new Exchange(URI.create(fields[0]), Arrays.asList(fields).subList(1, fields.length)));
+            }
+        }
+        return new Recording(exchanges);
+    }
+
+    private final List<Exchange> exchanges;
+
+    private Recording(List<Exchange> exchanges) {
+        this.exchanges = Collections.unmodifiableList(exchanges);
+    }
+
+    public List<Exchange> exchanges() {
+        return exchanges;
+    }
+
+    public void write(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (Exchange exchange : exchanges) {
+                writer.write(exchange.uri().toString());
+                for (String setCookie : exchange.setCookies()) {
+                    writer.write(SEPARATOR);
+                    writer.write(setCookie);
+                }
+                writer.newLine();
+            }
+        }
+    }
+}
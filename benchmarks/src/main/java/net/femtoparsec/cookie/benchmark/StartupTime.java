@@ -0,0 +1,68 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.benchmark;
+
+import net.femtoparsec.cookie.CookieManager;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measure the time to the first {@link CookieManager#get(URI, Map)}, from the start of the process
+ * and for the first put/get pair alone. Run it once per JVM, it only depends on <code>java.base</code>
+ * and on the cookie module so it can be run on a minimal jlink image.
+ * <p>
+ * Usage: <code>java -cp target/classes:../target/classes net.femtoparsec.cookie.benchmark.StartupTime</code>
+ */
+public class StartupTime {
+
+    public static void main(String[] args) throws Exception {
+        final long start = System.nanoTime();
+
+        final CookieManager cookieManager = CookieManager.create();
+        final URI uri = URI.create("https://www.example.com/account/login");
+        cookieManager.put(uri, Map.of("Set-Cookie", List.of("session=abc123; Path=/; Secure; HttpOnly; Max-Age=3600",
+                                                            "lang=en; Expires=Wed, 21 Oct 2037 07:28:00 GMT")));
+        final Map<String,List<String>> headers = cookieManager.get(uri, Map.of());
+
+        final long firstCall = System.nanoTime() - start;
+        final Instant end = Instant.now();
+        final Duration sinceProcessStart = ProcessHandle.current()
+                                                        .info()
+                                                        .startInstant()
+                                                        .map(s -> Duration.between(s, end))
+                                                        .orElse(null);
+
+        System.out.println("Cookie header          : " + headers.get("Cookie"));
+        System.out.printf("first put/get          : %8.2f ms%n", firstCall / 1e6);
+        if (sinceProcessStart != null) {
+            System.out.printf("since process start    : %8d ms%n", sinceProcessStart.toMillis());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.benchmark;
+
+import net.femtoparsec.cookie.CookieManager;
+import net.femtoparsec.cookie.CookieStore;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Run bursts of concurrent requests, one virtual thread per request, against a shared {@link CookieManager}
+ * and report the time needed to complete each burst. Requires a JDK with virtual threads.
+ * <p>
+ * Usage: <code>java -Djdk.tracePinnedThreads=short -cp target/benchmarks.jar net.femtoparsec.cookie.benchmark.VirtualThreadScaling [requests...]</code>
+ * <p>
+ * With <code>jdk.tracePinnedThreads</code> set, the JVM prints a stack trace each time a virtual thread
+ * blocks while pinned to its carrier. None should come from the cookie stores.
+ */
+public class VirtualThreadScaling {
+
+    private static final int SITE_COUNT = 1000;
+
+    private static final int JAR_SIZE = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        final int[] requestCounts = args.length == 0 ? new int[]{1_000, 10_000, 100_000} : parse(args);
+        final Map<String,Supplier<CookieStore>> stores = Map.of(
+                "inMemory", CookieStore::inMemory,
+                "persistent", CookieStore::persistent,
+                "bounded", () -> CookieStore.memoryBounded(256L * 1024 * 1024));
+
+        final Corpus corpus = Corpus.create(42, SITE_COUNT);
+        final URI[] uris = new URI[JAR_SIZE];
+        final List<Map<String,List<String>>> responses = new ArrayList<>(JAR_SIZE);
+        for (int i = 0; i < JAR_SIZE; i++) {
+            uris[i] = corpus.randomUri();
+            responses.add(Map.of("Set-Cookie", List.of(corpus.randomSetCookie(uris[i].getHost()))));
+        }
+
+        System.out.printf("%12s %10s %12s %14s%n", "store", "requests", "time (ms)", "requests/s");
+        for (Map.Entry<String,Supplier<CookieStore>> store : stores.entrySet()) {
+            final CookieManager cookieManager = CookieManager.create(store.getValue().get());
+            for (int i = 0; i < JAR_SIZE; i++) {
+                cookieManager.put(uris[i], responses.get(i));
+            }
+            for (int requestCount : requestCounts) {
+                final long start = System.nanoTime();
+                final ExecutorService executor = newVirtualThreadPerTaskExecutor();
+                try {
+                    final List<Future<?>> futures = new ArrayList<>(requestCount);
+                    for (int r = 0; r < requestCount; r++) {
+                        final int index = r % JAR_SIZE;
+                        futures.add(executor.submit(() -> {
+                            cookieManager.get(uris[index], Map.of());
+                            if (index % 10 == 0) {
+                                cookieManager.put(uris[index], responses.get(index));
+                            }
+                        }));
+                    }
+                    for (Future<?> future : futures) {
+                        future.get();
+                    }
+                } finally {
+                    executor.shutdown();
+                }
+                final double millis = (System.nanoTime() - start) / 1e6;
+                System.out.printf("%12s %10d %12.1f %14.0f%n", store.getKey(), requestCount, millis, requestCount / millis * 1000);
+            }
+        }
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() throws Exception {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("This JDK does not support virtual threads", e);
+        }
+    }
+
+    private static int[] parse(String[] args) {
+        final int[] values = new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            values[i] = Integer.parseInt(args[i]);
+        }
+        return values;
+    }
+}
@@ -1,6 +1,8 @@
 module fpc.cookie {
     requires static lombok;
-    requires java.desktop;
+    requires static java.desktop;
+    requires static jdk.jfr;
+    requires static java.net.http;
 
     exports net.femtoparsec.cookie;
 
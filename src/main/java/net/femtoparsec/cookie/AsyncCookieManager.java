@@ -0,0 +1,221 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie;
+
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import net.femtoparsec.cookie.rfc6265.CookieParser;
+import net.femtoparsec.cookie.rfc6265.CookieSite;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+/**
+ * Cookie manager working with an {@link AsyncCookieStore}. It can be plugged in the asynchronous
+ * pipeline of an {@link HttpClient} with {@link #sendAsync(HttpClient, HttpRequest, HttpResponse.BodyHandler)}.
+ * The client must not have a cookie handler of its own, and since it follows redirections internally,
+ * the cookies set by intermediate responses are only stored if redirections are followed by the caller.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class AsyncCookieManager {
+
+    /**
+     * @param cookieStore the store to use
+     * @return an asynchronous cookie manager using the provided store
+     */
+    @NonNull
+    public static AsyncCookieManager create(@NonNull AsyncCookieStore cookieStore) {
+        return new AsyncCookieManager(cookieStore, null, CookieClock.system());
+    }
+
+    /**
+     * @param cookieStore the store to use
+     * @param publicSuffixTester a predicate to test if domain of a cookie is a public suffix
+     * @return an asynchronous cookie manager using the provided store
+     */
+    @NonNull
+    public static AsyncCookieManager create(@NonNull AsyncCookieStore cookieStore, @NonNull Predicate<String> publicSuffixTester) {
+        return new AsyncCookieManager(cookieStore, publicSuffixTester, CookieClock.system());
+    }
+
+    /**
+     * @param cookieStore the store to use
+     * @param publicSuffixTester a predicate to test if domain of a cookie is a public suffix, can be null
+     * @param clock the source of the current time
+     * @return an asynchronous cookie manager using the provided store
+     */
+    @NonNull
+    public static AsyncCookieManager create(@NonNull AsyncCookieStore cookieStore, Predicate<String> publicSuffixTester, @NonNull CookieClock clock) {
+        return new AsyncCookieManager(cookieStore, publicSuffixTester, clock);
+    }
+
+    @NonNull
+    private final AsyncCookieStore cookieStore;
+
+    private final Predicate<String> publicSuffixTester;
+
+    @NonNull
+    private final CookieClock clock;
+
+    /**
+     * @param uri the uri of a request
+     * @return the value of the Cookie header to send with the request, empty if no cookie matches
+     */
+    @NonNull
+    public CompletableFuture<Optional<String>> cookieHeader(@NonNull URI uri) {
+        return cookieHeader(uri, null);
+    }
+
+    /**
+     * @param uri the uri of a request
+     * @param topLevelUri the uri of the top-level document embedding the request, null for a top-level request
+     * @return the value of the Cookie header to send with the request, empty if no cookie matches
+     */
+    @NonNull
+    public CompletableFuture<Optional<String>> cookieHeader(@NonNull URI uri, URI topLevelUri) {
+        final RequestInfo requestInfo = requestInfo(uri, topLevelUri);
+        return cookieStore.getCookies(requestInfo, Instant.ofEpochMilli(clock.millis()))
+                          .thenApply(cookies -> cookies.isEmpty()
+                                                ? Optional.empty()
+                                                : Optional.of(CookieManager.formCookieHeader(cookies)));
+    }
+
+    /**
+     * Store the cookies of the Set-Cookie headers of a response
+     * @param uri the uri of the request
+     * @param responseHeaders the headers of the response
+     * @return a future completed when all the cookies are stored, in the order of the headers
+     */
+    @NonNull
+    public CompletableFuture<Void> put(@NonNull URI uri, @NonNull Map<String,List<String>> responseHeaders) {
+        return put(uri, null, responseHeaders);
+    }
+
+    /**
+     * Store the cookies of the Set-Cookie headers of a response to a request of an embedded document
+     * @param uri the uri of the request
+     * @param topLevelUri the uri of the top-level document embedding the request, null for a top-level request
+     * @param responseHeaders the headers of the response
+     * @return a future completed when all the cookies are stored, in the order of the headers
+     */
+    @NonNull
+    public CompletableFuture<Void> put(@NonNull URI uri, URI topLevelUri, @NonNull Map<String,List<String>> responseHeaders) {
+        final RequestInfo requestInfo = requestInfo(uri, topLevelUri);
+        final long nowMillis = clock.millis();
+        final Instant now = Instant.ofEpochMilli(nowMillis);
+        final CookieParser parser = CookieParser.create(requestInfo, publicSuffixTester, CookieMetrics.NONE, nowMillis);
+        final List<Cookie> cookies = new ArrayList<>();
+        responseHeaders.forEach((name, values) -> {
+            if ("Set-Cookie".equalsIgnoreCase(name)) {
+                for (String value : values) {
+                    parser.parse(value).ifPresent(cookies::add);
+                }
+            }
+        });
+        if (cookies.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return cookieStore.addCookies(requestInfo, cookies, now);
+    }
+
+    /**
+     * @param request a request
+     * @return a copy of the request with the Cookie header set from the store
+     */
+    @NonNull
+    public CompletableFuture<HttpRequest> addCookies(@NonNull HttpRequest request) {
+        return cookieHeader(request.uri()).thenApply(header -> header.map(h -> withCookieHeader(request, h)).orElse(request));
+    }
+
+    /**
+     * @param response a response
+     * @param <T> the type of the response body
+     * @return a future completed with the provided response once its cookies are stored
+     */
+    @NonNull
+    public <T> CompletableFuture<HttpResponse<T>> storeCookies(@NonNull HttpResponse<T> response) {
+        return put(response.uri(), response.headers().map()).thenApply(v -> response);
+    }
+
+    /**
+     * Send a request with the provided client, adding the cookies of the store to the request
+     * and storing the cookies of the response
+     * @param client the client used to send the request
+     * @param request the request to send
+     * @param bodyHandler the handler of the response body
+     * @param <T> the type of the response body
+     * @return the response
+     */
+    @NonNull
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(@NonNull HttpClient client,
+                                                            @NonNull HttpRequest request,
+                                                            @NonNull HttpResponse.BodyHandler<T> bodyHandler) {
+        return addCookies(request).thenCompose(r -> client.sendAsync(r, bodyHandler))
+                                  .thenCompose(this::storeCookies);
+    }
+
+    /**
+     * @return a synchronous cookie handler using the same store
+     */
+    @NonNull
+    public CookieManager toCookieHandler() {
+        return CookieManager.builder()
+                            .cookieStore(cookieStore.blocking())
+                            .publicSuffixTester(publicSuffixTester)
+                            .clock(clock)
+                            .build();
+    }
+
+    @NonNull
+    private RequestInfo requestInfo(@NonNull URI uri, URI topLevelUri) {
+        return RequestInfo.create(uri, topLevelUri, CookieSite.siteFunction(publicSuffixTester));
+    }
+
+    @NonNull
+    private static HttpRequest withCookieHeader(@NonNull HttpRequest request, @NonNull String cookieHeader) {
+        final HttpRequest.Builder builder = HttpRequest.newBuilder(request.uri())
+                                                       .method(request.method(), request.bodyPublisher().orElse(HttpRequest.BodyPublishers.noBody()))
+                                                       .expectContinue(request.expectContinue());
+        request.version().ifPresent(builder::version);
+        request.timeout().ifPresent(builder::timeout);
+        request.headers().map().forEach((name, values) -> {
+            if (!"Cookie".equalsIgnoreCase(name)) {
+                values.forEach(value -> builder.header(name, value));
+            }
+        });
+        return builder.header("Cookie", cookieHeader).build();
+    }
+}
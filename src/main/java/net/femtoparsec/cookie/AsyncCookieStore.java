@@ -0,0 +1,147 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.rfc6265.BlockingCookieStore;
+import net.femtoparsec.cookie.rfc6265.ExecutorAsyncCookieStore;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+/**
+ * Asynchronous counterpart of {@link CookieStore}, for stores backed by
+ * slow I/O (disk, network...).
+ */
+public interface AsyncCookieStore {
+
+    /**
+     * @param cookieStore a synchronous store
+     * @param executor the executor used to call the synchronous store
+     * @return an asynchronous store that calls the provided store with the provided executor
+     */
+    @NonNull
+    static AsyncCookieStore fromSync(@NonNull CookieStore cookieStore, @NonNull Executor executor) {
+        return new ExecutorAsyncCookieStore(cookieStore, executor);
+    }
+
+    /**
+     * @return all the cookies in the store
+     */
+    @NonNull
+    CompletableFuture<List<Cookie>> getAllCookies();
+
+    /**
+     * Initialize the store with the provided cookies
+     * @param cookies the cookies to use as initial cookies
+     * @return a future completed when the store is initialized
+     */
+    @NonNull
+    CompletableFuture<Void> initialize(@NonNull Collection<Cookie> cookies);
+
+    /**
+     * Retrieve the cookies associate to a request
+     * @param requestInfo the information about the request
+     * @param now the current time
+     * @return the list of cookie to put in the header of the user-agent response
+     */
+    @NonNull
+    CompletableFuture<List<Cookie>> getCookies(@NonNull RequestInfo requestInfo, @NonNull Instant now);
+
+    /**
+     * Remove expired cookie
+     * @param now the current time used to check cookie expiration
+     * @return a future completed when the expired cookies are removed
+     */
+    @NonNull
+    CompletableFuture<Void> cleanUp(@NonNull Instant now);
+
+    /**
+     * Add a cookie to the store
+     * @param requestInfo the information of the request providing the cookie
+     * @param cookie the cookie to add
+     * @param now the current time
+     * @return a future completed when the cookie is added
+     */
+    @NonNull
+    CompletableFuture<Void> addCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, @NonNull Instant now);
+
+    /**
+     * Add cookies to the store, in order. The default implementation waits for each addition to complete
+     * before starting the next one, so that a cookie is always replaced by the ones that follow it
+     * @param requestInfo the information of the request providing the cookies
+     * @param cookies the cookies to add, in the order of their Set-Cookie headers
+     * @param now the current time
+     * @return a future completed when all the cookies are added
+     */
+    @NonNull
+    default CompletableFuture<Void> addCookies(@NonNull RequestInfo requestInfo, @NonNull List<Cookie> cookies, @NonNull Instant now) {
+        CompletableFuture<Void> result = CompletableFuture.completedFuture(null);
+        for (Cookie cookie : cookies) {
+            result = result.thenCompose(v -> addCookie(requestInfo, cookie, now));
+        }
+        return result;
+    }
+
+    /**
+     * Remove all the cookie that would have been returned by {@link #getCookies(RequestInfo, Instant)} with the provided <code>requestInfo</code>
+     * as parameter
+     *
+     * @param requestInfo the information about the request
+     * @return a future completed when the cookies are removed
+     */
+    @NonNull
+    CompletableFuture<Void> remove(@NonNull RequestInfo requestInfo);
+
+    /**
+     * @param query the criteria of the cookies to return
+     * @return the cookies of the store matching the query. The default implementation scans all the cookies
+     */
+    @NonNull
+    default CompletableFuture<List<Cookie>> query(@NonNull CookieQuery query) {
+        return getAllCookies().thenApply(cookies -> cookies.stream().filter(query::matches).collect(Collectors.toList()));
+    }
+
+    /**
+     * Remove the cookies matching a query
+     * @param query the criteria of the cookies to remove
+     * @return the removed cookies
+     */
+    @NonNull
+    CompletableFuture<List<Cookie>> remove(@NonNull CookieQuery query);
+
+    /**
+     * @return a synchronous view of this store that blocks until the asynchronous operations complete
+     */
+    @NonNull
+    default CookieStore blocking() {
+        return new BlockingCookieStore(this);
+    }
+}
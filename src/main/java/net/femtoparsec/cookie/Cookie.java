@@ -27,24 +27,36 @@ package net.femtoparsec.cookie;
 
 import lombok.*;
 
+import java.beans.ConstructorProperties;
 import java.beans.Transient;
 import java.time.Instant;
 import java.util.Comparator;
 
-@RequiredArgsConstructor
+/**
+ * A cookie. Times are stored as milliseconds since the epoch, the {@link Instant} accessors
+ * are kept for compatibility.
+ */
 @Getter
-@Builder(builderClassName = "Builder",toBuilder = true)
-@EqualsAndHashCode(of = {"name","domain","path"})
+@lombok.Builder(builderClassName = "Builder",toBuilder = true)
+@EqualsAndHashCode(of = {"name","domain","path","partitionKey"})
 public class Cookie {
 
+    /**
+     * Value of {@link #expiryTimeMillis()} for a session cookie
+     */
+    public static final long NO_EXPIRY = Long.MIN_VALUE;
+
+    /**
+     * Value of the mandatory times of the {@link Builder} before they are set
+     */
+    private static final long UNSET = Long.MIN_VALUE;
+
     public static final Comparator<Cookie> PATH_COMPARATOR = Comparator.comparingInt(Cookie::pathLength)
-                                                                       .thenComparing(Cookie::creationTime);
+                                                                       .thenComparingLong(Cookie::creationTimeMillis);
 
-    @NonNull
-    private final Instant creationTime;
+    private final long creationTimeMillis;
 
-    @NonNull
-    private final Instant lastAccessTime;
+    private final long lastAccessTimeMillis;
 
     @NonNull
     private final String name;
@@ -58,7 +70,10 @@ public class Cookie {
     @NonNull
     private final String value;
 
-    private final Instant expiryTime;
+    /**
+     * {@link #NO_EXPIRY} for a session cookie
+     */
+    private final long expiryTimeMillis;
 
     private final boolean securedOnly;
 
@@ -66,17 +81,129 @@ public class Cookie {
 
     private final boolean hostOnly;
 
+    /**
+     * null if the attribute was not specified, the cookie is then also sent with cross-site requests
+     */
+    private final SameSite sameSite;
+
+    /**
+     * the top-level site the cookie is partitioned by (see {@link RequestInfo#topLevelSite()}),
+     * null for an unpartitioned cookie
+     */
+    private final String partitionKey;
+
+    public Cookie(long creationTimeMillis,
+                  long lastAccessTimeMillis,
+                  @NonNull String name,
+                  @NonNull String domain,
+                  @NonNull String path,
+                  @NonNull String value,
+                  long expiryTimeMillis,
+                  boolean securedOnly,
+                  boolean httpOnly,
+                  boolean hostOnly,
+                  SameSite sameSite,
+                  String partitionKey) {
+        if (creationTimeMillis == UNSET) {
+            throw new IllegalArgumentException("The creation time of the cookie '" + name + "' is not set");
+        }
+        if (lastAccessTimeMillis == UNSET) {
+            throw new IllegalArgumentException("The last access time of the cookie '" + name + "' is not set");
+        }
+        this.creationTimeMillis = creationTimeMillis;
+        this.lastAccessTimeMillis = lastAccessTimeMillis;
+        this.name = name;
+        this.domain = domain;
+        this.path = path;
+        this.value = value;
+        this.expiryTimeMillis = expiryTimeMillis;
+        this.securedOnly = securedOnly;
+        this.httpOnly = httpOnly;
+        this.hostOnly = hostOnly;
+        this.sameSite = sameSite;
+        this.partitionKey = partitionKey;
+    }
+
+    /**
+     * Constructor used by the bean and JSON mappers. The times can be given either with the millisecond properties
+     * or with the {@link Instant} properties written by the versions that stored the times as instants.
+     */
+    @ConstructorProperties({"creationTimeMillis", "lastAccessTimeMillis", "name", "domain", "path", "value",
+                            "expiryTimeMillis", "securedOnly", "httpOnly", "hostOnly", "sameSite", "partitionKey",
+                            "creationTime", "lastAccessTime", "expiryTime"})
+    public Cookie(Long creationTimeMillis,
+                  Long lastAccessTimeMillis,
+                  @NonNull String name,
+                  @NonNull String domain,
+                  @NonNull String path,
+                  @NonNull String value,
+                  Long expiryTimeMillis,
+                  boolean securedOnly,
+                  boolean httpOnly,
+                  boolean hostOnly,
+                  SameSite sameSite,
+                  String partitionKey,
+                  Instant creationTime,
+                  Instant lastAccessTime,
+                  Instant expiryTime) {
+        this(toMillis(creationTimeMillis, creationTime, UNSET),
+             toMillis(lastAccessTimeMillis, lastAccessTime, UNSET),
+             name, domain, path, value,
+             toMillis(expiryTimeMillis, expiryTime, NO_EXPIRY),
+             securedOnly, httpOnly, hostOnly, sameSite, partitionKey);
+    }
+
+    private static long toMillis(Long millis, Instant instant, long defaultValue) {
+        if (millis != null) {
+            return millis;
+        }
+        return instant == null ? defaultValue : instant.toEpochMilli();
+    }
+
     public int pathLength() {
         return path.length();
     }
 
+    @NonNull
+    @Transient
+    public Instant creationTime() {
+        return Instant.ofEpochMilli(creationTimeMillis);
+    }
+
+    @NonNull
+    @Transient
+    public Instant lastAccessTime() {
+        return Instant.ofEpochMilli(lastAccessTimeMillis);
+    }
+
+    /**
+     * @return the expiry time, null for a session cookie
+     */
+    @Transient
+    public Instant expiryTime() {
+        return expiryTimeMillis == NO_EXPIRY ? null : Instant.ofEpochMilli(expiryTimeMillis);
+    }
+
     @Transient
     public boolean isPersistent() {
-        return expiryTime != null;
+        return expiryTimeMillis != NO_EXPIRY;
+    }
+
+    @Transient
+    public boolean isPartitioned() {
+        return partitionKey != null;
     }
 
     public boolean isExpired(@NonNull Instant now) {
-        return expiryTime != null && now.isAfter(expiryTime);
+        return isExpired(now.toEpochMilli());
+    }
+
+    /**
+     * @param nowMillis the current time in milliseconds since the epoch
+     * @return true if the cookie expired before the provided time
+     */
+    public boolean isExpired(long nowMillis) {
+        return expiryTimeMillis != NO_EXPIRY && nowMillis > expiryTimeMillis;
     }
 
     /**
@@ -85,10 +212,19 @@ public class Cookie {
      */
     @NonNull
     public Cookie withCreationTime(@NonNull Instant creationTime) {
-        if (creationTime.equals(this.creationTime)) {
+        return withCreationTimeMillis(creationTime.toEpochMilli());
+    }
+
+    /**
+     * @param creationTimeMillis the new creation time in milliseconds since the epoch
+     * @return a new Cookie with the exact same properties as this cookie except for the creation time that is equal to the provided one
+     */
+    @NonNull
+    public Cookie withCreationTimeMillis(long creationTimeMillis) {
+        if (creationTimeMillis == this.creationTimeMillis) {
             return this;
         }
-        return toBuilder().creationTime(creationTime).build();
+        return toBuilder().creationTimeMillis(creationTimeMillis).build();
     }
 
     /**
@@ -97,14 +233,54 @@ public class Cookie {
      */
     @NonNull
     public Cookie withLastAccessTime(@NonNull Instant lastAccessTime) {
-        if (lastAccessTime.equals(this.lastAccessTime)) {
+        return withLastAccessTimeMillis(lastAccessTime.toEpochMilli());
+    }
+
+    /**
+     * @param lastAccessTimeMillis the new last access time in milliseconds since the epoch
+     * @return a new Cookie with the exact same properties as this cookie except for the last access time that is equal to the provided one
+     */
+    @NonNull
+    public Cookie withLastAccessTimeMillis(long lastAccessTimeMillis) {
+        if (lastAccessTimeMillis == this.lastAccessTimeMillis) {
             return this;
         }
-        return toBuilder().lastAccessTime(lastAccessTime).build();
+        return toBuilder().lastAccessTimeMillis(lastAccessTimeMillis).build();
     }
 
     @NonNull
     public String formHeaderString() {
         return name+"="+value;
     }
+
+    public static class Builder {
+
+        private long creationTimeMillis = UNSET;
+
+        private long lastAccessTimeMillis = UNSET;
+
+        private long expiryTimeMillis = NO_EXPIRY;
+
+        @NonNull
+        public Builder creationTime(@NonNull Instant creationTime) {
+            this.creationTimeMillis = creationTime.toEpochMilli();
+            return this;
+        }
+
+        @NonNull
+        public Builder lastAccessTime(@NonNull Instant lastAccessTime) {
+            this.lastAccessTimeMillis = lastAccessTime.toEpochMilli();
+            return this;
+        }
+
+        /**
+         * @param expiryTime the expiry time, null for a session cookie
+         * @return this builder
+         */
+        @NonNull
+        public Builder expiryTime(Instant expiryTime) {
+            this.expiryTimeMillis = expiryTime == null ? NO_EXPIRY : expiryTime.toEpochMilli();
+            return this;
+        }
+    }
 }
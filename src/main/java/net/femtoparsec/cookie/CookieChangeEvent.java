@@ -0,0 +1,73 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie;
+
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * A mutation of a cookie store
+ */
+@Value
+public class CookieChangeEvent {
+
+    public enum Type {
+        /**
+         * A new cookie was added
+         */
+        ADDED,
+        /**
+         * An existing cookie was replaced by a new one with the same name, domain, path and partition key
+         */
+        REPLACED,
+        /**
+         * A cookie was removed explicitly (removal of a request cookies, expired Set-Cookie, clean...)
+         */
+        REMOVED,
+        /**
+         * A cookie was removed because it expired
+         */
+        EXPIRED,
+        /**
+         * A cookie was removed to keep the store in its budget
+         */
+        EVICTED
+    }
+
+    /**
+     * The position of the event in the stream of the store, starting at 1 and without gaps
+     */
+    long sequence;
+
+    @NonNull
+    Type type;
+
+    /**
+     * The cookie added, the new cookie for a replacement or the removed cookie
+     */
+    @NonNull
+    Cookie cookie;
+}
@@ -0,0 +1,67 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.rfc6265.CoarseCookieClock;
+
+/**
+ * The source of the current time used by a {@link CookieManager} to create cookies and check their expiry.
+ */
+@FunctionalInterface
+public interface CookieClock {
+
+    /**
+     * @return the current time in milliseconds since the epoch
+     */
+    long millis();
+
+    /**
+     * @return a clock reading {@link System#currentTimeMillis()}
+     */
+    @NonNull
+    static CookieClock system() {
+        return System::currentTimeMillis;
+    }
+
+    /**
+     * @return a shared clock that caches the current time and refreshes it every {@link CoarseCookieClock#DEFAULT_TICK_MILLIS}
+     * milliseconds with a daemon thread. Reading it only costs a volatile read.
+     */
+    @NonNull
+    static CookieClock coarse() {
+        return CoarseCookieClock.shared();
+    }
+
+    /**
+     * @param millis the time returned by the clock in milliseconds since the epoch
+     * @return a clock that never moves, for tests
+     */
+    @NonNull
+    static CookieClock fixed(long millis) {
+        return () -> millis;
+    }
+}
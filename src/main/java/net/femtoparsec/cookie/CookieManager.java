@@ -29,11 +29,12 @@ import lombok.AccessLevel;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import net.femtoparsec.cookie.rfc6265.CookieParser;
+import net.femtoparsec.cookie.rfc6265.CookieSite;
 import net.femtoparsec.cookie.rfc6265.InMemoryCookieStore;
 
 import java.net.CookieHandler;
 import java.net.URI;
-import java.time.Instant;
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -42,6 +43,7 @@ import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+@lombok.Builder(builderClassName = "Builder")
 public class CookieManager extends CookieHandler {
 
     /**
@@ -51,7 +53,7 @@ public class CookieManager extends CookieHandler {
      */
     @NonNull
     public static CookieManager create(@NonNull CookieStore cookieStore) {
-        return new CookieManager(cookieStore, null);
+        return builder().cookieStore(cookieStore).build();
     }
 
     /**
@@ -62,7 +64,7 @@ public class CookieManager extends CookieHandler {
      */
     @NonNull
     public static CookieManager create(@NonNull CookieStore cookieStore, @NonNull Predicate<String> publicSuffixTester) {
-        return new CookieManager(cookieStore,publicSuffixTester);
+        return builder().cookieStore(cookieStore).publicSuffixTester(publicSuffixTester).build();
     }
 
     /**
@@ -71,7 +73,7 @@ public class CookieManager extends CookieHandler {
      */
     @NonNull
     public static CookieManager create() {
-        return create(new InMemoryCookieStore());
+        return builder().build();
     }
 
     /**
@@ -81,7 +83,7 @@ public class CookieManager extends CookieHandler {
      */
     @NonNull
     public static CookieManager create(@NonNull Predicate<String> publicSuffixTester) {
-        return create(new InMemoryCookieStore(),publicSuffixTester);
+        return builder().publicSuffixTester(publicSuffixTester).build();
     }
 
 
@@ -90,39 +92,94 @@ public class CookieManager extends CookieHandler {
 
     private final Predicate<String> publicSuffixTester;
 
+    @NonNull
+    private final CookieMetrics metrics;
+
+    @NonNull
+    private final CookieClock clock;
+
+
+    /**
+     * @param topLevelUri the uri of the top-level document embedding the requests
+     * @return a handler using the store of this manager for the requests of a document embedded in the provided
+     * top-level document: SameSite cookies are not sent to nor accepted from other sites, and partitioned cookies
+     * are kept in the partition of the top-level site
+     */
+    @NonNull
+    public CookieHandler embeddedIn(@NonNull URI topLevelUri) {
+        return new EmbeddedCookieHandler(topLevelUri);
+    }
 
     @Override
     public Map<String,List<String>> get(URI uri, Map<String,List<String>> requestHeaders) {
+        return getCookieHeaders(uri, null);
+    }
+
+    @NonNull
+    private Map<String,List<String>> getCookieHeaders(URI uri, URI topLevelUri) {
         if (uri == null) {
             return Map.of();
         }
+        if (metrics == CookieMetrics.NONE) {
+            return doGet(uri, topLevelUri);
+        }
+        final long start = System.nanoTime();
+        try {
+            return doGet(uri, topLevelUri);
+        } finally {
+            metrics.getDuration(System.nanoTime() - start);
+        }
+    }
 
-        final RequestInfo requestInfo = RequestInfo.create(uri);
-        final Instant now = Instant.now();
+    @NonNull
+    private Map<String,List<String>> doGet(@NonNull URI uri, URI topLevelUri) {
+        final RequestInfo requestInfo = requestInfo(uri, topLevelUri);
+        final long now = clock.millis();
 
         final List<Cookie> cookies = cookieStore.getCookies(requestInfo,now);
 
         if (cookies.isEmpty()) {
+            metrics.miss();
             return Map.of();
         }
+        metrics.hit();
 
-        final String cookieHeader = cookies.stream()
-                                           .sorted(Cookie.PATH_COMPARATOR)
-                                           .map(Cookie::formHeaderString)
-                                           .collect(Collectors.joining("; "));
+        return Map.of("Cookie", List.of(formCookieHeader(cookies)));
+    }
 
-        return Map.of("Cookie", List.of(cookieHeader));
+    @NonNull
+    static String formCookieHeader(@NonNull List<Cookie> cookies) {
+        return cookies.stream()
+                      .sorted(Cookie.PATH_COMPARATOR)
+                      .map(Cookie::formHeaderString)
+                      .collect(Collectors.joining("; "));
     }
 
     @Override
     public void put(URI uri, Map<String,List<String>> responseHeaders) {
+        putSetCookieHeaders(uri, null, responseHeaders);
+    }
+
+    private void putSetCookieHeaders(URI uri, URI topLevelUri, Map<String,List<String>> responseHeaders) {
         if (uri == null || responseHeaders == null) {
             return;
         }
+        if (metrics == CookieMetrics.NONE) {
+            doPut(uri, topLevelUri, responseHeaders);
+            return;
+        }
+        final long start = System.nanoTime();
+        try {
+            doPut(uri, topLevelUri, responseHeaders);
+        } finally {
+            metrics.putDuration(System.nanoTime() - start);
+        }
+    }
 
-        final RequestInfo requestInfo = RequestInfo.create(uri);
-        final Instant now = Instant.now();
-        final CookieParser parser = createCookieParserForRequest(requestInfo);
+    private void doPut(@NonNull URI uri, URI topLevelUri, @NonNull Map<String,List<String>> responseHeaders) {
+        final RequestInfo requestInfo = requestInfo(uri, topLevelUri);
+        final long now = clock.millis();
+        final CookieParser parser = CookieParser.create(requestInfo, publicSuffixTester, metrics, now);
 
         responseHeaders.entrySet().stream()
                        .filter(e -> "Set-Cookie".equalsIgnoreCase(e.getKey()))
@@ -134,8 +191,81 @@ public class CookieManager extends CookieHandler {
 
     }
 
+    /**
+     * Store the cookies of Set-Cookie header values received as bytes, without decoding
+     * them to strings first
+     * @param uri the URI of the request
+     * @param setCookieValues the values of the Set-Cookie headers, each between the position and the limit of its buffer
+     */
+    public void putSetCookies(URI uri, Collection<ByteBuffer> setCookieValues) {
+        putSetCookies(uri, null, setCookieValues);
+    }
+
+    /**
+     * Same as {@link #putSetCookies(URI, Collection)} for a request of a document embedded in another one
+     * (see {@link #embeddedIn(URI)})
+     * @param uri the URI of the request
+     * @param topLevelUri the uri of the top-level document embedding the request, null for a top-level request
+     * @param setCookieValues the values of the Set-Cookie headers, each between the position and the limit of its buffer
+     */
+    public void putSetCookies(URI uri, URI topLevelUri, Collection<ByteBuffer> setCookieValues) {
+        if (uri == null || setCookieValues == null) {
+            return;
+        }
+        if (metrics == CookieMetrics.NONE) {
+            doPutSetCookies(uri, topLevelUri, setCookieValues);
+            return;
+        }
+        final long start = System.nanoTime();
+        try {
+            doPutSetCookies(uri, topLevelUri, setCookieValues);
+        } finally {
+            metrics.putDuration(System.nanoTime() - start);
+        }
+    }
+
+    private void doPutSetCookies(@NonNull URI uri, URI topLevelUri, @NonNull Collection<ByteBuffer> setCookieValues) {
+        final RequestInfo requestInfo = requestInfo(uri, topLevelUri);
+        final long now = clock.millis();
+        final CookieParser parser = CookieParser.create(requestInfo, publicSuffixTester, metrics, now);
+
+        for (ByteBuffer setCookieValue : setCookieValues) {
+            parser.parse(setCookieValue).ifPresent(c -> cookieStore.addCookie(requestInfo, c, now));
+        }
+    }
+
+    /**
+     * The sites are computed with the public suffix tester, so that two hosts under the same
+     * public suffix are not considered same-site
+     */
     @NonNull
-    private CookieParser createCookieParserForRequest(@NonNull RequestInfo requestInfo) {
-        return publicSuffixTester==null?CookieParser.create(requestInfo):CookieParser.create(requestInfo,publicSuffixTester);
+    private RequestInfo requestInfo(@NonNull URI uri, URI topLevelUri) {
+        return RequestInfo.create(uri, topLevelUri, CookieSite.siteFunction(publicSuffixTester));
+    }
+
+    @RequiredArgsConstructor
+    private class EmbeddedCookieHandler extends CookieHandler {
+
+        @NonNull
+        private final URI topLevelUri;
+
+        @Override
+        public Map<String,List<String>> get(URI uri, Map<String,List<String>> requestHeaders) {
+            return getCookieHeaders(uri, topLevelUri);
+        }
+
+        @Override
+        public void put(URI uri, Map<String,List<String>> responseHeaders) {
+            putSetCookieHeaders(uri, topLevelUri, responseHeaders);
+        }
+    }
+
+    public static class Builder {
+
+        private CookieStore cookieStore = new InMemoryCookieStore();
+
+        private CookieMetrics metrics = CookieMetrics.NONE;
+
+        private CookieClock clock = CookieClock.system();
     }
 }
@@ -0,0 +1,84 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie;
+
+import lombok.NonNull;
+
+/**
+ * Listener notified of the activity of the cookie manager and the cookie stores.
+ * All the methods do nothing by default. Implementations must be thread safe and fast
+ * since they are called on the request path.
+ */
+public interface CookieMetrics {
+
+    /**
+     * Metrics that ignore all the notifications
+     */
+    CookieMetrics NONE = new CookieMetrics() {};
+
+    /**
+     * Called for each parsed Set-Cookie header, whether the cookie is accepted or not
+     */
+    default void parsed() {}
+
+    /**
+     * Called when a cookie is rejected
+     * @param reason the reason of the rejection
+     */
+    default void rejected(@NonNull CookieRejectReason reason) {}
+
+    /**
+     * Called when cookies are found for a request
+     */
+    default void hit() {}
+
+    /**
+     * Called when no cookie is found for a request
+     */
+    default void miss() {}
+
+    /**
+     * Called when cookies are evicted from a store to make room for others
+     * @param count the number of evicted cookies
+     */
+    default void evicted(int count) {}
+
+    /**
+     * Called when expired cookies are removed from a store
+     * @param count the number of expired cookies
+     */
+    default void expired(int count) {}
+
+    /**
+     * @param nanos the duration of a call to {@link CookieManager#get}
+     */
+    default void getDuration(long nanos) {}
+
+    /**
+     * @param nanos the duration of a call to {@link CookieManager#put}
+     */
+    default void putDuration(long nanos) {}
+}
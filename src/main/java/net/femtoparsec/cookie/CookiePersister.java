@@ -0,0 +1,69 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie;
+
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Collection;
+
+/**
+ * A durable storage of cookies, used by the write-behind store
+ * (see {@link CookieStore#writeBehind(CookieStore, CookiePersister, java.time.Duration, int)}).
+ * Calls are never concurrent.
+ */
+public interface CookiePersister {
+
+    /**
+     * @return all the persisted cookies
+     * @throws IOException if the cookies could not be read
+     */
+    @NonNull
+    Collection<Cookie> load() throws IOException;
+
+    /**
+     * Persist a batch of modifications
+     * @param upserts the cookies to add or replace
+     * @param removals the cookies to remove (only their name, domain, path and partition key are relevant)
+     * @throws IOException if the modifications could not be persisted
+     */
+    void write(@NonNull Collection<Cookie> upserts, @NonNull Collection<Cookie> removals) throws IOException;
+
+    /**
+     * Replace all the persisted cookies
+     * @param cookies the new cookies to persist
+     * @throws IOException if the cookies could not be persisted
+     */
+    void replaceAll(@NonNull Collection<Cookie> cookies) throws IOException;
+
+    /**
+     * Remove the persisted cookies that are expired
+     * @param now the current time used to check cookie expiration
+     * @throws IOException if the cookies could not be removed
+     */
+    void removeExpired(@NonNull Instant now) throws IOException;
+}
@@ -0,0 +1,180 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie;
+
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import net.femtoparsec.cookie.rfc6265.HostCanonicalizer;
+
+import java.time.Instant;
+
+/**
+ * Criteria selecting cookies of a store by domain, by name and by expiry time, used with
+ * {@link CookieStore#query(CookieQuery)} and {@link CookieStore#remove(CookieQuery)}.
+ * All the criteria provided must match.
+ */
+@Value
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class CookieQuery {
+
+    private static final CookieQuery ALL = new CookieQuery(null, false, null, Long.MIN_VALUE, Long.MAX_VALUE);
+
+    /**
+     * The canonical domain of the cookies, null for any domain
+     */
+    String domain;
+
+    /**
+     * true if the cookies of the sub-domains of {@link #domain()} also match
+     */
+    boolean includeSubdomains;
+
+    /**
+     * The name of the cookies, null for any name
+     */
+    String name;
+
+    /**
+     * The lower bound, included, of the expiry time of the cookies in milliseconds since the epoch
+     */
+    long expiryFromMillis;
+
+    /**
+     * The upper bound, included, of the expiry time of the cookies in milliseconds since the epoch
+     */
+    long expiryToMillis;
+
+    /**
+     * @return a query matching all the cookies
+     */
+    @NonNull
+    public static CookieQuery all() {
+        return ALL;
+    }
+
+    /**
+     * @param domain a domain
+     * @return a query matching the cookies of exactly this domain
+     */
+    @NonNull
+    public static CookieQuery forDomain(@NonNull String domain) {
+        return ALL.andDomain(domain);
+    }
+
+    /**
+     * @param domain a domain
+     * @return a query matching the cookies of this domain and of all its sub-domains
+     */
+    @NonNull
+    public static CookieQuery forDomainTree(@NonNull String domain) {
+        return ALL.andDomainTree(domain);
+    }
+
+    /**
+     * @param name a cookie name
+     * @return a query matching the cookies with this name
+     */
+    @NonNull
+    public static CookieQuery forName(@NonNull String name) {
+        return ALL.andName(name);
+    }
+
+    /**
+     * @param from the lower bound, included
+     * @param to the upper bound, included
+     * @return a query matching the persistent cookies expiring between the provided times
+     */
+    @NonNull
+    public static CookieQuery expiringBetween(@NonNull Instant from, @NonNull Instant to) {
+        return ALL.andExpiringBetween(from, to);
+    }
+
+    @NonNull
+    public CookieQuery andDomain(@NonNull String domain) {
+        return new CookieQuery(canonicalize(domain), false, name, expiryFromMillis, expiryToMillis);
+    }
+
+    @NonNull
+    public CookieQuery andDomainTree(@NonNull String domain) {
+        return new CookieQuery(canonicalize(domain), true, name, expiryFromMillis, expiryToMillis);
+    }
+
+    @NonNull
+    public CookieQuery andName(@NonNull String name) {
+        return new CookieQuery(domain, includeSubdomains, name, expiryFromMillis, expiryToMillis);
+    }
+
+    @NonNull
+    public CookieQuery andExpiringBetween(@NonNull Instant from, @NonNull Instant to) {
+        return andExpiringBetween(from.toEpochMilli(), to.toEpochMilli());
+    }
+
+    /**
+     * @param fromMillis the lower bound, included, in milliseconds since the epoch
+     * @param toMillis the upper bound, included, in milliseconds since the epoch
+     * @return a copy of this query also requiring the cookies to be persistent and to expire between the provided times
+     */
+    @NonNull
+    public CookieQuery andExpiringBetween(long fromMillis, long toMillis) {
+        if (fromMillis > toMillis) {
+            throw new IllegalArgumentException("Empty expiry range: " + fromMillis + " > " + toMillis);
+        }
+        return new CookieQuery(domain, includeSubdomains, name, Math.max(fromMillis, Cookie.NO_EXPIRY + 1), toMillis);
+    }
+
+    /**
+     * @return true if the query only matches persistent cookies expiring in a range
+     */
+    public boolean hasExpiryRange() {
+        return expiryFromMillis != Long.MIN_VALUE || expiryToMillis != Long.MAX_VALUE;
+    }
+
+    public boolean matches(@NonNull Cookie cookie) {
+        return domainMatches(cookie.domain())
+               && (name == null || name.equals(cookie.name()))
+               && (!hasExpiryRange() || (cookie.isPersistent()
+                                         && cookie.expiryTimeMillis() >= expiryFromMillis
+                                         && cookie.expiryTimeMillis() <= expiryToMillis));
+    }
+
+    private boolean domainMatches(@NonNull String cookieDomain) {
+        if (domain == null || cookieDomain.equalsIgnoreCase(domain)) {
+            return true;
+        }
+        final int prefixLength = cookieDomain.length() - domain.length();
+        return includeSubdomains
+               && prefixLength > 0
+               && cookieDomain.charAt(prefixLength - 1) == '.'
+               && cookieDomain.regionMatches(true, prefixLength, domain, 0, domain.length());
+    }
+
+    @NonNull
+    private static String canonicalize(@NonNull String domain) {
+        return HostCanonicalizer.canonicalize(domain.startsWith(".") ? domain.substring(1) : domain);
+    }
+}
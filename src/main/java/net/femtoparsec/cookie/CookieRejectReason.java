@@ -0,0 +1,64 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie;
+
+/**
+ * The reasons why a cookie received in a Set-Cookie header is not stored
+ */
+public enum CookieRejectReason {
+    /**
+     * The Set-Cookie header could not be parsed
+     */
+    INVALID_SYNTAX,
+    /**
+     * The domain attribute does not match the host of the request
+     */
+    DOMAIN_MISMATCH,
+    /**
+     * The domain attribute is a public suffix
+     */
+    PUBLIC_SUFFIX,
+    /**
+     * An http-only cookie was received from a non HTTP request
+     */
+    HTTP_ONLY_FROM_NON_HTTP,
+    /**
+     * A non HTTP request tried to overwrite an http-only cookie
+     */
+    HTTP_ONLY_OVERWRITE,
+    /**
+     * A partitioned cookie was not secure
+     */
+    PARTITIONED_NOT_SECURE,
+    /**
+     * A cookie with SameSite=None was not secure
+     */
+    SAME_SITE_NONE_NOT_SECURE,
+    /**
+     * A cookie with SameSite=Strict or SameSite=Lax was received from a cross-site request
+     */
+    SAME_SITE_FROM_CROSS_SITE,
+}
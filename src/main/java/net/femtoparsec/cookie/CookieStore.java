@@ -26,12 +26,31 @@
 package net.femtoparsec.cookie;
 
 import lombok.NonNull;
+import net.femtoparsec.cookie.rfc6265.CompressingCookieStore;
+import net.femtoparsec.cookie.rfc6265.CookieSite;
+import net.femtoparsec.cookie.rfc6265.DeltaReplicatedCookieStore;
+import net.femtoparsec.cookie.rfc6265.FileTieredCookieStore;
 import net.femtoparsec.cookie.rfc6265.InMemoryCookieStore;
+import net.femtoparsec.cookie.rfc6265.MemoryBoundedCookieStore;
+import net.femtoparsec.cookie.rfc6265.PersistentCookieStore;
+import net.femtoparsec.cookie.rfc6265.ShardedCookieStore;
+import net.femtoparsec.cookie.rfc6265.SharedMemoryCookieStore;
+import net.femtoparsec.cookie.rfc6265.SitePartitionedCookieStore;
+import net.femtoparsec.cookie.rfc6265.WriteBehindCookieStore;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * A store of cookie. Cookies can be added and clean up
@@ -46,12 +65,198 @@ public interface CookieStore {
         return new InMemoryCookieStore();
     }
 
+    /**
+     * @param metrics the metrics notified of expirations and rejections
+     * @return a RFC 6265 cookie store that stores cookie in memory
+     */
+    @NonNull
+    static CookieStore inMemory(@NonNull CookieMetrics metrics) {
+        return new InMemoryCookieStore(metrics);
+    }
+
+    /**
+     * @return a RFC 6265 cookie store split in shards by domain, whose bulk operations run in parallel
+     * in the common pool
+     */
+    @NonNull
+    static CookieStore sharded() {
+        return new ShardedCookieStore();
+    }
+
+    /**
+     * @param shardCount the number of shards
+     * @param executor the executor used to run the bulk operations in parallel
+     * @return a RFC 6265 cookie store split in shards by domain, whose bulk operations run in parallel
+     */
+    @NonNull
+    static CookieStore sharded(int shardCount, @NonNull Executor executor) {
+        return new ShardedCookieStore(shardCount, executor);
+    }
+
+    /**
+     * @return a RFC 6265 cookie store that keeps the partitioned cookies of each top-level site in a separate
+     * in-memory store
+     */
+    @NonNull
+    static PartitionedCookieStore partitioned() {
+        return new SitePartitionedCookieStore();
+    }
+
+    /**
+     * @param storeFactory the factory of the store of the unpartitioned cookies and of the store of each partition
+     * @return a cookie store that keeps the partitioned cookies of each top-level site in a separate store
+     */
+    @NonNull
+    static PartitionedCookieStore partitioned(@NonNull Supplier<? extends CookieStore> storeFactory) {
+        return new SitePartitionedCookieStore(storeFactory);
+    }
+
+    /**
+     * @return a RFC 6265 cookie store that stores cookie in memory using persistent data structures. Reads do
+     * not block and the store can be forked in constant time
+     */
+    @NonNull
+    static ForkableCookieStore persistent() {
+        return new PersistentCookieStore();
+    }
+
+    /**
+     * @param byteBudget the maximal estimated number of bytes the cookies can use
+     * @return a RFC 6265 cookie store that stores cookie in memory and evicts the least recently accessed cookies
+     * when the budget is exceeded
+     */
+    @NonNull
+    static BoundedCookieStore memoryBounded(long byteBudget) {
+        return new MemoryBoundedCookieStore(byteBudget);
+    }
+
+    /**
+     * @param byteBudget the maximal estimated number of bytes the cookies can use
+     * @param metrics the metrics notified of evictions, expirations and rejections
+     * @return a RFC 6265 cookie store that stores cookie in memory and evicts the least recently accessed cookies
+     * when the budget is exceeded
+     */
+    @NonNull
+    static BoundedCookieStore memoryBounded(long byteBudget, @NonNull CookieMetrics metrics) {
+        return new MemoryBoundedCookieStore(byteBudget, metrics);
+    }
+
+    /**
+     * @param delegate the store used to store the cookies
+     * @return a store that compresses large cookie values before storing them in the provided store,
+     * observable if the provided store is
+     * @throws IllegalArgumentException if the provided store persists its cookies
+     */
+    @NonNull
+    static CookieStore compressing(@NonNull CookieStore delegate) {
+        return CompressingCookieStore.create(delegate);
+    }
+
+    /**
+     * @param delegate the store used to store the cookies
+     * @param threshold the minimal length of the cookie values to compress
+     * @param dictionary a preset dictionary shared by all the compressed values, typically built from sample values
+     * @return a store that compresses large cookie values before storing them in the provided store,
+     * observable if the provided store is
+     * @throws IllegalArgumentException if the provided store persists its cookies
+     */
+    @NonNull
+    static CookieStore compressing(@NonNull CookieStore delegate, int threshold, @NonNull byte[] dictionary) {
+        return CompressingCookieStore.create(delegate, threshold, dictionary);
+    }
+
+    /**
+     * @param delegate the store used to store the cookies, initialized with the persisted cookies
+     * @param persister the persister of the cookies
+     * @param durabilityWindow the maximal time a modification stays in memory only
+     * @param maxBatchSize the number of modified cookies that triggers a write
+     * @return a store that serves requests from memory and persists the modifications in the background
+     * @throws java.io.UncheckedIOException if the persisted cookies could not be loaded
+     */
+    @NonNull
+    static FlushableCookieStore writeBehind(@NonNull CookieStore delegate, @NonNull CookiePersister persister,
+                                            @NonNull Duration durabilityWindow, int maxBatchSize) {
+        final WriteBehindCookieStore store = new WriteBehindCookieStore(delegate, persister, durabilityWindow, maxBatchSize);
+        try {
+            store.load();
+        } catch (RuntimeException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    /**
+     * @param directory the directory where the cookies of the cold domains are kept
+     * @param byteBudget the maximal estimated number of bytes the cookies in memory can use
+     * @param idleTimeout the time after which the cookies of an unused domain are moved to the directory
+     * @return a store that keeps only the cookies of the recently used domains in memory
+     * @throws java.io.UncheckedIOException if the directory could not be created
+     */
+    @NonNull
+    static TieredCookieStore tiered(@NonNull Path directory, long byteBudget, @NonNull Duration idleTimeout) {
+        return new FileTieredCookieStore(directory, byteBudget, idleTimeout);
+    }
+
+    /**
+     * @param directory the directory where the cookies of the cold domains are kept
+     * @param byteBudget the maximal estimated number of bytes the cookies in memory can use
+     * @param idleTimeout the time after which the cookies of an unused domain are moved to the directory
+     * @param publicSuffixTester a predicate to test if a domain is a public suffix, used to group the cookies by site
+     * @return a store that keeps only the cookies of the recently used domains in memory
+     * @throws java.io.UncheckedIOException if the directory could not be created
+     */
+    @NonNull
+    static TieredCookieStore tiered(@NonNull Path directory, long byteBudget, @NonNull Duration idleTimeout,
+                                    @NonNull Predicate<String> publicSuffixTester) {
+        return new FileTieredCookieStore(directory, byteBudget, idleTimeout, CookieSite.siteFunction(publicSuffixTester));
+    }
+
+    /**
+     * @param file the memory-mapped file holding the cookies, created if needed
+     * @param capacity the maximal number of bytes of the serialized cookies, ignored if the file already exists
+     * @return a store shared by all the processes of the host opening the same file
+     * @throws UncheckedIOException if the file could not be mapped
+     */
+    @NonNull
+    static FlushableCookieStore shared(@NonNull Path file, int capacity) {
+        try {
+            return new SharedMemoryCookieStore(file, capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param nodeId the identifier of this node, unique in the cluster
+     * @param transport the transport connecting the nodes
+     * @param batchDelay the maximal time a modification waits before being sent to the other nodes
+     * @param maxBatchSize the number of modified cookies that triggers a send
+     * @param antiEntropyInterval the time between two anti-entropy exchanges started by this node
+     * @return a store replicated on all the nodes connected by the transport
+     */
+    @NonNull
+    static ReplicatedCookieStore replicated(@NonNull String nodeId, @NonNull ReplicationTransport transport,
+                                            @NonNull Duration batchDelay, int maxBatchSize,
+                                            @NonNull Duration antiEntropyInterval) {
+        return new DeltaReplicatedCookieStore(nodeId, transport, batchDelay, maxBatchSize, antiEntropyInterval);
+    }
+
     /**
      * @return all the cookies in the store
      */
     @NonNull
     List<Cookie> getAllCookies();
 
+    /**
+     * @param key a cookie used as key, only its name, domain, path and partition key are used
+     * @return the cookie of the store with the same name, domain, path and partition key as the provided one
+     */
+    @NonNull
+    default Optional<Cookie> find(@NonNull Cookie key) {
+        return getAllCookies().stream().filter(key::equals).findFirst();
+    }
+
     /**
      * Initialize the store with the provided cookies
      * @param cookies the cookies to use as initial cookies
@@ -67,12 +272,32 @@ public interface CookieStore {
     @NonNull
     List<Cookie> getCookies(@NonNull RequestInfo requestInfo, @NonNull Instant now);
 
+    /**
+     * Same as {@link #getCookies(RequestInfo, Instant)} with the current time in milliseconds since the epoch.
+     * Stores override it to avoid creating an {@link Instant}
+     * @param requestInfo the information about the request
+     * @param nowMillis the current time in milliseconds since the epoch
+     * @return the list of cookie to put in the header of the user-agent response
+     */
+    @NonNull
+    default List<Cookie> getCookies(@NonNull RequestInfo requestInfo, long nowMillis) {
+        return getCookies(requestInfo, Instant.ofEpochMilli(nowMillis));
+    }
+
     /**
      * Remove expired cookie
      * @param now the current time used to check cookie expiration
      */
     void cleanUp(@NonNull Instant now);
 
+    /**
+     * Remove expired cookie
+     * @param nowMillis the current time in milliseconds since the epoch
+     */
+    default void cleanUp(long nowMillis) {
+        cleanUp(Instant.ofEpochMilli(nowMillis));
+    }
+
     /**
      * Add a cookie to the store
      * @param requestInfo the information of the request providing the cookie
@@ -81,6 +306,17 @@ public interface CookieStore {
      */
     void addCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, @NonNull Instant now);
 
+    /**
+     * Same as {@link #addCookie(RequestInfo, Cookie, Instant)} with the current time in milliseconds since the epoch.
+     * Stores override it to avoid creating an {@link Instant}
+     * @param requestInfo the information of the request providing the cookie
+     * @param cookie the cookie to add
+     * @param nowMillis the current time in milliseconds since the epoch
+     */
+    default void addCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, long nowMillis) {
+        addCookie(requestInfo, cookie, Instant.ofEpochMilli(nowMillis));
+    }
+
 
     /**
      * Remove all the cookie that would have been returned by {@link #getCookies(RequestInfo, Instant)} with the provided <code>requestInfo</code>
@@ -97,5 +333,22 @@ public interface CookieStore {
         initialize(Collections.emptyList());
     }
 
+    /**
+     * The default implementation scans all the cookies. Indexed stores override it.
+     * @param query the criteria of the cookies to return
+     * @return the cookies of the store matching the query
+     */
+    @NonNull
+    default List<Cookie> query(@NonNull CookieQuery query) {
+        return getAllCookies().stream().filter(query::matches).collect(Collectors.toList());
+    }
+
+    /**
+     * Remove the cookies matching a query
+     * @param query the criteria of the cookies to remove
+     * @return the removed cookies
+     */
+    @NonNull
+    List<Cookie> remove(@NonNull CookieQuery query);
 
 }
@@ -0,0 +1,75 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.rfc6265.InMemoryMultiTenantCookieStore;
+
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A set of cookie stores, one per tenant, sharing as much memory as possible.
+ * The domain, path and name of the cookies are deduplicated across all the tenants.
+ */
+public interface MultiTenantCookieStore {
+
+    /**
+     * @return a multi-tenant store whose tenant stores keep their cookies in memory
+     */
+    @NonNull
+    static MultiTenantCookieStore inMemory() {
+        return new InMemoryMultiTenantCookieStore();
+    }
+
+    /**
+     * @param tenantId the id of a tenant
+     * @return the store of the tenant, created if it does not exist yet
+     */
+    @NonNull
+    CookieStore forTenant(@NonNull String tenantId);
+
+    /**
+     * @return the ids of the tenant with a store
+     */
+    @NonNull
+    Set<String> tenantIds();
+
+    /**
+     * Drop the store of a tenant. A store previously returned by {@link #forTenant(String)}
+     * for this tenant is detached and won't be returned anymore
+     * @param tenantId the id of the tenant to evict
+     * @return true if the tenant had a store
+     */
+    boolean evict(@NonNull String tenantId);
+
+    /**
+     * Drop the stores of all the tenants matching the provided filter
+     * @param tenantFilter the filter used to select the tenants to evict
+     * @return the number of evicted tenants
+     */
+    int evictIf(@NonNull Predicate<? super String> tenantFilter);
+}
@@ -0,0 +1,87 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.rfc6265.CookieChangeJournal;
+import net.femtoparsec.cookie.rfc6265.InMemoryCookieStore;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A cookie store that publishes its mutations as an ordered stream of {@link CookieChangeEvent}.
+ * <p>
+ * The store keeps the most recent events in a bounded journal. A subscriber that requests
+ * an event no longer in the journal (because it started too far in the past or consumes
+ * too slowly) receives an {@link IllegalStateException} with {@link Flow.Subscriber#onError(Throwable)}
+ * and must resynchronize from {@link #getAllCookies()}. The journal is only filled once
+ * a first subscription has been made, so resynchronizing should be done by subscribing from
+ * {@link #lastSequence()}<code>+1</code> before reading all the cookies.
+ */
+public interface ObservableCookieStore extends CookieStore {
+
+    /**
+     * @return a RFC 6265 cookie store that stores cookie in memory and publishes its mutations
+     */
+    @NonNull
+    static ObservableCookieStore inMemory() {
+        return inMemory(CookieChangeJournal.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param journalCapacity the number of mutations kept for the subscribers
+     * @return a RFC 6265 cookie store that stores cookie in memory and publishes its mutations
+     */
+    @NonNull
+    static ObservableCookieStore inMemory(int journalCapacity) {
+        return new InMemoryCookieStore(CookieMetrics.NONE, journalCapacity);
+    }
+
+    /**
+     * @return the sequence number of the last mutation of the store, 0 if the store was never modified
+     */
+    long lastSequence();
+
+    /**
+     * @param fromSequence the sequence number of the first event to receive
+     * @param executor the executor used to deliver the events
+     * @return a publisher of the events of this store, starting at the provided sequence number
+     */
+    @NonNull
+    Flow.Publisher<CookieChangeEvent> changes(long fromSequence, @NonNull Executor executor);
+
+    /**
+     * @param fromSequence the sequence number of the first event to receive
+     * @return a publisher of the events of this store, starting at the provided sequence number. Events
+     * are delivered with the common pool
+     */
+    @NonNull
+    default Flow.Publisher<CookieChangeEvent> changes(long fromSequence) {
+        return changes(fromSequence, ForkJoinPool.commonPool());
+    }
+}
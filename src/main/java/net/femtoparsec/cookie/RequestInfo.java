@@ -30,8 +30,11 @@ import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.Value;
 import net.femtoparsec.cookie.rfc6265.CookieOwnershipTester;
+import net.femtoparsec.cookie.rfc6265.CookieSite;
+import net.femtoparsec.cookie.rfc6265.HostCanonicalizer;
 
 import java.net.URI;
+import java.util.function.UnaryOperator;
 
 @Value
 @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
@@ -45,6 +48,18 @@ public class RequestInfo {
 
     private final String defaultPath;
 
+    /**
+     * The site of the top-level document the request is made for, the site of the request itself
+     * for a top-level request. It is the partition key of the partitioned cookies set by the request
+     */
+    private final String topLevelSite;
+
+    /**
+     * True if the site of the request is not the top-level site. SameSite cookies are neither
+     * sent nor accepted by cross-site requests
+     */
+    private final boolean crossSite;
+
     private final CookieOwnershipTester ownershipTester = new CookieOwnershipTester(this);
 
     public boolean doesDomainMatch(@NonNull String domain) {
@@ -61,9 +76,37 @@ public class RequestInfo {
     }
 
 
+    /**
+     * @param uri the uri of the request
+     * @return the information of a top-level request, with the host name in its canonical form (see {@link HostCanonicalizer})
+     * @throws IllegalArgumentException if the uri has no host
+     */
     @NonNull
     public static RequestInfo create(@NonNull URI uri) {
-        final String host = uri.getHost().toLowerCase();
+        return create(uri, null, CookieSite::of);
+    }
+
+    /**
+     * @param uri the uri of the request
+     * @param topLevelUri the uri of the top-level document embedding the request, null for a top-level request
+     * @return the information of the request, with the sites computed by {@link CookieSite#of(String)}
+     * @throws IllegalArgumentException if one of the uris has no host
+     */
+    @NonNull
+    public static RequestInfo create(@NonNull URI uri, URI topLevelUri) {
+        return create(uri, topLevelUri, CookieSite::of);
+    }
+
+    /**
+     * @param uri the uri of the request
+     * @param topLevelUri the uri of the top-level document embedding the request, null for a top-level request
+     * @param siteOf the function returning the site of a canonical host name, typically backed by a public suffix list
+     * @return the information of the request
+     * @throws IllegalArgumentException if one of the uris has no host
+     */
+    @NonNull
+    public static RequestInfo create(@NonNull URI uri, URI topLevelUri, @NonNull UnaryOperator<String> siteOf) {
+        final String host = HostCanonicalizer.canonicalize(extractHost(uri));
         final String scheme = uri.getScheme();
         final boolean secured = "https".equalsIgnoreCase(scheme) || "javascripts".equalsIgnoreCase(scheme);
         final boolean http = "http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme);
@@ -73,7 +116,33 @@ public class RequestInfo {
         final String defaultPath = (path == null || path.isEmpty())?"/":path.toLowerCase();
         final String hostName = host.startsWith("www.")?host.substring("www.".length()):host;
 
-        return new RequestInfo(hostName,http,secured, defaultPath);
+        final String site = siteOf.apply(hostName);
+        final String topLevelSite = topLevelUri == null ? site : siteOf.apply(HostCanonicalizer.canonicalize(extractHost(topLevelUri)));
+
+        return new RequestInfo(hostName,http,secured, defaultPath, topLevelSite, !site.equals(topLevelSite));
+    }
+
+    /**
+     * {@link URI#getHost()} is null for internationalized host names, that are only
+     * available through the authority
+     */
+    @NonNull
+    private static String extractHost(@NonNull URI uri) {
+        final String host = uri.getHost();
+        if (host != null) {
+            return host;
+        }
+        final String authority = uri.getAuthority();
+        if (authority == null) {
+            throw new IllegalArgumentException("No host in " + uri);
+        }
+        final int start = authority.lastIndexOf('@') + 1;
+        final int colon = authority.indexOf(':', start);
+        final int end = colon < 0 || authority.startsWith("[", start) ? authority.length() : colon;
+        if (start == end) {
+            throw new IllegalArgumentException("No host in " + uri);
+        }
+        return authority.substring(start, end);
     }
 
 
@@ -0,0 +1,156 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie;
+
+import lombok.NonNull;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process metrics based on {@link LongAdder}s. Use {@link #snapshot()} to export
+ * the values to a monitoring system.
+ */
+public class SimpleCookieMetrics implements CookieMetrics {
+
+    private final LongAdder parsed = new LongAdder();
+    private final Map<CookieRejectReason,LongAdder> rejected = new EnumMap<>(CookieRejectReason.class);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final Timer getTimer = new Timer();
+    private final Timer putTimer = new Timer();
+
+    public SimpleCookieMetrics() {
+        for (CookieRejectReason reason : CookieRejectReason.values()) {
+            rejected.put(reason, new LongAdder());
+        }
+    }
+
+    @Override
+    public void parsed() {
+        parsed.increment();
+    }
+
+    @Override
+    public void rejected(@NonNull CookieRejectReason reason) {
+        rejected.get(reason).increment();
+    }
+
+    @Override
+    public void hit() {
+        hits.increment();
+    }
+
+    @Override
+    public void miss() {
+        misses.increment();
+    }
+
+    @Override
+    public void evicted(int count) {
+        evicted.add(count);
+    }
+
+    @Override
+    public void expired(int count) {
+        expired.add(count);
+    }
+
+    @Override
+    public void getDuration(long nanos) {
+        getTimer.record(nanos);
+    }
+
+    @Override
+    public void putDuration(long nanos) {
+        putTimer.record(nanos);
+    }
+
+    public long parsedCount() {
+        return parsed.sum();
+    }
+
+    public long rejectedCount(@NonNull CookieRejectReason reason) {
+        return rejected.get(reason).sum();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictedCount() {
+        return evicted.sum();
+    }
+
+    public long expiredCount() {
+        return expired.sum();
+    }
+
+    /**
+     * @return the current value of all the metrics, by name. Durations are in nanoseconds
+     */
+    @NonNull
+    public Map<String,Long> snapshot() {
+        final Map<String,Long> snapshot = new LinkedHashMap<>();
+        snapshot.put("cookie.parsed", parsed.sum());
+        rejected.forEach((reason, count) -> snapshot.put("cookie.rejected." + reason.name().toLowerCase(Locale.ROOT), count.sum()));
+        snapshot.put("cookie.hits", hits.sum());
+        snapshot.put("cookie.misses", misses.sum());
+        snapshot.put("cookie.evicted", evicted.sum());
+        snapshot.put("cookie.expired", expired.sum());
+        getTimer.export("cookie.get", snapshot);
+        putTimer.export("cookie.put", snapshot);
+        return snapshot;
+    }
+
+    private static class Timer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        private void record(long nanos) {
+            count.increment();
+            total.add(nanos);
+            max.accumulate(nanos);
+        }
+
+        private void export(@NonNull String prefix, @NonNull Map<String,Long> snapshot) {
+            snapshot.put(prefix + ".count", count.sum());
+            snapshot.put(prefix + ".total", total.sum());
+            snapshot.put(prefix + ".max", max.get());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import jdk.jfr.*;
+
+@Name("net.femtoparsec.cookie.AddCookie")
+@Label("Add Cookie")
+@Description("Addition of a cookie to a store, lock acquisition included")
+@Category({"FPC Cookie", "Store"})
+@Enabled(false)
+@Threshold("1 ms")
+@StackTrace(false)
+class AddCookieEvent extends Event {
+
+    static final String ADDED = "added";
+    static final String REPLACED = "replaced";
+    static final String REMOVED = "removed";
+    static final String REJECTED = "rejected";
+    static final String IGNORED = "ignored";
+
+    @Label("Host")
+    String host;
+
+    @Label("Cookie Name")
+    String cookieName;
+
+    @Label("Cookie Domain")
+    String cookieDomain;
+
+    @Label("Outcome")
+    String outcome;
+}
@@ -0,0 +1,101 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import net.femtoparsec.cookie.AsyncCookieStore;
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieQuery;
+import net.femtoparsec.cookie.CookieStore;
+import net.femtoparsec.cookie.RequestInfo;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A synchronous facade of an asynchronous store. Each call blocks until the asynchronous operation completes.
+ */
+@RequiredArgsConstructor
+public class BlockingCookieStore implements CookieStore {
+
+    @NonNull
+    private final AsyncCookieStore delegate;
+
+    @Override
+    public @NonNull List<Cookie> getAllCookies() {
+        return join(delegate.getAllCookies());
+    }
+
+    @Override
+    public void initialize(@NonNull Collection<Cookie> cookies) {
+        join(delegate.initialize(cookies));
+    }
+
+    @Override
+    public @NonNull List<Cookie> getCookies(@NonNull RequestInfo requestInfo, @NonNull Instant now) {
+        return join(delegate.getCookies(requestInfo, now));
+    }
+
+    @Override
+    public void cleanUp(@NonNull Instant now) {
+        join(delegate.cleanUp(now));
+    }
+
+    @Override
+    public void addCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, @NonNull Instant now) {
+        join(delegate.addCookie(requestInfo, cookie, now));
+    }
+
+    @Override
+    public void remove(@NonNull RequestInfo requestInfo) {
+        join(delegate.remove(requestInfo));
+    }
+
+    @Override
+    public @NonNull List<Cookie> query(@NonNull CookieQuery query) {
+        return join(delegate.query(query));
+    }
+
+    @Override
+    public @NonNull List<Cookie> remove(@NonNull CookieQuery query) {
+        return join(delegate.remove(query));
+    }
+
+    private static <T> T join(@NonNull CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.CookieClock;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A clock that caches {@link System#currentTimeMillis()} in a volatile field refreshed by a daemon thread.
+ * The returned time can be late by up to one tick, which is negligible for cookie expiry
+ * that is expressed in seconds.
+ */
+public class CoarseCookieClock implements CookieClock, AutoCloseable {
+
+    public static final long DEFAULT_TICK_MILLIS = 4;
+
+    /**
+     * @return a clock ticking every {@link #DEFAULT_TICK_MILLIS} milliseconds, created on first use
+     * and shared by all its users. The returned view cannot be closed.
+     */
+    @NonNull
+    public static CookieClock shared() {
+        return Holder.VIEW;
+    }
+
+    @NonNull
+    private final ScheduledExecutorService executor;
+
+    private volatile long millis = System.currentTimeMillis();
+
+    /**
+     * @param tickMillis the period of refresh of the cached time in milliseconds
+     */
+    public CoarseCookieClock(long tickMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("The tick must be positive: " + tickMillis);
+        }
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "cookie-coarse-clock");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long millis() {
+        return millis;
+    }
+
+    /**
+     * Stop refreshing the cached time
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void tick() {
+        millis = System.currentTimeMillis();
+    }
+
+    private static class Holder {
+        private static final CoarseCookieClock SHARED = new CoarseCookieClock(DEFAULT_TICK_MILLIS);
+        private static final CookieClock VIEW = SHARED::millis;
+    }
+}
@@ -0,0 +1,388 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieChangeEvent;
+import net.femtoparsec.cookie.CookieQuery;
+import net.femtoparsec.cookie.CookieStore;
+import net.femtoparsec.cookie.FlushableCookieStore;
+import net.femtoparsec.cookie.ObservableCookieStore;
+import net.femtoparsec.cookie.RequestInfo;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A store that compresses the large cookie values before passing them to a delegate store.
+ * <p>
+ * Compressed values are kept as a string starting with a marker character followed by the compressed bytes,
+ * one char per byte. Such strings only use Latin-1 characters and are therefore stored by the JVM with
+ * one byte per character. Values are decompressed only when cookies are retrieved from the store.
+ * <p>
+ * Decompressing a value means inflating it and copying the cookie, for each cookie of each request
+ * retrieving it. The last {@value #MAX_CACHE_SIZE} decompressed cookies are
+ * therefore cached, by stored cookie: a cookie retrieved again costs a lookup, as long as the delegate
+ * returns the instance it stores. A replaced cookie takes the entry of the cookie it replaces, and the
+ * entries of removed cookies are evicted as the least recently used. The cache keeps the memory used by the
+ * decompressed values of the cookies sent the most, the other values stay compressed.
+ * <p>
+ * The delegate only keeps the cookies: a bounded delegate counts the compressed size of the values, which is the memory
+ * they use, and the changes of an observable delegate are published with the decompressed values (see {@link #create}).
+ * A persisting delegate is rejected since it would write the compressed values, wrap the compressing store instead.
+ */
+public class CompressingCookieStore implements CookieStore {
+
+    public static final int DEFAULT_THRESHOLD = 512;
+
+    public static final int MAX_CACHE_SIZE = 256;
+
+    private static final char MARKER = '\u0000';
+
+    @NonNull
+    private final CookieStore delegate;
+
+    private final int threshold;
+
+    private final byte[] dictionary;
+
+    private final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    /**
+     * The decompressed cookies, by stored cookie (the key of a cookie), in access order
+     */
+    private final Map<Cookie,Decoded> decoded = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Cookie,Decoded> eldest) {
+            return size() > MAX_CACHE_SIZE;
+        }
+    };
+
+    private final Lock decodedLock = new ReentrantLock();
+
+    /**
+     * @param delegate the store used to store the cookies
+     * @param threshold the minimal length of the values to compress
+     * @param dictionary a preset dictionary used for compression. Can be empty
+     * @return a compressing store, observable if the delegate is
+     * @throws IllegalArgumentException if the delegate persists its cookies
+     */
+    @NonNull
+    public static CompressingCookieStore create(@NonNull CookieStore delegate, int threshold, @NonNull byte[] dictionary) {
+        if (delegate instanceof ObservableCookieStore) {
+            return new Observable((ObservableCookieStore) delegate, threshold, dictionary);
+        }
+        return new CompressingCookieStore(delegate, threshold, dictionary);
+    }
+
+    /**
+     * @param delegate the store used to store the cookies
+     * @param threshold the minimal length of the values to compress
+     * @param dictionary a preset dictionary used for compression. Can be empty
+     * @throws IllegalArgumentException if the delegate persists its cookies
+     */
+    public CompressingCookieStore(@NonNull CookieStore delegate, int threshold, @NonNull byte[] dictionary) {
+        if (delegate instanceof FlushableCookieStore) {
+            throw new IllegalArgumentException("The compressed values would be persisted, wrap the compressing store instead");
+        }
+        this.delegate = delegate;
+        this.threshold = threshold;
+        this.dictionary = dictionary.clone();
+    }
+
+    public CompressingCookieStore(@NonNull CookieStore delegate) {
+        this(delegate, DEFAULT_THRESHOLD, new byte[0]);
+    }
+
+    /**
+     * @param delegate the store used to store the cookies
+     * @return a compressing store with the default threshold and no dictionary, observable if the delegate is
+     * @throws IllegalArgumentException if the delegate persists its cookies
+     */
+    @NonNull
+    public static CompressingCookieStore create(@NonNull CookieStore delegate) {
+        return create(delegate, DEFAULT_THRESHOLD, new byte[0]);
+    }
+
+    @Override
+    public @NonNull List<Cookie> getAllCookies() {
+        return decode(delegate.getAllCookies());
+    }
+
+    @Override
+    public @NonNull Optional<Cookie> find(@NonNull Cookie key) {
+        return delegate.find(key).map(this::decode);
+    }
+
+    @Override
+    public void initialize(@NonNull Collection<Cookie> cookies) {
+        final List<Cookie> encoded = new ArrayList<>(cookies.size());
+        for (Cookie cookie : cookies) {
+            encoded.add(encode(cookie));
+        }
+        delegate.initialize(encoded);
+    }
+
+    @Override
+    public @NonNull List<Cookie> getCookies(@NonNull RequestInfo requestInfo, @NonNull Instant now) {
+        return decode(delegate.getCookies(requestInfo, now));
+    }
+
+    @Override
+    public @NonNull List<Cookie> getCookies(@NonNull RequestInfo requestInfo, long nowMillis) {
+        return decode(delegate.getCookies(requestInfo, nowMillis));
+    }
+
+    @Override
+    public void cleanUp(@NonNull Instant now) {
+        delegate.cleanUp(now);
+    }
+
+    @Override
+    public void addCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, @NonNull Instant now) {
+        delegate.addCookie(requestInfo, encode(cookie), now);
+    }
+
+    @Override
+    public void addCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, long nowMillis) {
+        delegate.addCookie(requestInfo, encode(cookie), nowMillis);
+    }
+
+    @Override
+    public void remove(@NonNull RequestInfo requestInfo) {
+        delegate.remove(requestInfo);
+    }
+
+    @Override
+    public void clean() {
+        delegate.clean();
+    }
+
+    @Override
+    public @NonNull List<Cookie> query(@NonNull CookieQuery query) {
+        return decode(delegate.query(query));
+    }
+
+    @Override
+    public @NonNull List<Cookie> remove(@NonNull CookieQuery query) {
+        return decode(delegate.remove(query));
+    }
+
+    @NonNull
+    private List<Cookie> decode(@NonNull List<Cookie> cookies) {
+        for (int i = 0; i < cookies.size(); i++) {
+            if (isEncoded(cookies.get(i).value())) {
+                final List<Cookie> result = new ArrayList<>(cookies);
+                for (int j = i; j < result.size(); j++) {
+                    result.set(j, decode(result.get(j)));
+                }
+                return result;
+            }
+        }
+        return cookies;
+    }
+
+    @NonNull
+    private Cookie encode(@NonNull Cookie cookie) {
+        final String value = cookie.value();
+        final boolean forced = isEncoded(value);
+        if (value.length() < threshold && !forced) {
+            return cookie;
+        }
+        final byte[] compressed = compress(value.getBytes(StandardCharsets.UTF_8));
+        if (compressed.length >= value.length() && !forced) {
+            return cookie;
+        }
+        return cookie.toBuilder()
+                     .value(MARKER + new String(compressed, StandardCharsets.ISO_8859_1))
+                     .build();
+    }
+
+    @NonNull
+    private Cookie decode(@NonNull Cookie cookie) {
+        final String value = cookie.value();
+        if (!isEncoded(value)) {
+            return cookie;
+        }
+        decodedLock.lock();
+        try {
+            final Decoded cached = decoded.get(cookie);
+            if (cached != null && cached.stored == cookie) {
+                return cached.cookie;
+            }
+        } finally {
+            decodedLock.unlock();
+        }
+        final byte[] compressed = value.substring(1).getBytes(StandardCharsets.ISO_8859_1);
+        final Cookie result = cookie.toBuilder()
+                                    .value(new String(decompress(compressed), StandardCharsets.UTF_8))
+                                    .build();
+        decodedLock.lock();
+        try {
+            // removed first since a put would keep the key of the replaced cookie
+            decoded.remove(cookie);
+            decoded.put(cookie, new Decoded(cookie, result));
+        } finally {
+            decodedLock.unlock();
+        }
+        return result;
+    }
+
+    private static boolean isEncoded(@NonNull String value) {
+        return !value.isEmpty() && value.charAt(0) == MARKER;
+    }
+
+    /**
+     * @return the cookie event with its value decompressed
+     */
+    @NonNull
+    private CookieChangeEvent decode(@NonNull CookieChangeEvent event) {
+        final Cookie cookie = decode(event.cookie());
+        return cookie == event.cookie() ? event : new CookieChangeEvent(event.sequence(), event.type(), cookie);
+    }
+
+    @NonNull
+    private byte[] compress(@NonNull byte[] input) {
+        final Deflater deflater = deflaters.get();
+        try {
+            if (dictionary.length > 0) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(input);
+            deflater.finish();
+            final ByteArrayOutputStream output = new ByteArrayOutputStream(input.length / 2 + 16);
+            final byte[] buffer = new byte[512];
+            while (!deflater.finished()) {
+                final int count = deflater.deflate(buffer);
+                output.write(buffer, 0, count);
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    @NonNull
+    private byte[] decompress(@NonNull byte[] input) {
+        final Inflater inflater = inflaters.get();
+        try {
+            if (dictionary.length > 0) {
+                inflater.setDictionary(dictionary);
+            }
+            inflater.setInput(input);
+            final ByteArrayOutputStream output = new ByteArrayOutputStream(input.length * 3);
+            final byte[] buffer = new byte[1024];
+            while (!inflater.finished()) {
+                final int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated compressed cookie value");
+                }
+                output.write(buffer, 0, count);
+            }
+            return output.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Invalid compressed cookie value", e);
+        } finally {
+            inflater.reset();
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class Decoded {
+
+        /**
+         * The cookie as stored by the delegate, with its value compressed
+         */
+        @NonNull
+        private final Cookie stored;
+
+        @NonNull
+        private final Cookie cookie;
+    }
+
+    /**
+     * A compressing store publishing the changes of its delegate with the decompressed values
+     */
+    private static class Observable extends CompressingCookieStore implements ObservableCookieStore {
+
+        @NonNull
+        private final ObservableCookieStore observable;
+
+        private Observable(@NonNull ObservableCookieStore delegate, int threshold, @NonNull byte[] dictionary) {
+            super(delegate, threshold, dictionary);
+            this.observable = delegate;
+        }
+
+        @Override
+        public long lastSequence() {
+            return observable.lastSequence();
+        }
+
+        @Override
+        public @NonNull Flow.Publisher<CookieChangeEvent> changes(long fromSequence, @NonNull Executor executor) {
+            final Flow.Publisher<CookieChangeEvent> changes = observable.changes(fromSequence, executor);
+            return subscriber -> changes.subscribe(new Flow.Subscriber<>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscriber.onSubscribe(subscription);
+                }
+
+                @Override
+                public void onNext(CookieChangeEvent item) {
+                    subscriber.onNext(((CompressingCookieStore) Observable.this).decode(item));
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    subscriber.onError(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    subscriber.onComplete();
+                }
+            });
+        }
+    }
+}
@@ -27,13 +27,10 @@ package net.femtoparsec.cookie.rfc6265;
 
 import lombok.NonNull;
 
-import java.util.Arrays;
-import java.util.Map;
 import java.util.Optional;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 public enum CookieAttribute {
     EXPIRES("expires", CookieDateParser::parse, CookieData::expires),
@@ -42,8 +39,12 @@ public enum CookieAttribute {
     PATH("path", CookiePathParser::parse, CookieData::path),
     SECURE("secure", b -> b.secured(true)),
     HTTP_ONLY("httponly", b -> b.httpOnly(true)),
+    SAME_SITE("samesite", CookieSameSiteParser::parse, CookieData::sameSite),
+    PARTITIONED("partitioned", b -> b.partitioned(true)),
     ;
 
+    private static final CookieAttribute[] VALUES = values();
+
     @NonNull
     private final String attributeName;
 
@@ -66,19 +67,21 @@ public enum CookieAttribute {
         };
     }
 
+    /**
+     * A linear scan is as fast as a map lookup for eight attributes and needs neither
+     * a table built at initialization nor a lower-cased copy of the name
+     */
     @NonNull
     public static Optional<CookieAttribute> find(@NonNull String name) {
-        return Optional.ofNullable(Holder.ATTRIBUTE_BY_NAME.get(name.toLowerCase()));
+        for (CookieAttribute attribute : VALUES) {
+            if (attribute.attributeName.equalsIgnoreCase(name)) {
+                return Optional.of(attribute);
+            }
+        }
+        return Optional.empty();
     }
 
     public void handleValue(CookieData info, String value) {
         setter.accept(info, value);
     }
-
-    private static class Holder {
-
-        private static final Map<String,CookieAttribute> ATTRIBUTE_BY_NAME = Arrays.stream(values()).collect(
-                Collectors.toMap(a -> a.attributeName,a -> a));
-
-    }
 }
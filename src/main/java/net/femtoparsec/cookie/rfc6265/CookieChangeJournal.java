@@ -0,0 +1,204 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieChangeEvent;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded journal of the mutations of a store, used to implement {@link net.femtoparsec.cookie.ObservableCookieStore}.
+ * <p>
+ * Events are written in a ring buffer by the writers of the store, that must be serialized by the store lock. Subscribers
+ * read the ring buffer without locking, each at its own pace, and fail if the event they need was overwritten.
+ * The ring buffer is allocated by the first subscription so a store never observed only counts its mutations.
+ */
+public class CookieChangeJournal {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final int mask;
+
+    private final List<JournalSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private volatile AtomicReferenceArray<CookieChangeEvent> ring = null;
+
+    private volatile long lastSequence = 0;
+
+    /**
+     * @param capacity the number of events kept in the journal, rounded up to a power of two
+     */
+    public CookieChangeJournal(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be positive: " + capacity);
+        }
+        final int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+    }
+
+    public long lastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Record a mutation. Must be called with the store lock held.
+     */
+    public void publish(@NonNull CookieChangeEvent.Type type, @NonNull Cookie cookie) {
+        final long sequence = lastSequence + 1;
+        final AtomicReferenceArray<CookieChangeEvent> ring = this.ring;
+        if (ring != null) {
+            ring.set((int) (sequence & mask), new CookieChangeEvent(sequence, type, cookie));
+        }
+        lastSequence = sequence;
+        if (!subscriptions.isEmpty()) {
+            subscriptions.forEach(JournalSubscription::signal);
+        }
+    }
+
+    /**
+     * Allocate the ring buffer if needed. Must be called with the store lock held.
+     */
+    public void enable() {
+        if (ring == null) {
+            ring = new AtomicReferenceArray<>(mask + 1);
+        }
+    }
+
+    /**
+     * Must be called after {@link #enable()}
+     */
+    @NonNull
+    public Flow.Publisher<CookieChangeEvent> publisher(long fromSequence, @NonNull Executor executor) {
+        if (fromSequence < 1) {
+            throw new IllegalArgumentException("Sequence numbers start at 1: " + fromSequence);
+        }
+        return subscriber -> {
+            final JournalSubscription subscription = new JournalSubscription(subscriber, fromSequence, executor);
+            subscriber.onSubscribe(subscription);
+            subscriptions.add(subscription);
+            subscription.signal();
+        };
+    }
+
+    private class JournalSubscription implements Flow.Subscription {
+
+        @NonNull
+        private final Flow.Subscriber<? super CookieChangeEvent> subscriber;
+
+        @NonNull
+        private final Executor executor;
+
+        private final AtomicLong demand = new AtomicLong();
+
+        /**
+         * Number of signals not yet handled by the drain loop
+         */
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private volatile boolean cancelled = false;
+
+        /**
+         * An error to deliver by the drain loop, so that the subscriber is never called concurrently
+         */
+        private volatile Throwable error = null;
+
+        /**
+         * Only accessed by the drain loop
+         */
+        private long next;
+
+        private JournalSubscription(@NonNull Flow.Subscriber<? super CookieChangeEvent> subscriber, long next, @NonNull Executor executor) {
+            this.subscriber = subscriber;
+            this.next = next;
+            this.executor = executor;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("The number of requested events must be positive: " + n);
+                signal();
+                return;
+            }
+            demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        private void signal() {
+            if (pending.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                final Throwable error = this.error;
+                if (error != null) {
+                    fail(error);
+                    return;
+                }
+                final long requested = demand.get();
+                long emitted = 0;
+                while (emitted != requested && !cancelled && next <= lastSequence) {
+                    final CookieChangeEvent event = ring.get((int) (next & mask));
+                    if (event == null || event.sequence() != next) {
+                        fail(new IllegalStateException("The change " + next + " is no longer available"));
+                        return;
+                    }
+                    subscriber.onNext(event);
+                    next++;
+                    emitted++;
+                }
+                if (emitted > 0 && requested != Long.MAX_VALUE) {
+                    demand.addAndGet(-emitted);
+                }
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void fail(@NonNull Throwable error) {
+            if (!cancelled) {
+                cancel();
+                subscriber.onError(error);
+            }
+        }
+    }
+}
@@ -27,6 +27,7 @@ package net.femtoparsec.cookie.rfc6265;
 
 import lombok.Getter;
 import lombok.Setter;
+import net.femtoparsec.cookie.SameSite;
 
 import java.time.Instant;
 
@@ -54,5 +55,9 @@ public class CookieData {
 
     private boolean httpOnly;
 
+    private SameSite sameSite;
+
+    private boolean partitioned;
+
 
 }
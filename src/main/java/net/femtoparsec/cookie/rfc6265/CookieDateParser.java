@@ -30,14 +30,14 @@ import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 
 import java.time.Instant;
-import java.time.Month;
+import java.time.LocalDateTime;
 import java.time.ZoneOffset;
-import java.time.ZonedDateTime;
-import java.util.Map;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+/**
+ * Parse a cookie date as described in section 5.1.1 of RFC 6265. Tokens are located
+ * by index in the date string and matched without regular expressions.
+ */
 @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 public class CookieDateParser {
 
@@ -46,81 +46,102 @@ public class CookieDateParser {
         return new CookieDateParser(cookieDate).parse();
     }
 
-    private static final Pattern DELIMITER = Pattern.compile("[\\x09\\x20-\\x2F\\x3B-\\x40\\x5B-\\x60\\x7B-\\x7E]");
-
-    private static final Pattern TIME = Pattern.compile("(\\d{1,2}):(\\d{1,2}):(\\d{1,2})");
-    private static final Pattern DAY_OF_MONTH = Pattern.compile("\\d{1,2}");
-    private static final Pattern YEAR = Pattern.compile("\\d{2,4}");
+    private static final String[] MONTHS = {"jan", "feb", "mar", "apr", "may", "jun",
+                                            "jul", "aug", "sep", "oct", "nov", "dec"};
 
-    private static final Map<String,Month> MONTHS;
-
-    static {
-        MONTHS = Map.ofEntries(Map.entry("jan", Month.JANUARY), Map.entry("feb", Month.FEBRUARY),
-                               Map.entry("mar", Month.MARCH), Map.entry("apr", Month.APRIL),
-                               Map.entry("may", Month.MAY), Map.entry("jun", Month.JUNE),
-                               Map.entry("jul", Month.JULY), Map.entry("aug", Month.AUGUST),
-                               Map.entry("sep", Month.SEPTEMBER), Map.entry("oct", Month.OCTOBER),
-                               Map.entry("nov", Month.NOVEMBER), Map.entry("dec", Month.DECEMBER));
-    }
+    private static final int NOT_FOUND = -1;
 
     private final String cookieDate;
 
-    private Integer hour = null;
-    private Integer minute = null;
-    private Integer second = null;
+    private int hour = NOT_FOUND;
+    private int minute = NOT_FOUND;
+    private int second = NOT_FOUND;
 
-    private Integer dayOfMonth = null;
-    private Month month = null;
-    private Integer year = null;
+    private int dayOfMonth = NOT_FOUND;
+    private int month = NOT_FOUND;
+    private int year = NOT_FOUND;
 
     private boolean invalid = false;
 
     @NonNull
     private Optional<Instant> parse() {
-        final String[] dateTokens = DELIMITER.split(cookieDate);
-        for (String dateToken : dateTokens) {
-            if (invalid) {
-                break;
+        final int length = cookieDate.length();
+        int start = 0;
+        while (start <= length && !invalid) {
+            int end = start;
+            while (end < length && !isDelimiter(cookieDate.charAt(end))) {
+                end++;
             }
-            parseOnToken(dateToken.strip());
+            parseOnToken(start, end);
+            start = end + 1;
         }
 
         if (invalid) {
             return Optional.empty();
         }
-        if (hour == null || minute == null || second == null || dayOfMonth == null || month == null ||year == null) {
+        if (hour == NOT_FOUND || dayOfMonth == NOT_FOUND || month == NOT_FOUND || year == NOT_FOUND) {
             return Optional.empty();
         }
 
-        return Optional.of(
-                ZonedDateTime.of(year, month.getValue(), dayOfMonth, hour, minute, second, 0, ZoneOffset.UTC).toInstant()
-        );
+        return Optional.of(Instant.ofEpochSecond(
+                LocalDateTime.of(year, month, dayOfMonth, hour, minute, second).toEpochSecond(ZoneOffset.UTC)
+        ));
     }
 
-    private void parseOnToken(String token) {
-        if (tryWithTime(token)) {
+    /**
+     * Same as the character class <code>[\x09\x20-\x2F\x3B-\x40\x5B-\x60\x7B-\x7E]</code>
+     */
+    private static boolean isDelimiter(char c) {
+        return c == 0x09
+               || (c >= 0x20 && c <= 0x2F)
+               || (c >= 0x3B && c <= 0x40)
+               || (c >= 0x5B && c <= 0x60)
+               || (c >= 0x7B && c <= 0x7E);
+    }
+
+    private void parseOnToken(int start, int end) {
+        while (start < end && Character.isWhitespace(cookieDate.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(cookieDate.charAt(end - 1))) {
+            end--;
+        }
+        if (tryWithTime(start, end)) {
             return;
         }
-        if (tryWithDayOfMonth(token)) {
+        if (tryWithDayOfMonth(start, end)) {
             return;
         }
-        if (tryWithMonth(token)) {
+        if (tryWithMonth(start, end)) {
             return;
         }
-        tryWithYear(token);
+        tryWithYear(start, end);
     }
 
-    private boolean tryWithTime(String token) {
-        if (hour != null) {
+    /**
+     * Match <code>\d{1,2}:\d{1,2}:\d{1,2}</code>
+     */
+    private boolean tryWithTime(int start, int end) {
+        if (hour != NOT_FOUND) {
+            return false;
+        }
+        final int firstColon = cookieDate.indexOf(':', start);
+        if (firstColon < 0 || firstColon >= end) {
+            return false;
+        }
+        final int secondColon = cookieDate.indexOf(':', firstColon + 1);
+        if (secondColon < 0 || secondColon >= end) {
             return false;
         }
-        final Matcher matcher = TIME.matcher(token);
-        if (!matcher.matches()) {
+        final int hour = parseDigits(start, firstColon, 1, 2);
+        final int minute = parseDigits(firstColon + 1, secondColon, 1, 2);
+        final int second = parseDigits(secondColon + 1, end, 1, 2);
+        if (hour < 0 || minute < 0 || second < 0) {
             return false;
         }
-        this.hour = Integer.parseInt(matcher.group(1));
-        this.minute = Integer.parseInt(matcher.group(2));
-        this.second = Integer.parseInt(matcher.group(3));
+        this.hour = hour;
+        this.minute = minute;
+        this.second = second;
 
         if (hour>23 || minute>59 || second >59) {
             invalid = true;
@@ -129,38 +150,43 @@ public class CookieDateParser {
         return true;
     }
 
-    private boolean tryWithDayOfMonth(String token) {
-        if (dayOfMonth != null) {
+    private boolean tryWithDayOfMonth(int start, int end) {
+        if (dayOfMonth != NOT_FOUND) {
             return false;
         }
-        final Matcher matcher = DAY_OF_MONTH.matcher(token);
-        if (!matcher.matches()) {
+        final int dayOfMonth = parseDigits(start, end, 1, 2);
+        if (dayOfMonth < 0) {
             return false;
         }
-        this.dayOfMonth = Integer.parseInt(token);
+        this.dayOfMonth = dayOfMonth;
         if (dayOfMonth < 1 || dayOfMonth > 31) {
             invalid = true;
         }
         return true;
     }
 
-    private boolean tryWithMonth(String token) {
-        if (month != null) {
+    private boolean tryWithMonth(int start, int end) {
+        if (month != NOT_FOUND || end - start != 3) {
             return false;
         }
-        this.month = MONTHS.get(token.toLowerCase());
-        return month != null;
+        for (int i = 0; i < MONTHS.length; i++) {
+            if (cookieDate.regionMatches(true, start, MONTHS[i], 0, 3)) {
+                this.month = i + 1;
+                return true;
+            }
+        }
+        return false;
     }
 
-    private void tryWithYear(String token) {
-        if (year != null) {
+    private void tryWithYear(int start, int end) {
+        if (year != NOT_FOUND) {
             return;
         }
-        final Matcher matcher = YEAR.matcher(token);
-        if (!matcher.matches()) {
+        final int year = parseDigits(start, end, 2, 4);
+        if (year < 0) {
             return;
         }
-        this.year = Integer.parseInt(token);
+        this.year = year;
         if (this.year >= 70 && this.year<=99) {
             this.year+=1900;
         }
@@ -173,4 +199,24 @@ public class CookieDateParser {
         }
     }
 
+    /**
+     * @return the value of the US-ASCII digits between start and end, or -1 if the range
+     * contains anything else or if its length is not in the provided bounds
+     */
+    private int parseDigits(int start, int end, int minLength, int maxLength) {
+        final int length = end - start;
+        if (length < minLength || length > maxLength) {
+            return -1;
+        }
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            final int digit = cookieDate.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
 }
@@ -31,6 +31,10 @@ import lombok.RequiredArgsConstructor;
 
 import java.util.Optional;
 
+/**
+ * Parse a domain attribute. The leading dot is removed and the domain is converted
+ * to its canonical form with {@link HostCanonicalizer}
+ */
 @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 public class CookieDomainParser {
 
@@ -48,9 +52,9 @@ public class CookieDomainParser {
             return Optional.empty();
         }
         if (domain.startsWith(".")) {
-            return Optional.of(domain.substring(1).toLowerCase());
+            return Optional.of(HostCanonicalizer.canonicalize(domain.substring(1)));
         }
-        return Optional.of(domain.toLowerCase());
+        return Optional.of(HostCanonicalizer.canonicalize(domain));
 
     }
 }
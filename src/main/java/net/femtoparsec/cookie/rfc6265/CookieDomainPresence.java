@@ -0,0 +1,84 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.RequestInfo;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Count the cookies of each domain of a store. Updates must be done while holding the store lock
+ * but {@link #mayHaveCookiesFor(RequestInfo)} can be called without any lock to quickly skip
+ * requests to hosts without cookies.
+ */
+public class CookieDomainPresence {
+
+    @NonNull
+    private final ConcurrentMap<String,Integer> counts = new ConcurrentHashMap<>();
+
+    public void added(@NonNull Cookie cookie) {
+        counts.merge(domainKey(cookie), 1, Integer::sum);
+    }
+
+    public void removed(@NonNull Cookie cookie) {
+        counts.computeIfPresent(domainKey(cookie), (d, count) -> count <= 1 ? null : count - 1);
+    }
+
+    public void clear() {
+        counts.clear();
+    }
+
+    /**
+     * @param requestInfo the information about a request
+     * @return false if the store contains no cookie for the host of the request or any of its parent domains
+     */
+    public boolean mayHaveCookiesFor(@NonNull RequestInfo requestInfo) {
+        if (counts.isEmpty()) {
+            return false;
+        }
+        final String hostName = requestInfo.hostName();
+        if (counts.containsKey(hostName)) {
+            return true;
+        }
+        int dot = hostName.indexOf('.');
+        while (dot >= 0) {
+            if (counts.containsKey(hostName.substring(dot + 1))) {
+                return true;
+            }
+            dot = hostName.indexOf('.', dot + 1);
+        }
+        return false;
+    }
+
+    @NonNull
+    private static String domainKey(@NonNull Cookie cookie) {
+        return cookie.domain().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieQuery;
+
+import java.util.*;
+
+/**
+ * Secondary indexes of the cookies of a store: by domain (ordered by reversed domain so that a domain and
+ * its sub-domains are contiguous), by name and by expiry time for the persistent cookies.
+ * The indexes hold the keys of the cookies, and must be updated while holding the store lock.
+ */
+public class CookieIndexes {
+
+    private final NavigableMap<String,Set<Cookie>> byReversedDomain = new TreeMap<>();
+
+    private final Map<String,Set<Cookie>> byName = new HashMap<>();
+
+    private final NavigableMap<Long,Set<Cookie>> byExpiry = new TreeMap<>();
+
+    public void added(@NonNull Cookie cookie) {
+        byReversedDomain.computeIfAbsent(reversedDomain(cookie.domain()), k -> new HashSet<>()).add(cookie);
+        byName.computeIfAbsent(cookie.name(), k -> new HashSet<>()).add(cookie);
+        addExpiry(cookie);
+    }
+
+    public void removed(@NonNull Cookie cookie) {
+        remove(byReversedDomain, reversedDomain(cookie.domain()), cookie);
+        remove(byName, cookie.name(), cookie);
+        removeExpiry(cookie);
+    }
+
+    /**
+     * @param oldCookie the replaced cookie
+     * @param newCookie the new cookie, with the same name, domain and path
+     */
+    public void replaced(@NonNull Cookie oldCookie, @NonNull Cookie newCookie) {
+        if (oldCookie.expiryTimeMillis() != newCookie.expiryTimeMillis()) {
+            removeExpiry(oldCookie);
+            addExpiry(newCookie);
+        }
+    }
+
+    public void clear() {
+        byReversedDomain.clear();
+        byName.clear();
+        byExpiry.clear();
+    }
+
+    /**
+     * Remove from the indexes the cookies expired at the provided time
+     * @param now the current time in milliseconds since the epoch
+     * @return the keys of the expired cookies, that are still in the domain and name indexes
+     */
+    @NonNull
+    public List<Cookie> pollExpired(long now) {
+        final NavigableMap<Long,Set<Cookie>> expired = byExpiry.headMap(now, false);
+        if (expired.isEmpty()) {
+            return List.of();
+        }
+        final List<Cookie> result = new ArrayList<>();
+        expired.values().forEach(result::addAll);
+        expired.clear();
+        return result;
+    }
+
+    /**
+     * @param query a query
+     * @return the keys of the cookies that may match the query, taken from the most selective index,
+     * or null if no index can be used
+     */
+    public Collection<Cookie> candidates(@NonNull CookieQuery query) {
+        Collection<Cookie> best = null;
+        if (query.domain() != null && !query.includeSubdomains()) {
+            best = byReversedDomain.getOrDefault(reversedDomain(query.domain()), Set.of());
+        }
+        if (query.name() != null) {
+            final Set<Cookie> byName = this.byName.getOrDefault(query.name(), Set.of());
+            if (best == null || byName.size() < best.size()) {
+                best = byName;
+            }
+        }
+        if (best != null) {
+            return best;
+        }
+        if (query.domain() != null) {
+            return domainTree(query.domain());
+        }
+        if (query.hasExpiryRange()) {
+            final List<Cookie> result = new ArrayList<>();
+            byExpiry.subMap(query.expiryFromMillis(), true, query.expiryToMillis(), true).values().forEach(result::addAll);
+            return result;
+        }
+        return null;
+    }
+
+    /**
+     * @param domainNames the lower-cased domain names
+     * @return the keys of the cookies of exactly the provided domains
+     */
+    @NonNull
+    public List<Cookie> forDomains(@NonNull Collection<String> domainNames) {
+        final List<Cookie> result = new ArrayList<>();
+        for (String domain : domainNames) {
+            final Set<Cookie> cookies = byReversedDomain.get(reversedDomain(domain));
+            if (cookies != null) {
+                result.addAll(cookies);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param hostName the lower-cased host name
+     * @return the keys of the cookies of the host and of its parent domains. The parent domains are
+     * prefixes of the reversed host name, so the host name is reversed only once
+     */
+    @NonNull
+    public List<Cookie> forHostAndParents(@NonNull String hostName) {
+        final String reversed = reversedDomain(hostName);
+        final List<Cookie> result = new ArrayList<>();
+        addAll(result, byReversedDomain.get(reversed));
+        int dot = reversed.lastIndexOf('.');
+        while (dot > 0) {
+            addAll(result, byReversedDomain.get(reversed.substring(0, dot)));
+            dot = reversed.lastIndexOf('.', dot - 1);
+        }
+        return result;
+    }
+
+    private static void addAll(@NonNull List<Cookie> result, Set<Cookie> cookies) {
+        if (cookies != null) {
+            result.addAll(cookies);
+        }
+    }
+
+    @NonNull
+    private List<Cookie> domainTree(@NonNull String domain) {
+        final String reversed = reversedDomain(domain);
+        final List<Cookie> result = new ArrayList<>(byReversedDomain.getOrDefault(reversed, Set.of()));
+        byReversedDomain.subMap(reversed + '.', true, reversed + (char) ('.' + 1), false)
+                        .values()
+                        .forEach(result::addAll);
+        return result;
+    }
+
+    private void addExpiry(@NonNull Cookie cookie) {
+        if (cookie.isPersistent()) {
+            byExpiry.computeIfAbsent(cookie.expiryTimeMillis(), k -> new HashSet<>()).add(cookie);
+        }
+    }
+
+    private void removeExpiry(@NonNull Cookie cookie) {
+        if (cookie.isPersistent()) {
+            remove(byExpiry, cookie.expiryTimeMillis(), cookie);
+        }
+    }
+
+    private static <K> void remove(@NonNull Map<K,Set<Cookie>> index, @NonNull K key, @NonNull Cookie cookie) {
+        final Set<Cookie> cookies = index.get(key);
+        if (cookies != null && cookies.remove(cookie) && cookies.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    /**
+     * "www.example.com" becomes "moc.elpmaxe.www", so the sub-domains of a domain
+     * are the keys starting with the reversed domain followed by a dot.
+     */
+    @NonNull
+    private static String reversedDomain(@NonNull String domain) {
+        return new StringBuilder(domain.length()).append(domain).reverse().toString().toLowerCase(Locale.ROOT);
+    }
+}
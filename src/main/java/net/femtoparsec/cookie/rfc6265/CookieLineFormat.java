@@ -0,0 +1,161 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.SameSite;
+
+import java.time.DateTimeException;
+import java.util.Optional;
+
+/**
+ * Serialize a cookie on a single line of text. Fields are separated by tabulations, backslashes,
+ * tabulations and line breaks in the strings are escaped. The partition key is appended as a ninth field
+ * for partitioned cookies only, so the lines of unpartitioned cookies keep their original format.
+ */
+public final class CookieLineFormat {
+
+    private static final char SEPARATOR = '\t';
+
+    private static final int NB_FIELDS = 8;
+
+    private static final int SECURED_ONLY = 1;
+    private static final int HTTP_ONLY = 2;
+    private static final int HOST_ONLY = 4;
+    private static final int SAME_SITE_SHIFT = 3;
+    private static final int SAME_SITE_MASK = 3 << SAME_SITE_SHIFT;
+
+    private static final SameSite[] SAME_SITES = SameSite.values();
+
+    @NonNull
+    public static String format(@NonNull Cookie cookie) {
+        final StringBuilder sb = new StringBuilder(64 + cookie.value().length());
+        sb.append(cookie.creationTimeMillis()).append(SEPARATOR)
+          .append(cookie.lastAccessTimeMillis()).append(SEPARATOR);
+        if (cookie.isPersistent()) {
+            sb.append(cookie.expiryTimeMillis());
+        }
+        sb.append(SEPARATOR).append(flags(cookie)).append(SEPARATOR);
+        escape(sb, cookie.name()).append(SEPARATOR);
+        escape(sb, cookie.domain()).append(SEPARATOR);
+        escape(sb, cookie.path()).append(SEPARATOR);
+        escape(sb, cookie.value());
+        if (cookie.isPartitioned()) {
+            escape(sb.append(SEPARATOR), cookie.partitionKey());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param line a line produced by {@link #format(Cookie)}
+     * @return the cookie described by the line, an empty optional if the line is malformed
+     */
+    @NonNull
+    public static Optional<Cookie> parse(@NonNull String line) {
+        final String[] fields = new String[NB_FIELDS];
+        int start = 0;
+        for (int i = 0; i < NB_FIELDS - 1; i++) {
+            final int end = line.indexOf(SEPARATOR, start);
+            if (end < 0) {
+                return Optional.empty();
+            }
+            fields[i] = line.substring(start, end);
+            start = end + 1;
+        }
+        final int end = line.indexOf(SEPARATOR, start);
+        fields[NB_FIELDS - 1] = end < 0 ? line.substring(start) : line.substring(start, end);
+        final String partitionKey = end < 0 ? null : unescape(line.substring(end + 1));
+        try {
+            final int flags = Integer.parseInt(fields[3]);
+            final int sameSite = (flags & SAME_SITE_MASK) >> SAME_SITE_SHIFT;
+            return Optional.of(Cookie.builder()
+                                     .creationTimeMillis(Long.parseLong(fields[0]))
+                                     .lastAccessTimeMillis(Long.parseLong(fields[1]))
+                                     .expiryTimeMillis(fields[2].isEmpty() ? Cookie.NO_EXPIRY : Long.parseLong(fields[2]))
+                                     .securedOnly((flags & SECURED_ONLY) != 0)
+                                     .httpOnly((flags & HTTP_ONLY) != 0)
+                                     .hostOnly((flags & HOST_ONLY) != 0)
+                                     .sameSite(sameSite == 0 ? null : SAME_SITES[sameSite - 1])
+                                     .partitionKey(partitionKey)
+                                     .name(unescape(fields[4]))
+                                     .domain(unescape(fields[5]))
+                                     .path(unescape(fields[6]))
+                                     .value(unescape(fields[7]))
+                                     .build());
+        } catch (NumberFormatException | DateTimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static int flags(@NonNull Cookie cookie) {
+        return (cookie.securedOnly() ? SECURED_ONLY : 0)
+               | (cookie.httpOnly() ? HTTP_ONLY : 0)
+               | (cookie.hostOnly() ? HOST_ONLY : 0)
+               | (cookie.sameSite() == null ? 0 : (cookie.sameSite().ordinal() + 1) << SAME_SITE_SHIFT);
+    }
+
+    @NonNull
+    private static StringBuilder escape(@NonNull StringBuilder sb, @NonNull String value) {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '\\': sb.append("\\\\"); break;
+                case '\t': sb.append("\\t"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                default: sb.append(c);
+            }
+        }
+        return sb;
+    }
+
+    @NonNull
+    private static String unescape(@NonNull String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        final StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c != '\\' || i == value.length() - 1) {
+                sb.append(c);
+                continue;
+            }
+            final char escaped = value.charAt(++i);
+            switch (escaped) {
+                case 't': sb.append('\t'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                default: sb.append(escaped);
+            }
+        }
+        return sb.toString();
+    }
+
+    private CookieLineFormat() {
+    }
+}
@@ -30,9 +30,11 @@ import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+/**
+ * Parse a max-age value: an optional minus sign followed by US-ASCII digits.
+ * Values that do not fit in a long are ignored.
+ */
 @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 public class CookieMaxAgeParser  {
 
@@ -41,17 +43,25 @@ public class CookieMaxAgeParser  {
         return new CookieMaxAgeParser(value).parse();
     }
 
-    private static final Pattern MAX_AGE_PATTERN = Pattern.compile("-?\\d+");
-
     @NonNull
     private final String value;
 
     private Optional<Long> parse() {
-        final Matcher matcher = MAX_AGE_PATTERN.matcher(value);
-        if (matcher.matches()) {
-            return Optional.of(Long.parseLong(value));
+        final int end = value.length();
+        final boolean negative = end > 0 && value.charAt(0) == '-';
+        int index = negative ? 1 : 0;
+        if (index == end) {
+            return Optional.empty();
+        }
+        long result = 0;
+        for (; index < end; index++) {
+            final int digit = value.charAt(index) - '0';
+            if (digit < 0 || digit > 9 || result > (Long.MAX_VALUE - digit) / 10) {
+                return Optional.empty();
+            }
+            result = result * 10 + digit;
         }
-        return Optional.empty();
+        return Optional.of(negative ? -result : result);
     }
 
 }
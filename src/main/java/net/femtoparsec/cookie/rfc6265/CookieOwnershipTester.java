@@ -29,6 +29,7 @@ import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import net.femtoparsec.cookie.Cookie;
 import net.femtoparsec.cookie.RequestInfo;
+import net.femtoparsec.cookie.SameSite;
 
 @RequiredArgsConstructor
 public class CookieOwnershipTester {
@@ -37,7 +38,8 @@ public class CookieOwnershipTester {
     private final RequestInfo requestInfo;
 
     public boolean isMyCookie(@NonNull Cookie cookie) {
-        return domainMatch(cookie) && pathMatch(cookie) && securedMatch(cookie) && httpOnlyMatch(cookie);
+        return domainMatch(cookie) && pathMatch(cookie) && securedMatch(cookie) && httpOnlyMatch(cookie)
+               && sameSiteMatch(cookie) && partitionMatch(cookie);
     }
 
     private boolean domainMatch(@NonNull Cookie cookie) {
@@ -66,4 +68,15 @@ public class CookieOwnershipTester {
     private boolean httpOnlyMatch(Cookie cookie) {
         return !cookie.httpOnly() || requestInfo.http();
     }
+
+    /**
+     * Cookies without SameSite attribute are sent with cross-site requests, like before the attribute existed
+     */
+    private boolean sameSiteMatch(Cookie cookie) {
+        return !requestInfo.crossSite() || cookie.sameSite() == null || cookie.sameSite() == SameSite.NONE;
+    }
+
+    private boolean partitionMatch(Cookie cookie) {
+        return !cookie.isPartitioned() || cookie.partitionKey().equals(requestInfo.topLevelSite());
+    }
 }
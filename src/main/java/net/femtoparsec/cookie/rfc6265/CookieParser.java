@@ -29,9 +29,12 @@ import lombok.AccessLevel;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieMetrics;
+import net.femtoparsec.cookie.CookieRejectReason;
 import net.femtoparsec.cookie.RequestInfo;
+import net.femtoparsec.cookie.SameSite;
 
-import java.time.Instant;
+import java.nio.ByteBuffer;
 import java.util.Optional;
 import java.util.function.Predicate;
 
@@ -40,12 +43,35 @@ public class CookieParser {
 
     @NonNull
     public static CookieParser create(@NonNull RequestInfo request) {
-        return new CookieParser(request, null);
+        return new CookieParser(request, null, CookieMetrics.NONE, System.currentTimeMillis());
     }
 
     @NonNull
     public static CookieParser create(@NonNull RequestInfo request, @NonNull Predicate<String> publicSuffixTester) {
-        return new CookieParser(request,publicSuffixTester);
+        return new CookieParser(request,publicSuffixTester, CookieMetrics.NONE, System.currentTimeMillis());
+    }
+
+    /**
+     * @param request the request that received the Set-Cookie headers
+     * @param publicSuffixTester a predicate to test if domain of a cookie is a public suffix, can be null
+     * @param metrics the metrics notified of the parsing results
+     * @return a parser of Set-Cookie headers
+     */
+    @NonNull
+    public static CookieParser create(@NonNull RequestInfo request, Predicate<String> publicSuffixTester, @NonNull CookieMetrics metrics) {
+        return new CookieParser(request,publicSuffixTester,metrics,System.currentTimeMillis());
+    }
+
+    /**
+     * @param request the request that received the Set-Cookie headers
+     * @param publicSuffixTester a predicate to test if domain of a cookie is a public suffix, can be null
+     * @param metrics the metrics notified of the parsing results
+     * @param nowMillis the creation time of the parsed cookies in milliseconds since the epoch
+     * @return a parser of Set-Cookie headers
+     */
+    @NonNull
+    public static CookieParser create(@NonNull RequestInfo request, Predicate<String> publicSuffixTester, @NonNull CookieMetrics metrics, long nowMillis) {
+        return new CookieParser(request,publicSuffixTester,metrics,nowMillis);
     }
 
     @NonNull
@@ -53,11 +79,44 @@ public class CookieParser {
 
     private final Predicate<String> publicSuffixTester;
 
-    private final Instant creationDate = Instant.now();
+    @NonNull
+    private final CookieMetrics metrics;
+
+    private final long creationTimeMillis;
 
     @NonNull
     public Optional<Cookie> parse(@NonNull String setCookieString) {
-        return SetCookieStringParser.parse(setCookieString).flatMap(this::finalizeCookie);
+        return finalizeCookie(SetCookieStringParser.parse(setCookieString));
+    }
+
+    /**
+     * @param setCookieBytes the bytes of a Set-Cookie header value, between the position and the limit of the buffer
+     * @return the parsed cookie, an empty optional if the header is invalid or rejected
+     */
+    @NonNull
+    public Optional<Cookie> parse(@NonNull ByteBuffer setCookieBytes) {
+        return finalizeCookie(SetCookieBytesParser.parse(setCookieBytes));
+    }
+
+    /**
+     * @param bytes the bytes holding a Set-Cookie header value
+     * @param offset the index of the first byte of the header value
+     * @param length the number of bytes of the header value
+     * @return the parsed cookie, an empty optional if the header is invalid or rejected
+     */
+    @NonNull
+    public Optional<Cookie> parse(@NonNull byte[] bytes, int offset, int length) {
+        return finalizeCookie(SetCookieBytesParser.parse(bytes, offset, length));
+    }
+
+    @NonNull
+    private Optional<Cookie> finalizeCookie(@NonNull Optional<CookieData> cookieData) {
+        metrics.parsed();
+        if (cookieData.isEmpty()) {
+            reject(CookieRejectReason.INVALID_SYNTAX);
+            return Optional.empty();
+        }
+        return finalizeCookie(cookieData.get());
     }
 
     @NonNull
@@ -66,15 +125,16 @@ public class CookieParser {
 
         builder.name(info.name())
                .value(info.value())
-               .creationTime(creationDate)
-               .lastAccessTime(creationDate)
+               .creationTimeMillis(creationTimeMillis)
+               .lastAccessTimeMillis(creationTimeMillis)
                .securedOnly(info.secured())
-               .httpOnly(info.httpOnly());
+               .httpOnly(info.httpOnly())
+               .sameSite(info.sameSite());
 
         if (info.maxAge() != null) {
-            builder.expiryTime(creationDate.plusSeconds(info.maxAge()));
+            builder.expiryTimeMillis(expiryFromMaxAge(info.maxAge()));
         } else if (info.expires() != null) {
-            builder.expiryTime(info.expires());
+            builder.expiryTimeMillis(info.expires().toEpochMilli());
         }
 
         String domain = computeDomain(info.domain());
@@ -97,13 +157,69 @@ public class CookieParser {
         }
 
         if (info.httpOnly() && !requestInfo.http()) {
+            reject(CookieRejectReason.HTTP_ONLY_FROM_NON_HTTP);
             return Optional.empty();
         }
 
+        if (!checkSameSite(info)) {
+            return Optional.empty();
+        }
+
+        if (info.partitioned()) {
+            if (!info.secured()) {
+                reject(CookieRejectReason.PARTITIONED_NOT_SECURE);
+                return Optional.empty();
+            }
+            builder.partitionKey(requestInfo.topLevelSite());
+        }
+
         return Optional.of(builder.build());
 
     }
 
+    private boolean checkSameSite(@NonNull CookieData info) {
+        final SameSite sameSite = info.sameSite();
+        if (sameSite == SameSite.NONE && !info.secured()) {
+            reject(CookieRejectReason.SAME_SITE_NONE_NOT_SECURE);
+            return false;
+        }
+        if (sameSite != null && sameSite != SameSite.NONE && requestInfo.crossSite()) {
+            reject(CookieRejectReason.SAME_SITE_FROM_CROSS_SITE);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Saturate instead of overflowing for very large max-age values
+     */
+    private long expiryFromMaxAge(long maxAge) {
+        final long maxAgeMillis = maxAge > Long.MAX_VALUE / 1000 ? Long.MAX_VALUE
+                                  : maxAge < (Cookie.NO_EXPIRY + 1) / 1000 ? Cookie.NO_EXPIRY + 1
+                                  : maxAge * 1000;
+        final long expiry = creationTimeMillis + maxAgeMillis;
+        if (maxAgeMillis > 0 && expiry < creationTimeMillis) {
+            return Long.MAX_VALUE;
+        }
+        if (maxAgeMillis < 0 && expiry > creationTimeMillis) {
+            return Cookie.NO_EXPIRY + 1;
+        }
+        return expiry;
+    }
+
+    private void reject(@NonNull CookieRejectReason reason) {
+        metrics.rejected(reason);
+        if (!FlightRecorderSupport.AVAILABLE) {
+            return;
+        }
+        final ParseFailureEvent event = new ParseFailureEvent();
+        if (event.shouldCommit()) {
+            event.host = requestInfo.hostName();
+            event.reason = reason.name();
+            event.commit();
+        }
+    }
+
     private String computeDomain(String parsedDomain) {
         final String domain;
         if (parsedDomain != null) {
@@ -111,6 +227,7 @@ public class CookieParser {
                 if (parsedDomain.equals(requestInfo.hostName())) {
                     domain = "";
                 } else {
+                    reject(CookieRejectReason.PUBLIC_SUFFIX);
                     return null;
                 }
             } else {
@@ -121,6 +238,7 @@ public class CookieParser {
         }
 
         if (!domain.isEmpty() &&  !requestInfo.doesDomainMatch(domain)) {
+            reject(CookieRejectReason.DOMAIN_MISMATCH);
             return null;
         }
         return domain;
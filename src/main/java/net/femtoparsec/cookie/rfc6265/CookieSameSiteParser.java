@@ -0,0 +1,52 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.SameSite;
+
+import java.util.Optional;
+
+public class CookieSameSiteParser {
+
+    /**
+     * @param sameSiteAsString the value of a SameSite attribute
+     * @return the parsed value, an empty optional for an unknown value
+     */
+    @NonNull
+    public static Optional<SameSite> parse(@NonNull String sameSiteAsString) {
+        if (sameSiteAsString.equalsIgnoreCase("strict")) {
+            return Optional.of(SameSite.STRICT);
+        }
+        if (sameSiteAsString.equalsIgnoreCase("lax")) {
+            return Optional.of(SameSite.LAX);
+        }
+        if (sameSiteAsString.equalsIgnoreCase("none")) {
+            return Optional.of(SameSite.NONE);
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * The site of a host, used to tell cross-site requests apart and as the partition key of the
+ * partitioned cookies. The site is the registrable domain of the host: its longest public suffix plus one label.
+ * Without a public suffix list, only the top-level domain is a public suffix, so the site is the last two labels
+ * of the host name. IP addresses are their own site.
+ */
+public final class CookieSite {
+
+    /**
+     * @param publicSuffixTester a predicate to test if a domain is a public suffix, can be null
+     * @return the function returning the site of a host name
+     */
+    @NonNull
+    public static UnaryOperator<String> siteFunction(Predicate<String> publicSuffixTester) {
+        if (publicSuffixTester == null) {
+            return CookieSite::of;
+        }
+        return hostName -> of(hostName, publicSuffixTester);
+    }
+
+    /**
+     * @param hostName a host name in its canonical form (see {@link HostCanonicalizer})
+     * @param publicSuffixTester a predicate to test if a domain is a public suffix, can be null
+     * @return the site of the host, the host itself if it is a public suffix
+     */
+    @NonNull
+    public static String of(@NonNull String hostName, Predicate<String> publicSuffixTester) {
+        if (publicSuffixTester == null || isIpAddress(hostName)) {
+            return of(hostName);
+        }
+        int longerStart = -1;
+        int start = 0;
+        while (true) {
+            final int dot = hostName.indexOf('.', start);
+            if (dot < 0 || publicSuffixTester.test(hostName.substring(start))) {
+                return longerStart < 0 ? hostName : hostName.substring(longerStart);
+            }
+            longerStart = start;
+            start = dot + 1;
+        }
+    }
+
+    /**
+     * @param hostName a host name in its canonical form (see {@link HostCanonicalizer})
+     * @return the site of the host, without public suffix list
+     */
+    @NonNull
+    public static String of(@NonNull String hostName) {
+        if (isIpAddress(hostName)) {
+            return hostName;
+        }
+        final int last = hostName.lastIndexOf('.');
+        if (last <= 0) {
+            return hostName;
+        }
+        final int previous = hostName.lastIndexOf('.', last - 1);
+        return previous < 0 ? hostName : hostName.substring(previous + 1);
+    }
+
+    /**
+     * No top-level domain ends with a digit
+     */
+    private static boolean isIpAddress(@NonNull String hostName) {
+        if (hostName.isEmpty()) {
+            return false;
+        }
+        final char last = hostName.charAt(hostName.length() - 1);
+        return hostName.indexOf(':') >= 0 || (last >= '0' && last <= '9');
+    }
+
+    private CookieSite() {
+    }
+}
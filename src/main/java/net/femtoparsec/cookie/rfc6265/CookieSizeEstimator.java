@@ -0,0 +1,57 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.Cookie;
+
+/**
+ * Estimate the heap retained by a cookie stored in a map, assuming compressed
+ * references and compact strings.
+ */
+public final class CookieSizeEstimator {
+
+    private static final long COOKIE_SIZE = 64;
+    private static final long STRING_OVERHEAD = 40;
+    private static final long MAP_ENTRY_SIZE = 40;
+
+    public static long estimate(@NonNull Cookie cookie) {
+        return MAP_ENTRY_SIZE
+               + COOKIE_SIZE
+               + estimate(cookie.name())
+               + estimate(cookie.value())
+               + estimate(cookie.domain())
+               + estimate(cookie.path())
+               + (cookie.isPartitioned() ? estimate(cookie.partitionKey()) : 0);
+    }
+
+    private static long estimate(@NonNull String value) {
+        return STRING_OVERHEAD + value.length();
+    }
+
+    private CookieSizeEstimator() {
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.Cookie;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Concurrent interner of the domain, path and name of cookies. The interned strings are weakly referenced,
+ * so a string is dropped from the interner once no cookie uses it anymore.
+ */
+public class CookieStringInterner {
+
+    /**
+     * Each entry maps a weak reference to itself, the map is looked up with a {@link Lookup}
+     */
+    private final ConcurrentMap<Object,WeakString> strings = new ConcurrentHashMap<>();
+
+    private final ReferenceQueue<String> collected = new ReferenceQueue<>();
+
+    @NonNull
+    public String intern(@NonNull String value) {
+        expunge();
+        while (true) {
+            final WeakString existing = strings.get(new Lookup(value));
+            if (existing == null) {
+                final WeakString added = new WeakString(value, collected);
+                final WeakString previous = strings.putIfAbsent(added, added);
+                if (previous == null) {
+                    return value;
+                }
+                final String interned = previous.get();
+                if (interned != null) {
+                    return interned;
+                }
+            } else {
+                final String interned = existing.get();
+                if (interned != null) {
+                    return interned;
+                }
+                strings.remove(existing, existing);
+            }
+        }
+    }
+
+    /**
+     * @param cookie the cookie to intern
+     * @return the provided cookie if its strings are already interned, a copy using the interned strings otherwise
+     */
+    @NonNull
+    public Cookie intern(@NonNull Cookie cookie) {
+        final String name = intern(cookie.name());
+        final String domain = intern(cookie.domain());
+        final String path = intern(cookie.path());
+        if (name == cookie.name() && domain == cookie.domain() && path == cookie.path()) {
+            return cookie;
+        }
+        return cookie.toBuilder().name(name).domain(domain).path(path).build();
+    }
+
+    /**
+     * @return the number of interned strings, including the ones collected but not removed yet
+     */
+    public int size() {
+        expunge();
+        return strings.size();
+    }
+
+    private void expunge() {
+        Reference<? extends String> reference;
+        while ((reference = collected.poll()) != null) {
+            strings.remove(reference, reference);
+        }
+    }
+
+    private static final class WeakString extends WeakReference<String> {
+
+        private final int hash;
+
+        private WeakString(@NonNull String value, @NonNull ReferenceQueue<String> queue) {
+            super(value, queue);
+            this.hash = value.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        /**
+         * A collected string is only equal to itself
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof WeakString)) {
+                return false;
+            }
+            final String value = get();
+            return value != null && value.equals(((WeakString) o).get());
+        }
+    }
+
+    /**
+     * A key used to look up a string without creating a weak reference
+     */
+    private static final class Lookup {
+
+        @NonNull
+        private final String value;
+
+        private Lookup(@NonNull String value) {
+            this.value = value;
+        }
+
+        @Override
+        public int hashCode() {
+            return value.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof WeakString && value.equals(((WeakString) o).get());
+        }
+    }
+}
@@ -0,0 +1,666 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieClock;
+import net.femtoparsec.cookie.CookieQuery;
+import net.femtoparsec.cookie.ReplicatedCookieStore;
+import net.femtoparsec.cookie.ReplicationTransport;
+import net.femtoparsec.cookie.RequestInfo;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A replicated store exchanging per-cookie deltas.
+ * <p>
+ * Each cookie is an entry versioned by a hybrid clock (the wall clock in milliseconds, forced to
+ * be greater than any version seen) and by the identifier of the node that wrote it. Removals
+ * are kept as tombstones for {@link #TOMBSTONE_RETENTION} so they win over older writes.
+ * Local modifications are coalesced by cookie and sent as Deflate-compressed batches.
+ * <p>
+ * Anti-entropy: each node periodically sends a digest (a hash of the entry versions) of each domain.
+ * Expired cookies are left out of the digests since the nodes drop them when they receive them.
+ * A node receiving a digest sends back its entries of the domains that differ, followed by its own digest
+ * so that the first node sends its entries of those domains too.
+ * <p>
+ * The strings are written with their length followed by their UTF-8 bytes, so cookie values are not
+ * limited in size. A batch that could not be sent is queued again, except the cookies modified since,
+ * and the failure is thrown by the next {@link #flush()}.
+ */
+public class DeltaReplicatedCookieStore implements ReplicatedCookieStore {
+
+    public static final Duration TOMBSTONE_RETENTION = Duration.ofHours(1);
+
+    private static final byte DELTA = 1;
+    private static final byte DIGEST = 2;
+    private static final byte DIGEST_REPLY = 3;
+
+    @NonNull
+    private final String nodeId;
+
+    @NonNull
+    private final ReplicationTransport transport;
+
+    private final int maxBatchSize;
+
+    @NonNull
+    private final CookieClock clock;
+
+    private final ScheduledExecutorService executor;
+
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * Live entries and tombstones
+     */
+    private final Map<Cookie,Entry> entries = new HashMap<>();
+
+    /**
+     * Local modifications not sent yet
+     */
+    private Map<Cookie,Entry> pending = new LinkedHashMap<>();
+
+    private long lastVersion = 0;
+
+    /**
+     * The last failure of a send done in the background, thrown by the next {@link #flush()}
+     */
+    private RuntimeException lastFailure = null;
+
+    /**
+     * @param nodeId the identifier of this node, unique in the cluster
+     * @param transport the transport connecting the nodes
+     * @param batchDelay the maximal time a modification waits before being sent
+     * @param maxBatchSize the number of modified cookies that triggers a send
+     * @param antiEntropyInterval the time between two anti-entropy exchanges started by this node
+     */
+    public DeltaReplicatedCookieStore(@NonNull String nodeId, @NonNull ReplicationTransport transport,
+                                      @NonNull Duration batchDelay, int maxBatchSize,
+                                      @NonNull Duration antiEntropyInterval) {
+        this(nodeId, transport, batchDelay, maxBatchSize, antiEntropyInterval, CookieClock.system());
+    }
+
+    /**
+     * @param nodeId the identifier of this node, unique in the cluster
+     * @param transport the transport connecting the nodes
+     * @param batchDelay the maximal time a modification waits before being sent
+     * @param maxBatchSize the number of modified cookies that triggers a send
+     * @param antiEntropyInterval the time between two anti-entropy exchanges started by this node
+     * @param clock the clock used to version the entries and to drop the expired cookies received
+     */
+    public DeltaReplicatedCookieStore(@NonNull String nodeId, @NonNull ReplicationTransport transport,
+                                      @NonNull Duration batchDelay, int maxBatchSize,
+                                      @NonNull Duration antiEntropyInterval, @NonNull CookieClock clock) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be positive: " + maxBatchSize);
+        }
+        this.nodeId = nodeId;
+        this.transport = transport;
+        this.maxBatchSize = maxBatchSize;
+        this.clock = clock;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "cookie-replication-" + nodeId);
+            thread.setDaemon(true);
+            return thread;
+        });
+        final long batchPeriod = Math.max(1, batchDelay.toMillis());
+        final long antiEntropyPeriod = Math.max(1, antiEntropyInterval.toMillis());
+        this.executor.scheduleWithFixedDelay(this::doFlush, batchPeriod, batchPeriod, TimeUnit.MILLISECONDS);
+        this.executor.scheduleWithFixedDelay(this::synchronizeQuietly, antiEntropyPeriod, antiEntropyPeriod, TimeUnit.MILLISECONDS);
+        transport.receive(this::onMessage);
+    }
+
+    @Override
+    public @NonNull String nodeId() {
+        return nodeId;
+    }
+
+    @NonNull
+    @Override
+    public List<Cookie> getAllCookies() {
+        lock.lock();
+        try {
+            final List<Cookie> result = new ArrayList<>();
+            for (Entry entry : entries.values()) {
+                if (entry.cookie != null) {
+                    result.add(entry.cookie);
+                }
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public @NonNull Optional<Cookie> find(@NonNull Cookie key) {
+        lock.lock();
+        try {
+            final Entry entry = entries.get(key);
+            return entry == null ? Optional.empty() : Optional.ofNullable(entry.cookie);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public @NonNull List<Cookie> getCookies(@NonNull RequestInfo requestInfo, @NonNull Instant now) {
+        lock.lock();
+        try {
+            final List<Cookie> result = new ArrayList<>();
+            for (Entry entry : entries.values()) {
+                final Cookie cookie = entry.cookie;
+                if (cookie != null && !cookie.isExpired(now) && requestInfo.isMyCookie(cookie)) {
+                    result.add(cookie);
+                }
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void initialize(@NonNull Collection<Cookie> cookies) {
+        final boolean batchFull;
+        lock.lock();
+        try {
+            removeLiveIf(c -> true);
+            cookies.forEach(c -> write(c, c));
+            batchFull = pending.size() >= maxBatchSize;
+        } finally {
+            lock.unlock();
+        }
+        if (batchFull) {
+            requestFlush();
+        }
+    }
+
+    /**
+     * Remove the expired cookies and the old tombstones. Expired cookies do not need tombstones,
+     * all the nodes agree they are expired.
+     */
+    @Override
+    public void cleanUp(@NonNull Instant now) {
+        final long tombstoneLimit = now.minus(TOMBSTONE_RETENTION).toEpochMilli();
+        lock.lock();
+        try {
+            entries.values().removeIf(e -> e.cookie == null ? e.version < tombstoneLimit : e.cookie.isExpired(now));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clean() {
+        lock.lock();
+        try {
+            removeLiveIf(c -> true);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void remove(@NonNull RequestInfo requestInfo) {
+        lock.lock();
+        try {
+            removeLiveIf(requestInfo::isMyCookie);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The removed cookies are replaced by tombstones and sent like any other modification
+     */
+    @Override
+    public @NonNull List<Cookie> remove(@NonNull CookieQuery query) {
+        final List<Cookie> removed;
+        final boolean batchFull;
+        lock.lock();
+        try {
+            removed = removeLiveIf(query::matches);
+            batchFull = pending.size() >= maxBatchSize;
+        } finally {
+            lock.unlock();
+        }
+        if (batchFull) {
+            requestFlush();
+        }
+        return removed;
+    }
+
+    @Override
+    public void addCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, @NonNull Instant now) {
+        final boolean batchFull;
+        lock.lock();
+        try {
+            final Entry existing = entries.get(cookie);
+            final Cookie oldCookie = existing == null ? null : existing.cookie;
+            if (cookie.isExpired(now)) {
+                if (oldCookie != null) {
+                    write(cookie, null);
+                }
+            } else if (oldCookie == null) {
+                write(cookie, cookie);
+            } else if (!oldCookie.httpOnly() || requestInfo.http()) {
+                final Cookie newCookie = cookie.withCreationTimeMillis(oldCookie.creationTimeMillis());
+                if (!newCookie.isExpired(now)) {
+                    write(cookie, newCookie);
+                }
+            }
+            batchFull = pending.size() >= maxBatchSize;
+        } finally {
+            lock.unlock();
+        }
+        if (batchFull) {
+            requestFlush();
+        }
+    }
+
+    /**
+     * Send the pending modifications
+     * @throws RuntimeException the failure of the transport if this send or a background one failed
+     */
+    @Override
+    public void flush() {
+        doFlush();
+        final RuntimeException failure;
+        lock.lock();
+        try {
+            failure = lastFailure;
+            lastFailure = null;
+        } finally {
+            lock.unlock();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public void synchronize() {
+        final long now = clock.millis();
+        final Map<String,Long> digests;
+        lock.lock();
+        try {
+            digests = digests(now);
+        } finally {
+            lock.unlock();
+        }
+        transport.send(encodeDigests(DIGEST, digests));
+    }
+
+    private void synchronizeQuietly() {
+        try {
+            synchronize();
+            recordFailure(null);
+        } catch (RuntimeException e) {
+            recordFailure(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        flush();
+    }
+
+    private void requestFlush() {
+        if (!executor.isShutdown()) {
+            executor.execute(this::doFlush);
+        }
+    }
+
+    /**
+     * Failures are recorded and the entries not sent are queued again. A successful send
+     * clears the recorded failure since the entries queued again are sent with it.
+     */
+    private void doFlush() {
+        final List<Entry> batch;
+        lock.lock();
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(pending.values());
+            pending = new LinkedHashMap<>();
+        } finally {
+            lock.unlock();
+        }
+        for (int i = 0; i < batch.size(); i += maxBatchSize) {
+            try {
+                transport.send(encodeDelta(batch.subList(i, Math.min(batch.size(), i + maxBatchSize))));
+            } catch (RuntimeException e) {
+                requeue(batch.subList(i, batch.size()), e);
+                return;
+            }
+        }
+        recordFailure(null);
+    }
+
+    /**
+     * The entries not sent are put back before the modifications done since. An entry replaced since,
+     * by a local modification or by a newer entry received, is dropped.
+     */
+    private void requeue(@NonNull List<Entry> unsent, @NonNull RuntimeException failure) {
+        lock.lock();
+        try {
+            lastFailure = failure;
+            final Map<Cookie,Entry> requeued = new LinkedHashMap<>();
+            for (Entry entry : unsent) {
+                if (entries.get(entry.key) == entry) {
+                    requeued.put(entry.key, entry);
+                }
+            }
+            requeued.putAll(pending);
+            pending = requeued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param failure the failure of a background send, null if it succeeded
+     */
+    private void recordFailure(RuntimeException failure) {
+        lock.lock();
+        try {
+            lastFailure = failure;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Must be called with the lock held
+     * @param key the key of the modified cookie
+     * @param cookie the new cookie, null for a removal
+     */
+    private void write(@NonNull Cookie key, Cookie cookie) {
+        lastVersion = Math.max(lastVersion + 1, clock.millis());
+        final Entry entry = new Entry(key, cookie, lastVersion, nodeId);
+        entries.put(key, entry);
+        pending.put(key, entry);
+    }
+
+    /**
+     * Must be called with the lock held
+     * @return the removed cookies
+     */
+    @NonNull
+    private List<Cookie> removeLiveIf(@NonNull Predicate<? super Cookie> filter) {
+        final List<Cookie> removed = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.cookie != null && filter.test(entry.cookie)) {
+                removed.add(entry.cookie);
+            }
+        }
+        removed.forEach(cookie -> write(cookie, null));
+        return removed;
+    }
+
+    private void onMessage(@NonNull byte[] message) {
+        try (DataInputStream input = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(message)))) {
+            final byte type = input.readByte();
+            if (type == DELTA) {
+                merge(readEntries(input));
+            } else if (type == DIGEST || type == DIGEST_REPLY) {
+                answerDigests(readDigests(input), type == DIGEST);
+            } else {
+                throw new IOException("Unknown replication message type: " + type);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void merge(@NonNull List<Entry> received) {
+        final long now = clock.millis();
+        lock.lock();
+        try {
+            for (Entry entry : received) {
+                lastVersion = Math.max(lastVersion, entry.version);
+                final Entry existing = entries.get(entry.key);
+                if (existing != null && !entry.isNewerThan(existing)) {
+                    continue;
+                }
+                if (entry.cookie != null && entry.cookie.isExpired(now)) {
+                    entries.remove(entry.key);
+                } else {
+                    entries.put(entry.key, entry);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void answerDigests(@NonNull Map<String,Long> remoteDigests, boolean reply) {
+        final List<Entry> differing = new ArrayList<>();
+        final long now = clock.millis();
+        final Map<String,Long> localDigests;
+        lock.lock();
+        try {
+            localDigests = digests(now);
+            final Set<String> domains = new HashSet<>(localDigests.keySet());
+            domains.addAll(remoteDigests.keySet());
+            domains.removeIf(d -> Objects.equals(localDigests.get(d), remoteDigests.get(d)));
+            if (domains.isEmpty()) {
+                return;
+            }
+            for (Entry entry : entries.values()) {
+                if (domains.contains(entry.key.domain()) && !entry.isExpired(now)) {
+                    differing.add(entry);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (int i = 0; i < differing.size(); i += maxBatchSize) {
+            transport.send(encodeDelta(differing.subList(i, Math.min(differing.size(), i + maxBatchSize))));
+        }
+        if (reply) {
+            transport.send(encodeDigests(DIGEST_REPLY, localDigests));
+        }
+    }
+
+    /**
+     * Must be called with the lock held
+     * @param now the current time in milliseconds since the epoch
+     * @return the digest of each domain, the sum of the hashes of its entries that are not expired
+     */
+    @NonNull
+    private Map<String,Long> digests(long now) {
+        final Map<String,Long> digests = new HashMap<>();
+        for (Entry entry : entries.values()) {
+            if (!entry.isExpired(now)) {
+                digests.merge(entry.key.domain(), entry.hash(), Long::sum);
+            }
+        }
+        return digests;
+    }
+
+    @NonNull
+    private static byte[] encodeDelta(@NonNull List<Entry> batch) {
+        return encode(DELTA, output -> {
+            output.writeInt(batch.size());
+            for (Entry entry : batch) {
+                output.writeLong(entry.version);
+                writeString(output, entry.node);
+                output.writeBoolean(entry.cookie != null);
+                if (entry.cookie != null) {
+                    writeString(output, CookieLineFormat.format(entry.cookie));
+                } else {
+                    writeString(output, entry.key.name());
+                    writeString(output, entry.key.domain());
+                    writeString(output, entry.key.path());
+                    writeString(output, entry.key.isPartitioned() ? entry.key.partitionKey() : "");
+                }
+            }
+        });
+    }
+
+    @NonNull
+    private static List<Entry> readEntries(@NonNull DataInputStream input) throws IOException {
+        final int size = input.readInt();
+        final List<Entry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            final long version = input.readLong();
+            final String node = readString(input);
+            if (input.readBoolean()) {
+                final String line = readString(input);
+                final Cookie cookie = CookieLineFormat.parse(line)
+                                                      .orElseThrow(() -> new IOException("Invalid replicated cookie: " + line));
+                entries.add(new Entry(cookie, cookie, version, node));
+            } else {
+                final Cookie.Builder key = Cookie.builder()
+                                                 .creationTimeMillis(version)
+                                                 .lastAccessTimeMillis(version)
+                                                 .name(readString(input))
+                                                 .domain(readString(input))
+                                                 .path(readString(input))
+                                                 .value("");
+                final String partitionKey = readString(input);
+                entries.add(new Entry(key.partitionKey(partitionKey.isEmpty() ? null : partitionKey).build(), null, version, node));
+            }
+        }
+        return entries;
+    }
+
+    @NonNull
+    private static byte[] encodeDigests(byte type, @NonNull Map<String,Long> digests) {
+        return encode(type, output -> {
+            output.writeInt(digests.size());
+            for (Map.Entry<String,Long> digest : digests.entrySet()) {
+                writeString(output, digest.getKey());
+                output.writeLong(digest.getValue());
+            }
+        });
+    }
+
+    @NonNull
+    private static Map<String,Long> readDigests(@NonNull DataInputStream input) throws IOException {
+        final int size = input.readInt();
+        final Map<String,Long> digests = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            digests.put(readString(input), input.readLong());
+        }
+        return digests;
+    }
+
+    /**
+     * Unlike {@link DataOutputStream#writeUTF(String)}, the length is not limited to 65535 bytes
+     */
+    private static void writeString(@NonNull DataOutputStream output, @NonNull String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    @NonNull
+    private static String readString(@NonNull DataInputStream input) throws IOException {
+        final int length = input.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid string length in replication message: " + length);
+        }
+        final byte[] bytes = input.readNBytes(length);
+        if (bytes.length != length) {
+            throw new EOFException("Truncated replication message");
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @NonNull
+    private static byte[] encode(byte type, @NonNull MessageWriter writer) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            output.writeByte(type);
+            writer.write(output);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private interface MessageWriter {
+        void write(@NonNull DataOutputStream output) throws IOException;
+    }
+
+    @RequiredArgsConstructor
+    private static class Entry {
+
+        @NonNull
+        private final Cookie key;
+
+        /**
+         * null for a tombstone
+         */
+        private final Cookie cookie;
+
+        private final long version;
+
+        @NonNull
+        private final String node;
+
+        private boolean isNewerThan(@NonNull Entry other) {
+            return version != other.version ? version > other.version : node.compareTo(other.node) > 0;
+        }
+
+        /**
+         * @return true if this entry is a cookie expired at the provided time, tombstones never expire
+         */
+        private boolean isExpired(long now) {
+            return cookie != null && cookie.isExpired(now);
+        }
+
+        private long hash() {
+            long hash = version;
+            hash = hash * 31 + node.hashCode();
+            hash = hash * 31 + key.name().hashCode();
+            hash = hash * 31 + key.path().hashCode();
+            hash = hash * 31 + Objects.hashCode(key.partitionKey());
+            hash = hash * 31 + (cookie == null ? 0 : 1);
+            return hash * 0x9E3779B97F4A7C15L;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import net.femtoparsec.cookie.AsyncCookieStore;
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieQuery;
+import net.femtoparsec.cookie.CookieStore;
+import net.femtoparsec.cookie.RequestInfo;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * An asynchronous store that calls a synchronous store with an executor
+ */
+@RequiredArgsConstructor
+public class ExecutorAsyncCookieStore implements AsyncCookieStore {
+
+    @NonNull
+    private final CookieStore delegate;
+
+    @NonNull
+    private final Executor executor;
+
+    @Override
+    public @NonNull CompletableFuture<List<Cookie>> getAllCookies() {
+        return CompletableFuture.supplyAsync(delegate::getAllCookies, executor);
+    }
+
+    @Override
+    public @NonNull CompletableFuture<Void> initialize(@NonNull Collection<Cookie> cookies) {
+        return CompletableFuture.runAsync(() -> delegate.initialize(cookies), executor);
+    }
+
+    @Override
+    public @NonNull CompletableFuture<List<Cookie>> getCookies(@NonNull RequestInfo requestInfo, @NonNull Instant now) {
+        return CompletableFuture.supplyAsync(() -> delegate.getCookies(requestInfo, now), executor);
+    }
+
+    @Override
+    public @NonNull CompletableFuture<Void> cleanUp(@NonNull Instant now) {
+        return CompletableFuture.runAsync(() -> delegate.cleanUp(now), executor);
+    }
+
+    @Override
+    public @NonNull CompletableFuture<Void> addCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, @NonNull Instant now) {
+        return CompletableFuture.runAsync(() -> delegate.addCookie(requestInfo, cookie, now), executor);
+    }
+
+    /**
+     * The cookies are added by a single task, in order
+     */
+    @Override
+    public @NonNull CompletableFuture<Void> addCookies(@NonNull RequestInfo requestInfo, @NonNull List<Cookie> cookies, @NonNull Instant now) {
+        return CompletableFuture.runAsync(() -> cookies.forEach(c -> delegate.addCookie(requestInfo, c, now)), executor);
+    }
+
+    @Override
+    public @NonNull CompletableFuture<Void> remove(@NonNull RequestInfo requestInfo) {
+        return CompletableFuture.runAsync(() -> delegate.remove(requestInfo), executor);
+    }
+
+    @Override
+    public @NonNull CompletableFuture<List<Cookie>> query(@NonNull CookieQuery query) {
+        return CompletableFuture.supplyAsync(() -> delegate.query(query), executor);
+    }
+
+    @Override
+    public @NonNull CompletableFuture<List<Cookie>> remove(@NonNull CookieQuery query) {
+        return CompletableFuture.supplyAsync(() -> delegate.remove(query), executor);
+    }
+
+    @Override
+    public @NonNull CookieStore blocking() {
+        return delegate;
+    }
+}
@@ -0,0 +1,844 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieQuery;
+import net.femtoparsec.cookie.RequestInfo;
+import net.femtoparsec.cookie.TieredCookieStore;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * A two-tier store. The cookies are grouped in buckets by registrable domain. The hot tier keeps
+ * the recently used buckets in memory, the cold tier keeps all the other buckets in a directory,
+ * one file per registrable domain (see {@link CookieLineFormat}).
+ * <p>
+ * A cold bucket is loaded in the hot tier when one of its cookies is requested. Buckets are demoted
+ * to the cold tier when the hot tier exceeds its byte budget (least recently used first) and, in
+ * the background, when they have not been used for the idle timeout.
+ * <p>
+ * The files are read and written without holding the lock of the hot tier, so requests served by
+ * the hot buckets never wait for the disk. A demoted bucket is kept in memory until its file is written.
+ * <p>
+ * The registrable domain of a request host must be the same as the one of all the domains of the cookies
+ * it can receive. The default implementation uses {@link CookieSite#of(String)}: without a public suffix list,
+ * the sites under a two-label public suffix like co.uk share the bucket of that suffix.
+ */
+public class FileTieredCookieStore implements TieredCookieStore {
+
+    private static final String EXTENSION = ".cookies";
+
+    @NonNull
+    private final Path directory;
+
+    private final long byteBudget;
+
+    private final long idleTimeoutNanos;
+
+    @NonNull
+    private final UnaryOperator<String> registrableDomain;
+
+    /**
+     * Hot buckets in access order, the least recently used first
+     */
+    @NonNull
+    private final LinkedHashMap<String,Bucket> hotBuckets = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The last snapshot of the buckets whose file is not written yet, because the write is pending or failed
+     */
+    @NonNull
+    private final Map<String,Snapshot> unsaved = new HashMap<>();
+
+    /**
+     * The loads of cold buckets in progress
+     */
+    @NonNull
+    private final Map<String,CompletableFuture<Void>> loading = new HashMap<>();
+
+    /**
+     * The registrable domains with a file, updated with the io lock held
+     */
+    @NonNull
+    private final Set<String> coldDomains = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The version of the last snapshot written for each registrable domain, guarded by the io lock
+     */
+    @NonNull
+    private final Map<String,Long> savedVersions = new HashMap<>();
+
+    /**
+     * Guards the hot tier. Never acquired before the io lock.
+     */
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * Serializes the accesses to the files
+     */
+    private final Lock ioLock = new ReentrantLock();
+
+    private final ScheduledExecutorService executor;
+
+    private long byteUsage = 0;
+
+    private long lastVersion = 0;
+
+    /**
+     * The snapshots with a version lower or equal to this one were taken before the store was cleared
+     */
+    private volatile long clearedVersion = 0;
+
+    private IOException lastFailure = null;
+
+    /**
+     * @param directory the directory of the cold tier, created if needed
+     * @param byteBudget the maximal estimated number of bytes the hot tier can use
+     * @param idleTimeout the time after which an unused bucket is demoted to the cold tier
+     */
+    public FileTieredCookieStore(@NonNull Path directory, long byteBudget, @NonNull Duration idleTimeout) {
+        this(directory, byteBudget, idleTimeout, CookieSite::of);
+    }
+
+    /**
+     * @param directory the directory of the cold tier, created if needed
+     * @param byteBudget the maximal estimated number of bytes the hot tier can use
+     * @param idleTimeout the time after which an unused bucket is demoted to the cold tier
+     * @param registrableDomain the function returning the registrable domain of a host or of a cookie domain,
+     *                          see {@link CookieSite#siteFunction(Predicate)}
+     * @throws UncheckedIOException if the directory could not be created
+     */
+    public FileTieredCookieStore(@NonNull Path directory, long byteBudget, @NonNull Duration idleTimeout,
+                                 @NonNull UnaryOperator<String> registrableDomain) {
+        if (byteBudget <= 0) {
+            throw new IllegalArgumentException("The byte budget must be positive: " + byteBudget);
+        }
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.directory = directory;
+        this.byteBudget = byteBudget;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.registrableDomain = registrableDomain;
+        listColdFiles().forEach(file -> coldDomains.add(domainOf(file)));
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "cookie-tier-demotion");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final long period = Math.max(1, idleTimeout.toMillis() / 2);
+        this.executor.scheduleWithFixedDelay(this::demoteIdleBuckets, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long byteBudget() {
+        return byteBudget;
+    }
+
+    @Override
+    public long byteUsage() {
+        lock.lock();
+        try {
+            return byteUsage;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public @NonNull Map<String,Long> byteUsageByDomain() {
+        lock.lock();
+        try {
+            final Map<String,Long> result = new HashMap<>();
+            hotBuckets.forEach((domain, bucket) -> result.put(domain, bucket.byteUsage));
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public @NonNull Set<String> hotDomains() {
+        lock.lock();
+        try {
+            return new HashSet<>(hotBuckets.keySet());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The cold files are read after the hot tier is copied, the result is not an atomic snapshot of the store
+     */
+    @NonNull
+    @Override
+    public List<Cookie> getAllCookies() {
+        final List<Cookie> result = new ArrayList<>();
+        final List<String> cold = new ArrayList<>();
+        lock.lock();
+        try {
+            hotBuckets.values().forEach(b -> result.addAll(b.cookies.values()));
+            unsaved.forEach((domain, snapshot) -> {
+                if (!hotBuckets.containsKey(domain)) {
+                    result.addAll(snapshot.cookies);
+                }
+            });
+            for (String domain : coldDomains) {
+                if (!hotBuckets.containsKey(domain) && !unsaved.containsKey(domain)) {
+                    cold.add(domain);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        ioLock.lock();
+        try {
+            for (String domain : cold) {
+                result.addAll(read(fileOf(domain)));
+            }
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    @Override
+    public @NonNull Optional<Cookie> find(@NonNull Cookie key) {
+        return withBucket(bucketKey(key.domain()),
+                          bucket -> bucket == null ? Optional.empty() : Optional.ofNullable(bucket.cookies.get(key)));
+    }
+
+    @Override
+    public void initialize(@NonNull Collection<Cookie> cookies) {
+        ioLock.lock();
+        try {
+            final List<String> files;
+            final List<Snapshot> demoted;
+            lock.lock();
+            try {
+                files = new ArrayList<>(coldDomains);
+                hotBuckets.clear();
+                unsaved.clear();
+                byteUsage = 0;
+                clearedVersion = lastVersion;
+                for (Cookie cookie : cookies) {
+                    hotBuckets.computeIfAbsent(bucketKey(cookie.domain()), Bucket::new).put(cookie);
+                }
+                demoted = demoteOverBudget(null);
+            } finally {
+                lock.unlock();
+            }
+            for (String domain : files) {
+                Files.deleteIfExists(fileOf(domain));
+                coldDomains.remove(domain);
+            }
+            save(demoted);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    @Override
+    public void cleanUp(@NonNull Instant now) {
+        removeIf(c -> c.isExpired(now));
+    }
+
+    @Override
+    public void clean() {
+        initialize(List.of());
+    }
+
+    @Override
+    public void remove(@NonNull RequestInfo requestInfo) {
+        withBucket(bucketKey(requestInfo.hostName()), bucket -> {
+            if (bucket != null) {
+                bucket.removeIf(requestInfo::isMyCookie);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * The matching cookies are removed from the hot buckets and from the cold files,
+     * the cold buckets are not promoted
+     */
+    @Override
+    public @NonNull List<Cookie> remove(@NonNull CookieQuery query) {
+        final List<Cookie> removed = new ArrayList<>();
+        removeIf(c -> query.matches(c) && removed.add(c));
+        return removed;
+    }
+
+    @Override
+    public @NonNull List<Cookie> getCookies(@NonNull RequestInfo requestInfo, @NonNull Instant now) {
+        return withBucket(bucketKey(requestInfo.hostName()), bucket -> {
+            if (bucket == null) {
+                return List.of();
+            }
+            bucket.removeIf(c -> c.isExpired(now));
+            final List<Cookie> result = new ArrayList<>();
+            for (Cookie cookie : bucket.cookies.values()) {
+                if (requestInfo.isMyCookie(cookie)) {
+                    result.add(cookie);
+                }
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public void addCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, @NonNull Instant now) {
+        final String key = bucketKey(cookie.domain());
+        withBucket(key, bucket -> {
+            final Cookie oldCookie = bucket == null ? null : bucket.cookies.get(cookie);
+
+            if (cookie.isExpired(now)) {
+                if (oldCookie != null) {
+                    bucket.remove(oldCookie);
+                }
+                return null;
+            }
+
+            final Cookie newCookie;
+            if (oldCookie == null) {
+                newCookie = cookie;
+            } else if (oldCookie.httpOnly() && !requestInfo.http()) {
+                return null;
+            } else {
+                newCookie = cookie.withCreationTimeMillis(oldCookie.creationTimeMillis());
+                if (newCookie.isExpired(now)) {
+                    return null;
+                }
+            }
+            final Bucket target = bucket == null ? hotBuckets.computeIfAbsent(key, Bucket::new) : bucket;
+            target.put(newCookie);
+            return null;
+        });
+    }
+
+    /**
+     * Write all the modified buckets to the cold tier. The hot buckets stay in memory.
+     * @throws UncheckedIOException if a bucket could not be written
+     */
+    @Override
+    public void flush() {
+        final List<Snapshot> snapshots;
+        lock.lock();
+        try {
+            for (Bucket bucket : hotBuckets.values()) {
+                if (bucket.dirty) {
+                    snapshot(bucket);
+                }
+            }
+            snapshots = new ArrayList<>(unsaved.values());
+        } finally {
+            lock.unlock();
+        }
+        save(snapshots);
+        final IOException failure;
+        lock.lock();
+        try {
+            failure = lastFailure;
+            lastFailure = null;
+        } finally {
+            lock.unlock();
+        }
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        flush();
+    }
+
+    /**
+     * Call an action with the lock held on the hot bucket of a registrable domain. The bucket is loaded
+     * from the cold tier first if needed, without holding the lock. The buckets demoted to respect the budget
+     * are written once the lock is released.
+     * @param key the registrable domain
+     * @param action the action, called with null if the domain has no cookies
+     * @return the result of the action
+     */
+    private <T> T withBucket(@NonNull String key, @NonNull Function<Bucket,T> action) {
+        while (true) {
+            final CompletableFuture<Void> load;
+            final boolean loader;
+            T result = null;
+            List<Snapshot> demoted = List.of();
+            lock.lock();
+            try {
+                final Bucket bucket = hotBucket(key);
+                if (bucket == null && !unsaved.containsKey(key) && coldDomains.contains(key)) {
+                    final CompletableFuture<Void> inProgress = loading.get(key);
+                    loader = inProgress == null;
+                    load = loader ? new CompletableFuture<>() : inProgress;
+                    if (loader) {
+                        loading.put(key, load);
+                    }
+                } else {
+                    load = null;
+                    loader = false;
+                    if (bucket != null) {
+                        bucket.lastUse = System.nanoTime();
+                    }
+                    result = action.apply(bucket);
+                    demoted = demoteOverBudget(hotBuckets.get(key));
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (load == null) {
+                save(demoted);
+                return result;
+            } else if (loader) {
+                load(key, load);
+            } else {
+                try {
+                    load.join();
+                } catch (CompletionException e) {
+                    throw e.getCause() instanceof IOException
+                            ? new UncheckedIOException((IOException) e.getCause())
+                            : e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Must be called with the lock held
+     * @return the hot bucket of the provided registrable domain, promoted from the unsaved snapshots if needed,
+     * or null if it is not in memory
+     */
+    private Bucket hotBucket(@NonNull String key) {
+        final Bucket hot = hotBuckets.get(key);
+        if (hot != null) {
+            return hot;
+        }
+        final Snapshot snapshot = unsaved.get(key);
+        if (snapshot == null || snapshot.cookies.isEmpty()) {
+            return null;
+        }
+        final Bucket bucket = new Bucket(key);
+        snapshot.cookies.forEach(bucket::put);
+        bucket.dirty = false;
+        hotBuckets.put(key, bucket);
+        return bucket;
+    }
+
+    /**
+     * Read the file of a cold bucket and move it in the hot tier
+     */
+    private void load(@NonNull String key, @NonNull CompletableFuture<Void> future) {
+        List<Snapshot> demoted = List.of();
+        ioLock.lock();
+        try {
+            final List<Cookie> cookies = coldDomains.contains(key) ? read(fileOf(key)) : List.of();
+            if (cookies.isEmpty()) {
+                coldDomains.remove(key);
+            }
+            lock.lock();
+            try {
+                loading.remove(key);
+                if (!cookies.isEmpty() && !hotBuckets.containsKey(key) && !unsaved.containsKey(key)) {
+                    final Bucket bucket = new Bucket(key);
+                    cookies.forEach(bucket::put);
+                    bucket.dirty = false;
+                    hotBuckets.put(key, bucket);
+                    demoted = demoteOverBudget(bucket);
+                }
+            } finally {
+                lock.unlock();
+            }
+            future.complete(null);
+        } catch (IOException e) {
+            lock.lock();
+            try {
+                loading.remove(key);
+            } finally {
+                lock.unlock();
+            }
+            future.completeExceptionally(e);
+            throw new UncheckedIOException(e);
+        } finally {
+            ioLock.unlock();
+        }
+        save(demoted);
+    }
+
+    /**
+     * Remove the cookies matching a filter from all the buckets. The hot buckets are handled in one pass
+     * to keep their access order, the other buckets are handled one by one with the io lock held.
+     */
+    private void removeIf(@NonNull Predicate<Cookie> filter) {
+        final List<Snapshot> demoted = new ArrayList<>();
+        final Set<String> others = new HashSet<>();
+        lock.lock();
+        try {
+            final Iterator<Bucket> itr = hotBuckets.values().iterator();
+            while (itr.hasNext()) {
+                final Bucket bucket = itr.next();
+                bucket.removeIf(filter);
+                if (bucket.cookies.isEmpty()) {
+                    itr.remove();
+                    demote(bucket, demoted);
+                }
+            }
+            others.addAll(unsaved.keySet());
+            others.addAll(coldDomains);
+            others.removeAll(hotBuckets.keySet());
+        } finally {
+            lock.unlock();
+        }
+        save(demoted);
+        for (String key : others) {
+            removeIf(key, filter);
+        }
+    }
+
+    /**
+     * Remove the cookies matching a filter from a bucket, wherever it is
+     */
+    private void removeIf(@NonNull String key, @NonNull Predicate<Cookie> filter) {
+        ioLock.lock();
+        try {
+            final List<Snapshot> written = new ArrayList<>(1);
+            final boolean cold;
+            lock.lock();
+            try {
+                final Bucket bucket = hotBuckets.get(key);
+                final Snapshot snapshot = unsaved.get(key);
+                if (bucket != null) {
+                    bucket.removeIf(filter);
+                    cold = false;
+                } else if (snapshot != null) {
+                    final List<Cookie> cookies = new ArrayList<>(snapshot.cookies);
+                    if (cookies.removeIf(filter)) {
+                        written.add(snapshot(key, cookies));
+                    }
+                    cold = false;
+                } else {
+                    cold = coldDomains.contains(key);
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (cold) {
+                final List<Cookie> cookies = read(fileOf(key));
+                if (cookies.removeIf(filter)) {
+                    write(fileOf(key), cookies);
+                    if (cookies.isEmpty()) {
+                        coldDomains.remove(key);
+                    }
+                }
+            }
+            save(written);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    /**
+     * Must be called with the lock held.
+     * Demote the least recently used buckets until the hot tier fits in its budget.
+     * @param inUse a bucket that must not be demoted, can be null
+     * @return the snapshots of the demoted buckets to write
+     */
+    @NonNull
+    private List<Snapshot> demoteOverBudget(Bucket inUse) {
+        final List<Snapshot> demoted = new ArrayList<>();
+        final Iterator<Bucket> itr = hotBuckets.values().iterator();
+        while (byteUsage > byteBudget && itr.hasNext()) {
+            final Bucket bucket = itr.next();
+            if (bucket != inUse) {
+                itr.remove();
+                demote(bucket, demoted);
+            }
+        }
+        return demoted;
+    }
+
+    private void demoteIdleBuckets() {
+        final List<Snapshot> demoted = new ArrayList<>();
+        lock.lock();
+        try {
+            final long now = System.nanoTime();
+            final Iterator<Bucket> itr = hotBuckets.values().iterator();
+            while (itr.hasNext()) {
+                final Bucket bucket = itr.next();
+                if (now - bucket.lastUse >= idleTimeoutNanos) {
+                    itr.remove();
+                    demote(bucket, demoted);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        save(demoted);
+    }
+
+    /**
+     * Must be called with the lock held, once the bucket is removed from the hot tier
+     */
+    private void demote(@NonNull Bucket bucket, @NonNull List<Snapshot> demoted) {
+        byteUsage -= bucket.byteUsage;
+        if (bucket.dirty) {
+            demoted.add(snapshot(bucket));
+        }
+    }
+
+    /**
+     * Must be called with the lock held
+     */
+    @NonNull
+    private Snapshot snapshot(@NonNull Bucket bucket) {
+        bucket.dirty = false;
+        return snapshot(bucket.domain, new ArrayList<>(bucket.cookies.values()));
+    }
+
+    /**
+     * Must be called with the lock held
+     */
+    @NonNull
+    private Snapshot snapshot(@NonNull String domain, @NonNull List<Cookie> cookies) {
+        final Snapshot snapshot = new Snapshot(domain, cookies, ++lastVersion);
+        unsaved.put(domain, snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Write snapshots to their files, must be called without the lock held. A snapshot is skipped if a more recent
+     * one of the same bucket is already written. The failed snapshots stay unsaved and are retried by {@link #flush()}.
+     */
+    private void save(@NonNull Collection<Snapshot> snapshots) {
+        if (snapshots.isEmpty()) {
+            return;
+        }
+        final Set<Snapshot> failed = new HashSet<>();
+        IOException failure = null;
+        ioLock.lock();
+        try {
+            for (Snapshot snapshot : snapshots) {
+                if (snapshot.version <= clearedVersion || snapshot.version <= savedVersions.getOrDefault(snapshot.domain, 0L)) {
+                    continue;
+                }
+                try {
+                    write(fileOf(snapshot.domain), snapshot.cookies);
+                } catch (IOException e) {
+                    failed.add(snapshot);
+                    failure = e;
+                    continue;
+                }
+                savedVersions.put(snapshot.domain, snapshot.version);
+                if (snapshot.cookies.isEmpty()) {
+                    coldDomains.remove(snapshot.domain);
+                } else {
+                    coldDomains.add(snapshot.domain);
+                }
+            }
+        } finally {
+            ioLock.unlock();
+        }
+        lock.lock();
+        try {
+            for (Snapshot snapshot : snapshots) {
+                if (!failed.contains(snapshot)) {
+                    unsaved.remove(snapshot.domain, snapshot);
+                }
+            }
+            if (failure != null) {
+                lastFailure = failure;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @NonNull
+    private List<Path> listColdFiles() {
+        final List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return files;
+    }
+
+    /**
+     * @return the cookies of the file, none if it does not exist
+     */
+    @NonNull
+    private static List<Cookie> read(@NonNull Path file) throws IOException {
+        final List<Cookie> cookies = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                CookieLineFormat.parse(line).ifPresent(cookies::add);
+            }
+        } catch (NoSuchFileException ignored) {
+            // a bucket whose last cookie was removed
+        }
+        return cookies;
+    }
+
+    /**
+     * Write the cookies to a temporary file and move it over the target so that
+     * a crash never leaves a partially written bucket.
+     */
+    private static void write(@NonNull Path file, @NonNull Collection<Cookie> cookies) throws IOException {
+        if (cookies.isEmpty()) {
+            Files.deleteIfExists(file);
+            return;
+        }
+        final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Cookie cookie : cookies) {
+                writer.write(CookieLineFormat.format(cookie));
+                writer.newLine();
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @NonNull
+    private Path fileOf(@NonNull String domain) {
+        return directory.resolve(URLEncoder.encode(domain, StandardCharsets.UTF_8) + EXTENSION);
+    }
+
+    @NonNull
+    private static String domainOf(@NonNull Path file) {
+        final String fileName = file.getFileName().toString();
+        return URLDecoder.decode(fileName.substring(0, fileName.length() - EXTENSION.length()), StandardCharsets.UTF_8);
+    }
+
+    @NonNull
+    private String bucketKey(@NonNull String domain) {
+        return registrableDomain.apply(domain.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * The content of a bucket at a given version
+     */
+    private static class Snapshot {
+
+        @NonNull
+        private final String domain;
+
+        @NonNull
+        private final List<Cookie> cookies;
+
+        private final long version;
+
+        private Snapshot(@NonNull String domain, @NonNull List<Cookie> cookies, long version) {
+            this.domain = domain;
+            this.cookies = cookies;
+            this.version = version;
+        }
+    }
+
+    private class Bucket {
+
+        @NonNull
+        private final String domain;
+
+        private final Map<Cookie,Cookie> cookies = new HashMap<>();
+
+        private long byteUsage = 0;
+
+        private long lastUse = System.nanoTime();
+
+        private boolean dirty = true;
+
+        private Bucket(@NonNull String domain) {
+            this.domain = domain;
+        }
+
+        private void put(@NonNull Cookie cookie) {
+            final Cookie previous = cookies.put(cookie, cookie);
+            final long delta = CookieSizeEstimator.estimate(cookie) - (previous == null ? 0 : CookieSizeEstimator.estimate(previous));
+            byteUsage += delta;
+            FileTieredCookieStore.this.byteUsage += delta;
+            dirty = true;
+        }
+
+        private void remove(@NonNull Cookie cookie) {
+            final Cookie removed = cookies.remove(cookie);
+            if (removed != null) {
+                final long size = CookieSizeEstimator.estimate(removed);
+                byteUsage -= size;
+                FileTieredCookieStore.this.byteUsage -= size;
+                dirty = true;
+            }
+        }
+
+        private void removeIf(@NonNull Predicate<? super Cookie> filter) {
+            final Iterator<Cookie> itr = cookies.values().iterator();
+            while (itr.hasNext()) {
+                final Cookie cookie = itr.next();
+                if (filter.test(cookie)) {
+                    itr.remove();
+                    final long size = CookieSizeEstimator.estimate(cookie);
+                    byteUsage -= size;
+                    FileTieredCookieStore.this.byteUsage -= size;
+                    dirty = true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+
+import java.net.IDN;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Convert host names and domain attributes to their canonical form: lower-cased, with internationalized
+ * labels converted to A-labels (punycode). US-ASCII names are only lower-cased. The conversions of
+ * the other names are cached since {@link IDN#toASCII(String)} is costly. Once the maximal number
+ * of cached conversions is reached, the least recently used one is evicted.
+ */
+public final class HostCanonicalizer {
+
+    public static final int MAX_CACHE_SIZE = 4096;
+
+    /**
+     * The conversions of the non US-ASCII names, in access order
+     */
+    private static final Map<String,String> CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String,String> eldest) {
+            return size() > MAX_CACHE_SIZE;
+        }
+    };
+
+    private static final Lock CACHE_LOCK = new ReentrantLock();
+
+    /**
+     * @param host a host name or a domain, without leading dot
+     * @return the canonical form of the name. If the name cannot be converted to A-labels,
+     * it is only lower-cased and will therefore not match any canonical host name
+     */
+    @NonNull
+    public static String canonicalize(@NonNull String host) {
+        int firstUpperCase = -1;
+        for (int i = 0; i < host.length(); i++) {
+            final char c = host.charAt(i);
+            if (c >= 0x80) {
+                return canonicalizeUnicode(host);
+            }
+            if (firstUpperCase < 0 && c >= 'A' && c <= 'Z') {
+                firstUpperCase = i;
+            }
+        }
+        return firstUpperCase < 0 ? host : toLowerCase(host, firstUpperCase);
+    }
+
+    @NonNull
+    private static String toLowerCase(@NonNull String host, int firstUpperCase) {
+        final char[] chars = host.toCharArray();
+        for (int i = firstUpperCase; i < chars.length; i++) {
+            final char c = chars[i];
+            if (c >= 'A' && c <= 'Z') {
+                chars[i] = (char) (c | 0x20);
+            }
+        }
+        return new String(chars);
+    }
+
+    @NonNull
+    private static String canonicalizeUnicode(@NonNull String host) {
+        CACHE_LOCK.lock();
+        try {
+            final String cached = CACHE.get(host);
+            if (cached != null) {
+                return cached;
+            }
+        } finally {
+            CACHE_LOCK.unlock();
+        }
+        String canonical;
+        try {
+            canonical = canonicalize(IDN.toASCII(host));
+        } catch (IllegalArgumentException e) {
+            canonical = host.toLowerCase(Locale.ROOT);
+        }
+        CACHE_LOCK.lock();
+        try {
+            CACHE.put(host, canonical);
+        } finally {
+            CACHE_LOCK.unlock();
+        }
+        return canonical;
+    }
+
+    /**
+     * @return true if the conversion of the name is cached, without changing the access order
+     */
+    static boolean isCached(@NonNull String host) {
+        CACHE_LOCK.lock();
+        try {
+            return CACHE.containsKey(host);
+        } finally {
+            CACHE_LOCK.unlock();
+        }
+    }
+
+    private HostCanonicalizer() {
+    }
+}
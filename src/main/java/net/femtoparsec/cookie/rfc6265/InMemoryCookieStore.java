@@ -26,88 +26,439 @@
 package net.femtoparsec.cookie.rfc6265;
 
 import lombok.NonNull;
-import lombok.Synchronized;
 import net.femtoparsec.cookie.Cookie;
-import net.femtoparsec.cookie.CookieStore;
+import net.femtoparsec.cookie.CookieChangeEvent;
+import net.femtoparsec.cookie.CookieMetrics;
+import net.femtoparsec.cookie.CookieQuery;
+import net.femtoparsec.cookie.CookieRejectReason;
+import net.femtoparsec.cookie.ObservableCookieStore;
 import net.femtoparsec.cookie.RequestInfo;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
 
-public class InMemoryCookieStore implements CookieStore {
+/**
+ * A cookie store that keeps its cookies in a {@link HashMap} guarded by a read-write lock.
+ * Secondary indexes by domain, name and expiry time serve {@link #query(CookieQuery)},
+ * {@link #remove(CookieQuery)}, {@link #remove(RequestInfo)} and {@link #cleanUp(long)}.
+ * Only <code>java.util.concurrent</code> locks are used so that virtual threads are never
+ * pinned to their carrier while waiting for the store.
+ * <p>
+ * Mutations are published with {@link #changes(long, Executor)}.
+ */
+public class InMemoryCookieStore implements ObservableCookieStore {
 
     @NonNull
     private final Map<Cookie,Cookie> cookies = new HashMap<>();
 
+    @NonNull
+    private final CookieDomainPresence domainPresence = new CookieDomainPresence();
+
+    @NonNull
+    private final CookieIndexes indexes = new CookieIndexes();
+
+    @NonNull
+    private final CookieMetrics metrics;
+
+    @NonNull
+    private final CookieChangeJournal journal;
+
+    private final Lock readLock;
+
+    private final Lock writeLock;
+
+    public InMemoryCookieStore() {
+        this(CookieMetrics.NONE);
+    }
+
+    /**
+     * @param metrics the metrics notified of expirations and rejections
+     */
+    public InMemoryCookieStore(@NonNull CookieMetrics metrics) {
+        this(metrics, CookieChangeJournal.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param metrics the metrics notified of expirations and rejections
+     * @param journalCapacity the number of mutations kept for the subscribers of {@link #changes(long, Executor)}
+     */
+    public InMemoryCookieStore(@NonNull CookieMetrics metrics, int journalCapacity) {
+        this.metrics = metrics;
+        this.journal = new CookieChangeJournal(journalCapacity);
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        this.readLock = lock.readLock();
+        this.writeLock = lock.writeLock();
+    }
+
+    @Override
+    public long lastSequence() {
+        return journal.lastSequence();
+    }
+
+    @Override
+    public @NonNull Flow.Publisher<CookieChangeEvent> changes(long fromSequence, @NonNull Executor executor) {
+        writeLock.lock();
+        try {
+            journal.enable();
+        } finally {
+            writeLock.unlock();
+        }
+        return journal.publisher(fromSequence, executor);
+    }
+
     @NonNull
     @Override
-    @Synchronized
     public List<Cookie> getAllCookies() {
-        return new ArrayList<>(cookies.values());
+        readLock.lock();
+        try {
+            return new ArrayList<>(cookies.values());
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public @NonNull Optional<Cookie> find(@NonNull Cookie key) {
+        readLock.lock();
+        try {
+            return Optional.ofNullable(cookies.get(key));
+        } finally {
+            readLock.unlock();
+        }
     }
 
     @Override
-    @Synchronized
     public void initialize(@NonNull Collection<Cookie> cookies) {
-        this.cookies.clear();
-        cookies.forEach(c -> this.cookies.put(c,c));
+        writeLock.lock();
+        try {
+            removeIf(c -> true, CookieChangeEvent.Type.REMOVED);
+            cookies.forEach(this::put);
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     @Override
-    @Synchronized
     public void cleanUp(@NonNull Instant now) {
-        cookies.entrySet().removeIf(e -> e.getValue().isExpired(now));
+        cleanUp(now.toEpochMilli());
+    }
+
+    @Override
+    public void cleanUp(long now) {
+        if (!FlightRecorderSupport.AVAILABLE) {
+            cleanUpWithLock(now);
+            return;
+        }
+        final CleanUpEvent event = new CleanUpEvent();
+        event.begin();
+        final int expired = cleanUpWithLock(now);
+        event.end();
+        if (event.shouldCommit()) {
+            event.removed = expired;
+            event.commit();
+        }
+    }
+
+    private int cleanUpWithLock(long now) {
+        final int expired;
+        writeLock.lock();
+        try {
+            expired = removeExpiredKeys(now);
+        } finally {
+            writeLock.unlock();
+        }
+        if (expired > 0) {
+            metrics.expired(expired);
+        }
+        return expired;
     }
 
     @Override
-    @Synchronized
     public void clean() {
-        this.cookies.clear();
+        writeLock.lock();
+        try {
+            removeIf(c -> true, CookieChangeEvent.Type.REMOVED);
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     @Override
-    @Synchronized
     public void remove(@NonNull RequestInfo requestInfo) {
-        cookies.values().removeIf(requestInfo::isMyCookie);
+        if (!domainPresence.mayHaveCookiesFor(requestInfo)) {
+            return;
+        }
+        final List<String> domains = domainAndParents(requestInfo.hostName());
+        writeLock.lock();
+        try {
+            for (Cookie key : indexes.forDomains(domains)) {
+                final Cookie cookie = cookies.get(key);
+                if (requestInfo.isMyCookie(cookie)) {
+                    unlink(cookie, CookieChangeEvent.Type.REMOVED);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     @Override
-    @Synchronized
-    public @NonNull List<Cookie> getCookies(@NonNull RequestInfo requestInfo, @NonNull Instant now) {
+    public @NonNull List<Cookie> query(@NonNull CookieQuery query) {
+        readLock.lock();
+        try {
+            return select(query);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public @NonNull List<Cookie> remove(@NonNull CookieQuery query) {
+        writeLock.lock();
+        try {
+            final List<Cookie> removed = select(query);
+            removed.forEach(c -> unlink(c, CookieChangeEvent.Type.REMOVED));
+            return removed;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Must be called with the lock held
+     */
+    @NonNull
+    private List<Cookie> select(@NonNull CookieQuery query) {
+        final Collection<Cookie> candidates = indexes.candidates(query);
         final List<Cookie> result = new ArrayList<>();
-        final Iterator<Cookie> itr = cookies.values().iterator();
-        while (itr.hasNext()) {
-            final Cookie cookie = itr.next();
-            if (cookie.isExpired(now)) {
-                itr.remove();
-            } else if (requestInfo.isMyCookie(cookie)) {
-                final Cookie updated = cookie.withLastAccessTime(now);
+        if (candidates == null) {
+            for (Cookie cookie : cookies.values()) {
+                if (query.matches(cookie)) {
+                    result.add(cookie);
+                }
+            }
+            return result;
+        }
+        for (Cookie key : candidates) {
+            final Cookie cookie = cookies.get(key);
+            if (cookie != null && query.matches(cookie)) {
                 result.add(cookie);
             }
         }
         return result;
     }
 
+    @NonNull
+    private static List<String> domainAndParents(@NonNull String hostName) {
+        final List<String> domains = new ArrayList<>();
+        domains.add(hostName);
+        int dot = hostName.indexOf('.');
+        while (dot >= 0) {
+            domains.add(hostName.substring(dot + 1));
+            dot = hostName.indexOf('.', dot + 1);
+        }
+        return domains;
+    }
+
+    @Override
+    public @NonNull List<Cookie> getCookies(@NonNull RequestInfo requestInfo, @NonNull Instant now) {
+        return getCookies(requestInfo, now.toEpochMilli());
+    }
+
+    @Override
+    public @NonNull List<Cookie> getCookies(@NonNull RequestInfo requestInfo, long now) {
+        if (!domainPresence.mayHaveCookiesFor(requestInfo)) {
+            return List.of();
+        }
+        if (!FlightRecorderSupport.AVAILABLE) {
+            return getCookiesWithLock(requestInfo, now, null);
+        }
+        final GetCookiesEvent event = new GetCookiesEvent();
+        event.begin();
+        final List<Cookie> result = getCookiesWithLock(requestInfo, now, event);
+        event.end();
+        if (event.shouldCommit()) {
+            event.host = requestInfo.hostName();
+            event.matched = result.size();
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Look for the cookies under the read lock. Only the cookies of the host and of its parent domains
+     * are looked at, through the domain index. Expired cookies found among them are removed afterward,
+     * under the write lock; the other expired cookies are left to {@link #cleanUp(long)}.
+     * @param event the event to fill, null if JFR is not available
+     */
+    private @NonNull List<Cookie> getCookiesWithLock(@NonNull RequestInfo requestInfo, long now, GetCookiesEvent event) {
+        final List<Cookie> result = new ArrayList<>();
+        List<Cookie> expired = null;
+        readLock.lock();
+        try {
+            final List<Cookie> candidates = indexes.forHostAndParents(requestInfo.hostName());
+            if (event != null) {
+                event.scanned = candidates.size();
+            }
+            for (Cookie key : candidates) {
+                final Cookie cookie = cookies.get(key);
+                if (cookie.isExpired(now)) {
+                    if (expired == null) {
+                        expired = new ArrayList<>();
+                    }
+                    expired.add(cookie);
+                } else if (requestInfo.isMyCookie(cookie)) {
+                    result.add(cookie);
+                }
+            }
+        } finally {
+            readLock.unlock();
+        }
+        if (expired != null) {
+            removeExpired(expired);
+        }
+        return result;
+    }
+
+    private void removeExpired(@NonNull List<Cookie> expired) {
+        int count = 0;
+        writeLock.lock();
+        try {
+            for (Cookie cookie : expired) {
+                if (cookies.get(cookie) == cookie) {
+                    unlink(cookie, CookieChangeEvent.Type.EXPIRED);
+                    count++;
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        if (count > 0) {
+            metrics.expired(count);
+        }
+    }
+
     @Override
-    @Synchronized
     public void addCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, @NonNull Instant now) {
-        if (cookie.isExpired(now)) {
-            cookies.remove(cookie);
+        addCookie(requestInfo, cookie, now.toEpochMilli());
+    }
+
+    @Override
+    public void addCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, long now) {
+        if (!FlightRecorderSupport.AVAILABLE) {
+            addCookieWithLock(requestInfo, cookie, now);
             return;
         }
+        final AddCookieEvent event = new AddCookieEvent();
+        event.begin();
+        final String outcome = addCookieWithLock(requestInfo, cookie, now);
+        event.end();
+        if (event.shouldCommit()) {
+            event.host = requestInfo.hostName();
+            event.cookieName = cookie.name();
+            event.cookieDomain = cookie.domain();
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+
+    /**
+     * @return the outcome of the addition, one of the constants of {@link AddCookieEvent}
+     */
+    private @NonNull String addCookieWithLock(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, long now) {
+        writeLock.lock();
+        try {
+            return doAddCookie(requestInfo, cookie, now);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private @NonNull String doAddCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, long now) {
+        if (cookie.isExpired(now)) {
+            final Cookie removed = cookies.get(cookie);
+            if (removed != null) {
+                unlink(removed, CookieChangeEvent.Type.REMOVED);
+                return AddCookieEvent.REMOVED;
+            }
+            return AddCookieEvent.IGNORED;
+        }
 
         final Cookie oldCookie = cookies.get(cookie);
         if (oldCookie == null) {
-            cookies.put(cookie,cookie);
+            put(cookie);
+            return AddCookieEvent.ADDED;
+        }
+        if (oldCookie.httpOnly() && !requestInfo.http()) {
+            metrics.rejected(CookieRejectReason.HTTP_ONLY_OVERWRITE);
+            return AddCookieEvent.REJECTED;
+        }
+        final Cookie newCookie = cookie.withCreationTimeMillis(oldCookie.creationTimeMillis());
+        if (newCookie.isExpired(now)) {
+            return AddCookieEvent.IGNORED;
+        }
+        cookies.put(cookie,newCookie);
+        indexes.replaced(oldCookie, newCookie);
+        journal.publish(CookieChangeEvent.Type.REPLACED, newCookie);
+        return AddCookieEvent.REPLACED;
+    }
+
+    private void put(@NonNull Cookie cookie) {
+        final Cookie oldCookie = cookies.put(cookie,cookie);
+        if (oldCookie == null) {
+            domainPresence.added(cookie);
+            indexes.added(cookie);
+            journal.publish(CookieChangeEvent.Type.ADDED, cookie);
         } else {
-            if (oldCookie.httpOnly() && !requestInfo.http()) {
-                return;
-            }
-            final Cookie newCookie = cookie.withCreationTime(oldCookie.creationTime());
-            if (!newCookie.isExpired(now)) {
-                cookies.put(cookie,newCookie);
+            indexes.replaced(oldCookie, cookie);
+            journal.publish(CookieChangeEvent.Type.REPLACED, cookie);
+        }
+    }
+
+    /**
+     * Remove a cookie of the store and update the indexes
+     */
+    private void unlink(@NonNull Cookie cookie, @NonNull CookieChangeEvent.Type type) {
+        cookies.remove(cookie);
+        domainPresence.removed(cookie);
+        indexes.removed(cookie);
+        journal.publish(type, cookie);
+    }
+
+    /**
+     * Remove the cookies found expired by the expiry index
+     * @return the number of removed cookies
+     */
+    private int removeExpiredKeys(long now) {
+        final List<Cookie> expired = indexes.pollExpired(now);
+        for (Cookie key : expired) {
+            final Cookie cookie = cookies.remove(key);
+            domainPresence.removed(cookie);
+            indexes.removed(cookie);
+            journal.publish(CookieChangeEvent.Type.EXPIRED, cookie);
+        }
+        return expired.size();
+    }
+
+    private int removeIf(@NonNull Predicate<? super Cookie> filter, @NonNull CookieChangeEvent.Type type) {
+        int count = 0;
+        final Iterator<Cookie> itr = cookies.values().iterator();
+        while (itr.hasNext()) {
+            final Cookie cookie = itr.next();
+            if (filter.test(cookie)) {
+                itr.remove();
+                domainPresence.removed(cookie);
+                indexes.removed(cookie);
+                journal.publish(type, cookie);
+                count++;
             }
         }
+        return count;
     }
 
 }
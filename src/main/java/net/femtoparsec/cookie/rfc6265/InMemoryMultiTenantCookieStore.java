@@ -0,0 +1,88 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.CookieStore;
+import net.femtoparsec.cookie.MultiTenantCookieStore;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+
+/**
+ * A multi-tenant store keeping each tenant in a {@link TenantCookieJar}, a single map guarded by a single lock,
+ * instead of a full {@link InMemoryCookieStore} with its indexes and change journal. The domain, path and name
+ * of the cookies are interned with a {@link CookieStringInterner} shared by all the tenants.
+ */
+public class InMemoryMultiTenantCookieStore implements MultiTenantCookieStore {
+
+    @NonNull
+    private final ConcurrentMap<String,CookieStore> stores = new ConcurrentHashMap<>();
+
+    @NonNull
+    private final CookieStringInterner interner;
+
+    public InMemoryMultiTenantCookieStore() {
+        this(new CookieStringInterner());
+    }
+
+    public InMemoryMultiTenantCookieStore(@NonNull CookieStringInterner interner) {
+        this.interner = interner;
+    }
+
+    @Override
+    public @NonNull CookieStore forTenant(@NonNull String tenantId) {
+        final CookieStore store = stores.get(tenantId);
+        if (store != null) {
+            return store;
+        }
+        return stores.computeIfAbsent(tenantId, id -> new InterningCookieStore(new TenantCookieJar(), interner));
+    }
+
+    @Override
+    public @NonNull Set<String> tenantIds() {
+        return Collections.unmodifiableSet(stores.keySet());
+    }
+
+    @Override
+    public boolean evict(@NonNull String tenantId) {
+        return stores.remove(tenantId) != null;
+    }
+
+    @Override
+    public int evictIf(@NonNull Predicate<? super String> tenantFilter) {
+        int count = 0;
+        for (String tenantId : stores.keySet()) {
+            if (tenantFilter.test(tenantId) && stores.remove(tenantId) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieQuery;
+import net.femtoparsec.cookie.CookieStore;
+import net.femtoparsec.cookie.RequestInfo;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * A store that interns the strings of the cookies before adding them to a delegate store
+ */
+@RequiredArgsConstructor
+public class InterningCookieStore implements CookieStore {
+
+    @NonNull
+    private final CookieStore delegate;
+
+    @NonNull
+    private final CookieStringInterner interner;
+
+    @Override
+    public @NonNull List<Cookie> getAllCookies() {
+        return delegate.getAllCookies();
+    }
+
+    @Override
+    public @NonNull Optional<Cookie> find(@NonNull Cookie key) {
+        return delegate.find(key);
+    }
+
+    @Override
+    public void initialize(@NonNull Collection<Cookie> cookies) {
+        delegate.initialize(cookies.stream().map(interner::intern).collect(Collectors.toList()));
+    }
+
+    @Override
+    public @NonNull List<Cookie> getCookies(@NonNull RequestInfo requestInfo, @NonNull Instant now) {
+        return delegate.getCookies(requestInfo, now);
+    }
+
+    @Override
+    public @NonNull List<Cookie> getCookies(@NonNull RequestInfo requestInfo, long nowMillis) {
+        return delegate.getCookies(requestInfo, nowMillis);
+    }
+
+    @Override
+    public void cleanUp(@NonNull Instant now) {
+        delegate.cleanUp(now);
+    }
+
+    @Override
+    public void addCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, @NonNull Instant now) {
+        delegate.addCookie(requestInfo, interner.intern(cookie), now);
+    }
+
+    @Override
+    public void addCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, long nowMillis) {
+        delegate.addCookie(requestInfo, interner.intern(cookie), nowMillis);
+    }
+
+    @Override
+    public void remove(@NonNull RequestInfo requestInfo) {
+        delegate.remove(requestInfo);
+    }
+
+    @Override
+    public void clean() {
+        delegate.clean();
+    }
+
+    @Override
+    public @NonNull List<Cookie> query(@NonNull CookieQuery query) {
+        return delegate.query(query);
+    }
+
+    @Override
+    public @NonNull List<Cookie> remove(@NonNull CookieQuery query) {
+        return delegate.remove(query);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.ReplicationTransport;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * An in-process network of replication transports. Messages are delivered synchronously,
+ * in the thread of the sender, to all the other connected endpoints.
+ */
+public class LoopbackReplicationNetwork {
+
+    private final List<Endpoint> endpoints = new CopyOnWriteArrayList<>();
+
+    /**
+     * @return a new endpoint of this network
+     */
+    @NonNull
+    public Endpoint connect() {
+        final Endpoint endpoint = new Endpoint();
+        endpoints.add(endpoint);
+        return endpoint;
+    }
+
+    public class Endpoint implements ReplicationTransport {
+
+        private volatile Consumer<byte[]> receiver = m -> {};
+
+        private volatile boolean connected = true;
+
+        /**
+         * @param connected false to drop all the messages sent and received by this endpoint,
+         *                  to simulate a network partition
+         */
+        public void connected(boolean connected) {
+            this.connected = connected;
+        }
+
+        @Override
+        public void send(@NonNull byte[] message) {
+            if (!connected) {
+                return;
+            }
+            for (Endpoint endpoint : endpoints) {
+                if (endpoint != this && endpoint.connected) {
+                    endpoint.receiver.accept(message);
+                }
+            }
+        }
+
+        @Override
+        public void receive(@NonNull Consumer<byte[]> receiver) {
+            this.receiver = receiver;
+        }
+    }
+}
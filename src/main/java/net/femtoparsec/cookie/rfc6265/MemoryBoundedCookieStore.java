@@ -0,0 +1,437 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.BoundedCookieStore;
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieChangeEvent;
+import net.femtoparsec.cookie.CookieMetrics;
+import net.femtoparsec.cookie.CookieQuery;
+import net.femtoparsec.cookie.CookieRejectReason;
+import net.femtoparsec.cookie.ObservableCookieStore;
+import net.femtoparsec.cookie.RequestInfo;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * An in memory store that keeps the estimated size of its cookies under a budget.
+ * When the budget is exceeded, the least recently accessed cookie of the domain
+ * using the most memory is evicted, until the store fits in its budget again.
+ * <p>
+ * Mutations are published with {@link #changes(long, Executor)}, updates of the last access time
+ * are not.
+ */
+public class MemoryBoundedCookieStore implements BoundedCookieStore, ObservableCookieStore {
+
+    private final long byteBudget;
+
+    @NonNull
+    private final Map<String,DomainBucket> buckets = new HashMap<>();
+
+    @NonNull
+    private final CookieMetrics metrics;
+
+    @NonNull
+    private final CookieChangeJournal journal;
+
+    private final Lock lock = new ReentrantLock();
+
+    private long byteUsage = 0;
+
+    public MemoryBoundedCookieStore(long byteBudget) {
+        this(byteBudget, CookieMetrics.NONE);
+    }
+
+    /**
+     * @param byteBudget the maximal estimated number of bytes the cookies can use
+     * @param metrics the metrics notified of evictions, expirations and rejections
+     */
+    public MemoryBoundedCookieStore(long byteBudget, @NonNull CookieMetrics metrics) {
+        this(byteBudget, metrics, CookieChangeJournal.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param byteBudget the maximal estimated number of bytes the cookies can use
+     * @param metrics the metrics notified of evictions, expirations and rejections
+     * @param journalCapacity the number of mutations kept for the subscribers of {@link #changes(long, Executor)}
+     */
+    public MemoryBoundedCookieStore(long byteBudget, @NonNull CookieMetrics metrics, int journalCapacity) {
+        if (byteBudget <= 0) {
+            throw new IllegalArgumentException("The byte budget must be positive: " + byteBudget);
+        }
+        this.byteBudget = byteBudget;
+        this.metrics = metrics;
+        this.journal = new CookieChangeJournal(journalCapacity);
+    }
+
+    @Override
+    public long byteBudget() {
+        return byteBudget;
+    }
+
+    @Override
+    public long byteUsage() {
+        lock.lock();
+        try {
+            return byteUsage;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public @NonNull Map<String,Long> byteUsageByDomain() {
+        lock.lock();
+        try {
+            final Map<String,Long> result = new HashMap<>();
+            buckets.forEach((domain, bucket) -> result.put(domain, bucket.byteUsage));
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long lastSequence() {
+        return journal.lastSequence();
+    }
+
+    @Override
+    public @NonNull Flow.Publisher<CookieChangeEvent> changes(long fromSequence, @NonNull Executor executor) {
+        lock.lock();
+        try {
+            journal.enable();
+        } finally {
+            lock.unlock();
+        }
+        return journal.publisher(fromSequence, executor);
+    }
+
+    @NonNull
+    @Override
+    public List<Cookie> getAllCookies() {
+        lock.lock();
+        try {
+            final List<Cookie> result = new ArrayList<>();
+            buckets.values().forEach(b -> result.addAll(b.cookies.values()));
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public @NonNull Optional<Cookie> find(@NonNull Cookie key) {
+        lock.lock();
+        try {
+            final DomainBucket bucket = buckets.get(domainKey(key));
+            return bucket == null ? Optional.empty() : Optional.ofNullable(bucket.cookies.get(key));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void initialize(@NonNull Collection<Cookie> cookies) {
+        lock.lock();
+        try {
+            clearAll();
+            cookies.forEach(this::put);
+            enforceBudget();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void cleanUp(@NonNull Instant now) {
+        cleanUp(now.toEpochMilli());
+    }
+
+    @Override
+    public void cleanUp(long now) {
+        lock.lock();
+        try {
+            final Iterator<DomainBucket> itr = buckets.values().iterator();
+            while (itr.hasNext()) {
+                final DomainBucket bucket = itr.next();
+                removeExpired(bucket, now);
+                if (bucket.cookies.isEmpty()) {
+                    itr.remove();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clean() {
+        lock.lock();
+        try {
+            clearAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void remove(@NonNull RequestInfo requestInfo) {
+        lock.lock();
+        try {
+            forEachCandidateBucket(requestInfo, bucket -> bucket.removeIf(requestInfo::isMyCookie, CookieChangeEvent.Type.REMOVED));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public @NonNull List<Cookie> remove(@NonNull CookieQuery query) {
+        lock.lock();
+        try {
+            final List<Cookie> removed = new ArrayList<>();
+            final Iterator<DomainBucket> itr = buckets.values().iterator();
+            while (itr.hasNext()) {
+                final DomainBucket bucket = itr.next();
+                bucket.removeIf(c -> query.matches(c) && removed.add(c), CookieChangeEvent.Type.REMOVED);
+                if (bucket.cookies.isEmpty()) {
+                    itr.remove();
+                }
+            }
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public @NonNull List<Cookie> getCookies(@NonNull RequestInfo requestInfo, @NonNull Instant now) {
+        return getCookies(requestInfo, now.toEpochMilli());
+    }
+
+    @Override
+    public @NonNull List<Cookie> getCookies(@NonNull RequestInfo requestInfo, long now) {
+        lock.lock();
+        try {
+            final List<Cookie> result = new ArrayList<>();
+            forEachCandidateBucket(requestInfo, bucket -> {
+                removeExpired(bucket, now);
+                final List<Cookie> matching = new ArrayList<>();
+                for (Cookie cookie : bucket.cookies.values()) {
+                    if (requestInfo.isMyCookie(cookie)) {
+                        matching.add(cookie);
+                    }
+                }
+                for (Cookie cookie : matching) {
+                    final Cookie updated = cookie.withLastAccessTimeMillis(now);
+                    bucket.put(updated);
+                    result.add(updated);
+                }
+            });
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void addCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, @NonNull Instant now) {
+        addCookie(requestInfo, cookie, now.toEpochMilli());
+    }
+
+    @Override
+    public void addCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, long now) {
+        lock.lock();
+        try {
+            final DomainBucket bucket = buckets.get(domainKey(cookie));
+            final Cookie oldCookie = bucket == null ? null : bucket.cookies.get(cookie);
+
+            if (cookie.isExpired(now)) {
+                if (oldCookie != null) {
+                    removeCookie(oldCookie);
+                }
+                return;
+            }
+
+            if (oldCookie == null) {
+                put(cookie);
+            } else {
+                if (oldCookie.httpOnly() && !requestInfo.http()) {
+                    metrics.rejected(CookieRejectReason.HTTP_ONLY_OVERWRITE);
+                    return;
+                }
+                final Cookie newCookie = cookie.withCreationTimeMillis(oldCookie.creationTimeMillis());
+                if (!newCookie.isExpired(now)) {
+                    put(newCookie);
+                }
+            }
+            enforceBudget();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(@NonNull Cookie cookie) {
+        final String domain = domainKey(cookie);
+        final Cookie previous = buckets.computeIfAbsent(domain, d -> new DomainBucket()).put(cookie);
+        journal.publish(previous == null ? CookieChangeEvent.Type.ADDED : CookieChangeEvent.Type.REPLACED, cookie);
+    }
+
+    private void removeCookie(@NonNull Cookie cookie) {
+        final String domain = domainKey(cookie);
+        final DomainBucket bucket = buckets.get(domain);
+        if (bucket != null) {
+            bucket.remove(cookie);
+            journal.publish(CookieChangeEvent.Type.REMOVED, cookie);
+            if (bucket.cookies.isEmpty()) {
+                buckets.remove(domain);
+            }
+        }
+    }
+
+    private void clearAll() {
+        buckets.values().forEach(b -> b.cookies.values().forEach(c -> journal.publish(CookieChangeEvent.Type.REMOVED, c)));
+        buckets.clear();
+        byteUsage = 0;
+    }
+
+    private void removeExpired(@NonNull DomainBucket bucket, long now) {
+        final int expired = bucket.removeIf(c -> c.isExpired(now), CookieChangeEvent.Type.EXPIRED);
+        if (expired > 0) {
+            metrics.expired(expired);
+        }
+    }
+
+    private void enforceBudget() {
+        int evicted = 0;
+        while (byteUsage > byteBudget) {
+            String largestDomain = null;
+            DomainBucket largest = null;
+            for (Map.Entry<String,DomainBucket> entry : buckets.entrySet()) {
+                if (largest == null || entry.getValue().byteUsage > largest.byteUsage) {
+                    largestDomain = entry.getKey();
+                    largest = entry.getValue();
+                }
+            }
+            if (largest == null) {
+                break;
+            }
+            final Cookie eldest = largest.cookies.values().iterator().next();
+            largest.remove(eldest);
+            journal.publish(CookieChangeEvent.Type.EVICTED, eldest);
+            evicted++;
+            if (largest.cookies.isEmpty()) {
+                buckets.remove(largestDomain);
+            }
+        }
+        if (evicted > 0) {
+            metrics.evicted(evicted);
+        }
+    }
+
+    /**
+     * Call the action on the buckets that could contain cookies for the request:
+     * the one of the host name and the ones of all its parent domains.
+     */
+    private void forEachCandidateBucket(@NonNull RequestInfo requestInfo, @NonNull Consumer<DomainBucket> action) {
+        final String hostName = requestInfo.hostName();
+        int start = 0;
+        while (start >= 0) {
+            final String domain = hostName.substring(start);
+            final DomainBucket bucket = buckets.get(domain);
+            if (bucket != null) {
+                action.accept(bucket);
+                if (bucket.cookies.isEmpty()) {
+                    buckets.remove(domain);
+                }
+            }
+            final int dot = hostName.indexOf('.', start);
+            start = dot < 0 ? -1 : dot + 1;
+        }
+    }
+
+    @NonNull
+    private static String domainKey(@NonNull Cookie cookie) {
+        return cookie.domain().toLowerCase(Locale.ROOT);
+    }
+
+    private class DomainBucket {
+
+        /**
+         * Cookies in access order, the least recently accessed first
+         */
+        private final LinkedHashMap<Cookie,Cookie> cookies = new LinkedHashMap<>(8, 0.75f, true);
+
+        private long byteUsage = 0;
+
+        /**
+         * The previous cookie is removed first since a map keeps the key of an existing entry
+         * @return the replaced cookie, null if there was none
+         */
+        private Cookie put(@NonNull Cookie cookie) {
+            final Cookie previous = cookies.remove(cookie);
+            cookies.put(cookie, cookie);
+            final long delta = CookieSizeEstimator.estimate(cookie) - (previous == null ? 0 : CookieSizeEstimator.estimate(previous));
+            byteUsage += delta;
+            MemoryBoundedCookieStore.this.byteUsage += delta;
+            return previous;
+        }
+
+        private void remove(@NonNull Cookie cookie) {
+            final Cookie removed = cookies.remove(cookie);
+            if (removed != null) {
+                final long size = CookieSizeEstimator.estimate(removed);
+                byteUsage -= size;
+                MemoryBoundedCookieStore.this.byteUsage -= size;
+            }
+        }
+
+        private int removeIf(@NonNull Predicate<? super Cookie> filter, @NonNull CookieChangeEvent.Type type) {
+            int count = 0;
+            final Iterator<Cookie> itr = cookies.values().iterator();
+            while (itr.hasNext()) {
+                final Cookie cookie = itr.next();
+                if (filter.test(cookie)) {
+                    itr.remove();
+                    final long size = CookieSizeEstimator.estimate(cookie);
+                    byteUsage -= size;
+                    MemoryBoundedCookieStore.this.byteUsage -= size;
+                    journal.publish(type, cookie);
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+}
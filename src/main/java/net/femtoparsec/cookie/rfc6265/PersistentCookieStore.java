@@ -0,0 +1,185 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieQuery;
+import net.femtoparsec.cookie.ForkableCookieStore;
+import net.femtoparsec.cookie.RequestInfo;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * A cookie store backed by a {@link PersistentHashMap}. Reads work on an immutable
+ * snapshot and never block, writes replace the snapshot atomically. Since snapshots share
+ * their structure, {@link #fork()} is done in constant time.
+ */
+public class PersistentCookieStore implements ForkableCookieStore {
+
+    @NonNull
+    private final AtomicReference<PersistentHashMap<Cookie,Cookie>> cookies;
+
+    public PersistentCookieStore() {
+        this(PersistentHashMap.empty());
+    }
+
+    private PersistentCookieStore(@NonNull PersistentHashMap<Cookie,Cookie> snapshot) {
+        this.cookies = new AtomicReference<>(snapshot);
+    }
+
+    @NonNull
+    @Override
+    public ForkableCookieStore fork() {
+        return new PersistentCookieStore(cookies.get());
+    }
+
+    @NonNull
+    @Override
+    public List<Cookie> getAllCookies() {
+        return cookies.get().values();
+    }
+
+    @Override
+    public @NonNull Optional<Cookie> find(@NonNull Cookie key) {
+        return Optional.ofNullable(cookies.get().get(key));
+    }
+
+    @Override
+    public void initialize(@NonNull Collection<Cookie> cookies) {
+        PersistentHashMap<Cookie,Cookie> map = PersistentHashMap.empty();
+        for (Cookie cookie : cookies) {
+            map = map.put(cookie,cookie);
+        }
+        this.cookies.set(map);
+    }
+
+    @Override
+    public void cleanUp(@NonNull Instant now) {
+        cleanUp(now.toEpochMilli());
+    }
+
+    @Override
+    public void cleanUp(long now) {
+        removeIf(c -> c.isExpired(now));
+    }
+
+    @Override
+    public void clean() {
+        this.cookies.set(PersistentHashMap.empty());
+    }
+
+    @Override
+    public void remove(@NonNull RequestInfo requestInfo) {
+        removeIf(requestInfo::isMyCookie);
+    }
+
+    @Override
+    public @NonNull List<Cookie> getCookies(@NonNull RequestInfo requestInfo, @NonNull Instant now) {
+        return getCookies(requestInfo, now.toEpochMilli());
+    }
+
+    @Override
+    public @NonNull List<Cookie> getCookies(@NonNull RequestInfo requestInfo, long now) {
+        final List<Cookie> result = new ArrayList<>();
+        final List<Cookie> expired = new ArrayList<>();
+        cookies.get().forEach((k,cookie) -> {
+            if (cookie.isExpired(now)) {
+                expired.add(cookie);
+            } else if (requestInfo.isMyCookie(cookie)) {
+                result.add(cookie);
+            }
+        });
+        if (!expired.isEmpty()) {
+            cookies.updateAndGet(map -> {
+                for (Cookie cookie : expired) {
+                    // a cookie with the same key may have been added since the snapshot was read
+                    if (map.get(cookie) == cookie) {
+                        map = map.remove(cookie);
+                    }
+                }
+                return map;
+            });
+        }
+        return result;
+    }
+
+    @Override
+    public void addCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, @NonNull Instant now) {
+        addCookie(requestInfo, cookie, now.toEpochMilli());
+    }
+
+    @Override
+    public void addCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, long now) {
+        cookies.updateAndGet(map -> {
+            if (cookie.isExpired(now)) {
+                return map.remove(cookie);
+            }
+            final Cookie oldCookie = map.get(cookie);
+            if (oldCookie == null) {
+                return map.put(cookie,cookie);
+            }
+            if (oldCookie.httpOnly() && !requestInfo.http()) {
+                return map;
+            }
+            final Cookie newCookie = cookie.withCreationTimeMillis(oldCookie.creationTimeMillis());
+            return newCookie.isExpired(now) ? map : map.put(cookie,newCookie);
+        });
+    }
+
+    @Override
+    public @NonNull List<Cookie> remove(@NonNull CookieQuery query) {
+        return removeIf(query::matches);
+    }
+
+    /**
+     * @return the removed cookies, from the snapshot that was actually replaced
+     */
+    @NonNull
+    private List<Cookie> removeIf(@NonNull Predicate<? super Cookie> filter) {
+        final List<Cookie> matching = new ArrayList<>();
+        cookies.updateAndGet(map -> {
+            matching.clear();
+            map.forEach((k,cookie) -> {
+                if (filter.test(cookie)) {
+                    matching.add(cookie);
+                }
+            });
+            for (Cookie cookie : matching) {
+                map = map.remove(cookie);
+            }
+            return map;
+        });
+        return matching;
+    }
+
+}
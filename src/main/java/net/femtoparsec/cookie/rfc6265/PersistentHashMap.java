@@ -0,0 +1,345 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable hash array mapped trie. Every modification returns a new map
+ * that shares all the unchanged nodes with the original one.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public final class PersistentHashMap<K,V> {
+
+    private static final PersistentHashMap<?,?> EMPTY = new PersistentHashMap<>(BitmapNode.empty(), 0);
+
+    @SuppressWarnings("unchecked")
+    @NonNull
+    public static <K,V> PersistentHashMap<K,V> empty() {
+        return (PersistentHashMap<K,V>) EMPTY;
+    }
+
+    private final Node<K,V> root;
+
+    private final int size;
+
+    private PersistentHashMap(@NonNull Node<K,V> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public V get(@NonNull K key) {
+        return root.find(0, hash(key), key);
+    }
+
+    @NonNull
+    public PersistentHashMap<K,V> put(@NonNull K key, @NonNull V value) {
+        final Change change = new Change();
+        final Node<K,V> newRoot = root.put(0, hash(key), key, value, change);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentHashMap<>(newRoot, change.sizeChanged ? size + 1 : size);
+    }
+
+    @NonNull
+    public PersistentHashMap<K,V> remove(@NonNull K key) {
+        final Node<K,V> newRoot = root.remove(0, hash(key), key);
+        if (newRoot == root) {
+            return this;
+        }
+        return newRoot == null ? empty() : new PersistentHashMap<>(newRoot, size - 1);
+    }
+
+    public void forEach(@NonNull BiConsumer<? super K, ? super V> action) {
+        root.forEach(action);
+    }
+
+    @NonNull
+    public List<V> values() {
+        final List<V> values = new ArrayList<>(size);
+        forEach((k, v) -> values.add(v));
+        return values;
+    }
+
+    private static int hash(Object key) {
+        final int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int bitFor(int hash, int shift) {
+        return 1 << ((hash >>> shift) & 0x1f);
+    }
+
+    private static class Change {
+        private boolean sizeChanged;
+    }
+
+    private interface Node<K,V> {
+
+        V find(int shift, int hash, K key);
+
+        @NonNull
+        Node<K,V> put(int shift, int hash, K key, V value, Change change);
+
+        /**
+         * @return this node if the key was not found, <code>null</code> if the node became empty
+         */
+        Node<K,V> remove(int shift, int hash, K key);
+
+        void forEach(BiConsumer<? super K, ? super V> action);
+    }
+
+    /**
+     * A node with up to 32 slots. Each slot holds either a key/value pair
+     * or a sub-node (in which case the key is <code>null</code>).
+     */
+    private static final class BitmapNode<K,V> implements Node<K,V> {
+
+        private static final BitmapNode<?,?> EMPTY = new BitmapNode<>(0, new Object[0]);
+
+        @SuppressWarnings("unchecked")
+        private static <K,V> BitmapNode<K,V> empty() {
+            return (BitmapNode<K,V>) EMPTY;
+        }
+
+        private final int bitmap;
+
+        private final Object[] array;
+
+        private BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V find(int shift, int hash, K key) {
+            final int bit = bitFor(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            final int idx = index(bit);
+            final Object k = array[2 * idx];
+            final Object v = array[2 * idx + 1];
+            if (k == null) {
+                return ((Node<K,V>) v).find(shift + 5, hash, key);
+            }
+            return key.equals(k) ? (V) v : null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Node<K,V> put(int shift, int hash, K key, V value, Change change) {
+            final int bit = bitFor(hash, shift);
+            final int idx = index(bit);
+            if ((bitmap & bit) == 0) {
+                final Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, 2 * idx);
+                newArray[2 * idx] = key;
+                newArray[2 * idx + 1] = value;
+                System.arraycopy(array, 2 * idx, newArray, 2 * idx + 2, array.length - 2 * idx);
+                change.sizeChanged = true;
+                return new BitmapNode<>(bitmap | bit, newArray);
+            }
+
+            final Object k = array[2 * idx];
+            final Object v = array[2 * idx + 1];
+            if (k == null) {
+                final Node<K,V> subNode = (Node<K,V>) v;
+                final Node<K,V> newSubNode = subNode.put(shift + 5, hash, key, value, change);
+                return newSubNode == subNode ? this : replace(idx, null, newSubNode);
+            }
+            if (key.equals(k)) {
+                return v == value ? this : replace(idx, k, value);
+            }
+            change.sizeChanged = true;
+            return replace(idx, null, createNode(shift + 5, (K) k, (V) v, hash, key, value));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Node<K,V> remove(int shift, int hash, K key) {
+            final int bit = bitFor(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            final int idx = index(bit);
+            final Object k = array[2 * idx];
+            final Object v = array[2 * idx + 1];
+            if (k == null) {
+                final Node<K,V> subNode = (Node<K,V>) v;
+                final Node<K,V> newSubNode = subNode.remove(shift + 5, hash, key);
+                if (newSubNode == subNode) {
+                    return this;
+                }
+                return newSubNode == null ? removeSlot(bit, idx) : replace(idx, null, newSubNode);
+            }
+            return key.equals(k) ? removeSlot(bit, idx) : this;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEach(BiConsumer<? super K, ? super V> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) {
+                    ((Node<K,V>) array[i + 1]).forEach(action);
+                } else {
+                    action.accept((K) array[i], (V) array[i + 1]);
+                }
+            }
+        }
+
+        private BitmapNode<K,V> replace(int idx, Object key, Object value) {
+            final Object[] newArray = array.clone();
+            newArray[2 * idx] = key;
+            newArray[2 * idx + 1] = value;
+            return new BitmapNode<>(bitmap, newArray);
+        }
+
+        private BitmapNode<K,V> removeSlot(int bit, int idx) {
+            if (bitmap == bit) {
+                return null;
+            }
+            final Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, 2 * idx);
+            System.arraycopy(array, 2 * idx + 2, newArray, 2 * idx, newArray.length - 2 * idx);
+            return new BitmapNode<>(bitmap ^ bit, newArray);
+        }
+
+        private static <K,V> Node<K,V> createNode(int shift, K key1, V value1, int hash2, K key2, V value2) {
+            final int hash1 = hash(key1);
+            if (hash1 == hash2) {
+                return new CollisionNode<>(hash1, new Object[]{key1, value1, key2, value2});
+            }
+            final Change change = new Change();
+            return BitmapNode.<K,V>empty()
+                             .put(shift, hash1, key1, value1, change)
+                             .put(shift, hash2, key2, value2, change);
+        }
+    }
+
+    /**
+     * A node holding key/value pairs whose keys have the exact same hash
+     */
+    private static final class CollisionNode<K,V> implements Node<K,V> {
+
+        private final int hash;
+
+        private final Object[] array;
+
+        private CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int indexOf(K key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V find(int shift, int hash, K key) {
+            if (hash != this.hash) {
+                return null;
+            }
+            final int idx = indexOf(key);
+            return idx < 0 ? null : (V) array[idx + 1];
+        }
+
+        @Override
+        public Node<K,V> put(int shift, int hash, K key, V value, Change change) {
+            if (hash != this.hash) {
+                return new BitmapNode<K,V>(bitFor(this.hash, shift), new Object[]{null, this})
+                        .put(shift, hash, key, value, change);
+            }
+            final int idx = indexOf(key);
+            if (idx >= 0) {
+                if (array[idx + 1] == value) {
+                    return this;
+                }
+                final Object[] newArray = array.clone();
+                newArray[idx + 1] = value;
+                return new CollisionNode<>(hash, newArray);
+            }
+            final Object[] newArray = new Object[array.length + 2];
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            change.sizeChanged = true;
+            return new CollisionNode<>(hash, newArray);
+        }
+
+        @Override
+        public Node<K,V> remove(int shift, int hash, K key) {
+            if (hash != this.hash) {
+                return this;
+            }
+            final int idx = indexOf(key);
+            if (idx < 0) {
+                return this;
+            }
+            if (array.length == 2) {
+                return null;
+            }
+            final Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, idx);
+            System.arraycopy(array, idx + 2, newArray, idx, newArray.length - idx);
+            return new CollisionNode<>(hash, newArray);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEach(BiConsumer<? super K, ? super V> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                action.accept((K) array[i], (V) array[i + 1]);
+            }
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.SameSite;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+/**
+ * Parse a <code>Set-Cookie</code> header value directly from its bytes, as received on the wire.
+ * <p>
+ * Attributes are located as byte ranges and matched case-insensitively without decoding them. When an attribute
+ * appears several times, the last occurrence wins. Strings are only created for the name and the value of the cookie,
+ * and for the attributes that are used: domain, path, and expires when there is no valid max-age.
+ * The value of the samesite attribute is matched on the bytes too. Bytes are decoded
+ * as ISO-8859-1, like {@link java.net.HttpURLConnection} does for header values.
+ */
+public class SetCookieBytesParser {
+
+    private static final byte[] EXPIRES = {'e', 'x', 'p', 'i', 'r', 'e', 's'};
+    private static final byte[] MAX_AGE = {'m', 'a', 'x', '-', 'a', 'g', 'e'};
+    private static final byte[] DOMAIN = {'d', 'o', 'm', 'a', 'i', 'n'};
+    private static final byte[] PATH = {'p', 'a', 't', 'h'};
+    private static final byte[] SECURE = {'s', 'e', 'c', 'u', 'r', 'e'};
+    private static final byte[] HTTP_ONLY = {'h', 't', 't', 'p', 'o', 'n', 'l', 'y'};
+    private static final byte[] SAME_SITE = {'s', 'a', 'm', 'e', 's', 'i', 't', 'e'};
+    private static final byte[] PARTITIONED = {'p', 'a', 'r', 't', 'i', 't', 'i', 'o', 'n', 'e', 'd'};
+    private static final byte[] STRICT = {'s', 't', 'r', 'i', 'c', 't'};
+    private static final byte[] LAX = {'l', 'a', 'x'};
+    private static final byte[] NONE = {'n', 'o', 'n', 'e'};
+
+    /**
+     * @param bytes the bytes of the header value
+     * @param offset the index of the first byte of the header value
+     * @param length the number of bytes of the header value
+     * @return the parsed data, an empty optional if the header value is invalid
+     */
+    @NonNull
+    public static Optional<CookieData> parse(@NonNull byte[] bytes, int offset, int length) {
+        return parse(ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    /**
+     * @param buffer the buffer holding the header value between its position and its limit. The position
+     *               of the buffer is not modified
+     * @return the parsed data, an empty optional if the header value is invalid
+     */
+    @NonNull
+    public static Optional<CookieData> parse(@NonNull ByteBuffer buffer) {
+        return new SetCookieBytesParser(buffer).parse();
+    }
+
+    @NonNull
+    private final ByteBuffer buffer;
+
+    private final int end;
+
+    private int expiresStart = -1;
+    private int expiresEnd;
+    private int maxAgeStart = -1;
+    private int maxAgeEnd;
+    private int domainStart = -1;
+    private int domainEnd;
+    private int pathStart = -1;
+    private int pathEnd;
+    private boolean secured;
+    private boolean httpOnly;
+    private boolean partitioned;
+    private SameSite sameSite;
+
+    private SetCookieBytesParser(@NonNull ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.end = buffer.limit();
+    }
+
+    @NonNull
+    private Optional<CookieData> parse() {
+        final int start = buffer.position();
+        final int nameValueEnd = indexOf((byte) ';', start, end);
+        final int equal = indexOf((byte) '=', start, nameValueEnd);
+        if (equal == nameValueEnd) {
+            return Optional.empty();
+        }
+        final int nameStart = skipWhitespaces(start, equal);
+        final int nameEnd = trimWhitespaces(nameStart, equal);
+        if (nameStart == nameEnd) {
+            return Optional.empty();
+        }
+        final int valueStart = skipWhitespaces(equal + 1, nameValueEnd);
+        final int valueEnd = trimWhitespaces(valueStart, nameValueEnd);
+
+        int attributeStart = nameValueEnd + 1;
+        while (attributeStart < end) {
+            final int attributeEnd = indexOf((byte) ';', attributeStart, end);
+            splitAttribute(attributeStart, attributeEnd);
+            attributeStart = attributeEnd + 1;
+        }
+
+        final CookieData data = new CookieData();
+        data.name(decode(nameStart, nameEnd))
+            .value(decode(valueStart, valueEnd))
+            .secured(secured)
+            .httpOnly(httpOnly)
+            .sameSite(sameSite)
+            .partitioned(partitioned);
+        if (maxAgeStart >= 0) {
+            parseMaxAge(maxAgeStart, maxAgeEnd).ifPresent(data::maxAge);
+        }
+        if (expiresStart >= 0 && data.maxAge() == null) {
+            CookieDateParser.parse(decode(expiresStart, expiresEnd)).ifPresent(data::expires);
+        }
+        if (domainStart >= 0) {
+            parseDomain(domainStart, domainEnd).ifPresent(data::domain);
+        }
+        if (pathStart >= 0 && pathStart < pathEnd && buffer.get(pathStart) == '/') {
+            data.path(decode(pathStart, pathEnd));
+        }
+        return Optional.of(data);
+    }
+
+    private void splitAttribute(int start, int end) {
+        final int equal = indexOf((byte) '=', start, end);
+        final int nameStart = skipWhitespaces(start, equal);
+        final int nameEnd = trimWhitespaces(nameStart, equal);
+        final int valueStart = equal == end ? end : skipWhitespaces(equal + 1, end);
+        final int valueEnd = trimWhitespaces(valueStart, end);
+
+        if (matches(EXPIRES, nameStart, nameEnd)) {
+            expiresStart = valueStart;
+            expiresEnd = valueEnd;
+        } else if (matches(MAX_AGE, nameStart, nameEnd)) {
+            maxAgeStart = valueStart;
+            maxAgeEnd = valueEnd;
+        } else if (matches(DOMAIN, nameStart, nameEnd)) {
+            domainStart = valueStart;
+            domainEnd = valueEnd;
+        } else if (matches(PATH, nameStart, nameEnd)) {
+            pathStart = valueStart;
+            pathEnd = valueEnd;
+        } else if (matches(SECURE, nameStart, nameEnd)) {
+            secured = true;
+        } else if (matches(HTTP_ONLY, nameStart, nameEnd)) {
+            httpOnly = true;
+        } else if (matches(SAME_SITE, nameStart, nameEnd)) {
+            sameSite = parseSameSite(valueStart, valueEnd);
+        } else if (matches(PARTITIONED, nameStart, nameEnd)) {
+            partitioned = true;
+        }
+    }
+
+    /**
+     * Same rules as {@link CookieSameSiteParser}. Like for the other attributes, only the last occurrence is used
+     * @return the parsed value, null for an unknown value
+     */
+    private SameSite parseSameSite(int start, int end) {
+        if (matches(STRICT, start, end)) {
+            return SameSite.STRICT;
+        }
+        if (matches(LAX, start, end)) {
+            return SameSite.LAX;
+        }
+        if (matches(NONE, start, end)) {
+            return SameSite.NONE;
+        }
+        return null;
+    }
+
+    /**
+     * Same rules as {@link CookieMaxAgeParser}: an optional minus sign followed by digits.
+     * Values that do not fit in a long are ignored.
+     */
+    @NonNull
+    private Optional<Long> parseMaxAge(int start, int end) {
+        final boolean negative = start < end && buffer.get(start) == '-';
+        int index = negative ? start + 1 : start;
+        if (index == end) {
+            return Optional.empty();
+        }
+        long result = 0;
+        for (; index < end; index++) {
+            final int digit = buffer.get(index) - '0';
+            if (digit < 0 || digit > 9 || result > (Long.MAX_VALUE - digit) / 10) {
+                return Optional.empty();
+            }
+            result = result * 10 + digit;
+        }
+        return Optional.of(negative ? -result : result);
+    }
+
+    /**
+     * Same rules as {@link CookieDomainParser}: the leading dot is removed and the domain is lower-cased.
+     * Domains with non US-ASCII bytes are converted by {@link HostCanonicalizer}
+     */
+    @NonNull
+    private Optional<String> parseDomain(int start, int end) {
+        if (start == end) {
+            return Optional.empty();
+        }
+        if (buffer.get(start) == '.') {
+            start++;
+        }
+        final byte[] bytes = new byte[end - start];
+        boolean ascii = true;
+        for (int i = 0; i < bytes.length; i++) {
+            final byte b = buffer.get(start + i);
+            bytes[i] = b >= 'A' && b <= 'Z' ? (byte) (b | 0x20) : b;
+            ascii &= b >= 0;
+        }
+        final String domain = new String(bytes, StandardCharsets.ISO_8859_1);
+        return Optional.of(ascii ? domain : HostCanonicalizer.canonicalize(domain));
+    }
+
+    private boolean matches(@NonNull byte[] lowerCaseName, int start, int end) {
+        if (end - start != lowerCaseName.length) {
+            return false;
+        }
+        for (int i = 0; i < lowerCaseName.length; i++) {
+            final byte b = buffer.get(start + i);
+            final byte lower = b >= 'A' && b <= 'Z' ? (byte) (b | 0x20) : b;
+            if (lower != lowerCaseName[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @NonNull
+    private String decode(int start, int end) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + start, end - start, StandardCharsets.ISO_8859_1);
+        }
+        final byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * @return the index of the first occurrence of the byte in the range, or the end of the range
+     */
+    private int indexOf(byte value, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private int skipWhitespaces(int start, int end) {
+        while (start < end && isWhitespace(buffer.get(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    private int trimWhitespaces(int start, int end) {
+        while (end > start && isWhitespace(buffer.get(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Same as {@link Character#isWhitespace(char)} for US-ASCII characters, as used by {@link String#strip()}
+     */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || (b >= 0x09 && b <= 0x0D) || (b >= 0x1C && b <= 0x1F);
+    }
+}
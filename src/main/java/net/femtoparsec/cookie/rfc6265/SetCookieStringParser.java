@@ -94,7 +94,7 @@ public class SetCookieStringParser {
         final String name;
         final String value;
         if (equalIndex < 0) {
-            name = token;
+            name = token.strip();
             value = "";
         } else {
             name = token.substring(0,equalIndex).strip();
@@ -0,0 +1,239 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieQuery;
+import net.femtoparsec.cookie.CookieStore;
+import net.femtoparsec.cookie.RequestInfo;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A store split in {@link InMemoryCookieStore} shards by cookie domain. Requests only lock the shards
+ * of the host name and of its parent domains. Bulk operations ({@link #getAllCookies()}, {@link #initialize(Collection)},
+ * {@link #cleanUp(Instant)}, {@link #clean()} and the queries that are not limited to an exact domain) process the shards in parallel with an executor, each shard
+ * being locked only while it is processed. Bulk operations are therefore not atomic for the whole store.
+ */
+public class ShardedCookieStore implements CookieStore {
+
+    @NonNull
+    private final InMemoryCookieStore[] shards;
+
+    @NonNull
+    private final Executor executor;
+
+    private final int mask;
+
+    /**
+     * Create a store with four shards per available processor, using the common pool for bulk operations
+     */
+    public ShardedCookieStore() {
+        this(Runtime.getRuntime().availableProcessors() * 4, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param shardCount the number of shards, rounded up to a power of two
+     * @param executor the executor used to run bulk operations
+     */
+    public ShardedCookieStore(int shardCount, @NonNull Executor executor) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("The number of shards must be positive: " + shardCount);
+        }
+        final int size = shardCount == 1 ? 1 : Integer.highestOneBit(shardCount - 1) << 1;
+        this.shards = new InMemoryCookieStore[size];
+        for (int i = 0; i < size; i++) {
+            this.shards[i] = new InMemoryCookieStore();
+        }
+        this.mask = size - 1;
+        this.executor = executor;
+    }
+
+    @NonNull
+    @Override
+    public List<Cookie> getAllCookies() {
+        return onShardsOf(CookieQuery.all(), CookieStore::getAllCookies);
+    }
+
+    @Override
+    public @NonNull Optional<Cookie> find(@NonNull Cookie key) {
+        return shardOf(key.domain()).find(key);
+    }
+
+    @Override
+    public void initialize(@NonNull Collection<Cookie> cookies) {
+        final List<List<Cookie>> byShard = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            byShard.add(new ArrayList<>());
+        }
+        cookies.forEach(c -> byShard.get(indexOf(c.domain())).add(c));
+        onAllShards((shard, index) -> shard.initialize(byShard.get(index)));
+    }
+
+    @Override
+    public void cleanUp(@NonNull Instant now) {
+        onAllShards((shard, index) -> shard.cleanUp(now));
+    }
+
+    @Override
+    public void clean() {
+        onAllShards((shard, index) -> shard.clean());
+    }
+
+    @Override
+    public void remove(@NonNull RequestInfo requestInfo) {
+        forEachCandidateShard(requestInfo, shard -> shard.remove(requestInfo));
+    }
+
+    @Override
+    public @NonNull List<Cookie> getCookies(@NonNull RequestInfo requestInfo, @NonNull Instant now) {
+        final List<Cookie> result = new ArrayList<>();
+        forEachCandidateShard(requestInfo, shard -> result.addAll(shard.getCookies(requestInfo, now)));
+        return result;
+    }
+
+    @Override
+    public @NonNull List<Cookie> getCookies(@NonNull RequestInfo requestInfo, long nowMillis) {
+        final List<Cookie> result = new ArrayList<>();
+        forEachCandidateShard(requestInfo, shard -> result.addAll(shard.getCookies(requestInfo, nowMillis)));
+        return result;
+    }
+
+    @Override
+    public void addCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, @NonNull Instant now) {
+        shardOf(cookie.domain()).addCookie(requestInfo, cookie, now);
+    }
+
+    @Override
+    public void addCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, long nowMillis) {
+        shardOf(cookie.domain()).addCookie(requestInfo, cookie, nowMillis);
+    }
+
+    @Override
+    public @NonNull List<Cookie> query(@NonNull CookieQuery query) {
+        return onShardsOf(query, shard -> shard.query(query));
+    }
+
+    @Override
+    public @NonNull List<Cookie> remove(@NonNull CookieQuery query) {
+        return onShardsOf(query, shard -> shard.remove(query));
+    }
+
+    /**
+     * Run the action on the only shard that can hold the cookies of an exact domain query,
+     * on all the shards in parallel otherwise
+     */
+    @NonNull
+    private List<Cookie> onShardsOf(@NonNull CookieQuery query, @NonNull Function<InMemoryCookieStore,List<Cookie>> action) {
+        if (query.domain() != null && !query.includeSubdomains()) {
+            return action.apply(shardOf(query.domain()));
+        }
+        final List<List<Cookie>> parts = onAllShards(action);
+        final List<Cookie> result = new ArrayList<>(parts.stream().mapToInt(List::size).sum());
+        parts.forEach(result::addAll);
+        return result;
+    }
+
+    /**
+     * Call the action once on each shard that could contain cookies for the request:
+     * the shards of the host name and of all its parent domains.
+     */
+    private void forEachCandidateShard(@NonNull RequestInfo requestInfo, @NonNull Consumer<InMemoryCookieStore> action) {
+        final String hostName = requestInfo.hostName();
+        final int[] visited = new int[countLabels(hostName)];
+        int nbVisited = 0;
+        int start = 0;
+        while (start >= 0) {
+            final int index = indexOf(hostName.substring(start));
+            if (!contains(visited, nbVisited, index)) {
+                visited[nbVisited++] = index;
+                action.accept(shards[index]);
+            }
+            final int dot = hostName.indexOf('.', start);
+            start = dot < 0 ? -1 : dot + 1;
+        }
+    }
+
+    private static int countLabels(@NonNull String hostName) {
+        int count = 1;
+        for (int i = 0; i < hostName.length(); i++) {
+            if (hostName.charAt(i) == '.') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean contains(@NonNull int[] values, int length, int value) {
+        for (int i = 0; i < length; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @NonNull
+    private <T> List<T> onAllShards(@NonNull Function<InMemoryCookieStore,T> action) {
+        final List<CompletableFuture<T>> futures = new ArrayList<>(shards.length);
+        for (InMemoryCookieStore shard : shards) {
+            futures.add(CompletableFuture.supplyAsync(() -> action.apply(shard), executor));
+        }
+        final List<T> result = new ArrayList<>(shards.length);
+        futures.forEach(f -> result.add(f.join()));
+        return result;
+    }
+
+    private void onAllShards(@NonNull ShardAction action) {
+        final CompletableFuture<?>[] futures = new CompletableFuture<?>[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            final int index = i;
+            futures[i] = CompletableFuture.runAsync(() -> action.apply(shards[index], index), executor);
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+
+    @NonNull
+    private InMemoryCookieStore shardOf(@NonNull String domain) {
+        return shards[indexOf(domain)];
+    }
+
+    private int indexOf(@NonNull String domain) {
+        final int hash = domain.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private interface ShardAction {
+        void apply(@NonNull InMemoryCookieStore shard, int index);
+    }
+}
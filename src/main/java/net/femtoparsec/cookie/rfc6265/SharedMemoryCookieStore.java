@@ -0,0 +1,480 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieQuery;
+import net.femtoparsec.cookie.FlushableCookieStore;
+import net.femtoparsec.cookie.RequestInfo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * A store whose cookies live in a memory-mapped file shared by several processes.
+ * <p>
+ * The segment starts with a header holding a sequence number, followed by the cookies serialized
+ * with {@link CookieLineFormat}. Writers are serialized by a lock on the header region of the file
+ * (and by a lock shared by the stores of the JVM mapping the same file, file locks being held by the whole JVM) and rewrite the whole jar. The sequence
+ * number is odd while a write is in progress (seqlock). Readers do not lock: they keep a local copy of
+ * the jar and reload it only when the sequence number changed.
+ * <p>
+ * When the cookies do not fit in the segment, the least recently accessed ones are evicted. A cookie too large
+ * to fit alone is not stored.
+ * <p>
+ * This store is intended for the small jars of a client shared by a few processes on the same host.
+ */
+public class SharedMemoryCookieStore implements FlushableCookieStore {
+
+    private static final int MAGIC = 0x46504343;
+    private static final int VERSION = 1;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int SEQUENCE_OFFSET = 8;
+    private static final int LENGTH_OFFSET = 16;
+    private static final int HEADER_SIZE = 64;
+
+    private static final int SPIN_LIMIT = 1024;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    @NonNull
+    private final FileChannel channel;
+
+    @NonNull
+    private final MappedByteBuffer buffer;
+
+    private final int capacity;
+
+    /**
+     * The local writer locks, by real path of the mapped files. An entry is removed when the last
+     * store mapping its file is closed.
+     */
+    private static final Map<Path,WriteLock> WRITE_LOCKS = new ConcurrentHashMap<>();
+
+    @NonNull
+    private final Path realPath;
+
+    @NonNull
+    private final WriteLock writeLock;
+
+    private boolean closed = false;
+
+    @NonNull
+    private volatile Snapshot snapshot = new Snapshot(-1, Map.of());
+
+    /**
+     * Open or create a shared segment. The capacity of an existing segment is kept.
+     * @param file the file to map
+     * @param capacity the maximal number of bytes of the serialized cookies
+     * @throws IOException if the file could not be mapped or is not a cookie segment
+     */
+    public SharedMemoryCookieStore(@NonNull Path file, int capacity) throws IOException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be positive: " + capacity);
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            this.realPath = file.toRealPath();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.writeLock = acquireWriteLock(realPath);
+        this.writeLock.lock();
+        FileLock fileLock = null;
+        try {
+            fileLock = channel.lock(0, HEADER_SIZE, false);
+            final long size = channel.size();
+            final long segmentSize = size == 0 ? (long) HEADER_SIZE + capacity : size;
+            if (segmentSize <= HEADER_SIZE || segmentSize > Integer.MAX_VALUE) {
+                throw new IOException("Invalid cookie segment size: " + segmentSize);
+            }
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            this.buffer.order(ByteOrder.nativeOrder());
+            this.capacity = (int) segmentSize - HEADER_SIZE;
+            if (size == 0) {
+                buffer.putInt(MAGIC_OFFSET, MAGIC);
+                buffer.putInt(VERSION_OFFSET, VERSION);
+                buffer.putInt(LENGTH_OFFSET, 0);
+                LONGS.setVolatile(buffer, SEQUENCE_OFFSET, 0L);
+            } else if (buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(VERSION_OFFSET) != VERSION) {
+                throw new IOException("Not a cookie segment: " + file);
+            }
+            fileLock.release();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            writeLock.unlock();
+            releaseWriteLock(realPath);
+            throw e;
+        }
+        writeLock.unlock();
+    }
+
+    @NonNull
+    @Override
+    public List<Cookie> getAllCookies() {
+        return new ArrayList<>(current().cookies.values());
+    }
+
+    @Override
+    public @NonNull Optional<Cookie> find(@NonNull Cookie key) {
+        return Optional.ofNullable(current().cookies.get(key));
+    }
+
+    @Override
+    public @NonNull List<Cookie> getCookies(@NonNull RequestInfo requestInfo, @NonNull Instant now) {
+        final List<Cookie> result = new ArrayList<>();
+        for (Cookie cookie : current().cookies.values()) {
+            if (!cookie.isExpired(now) && requestInfo.isMyCookie(cookie)) {
+                result.add(cookie);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void initialize(@NonNull Collection<Cookie> cookies) {
+        update(map -> {
+            map.clear();
+            cookies.forEach(c -> map.put(c, c));
+            return true;
+        });
+    }
+
+    @Override
+    public void cleanUp(@NonNull Instant now) {
+        update(map -> map.values().removeIf(c -> c.isExpired(now)));
+    }
+
+    @Override
+    public void clean() {
+        update(map -> {
+            final boolean changed = !map.isEmpty();
+            map.clear();
+            return changed;
+        });
+    }
+
+    @Override
+    public void remove(@NonNull RequestInfo requestInfo) {
+        update(map -> map.values().removeIf(requestInfo::isMyCookie));
+    }
+
+    @Override
+    public @NonNull List<Cookie> remove(@NonNull CookieQuery query) {
+        final List<Cookie> removed = new ArrayList<>();
+        update(map -> {
+            removed.clear();
+            return map.values().removeIf(c -> query.matches(c) && removed.add(c));
+        });
+        return removed;
+    }
+
+    @Override
+    public void addCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, @NonNull Instant now) {
+        update(map -> {
+            if (cookie.isExpired(now)) {
+                return map.remove(cookie) != null;
+            }
+            final Cookie oldCookie = map.get(cookie);
+            if (oldCookie == null) {
+                map.put(cookie, cookie);
+                return true;
+            }
+            if (oldCookie.httpOnly() && !requestInfo.http()) {
+                return false;
+            }
+            final Cookie newCookie = cookie.withCreationTimeMillis(oldCookie.creationTimeMillis());
+            if (newCookie.isExpired(now)) {
+                return false;
+            }
+            map.put(newCookie, newCookie);
+            return true;
+        });
+    }
+
+    /**
+     * Force the content of the segment to the storage device
+     */
+    @Override
+    public void flush() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            releaseWriteLock(realPath);
+        }
+    }
+
+    /**
+     * @return the number of files for which this JVM holds a writer lock
+     */
+    static int writeLockCount() {
+        return WRITE_LOCKS.size();
+    }
+
+    @NonNull
+    private static WriteLock acquireWriteLock(@NonNull Path realPath) {
+        return WRITE_LOCKS.compute(realPath, (p, lock) -> {
+            final WriteLock result = lock == null ? new WriteLock() : lock;
+            result.users++;
+            return result;
+        });
+    }
+
+    private static void releaseWriteLock(@NonNull Path realPath) {
+        WRITE_LOCKS.computeIfPresent(realPath, (p, lock) -> --lock.users == 0 ? null : lock);
+    }
+
+    /**
+     * @return the current content of the segment, reloaded if another writer changed it
+     */
+    @NonNull
+    private Snapshot current() {
+        final Snapshot local = snapshot;
+        for (int spin = 0; spin < SPIN_LIMIT; spin++) {
+            final long before = (long) LONGS.getVolatile(buffer, SEQUENCE_OFFSET);
+            if (before == local.sequence) {
+                return local;
+            }
+            if ((before & 1) == 0) {
+                final byte[] data = readData();
+                VarHandle.acquireFence();
+                final long after = (long) LONGS.getVolatile(buffer, SEQUENCE_OFFSET);
+                if (data != null && before == after) {
+                    final Snapshot loaded = new Snapshot(before, parse(data));
+                    snapshot = loaded;
+                    return loaded;
+                }
+            }
+            Thread.onSpinWait();
+        }
+        return lockedRead();
+    }
+
+    /**
+     * Read the segment while holding the writer locks. Used when a reader could not get
+     * a consistent read, for instance because a writer died in the middle of a write.
+     */
+    @NonNull
+    private Snapshot lockedRead() {
+        writeLock.lock();
+        try {
+            final FileLock fileLock = channel.lock(0, HEADER_SIZE, false);
+            try {
+                return readRepairing();
+            } finally {
+                fileLock.release();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Apply a mutation to the segment
+     * @param mutation the mutation, that returns false if it did not change the cookies
+     */
+    private void update(@NonNull Predicate<Map<Cookie,Cookie>> mutation) {
+        writeLock.lock();
+        try {
+            final FileLock fileLock = channel.lock(0, HEADER_SIZE, false);
+            try {
+                final Snapshot current = readRepairing();
+                final Map<Cookie,Cookie> cookies = new HashMap<>(current.cookies);
+                if (mutation.test(cookies)) {
+                    write(current.sequence, cookies);
+                }
+            } finally {
+                fileLock.release();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Must be called with the writer locks held. A segment left with an odd sequence number by a dead
+     * writer is rewritten with the cookies that can still be parsed.
+     */
+    @NonNull
+    private Snapshot readRepairing() {
+        final long sequence = (long) LONGS.getVolatile(buffer, SEQUENCE_OFFSET);
+        final Snapshot local = snapshot;
+        if (sequence == local.sequence) {
+            return local;
+        }
+        final byte[] data = readData();
+        final Map<Cookie,Cookie> cookies = data == null ? Map.of() : parse(data);
+        if ((sequence & 1) == 0) {
+            final Snapshot loaded = new Snapshot(sequence, cookies);
+            snapshot = loaded;
+            return loaded;
+        }
+        write(sequence - 1, new HashMap<>(cookies));
+        return snapshot;
+    }
+
+    /**
+     * Must be called with the writer locks held. The least recently accessed cookies are evicted
+     * if the cookies do not fit in the segment.
+     * @param sequence the current (even) sequence number
+     */
+    private void write(long sequence, @NonNull Map<Cookie,Cookie> cookies) {
+        final byte[] data = serialize(cookies, capacity);
+        LONGS.setVolatile(buffer, SEQUENCE_OFFSET, sequence + 1);
+        // the odd sequence number must be visible before any byte of the data
+        VarHandle.storeStoreFence();
+        final ByteBuffer target = buffer.duplicate();
+        target.position(HEADER_SIZE);
+        target.put(data);
+        buffer.putInt(LENGTH_OFFSET, data.length);
+        // the data must be visible before the even sequence number
+        VarHandle.releaseFence();
+        LONGS.setVolatile(buffer, SEQUENCE_OFFSET, sequence + 2);
+        snapshot = new Snapshot(sequence + 2, Collections.unmodifiableMap(cookies));
+    }
+
+    /**
+     * @return the serialized cookies, null if the length in the header is invalid (concurrent write)
+     */
+    private byte[] readData() {
+        final int length = buffer.getInt(LENGTH_OFFSET);
+        if (length < 0 || length > capacity) {
+            return null;
+        }
+        final byte[] data = new byte[length];
+        final ByteBuffer source = buffer.duplicate();
+        source.position(HEADER_SIZE);
+        source.get(data);
+        return data;
+    }
+
+    /**
+     * @param cookies the cookies to serialize, the evicted ones are removed from the map. The cookies too large
+     *                to fit alone are evicted first, then the least recently accessed ones
+     * @param capacity the maximal size of the result
+     * @return the serialized cookies
+     */
+    @NonNull
+    private static byte[] serialize(@NonNull Map<Cookie,Cookie> cookies, int capacity) {
+        final Map<Cookie,byte[]> lines = new LinkedHashMap<>();
+        long size = 0;
+        final Iterator<Cookie> itr = cookies.values().iterator();
+        while (itr.hasNext()) {
+            final Cookie cookie = itr.next();
+            final byte[] line = (CookieLineFormat.format(cookie) + '\n').getBytes(StandardCharsets.UTF_8);
+            if (line.length > capacity) {
+                itr.remove();
+            } else {
+                lines.put(cookie, line);
+                size += line.length;
+            }
+        }
+        if (size > capacity) {
+            final List<Cookie> byAccess = new ArrayList<>(cookies.values());
+            byAccess.sort(Comparator.comparingLong(Cookie::lastAccessTimeMillis).thenComparingLong(Cookie::creationTimeMillis));
+            for (int i = 0; i < byAccess.size() && size > capacity; i++) {
+                final Cookie evicted = byAccess.get(i);
+                size -= lines.remove(evicted).length;
+                cookies.remove(evicted);
+            }
+        }
+        final ByteArrayOutputStream output = new ByteArrayOutputStream((int) size);
+        lines.values().forEach(line -> output.write(line, 0, line.length));
+        return output.toByteArray();
+    }
+
+    @NonNull
+    private static Map<Cookie,Cookie> parse(@NonNull byte[] data) {
+        final String content = new String(data, StandardCharsets.UTF_8);
+        final Map<Cookie,Cookie> cookies = new HashMap<>();
+        int start = 0;
+        while (start < content.length()) {
+            int end = content.indexOf('\n', start);
+            if (end < 0) {
+                end = content.length();
+            }
+            CookieLineFormat.parse(content.substring(start, end)).ifPresent(c -> cookies.put(c, c));
+            start = end + 1;
+        }
+        return Collections.unmodifiableMap(cookies);
+    }
+
+    @RequiredArgsConstructor
+    private static class Snapshot {
+
+        private final long sequence;
+
+        @NonNull
+        private final Map<Cookie,Cookie> cookies;
+    }
+
+    /**
+     * A writer lock shared by the stores mapping the same file, with the number of these stores.
+     * The number is only accessed in the remapping functions of {@link #WRITE_LOCKS}.
+     */
+    private static class WriteLock extends ReentrantLock {
+
+        private int users;
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieQuery;
+import net.femtoparsec.cookie.CookieStore;
+import net.femtoparsec.cookie.PartitionedCookieStore;
+import net.femtoparsec.cookie.RequestInfo;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A store keeping the unpartitioned cookies in one store and the partitioned cookies in one store per
+ * top-level site. Requests only touch the unpartitioned store and the store of their top-level site, and
+ * a partition is dropped by removing its store. Partitions left empty by a clean up are dropped too.
+ * <p>
+ * Modifications of a partition are done while holding the lock of its map entry, so that they cannot race with
+ * the dropping of the partition.
+ */
+public class SitePartitionedCookieStore implements PartitionedCookieStore {
+
+    @NonNull
+    private final Supplier<? extends CookieStore> storeFactory;
+
+    @NonNull
+    private final CookieStore unpartitioned;
+
+    @NonNull
+    private final ConcurrentMap<String,CookieStore> partitions = new ConcurrentHashMap<>();
+
+    /**
+     * Create a store whose partitions are {@link InMemoryCookieStore}s
+     */
+    public SitePartitionedCookieStore() {
+        this(InMemoryCookieStore::new);
+    }
+
+    /**
+     * @param storeFactory the factory of the store of the unpartitioned cookies and of the stores of the partitions
+     */
+    public SitePartitionedCookieStore(@NonNull Supplier<? extends CookieStore> storeFactory) {
+        this.storeFactory = storeFactory;
+        this.unpartitioned = storeFactory.get();
+    }
+
+    @Override
+    public @NonNull Set<String> partitionKeys() {
+        return Collections.unmodifiableSet(partitions.keySet());
+    }
+
+    @Override
+    public boolean dropPartition(@NonNull String partitionKey) {
+        return partitions.remove(partitionKey) != null;
+    }
+
+    @Override
+    public @NonNull List<Cookie> getAllCookies() {
+        return onAllStores(CookieStore::getAllCookies);
+    }
+
+    @Override
+    public @NonNull Optional<Cookie> find(@NonNull Cookie key) {
+        if (!key.isPartitioned()) {
+            return unpartitioned.find(key);
+        }
+        final CookieStore partition = partitions.get(key.partitionKey());
+        return partition == null ? Optional.empty() : partition.find(key);
+    }
+
+    @Override
+    public void initialize(@NonNull Collection<Cookie> cookies) {
+        final Map<String,List<Cookie>> byPartition = new HashMap<>();
+        final List<Cookie> unpartitionedCookies = new ArrayList<>();
+        for (Cookie cookie : cookies) {
+            if (cookie.isPartitioned()) {
+                byPartition.computeIfAbsent(cookie.partitionKey(), k -> new ArrayList<>()).add(cookie);
+            } else {
+                unpartitionedCookies.add(cookie);
+            }
+        }
+        unpartitioned.initialize(unpartitionedCookies);
+        partitions.keySet().retainAll(byPartition.keySet());
+        byPartition.forEach((key, partitionCookies) -> partitions.compute(key, (k, partition) -> {
+            final CookieStore store = partition == null ? storeFactory.get() : partition;
+            store.initialize(partitionCookies);
+            return store;
+        }));
+    }
+
+    @Override
+    public @NonNull List<Cookie> getCookies(@NonNull RequestInfo requestInfo, @NonNull Instant now) {
+        return getCookies(requestInfo, now.toEpochMilli());
+    }
+
+    @Override
+    public @NonNull List<Cookie> getCookies(@NonNull RequestInfo requestInfo, long nowMillis) {
+        final List<Cookie> cookies = unpartitioned.getCookies(requestInfo, nowMillis);
+        final CookieStore partition = partitions.get(requestInfo.topLevelSite());
+        if (partition == null) {
+            return cookies;
+        }
+        final List<Cookie> partitioned = partition.getCookies(requestInfo, nowMillis);
+        if (partitioned.isEmpty()) {
+            return cookies;
+        }
+        final List<Cookie> result = new ArrayList<>(cookies.size() + partitioned.size());
+        result.addAll(cookies);
+        result.addAll(partitioned);
+        return result;
+    }
+
+    @Override
+    public void cleanUp(@NonNull Instant now) {
+        cleanUp(now.toEpochMilli());
+    }
+
+    @Override
+    public void cleanUp(long nowMillis) {
+        unpartitioned.cleanUp(nowMillis);
+        for (String key : partitions.keySet()) {
+            partitions.computeIfPresent(key, (k, partition) -> {
+                partition.cleanUp(nowMillis);
+                return partition.getAllCookies().isEmpty() ? null : partition;
+            });
+        }
+    }
+
+    @Override
+    public void addCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, @NonNull Instant now) {
+        addCookie(requestInfo, cookie, now.toEpochMilli());
+    }
+
+    @Override
+    public void addCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, long nowMillis) {
+        if (!cookie.isPartitioned()) {
+            unpartitioned.addCookie(requestInfo, cookie, nowMillis);
+            return;
+        }
+        partitions.compute(cookie.partitionKey(), (k, partition) -> {
+            final CookieStore store = partition == null ? storeFactory.get() : partition;
+            store.addCookie(requestInfo, cookie, nowMillis);
+            return store;
+        });
+    }
+
+    @Override
+    public void remove(@NonNull RequestInfo requestInfo) {
+        unpartitioned.remove(requestInfo);
+        partitions.computeIfPresent(requestInfo.topLevelSite(), (k, partition) -> {
+            partition.remove(requestInfo);
+            return partition;
+        });
+    }
+
+    @Override
+    public void clean() {
+        unpartitioned.clean();
+        partitions.clear();
+    }
+
+    @Override
+    public @NonNull List<Cookie> query(@NonNull CookieQuery query) {
+        return onAllStores(store -> store.query(query));
+    }
+
+    @Override
+    public @NonNull List<Cookie> remove(@NonNull CookieQuery query) {
+        final List<Cookie> removed = new ArrayList<>(unpartitioned.remove(query));
+        for (String key : partitions.keySet()) {
+            partitions.computeIfPresent(key, (k, partition) -> {
+                removed.addAll(partition.remove(query));
+                return partition;
+            });
+        }
+        return removed;
+    }
+
+    @NonNull
+    private List<Cookie> onAllStores(@NonNull Function<CookieStore,List<Cookie>> action) {
+        final List<Cookie> result = new ArrayList<>(action.apply(unpartitioned));
+        for (CookieStore partition : partitions.values()) {
+            result.addAll(action.apply(partition));
+        }
+        return result;
+    }
+}
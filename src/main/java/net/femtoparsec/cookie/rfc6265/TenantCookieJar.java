@@ -0,0 +1,232 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieQuery;
+import net.femtoparsec.cookie.CookieStore;
+import net.femtoparsec.cookie.RequestInfo;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * The store of a tenant of {@link InMemoryMultiTenantCookieStore}. A tenant usually has a few cookies
+ * so, unlike {@link InMemoryCookieStore}, the jar has no secondary indexes, no change journal and a single
+ * lock: its only structure is a map of the cookies by lower-cased domain, that also serves the lookups
+ * of a request. Expired cookies are removed when they are found by a lookup or by {@link #cleanUp(long)}.
+ */
+class TenantCookieJar implements CookieStore {
+
+    @NonNull
+    private final Map<String,Map<Cookie,Cookie>> cookiesByDomain = new HashMap<>();
+
+    private final Lock lock = new ReentrantLock();
+
+    @Override
+    public @NonNull List<Cookie> getAllCookies() {
+        lock.lock();
+        try {
+            final List<Cookie> result = new ArrayList<>();
+            cookiesByDomain.values().forEach(cookies -> result.addAll(cookies.values()));
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public @NonNull Optional<Cookie> find(@NonNull Cookie key) {
+        lock.lock();
+        try {
+            final Map<Cookie,Cookie> cookies = cookiesByDomain.get(domainKey(key.domain()));
+            return cookies == null ? Optional.empty() : Optional.ofNullable(cookies.get(key));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void initialize(@NonNull Collection<Cookie> cookies) {
+        lock.lock();
+        try {
+            cookiesByDomain.clear();
+            cookies.forEach(cookie -> domainCookies(cookie).put(cookie, cookie));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public @NonNull List<Cookie> getCookies(@NonNull RequestInfo requestInfo, @NonNull Instant now) {
+        return getCookies(requestInfo, now.toEpochMilli());
+    }
+
+    @Override
+    public @NonNull List<Cookie> getCookies(@NonNull RequestInfo requestInfo, long now) {
+        final String hostName = requestInfo.hostName();
+        final List<Cookie> result = new ArrayList<>();
+        lock.lock();
+        try {
+            if (cookiesByDomain.isEmpty()) {
+                return result;
+            }
+            collect(hostName, requestInfo, now, result);
+            int dot = hostName.indexOf('.');
+            while (dot >= 0) {
+                collect(hostName.substring(dot + 1), requestInfo, now, result);
+                dot = hostName.indexOf('.', dot + 1);
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Must be called with the lock held
+     */
+    private void collect(@NonNull String domain, @NonNull RequestInfo requestInfo, long now, @NonNull List<Cookie> result) {
+        final Map<Cookie,Cookie> cookies = cookiesByDomain.get(domain);
+        if (cookies == null) {
+            return;
+        }
+        final Iterator<Cookie> itr = cookies.values().iterator();
+        while (itr.hasNext()) {
+            final Cookie cookie = itr.next();
+            if (cookie.isExpired(now)) {
+                itr.remove();
+            } else if (requestInfo.isMyCookie(cookie)) {
+                result.add(cookie);
+            }
+        }
+        if (cookies.isEmpty()) {
+            cookiesByDomain.remove(domain);
+        }
+    }
+
+    @Override
+    public void cleanUp(@NonNull Instant now) {
+        cleanUp(now.toEpochMilli());
+    }
+
+    @Override
+    public void cleanUp(long now) {
+        removeIf(cookie -> cookie.isExpired(now));
+    }
+
+    @Override
+    public void addCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, @NonNull Instant now) {
+        addCookie(requestInfo, cookie, now.toEpochMilli());
+    }
+
+    @Override
+    public void addCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, long now) {
+        lock.lock();
+        try {
+            final Map<Cookie,Cookie> cookies = domainCookies(cookie);
+            final Cookie oldCookie = cookies.get(cookie);
+            if (cookie.isExpired(now)) {
+                cookies.remove(cookie);
+            } else if (oldCookie == null) {
+                cookies.put(cookie, cookie);
+            } else if (!oldCookie.httpOnly() || requestInfo.http()) {
+                final Cookie newCookie = cookie.withCreationTimeMillis(oldCookie.creationTimeMillis());
+                if (!newCookie.isExpired(now)) {
+                    cookies.put(cookie, newCookie);
+                }
+            }
+            if (cookies.isEmpty()) {
+                cookiesByDomain.remove(domainKey(cookie.domain()));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void remove(@NonNull RequestInfo requestInfo) {
+        removeIf(requestInfo::isMyCookie);
+    }
+
+    @Override
+    public void clean() {
+        lock.lock();
+        try {
+            cookiesByDomain.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public @NonNull List<Cookie> remove(@NonNull CookieQuery query) {
+        return removeIf(query::matches);
+    }
+
+    /**
+     * Must be called with the lock held
+     */
+    @NonNull
+    private Map<Cookie,Cookie> domainCookies(@NonNull Cookie cookie) {
+        return cookiesByDomain.computeIfAbsent(domainKey(cookie.domain()), d -> new HashMap<>());
+    }
+
+    @NonNull
+    private List<Cookie> removeIf(@NonNull Predicate<? super Cookie> filter) {
+        final List<Cookie> removed = new ArrayList<>();
+        lock.lock();
+        try {
+            final Iterator<Map<Cookie,Cookie>> domains = cookiesByDomain.values().iterator();
+            while (domains.hasNext()) {
+                final Map<Cookie,Cookie> cookies = domains.next();
+                final Iterator<Cookie> itr = cookies.values().iterator();
+                while (itr.hasNext()) {
+                    final Cookie cookie = itr.next();
+                    if (filter.test(cookie)) {
+                        itr.remove();
+                        removed.add(cookie);
+                    }
+                }
+                if (cookies.isEmpty()) {
+                    domains.remove();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return removed;
+    }
+
+    @NonNull
+    private static String domainKey(@NonNull String domain) {
+        return domain.toLowerCase(Locale.ROOT);
+    }
+}
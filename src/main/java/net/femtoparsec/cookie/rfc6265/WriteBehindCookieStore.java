@@ -0,0 +1,419 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieChangeEvent;
+import net.femtoparsec.cookie.CookiePersister;
+import net.femtoparsec.cookie.CookieQuery;
+import net.femtoparsec.cookie.CookieStore;
+import net.femtoparsec.cookie.FlushableCookieStore;
+import net.femtoparsec.cookie.ObservableCookieStore;
+import net.femtoparsec.cookie.RequestInfo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * A store that serves all the requests from a delegate store and persists the modifications
+ * in the background.
+ * <p>
+ * Only the keys (name, domain and path) of the modified cookies are queued, so several modifications
+ * of the same cookie are coalesced. When a batch is flushed, the current state of each queued cookie
+ * is read from the delegate store and sent to the persister. A flush occurs when
+ * the number of queued cookies reaches the batch size or when the oldest modification is older than
+ * the durability window. Writers never block: when the queue holds more than 16 batches, typically because the
+ * persister keeps failing, the queued modifications are coalesced into a rewrite of all the cookies.
+ * <p>
+ * If the delegate is an {@link ObservableCookieStore}, the cookies it expires or evicts by itself are persisted too.
+ * Otherwise, they are only removed from the persisted cookies by {@link #cleanUp(Instant)}.
+ */
+public class WriteBehindCookieStore implements FlushableCookieStore {
+
+    private static final int MAX_PENDING_BATCHES = 16;
+
+    @NonNull
+    private final CookieStore delegate;
+
+    @NonNull
+    private final CookiePersister persister;
+
+    private final int maxBatchSize;
+
+    private final int maxPending;
+
+    private final ScheduledExecutorService executor;
+
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * Held while calling the persister, to serialize the flushes
+     */
+    private final Lock flushLock = new ReentrantLock();
+
+    private Set<Cookie> pendingKeys = new LinkedHashSet<>();
+
+    private boolean pendingReset = false;
+
+    private Instant pendingCleanUp = null;
+
+    private IOException lastFailure = null;
+
+    private volatile Flow.Subscription delegateChanges = null;
+
+    /**
+     * Create a write-behind store. The delegate store is not initialized with the persisted cookies,
+     * use {@link #load()} for this.
+     *
+     * @param delegate the store holding the cookies
+     * @param persister the persister of the modifications
+     * @param durabilityWindow the maximal time a modification stays in memory only
+     * @param maxBatchSize the number of modified cookies that triggers a flush
+     */
+    public WriteBehindCookieStore(@NonNull CookieStore delegate, @NonNull CookiePersister persister,
+                                  @NonNull Duration durabilityWindow, int maxBatchSize) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be positive: " + maxBatchSize);
+        }
+        this.delegate = delegate;
+        this.persister = persister;
+        this.maxBatchSize = maxBatchSize;
+        this.maxPending = maxBatchSize * MAX_PENDING_BATCHES;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "cookie-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final long period = Math.max(1, durabilityWindow.toMillis());
+        this.executor.scheduleWithFixedDelay(this::flushQuietly, period, period, TimeUnit.MILLISECONDS);
+        if (delegate instanceof ObservableCookieStore) {
+            observe((ObservableCookieStore) delegate);
+        }
+    }
+
+    /**
+     * Initialize the delegate store with the persisted cookies
+     * @throws UncheckedIOException if the cookies could not be loaded
+     */
+    public void load() {
+        final Collection<Cookie> cookies;
+        try {
+            cookies = persister.load();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        delegate.initialize(cookies);
+    }
+
+    @Override
+    public @NonNull List<Cookie> getAllCookies() {
+        return delegate.getAllCookies();
+    }
+
+    @Override
+    public @NonNull Optional<Cookie> find(@NonNull Cookie key) {
+        return delegate.find(key);
+    }
+
+    @Override
+    public @NonNull List<Cookie> getCookies(@NonNull RequestInfo requestInfo, @NonNull Instant now) {
+        return delegate.getCookies(requestInfo, now);
+    }
+
+    @Override
+    public @NonNull List<Cookie> getCookies(@NonNull RequestInfo requestInfo, long nowMillis) {
+        return delegate.getCookies(requestInfo, nowMillis);
+    }
+
+    @Override
+    public void initialize(@NonNull Collection<Cookie> cookies) {
+        delegate.initialize(cookies);
+        markReset();
+    }
+
+    @Override
+    public void clean() {
+        delegate.clean();
+        markReset();
+    }
+
+    @Override
+    public void cleanUp(@NonNull Instant now) {
+        delegate.cleanUp(now);
+        lock.lock();
+        try {
+            if (pendingCleanUp == null || pendingCleanUp.isBefore(now)) {
+                pendingCleanUp = now;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void addCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, @NonNull Instant now) {
+        delegate.addCookie(requestInfo, cookie, now);
+        markDirty(List.of(cookie));
+    }
+
+    @Override
+    public void addCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, long nowMillis) {
+        delegate.addCookie(requestInfo, cookie, nowMillis);
+        markDirty(List.of(cookie));
+    }
+
+    @Override
+    public @NonNull List<Cookie> query(@NonNull CookieQuery query) {
+        return delegate.query(query);
+    }
+
+    @Override
+    public @NonNull List<Cookie> remove(@NonNull CookieQuery query) {
+        final List<Cookie> removed = delegate.remove(query);
+        markDirty(removed);
+        return removed;
+    }
+
+    @Override
+    public void remove(@NonNull RequestInfo requestInfo) {
+        final List<Cookie> removed = delegate.getAllCookies()
+                                             .stream()
+                                             .filter(requestInfo::isMyCookie)
+                                             .collect(Collectors.toList());
+        delegate.remove(requestInfo);
+        markDirty(removed);
+    }
+
+    @Override
+    public void flush() {
+        flushLock.lock();
+        try {
+            doFlush();
+            lock.lock();
+            try {
+                if (lastFailure != null) {
+                    final IOException failure = lastFailure;
+                    lastFailure = null;
+                    throw new UncheckedIOException(failure);
+                }
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        final Flow.Subscription subscription = delegateChanges;
+        if (subscription != null) {
+            subscription.cancel();
+        }
+        executor.shutdown();
+        flush();
+    }
+
+    /**
+     * The events are delivered synchronously, on the thread mutating the delegate. A subscriber that missed
+     * events rewrites all the cookies and subscribes again
+     */
+    private void observe(@NonNull ObservableCookieStore observable) {
+        observable.changes(observable.lastSequence() + 1, Runnable::run).subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                delegateChanges = subscription;
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(CookieChangeEvent event) {
+                if (event.type() == CookieChangeEvent.Type.EXPIRED || event.type() == CookieChangeEvent.Type.EVICTED) {
+                    markDirty(List.of(event.cookie()));
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                markReset();
+                if (!executor.isShutdown()) {
+                    executor.execute(() -> observe(observable));
+                }
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+    }
+
+    private void markReset() {
+        lock.lock();
+        try {
+            pendingKeys.clear();
+            pendingReset = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void markDirty(@NonNull Collection<Cookie> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        boolean flushNeeded = false;
+        lock.lock();
+        try {
+            if (pendingReset) {
+                return;
+            }
+            pendingKeys.addAll(keys);
+            if (pendingKeys.size() > maxPending) {
+                pendingKeys.clear();
+                pendingReset = true;
+            }
+            flushNeeded = pendingReset || pendingKeys.size() >= maxBatchSize;
+        } finally {
+            lock.unlock();
+        }
+        if (flushNeeded) {
+            requestFlush();
+        }
+    }
+
+    private void requestFlush() {
+        if (!executor.isShutdown()) {
+            executor.execute(this::flushQuietly);
+        }
+    }
+
+    private void flushQuietly() {
+        flushLock.lock();
+        try {
+            doFlush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Must be called with the flush lock held. Failures are recorded and the modifications
+     * are queued again.
+     */
+    private void doFlush() {
+        final Set<Cookie> keys;
+        final boolean reset;
+        final Instant cleanUp;
+        lock.lock();
+        try {
+            if (pendingKeys.isEmpty() && !pendingReset && pendingCleanUp == null) {
+                return;
+            }
+            keys = pendingKeys;
+            reset = pendingReset;
+            cleanUp = pendingCleanUp;
+            pendingKeys = new LinkedHashSet<>();
+            pendingReset = false;
+            pendingCleanUp = null;
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            if (reset) {
+                persister.replaceAll(delegate.getAllCookies());
+            } else if (!keys.isEmpty()) {
+                final List<Cookie> upserts = new ArrayList<>();
+                final List<Cookie> removals = new ArrayList<>();
+                for (Cookie key : keys) {
+                    final Optional<Cookie> current = delegate.find(key);
+                    if (current.isPresent()) {
+                        upserts.add(current.get());
+                    } else {
+                        removals.add(key);
+                    }
+                }
+                persister.write(upserts, removals);
+            }
+            if (cleanUp != null) {
+                persister.removeExpired(cleanUp);
+            }
+            clearFailure();
+        } catch (IOException e) {
+            requeue(keys, reset, cleanUp, e);
+        }
+    }
+
+    /**
+     * The modifications of a failed flush are queued again, so a successful flush persists them
+     */
+    private void clearFailure() {
+        lock.lock();
+        try {
+            lastFailure = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The failed batch is merged with the modifications queued since, and coalesced into a rewrite
+     * of all the cookies if they do not fit in the queue
+     */
+    private void requeue(@NonNull Set<Cookie> keys, boolean reset, Instant cleanUp, @NonNull IOException failure) {
+        lock.lock();
+        try {
+            lastFailure = failure;
+            if (reset || pendingReset) {
+                pendingReset = true;
+                pendingKeys.clear();
+            } else {
+                keys.addAll(pendingKeys);
+                pendingKeys = keys;
+                if (pendingKeys.size() > maxPending) {
+                    pendingKeys.clear();
+                    pendingReset = true;
+                }
+            }
+            if (cleanUp != null && (pendingCleanUp == null || pendingCleanUp.isBefore(cleanUp))) {
+                pendingCleanUp = cleanUp;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie;
+
+import net.femtoparsec.cookie.rfc6265.CookieDateParser;
+import net.femtoparsec.cookie.rfc6265.CookieParser;
+import net.femtoparsec.cookie.rfc6265.SetCookieStringParser;
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Check that the number of bytes allocated by the main operations stays under a budget.
+ * A failure means that a change increased the allocation rate of a hot path. If the increase
+ * is expected, update the budget.
+ */
+public class AllocationBudgetTest {
+
+    private static final int WARMUP_ITERATIONS = 50_000;
+    private static final int MEASURED_ITERATIONS = 20_000;
+
+    private static final URI HIT_URI = URI.create("https://www.example.com/account/settings");
+    private static final URI MISS_URI = URI.create("https://cdn.example.org/img/logo.png");
+    private static final String SET_COOKIE = "SID=31d4d96e407aad42; Path=/; Domain=example.com; Max-Age=3600; Secure; HttpOnly";
+    private static final String COOKIE_DATE = "Wed, 08-Jan-2020 08:04:08 GMT";
+
+    private com.sun.management.ThreadMXBean threadMXBean;
+
+    private CookieManager cookieManager;
+
+    private Object sink;
+
+    @BeforeClass
+    public void setUp() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            throw new SkipException("Thread allocation measurement is not supported by this JVM");
+        }
+        threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threadMXBean.isThreadAllocatedMemorySupported()) {
+            throw new SkipException("Thread allocation measurement is not supported by this JVM");
+        }
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        cookieManager = CookieManager.create();
+        cookieManager.put(HIT_URI, Map.of("Set-Cookie", List.of(
+                SET_COOKIE,
+                "lang=en; Path=/account",
+                "theme=dark",
+                "_ga=GA1.2.1234567890.1234567890; Domain=example.com; Expires=Wed, 08-Jan-2100 08:04:08 GMT")));
+        for (int i = 0; i < 100; i++) {
+            final URI uri = URI.create("https://site" + i + ".com/");
+            cookieManager.put(uri, Map.of("Set-Cookie", List.of("id=" + i)));
+        }
+    }
+
+    @Test
+    public void cookieManagerGetWithCookies() {
+        final Map<String,List<String>> headers = Map.of();
+        assertBudget("CookieManager.get (hit)", 1500, () -> sink = cookieManager.get(HIT_URI, headers));
+    }
+
+    @Test
+    public void cookieManagerGetWithoutCookies() {
+        final Map<String,List<String>> headers = Map.of();
+        assertBudget("CookieManager.get (miss)", 256, () -> sink = cookieManager.get(MISS_URI, headers));
+    }
+
+    @Test
+    public void cookieManagerPut() {
+        final Map<String,List<String>> headers = Map.of("Set-Cookie", List.of(SET_COOKIE));
+        assertBudget("CookieManager.put", 4096, () -> cookieManager.put(HIT_URI, headers));
+    }
+
+    @Test
+    public void setCookieStringParser() {
+        assertBudget("SetCookieStringParser.parse", 2400, () -> sink = SetCookieStringParser.parse(SET_COOKIE));
+    }
+
+    @Test
+    public void cookieDateParser() {
+        assertBudget("CookieDateParser.parse", 256, () -> sink = CookieDateParser.parse(COOKIE_DATE));
+    }
+
+    @Test
+    public void cookieParser() {
+        final CookieParser parser = CookieParser.create(RequestInfo.create(HIT_URI));
+        assertBudget("CookieParser.parse", 2600, () -> sink = parser.parse(SET_COOKIE));
+    }
+
+    private void assertBudget(String operation, long budget, Runnable action) {
+        final long allocated = allocatedBytesPerOperation(action);
+        Assert.assertTrue(allocated <= budget,
+                          operation + " allocates " + allocated + " bytes per operation, budget is " + budget);
+    }
+
+    private long allocatedBytesPerOperation(Runnable action) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            action.run();
+        }
+        final long threadId = Thread.currentThread().getId();
+        final long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            action.run();
+        }
+        final long after = threadMXBean.getThreadAllocatedBytes(threadId);
+        return (after - before) / MEASURED_ITERATIONS;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import net.femtoparsec.cookie.rfc6265.ExecutorAsyncCookieStore;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+import static net.femtoparsec.cookie.CookieFixtures.NOW;
+
+public class AsyncCookieManagerTest {
+
+    private static final URI URI = java.net.URI.create("https://example.com/");
+
+    @DataProvider(name = "stores")
+    public static Object[][] stores() {
+        return new Object[][]{
+                {(Function<Executor,AsyncCookieStore>) e -> new ExecutorAsyncCookieStore(CookieStore.inMemory(), e)},
+                {(Function<Executor,AsyncCookieStore>) e -> new OneByOneStore(new ExecutorAsyncCookieStore(CookieStore.inMemory(), e))},
+        };
+    }
+
+    @Test(dataProvider = "stores")
+    public void testSetCookiesAreStoredInHeaderOrder(@NonNull Function<Executor,AsyncCookieStore> storeFactory) {
+        final LastInFirstOutExecutor executor = new LastInFirstOutExecutor();
+        final AsyncCookieStore store = storeFactory.apply(executor);
+        final AsyncCookieManager manager = AsyncCookieManager.create(store, null, CookieClock.fixed(NOW));
+
+        final CompletableFuture<Void> put = manager.put(URI, Map.of("Set-Cookie", List.of("SID=old; Max-Age=0", "SID=new", "lang=en", "lang=fr")));
+        executor.runUntil(put);
+
+        final CompletableFuture<List<Cookie>> cookies = store.getAllCookies();
+        executor.runUntil(cookies);
+        final Map<String,String> values = new HashMap<>();
+        cookies.join().forEach(c -> values.put(c.name(), c.value()));
+        Assert.assertEquals(values, Map.of("SID", "new", "lang", "fr"));
+    }
+
+    /**
+     * Runs the pending tasks in the reverse order of their submission
+     */
+    private static class LastInFirstOutExecutor implements Executor {
+
+        private final Deque<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            tasks.push(command);
+        }
+
+        private void runUntil(@NonNull CompletableFuture<?> future) {
+            while (!future.isDone()) {
+                final List<Runnable> pending = new ArrayList<>(tasks);
+                tasks.clear();
+                Assert.assertFalse(pending.isEmpty(), "No task to complete the future");
+                pending.forEach(Runnable::run);
+            }
+            future.join();
+        }
+    }
+
+    /**
+     * A store using the default implementation of {@link AsyncCookieStore#addCookies(RequestInfo, List, Instant)}
+     */
+    @RequiredArgsConstructor
+    private static class OneByOneStore implements AsyncCookieStore {
+
+        @NonNull
+        private final AsyncCookieStore delegate;
+
+        @Override
+        public @NonNull CompletableFuture<List<Cookie>> getAllCookies() {
+            return delegate.getAllCookies();
+        }
+
+        @Override
+        public @NonNull CompletableFuture<Void> initialize(@NonNull Collection<Cookie> cookies) {
+            return delegate.initialize(cookies);
+        }
+
+        @Override
+        public @NonNull CompletableFuture<List<Cookie>> getCookies(@NonNull RequestInfo requestInfo, @NonNull Instant now) {
+            return delegate.getCookies(requestInfo, now);
+        }
+
+        @Override
+        public @NonNull CompletableFuture<Void> cleanUp(@NonNull Instant now) {
+            return delegate.cleanUp(now);
+        }
+
+        @Override
+        public @NonNull CompletableFuture<Void> addCookie(@NonNull RequestInfo requestInfo, @NonNull Cookie cookie, @NonNull Instant now) {
+            return delegate.addCookie(requestInfo, cookie, now);
+        }
+
+        @Override
+        public @NonNull CompletableFuture<Void> remove(@NonNull RequestInfo requestInfo) {
+            return delegate.remove(requestInfo);
+        }
+
+        @Override
+        public @NonNull CompletableFuture<List<Cookie>> remove(@NonNull CookieQuery query) {
+            return delegate.remove(query);
+        }
+    }
+}
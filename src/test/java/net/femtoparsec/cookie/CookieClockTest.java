@@ -0,0 +1,89 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.rfc6265.InMemoryCookieStore;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+import static net.femtoparsec.cookie.CookieFixtures.NOW;
+import static net.femtoparsec.cookie.CookieFixtures.setCookie;
+
+public class CookieClockTest {
+
+    private static final URI URI_A = URI.create("https://a.com/");
+
+    @Test
+    public void testMaxAgeExpiryFollowsTheClock() {
+        final CookieStore store = new InMemoryCookieStore();
+        manager(store, NOW).put(URI_A, setCookie("id=1; Max-Age=60"));
+
+        Assert.assertEquals(store.getAllCookies().get(0).expiryTimeMillis(), NOW + 60_000);
+        Assert.assertEquals(manager(store, NOW + 60_000).get(URI_A, Map.of()), Map.of("Cookie", List.of("id=1")));
+        Assert.assertEquals(manager(store, NOW + 60_001).get(URI_A, Map.of()), Map.of());
+    }
+
+    @Test
+    public void testExpiresExpiryFollowsTheClock() {
+        final CookieStore store = new InMemoryCookieStore();
+        final long expiry = NOW + 3_600_000;
+        manager(store, NOW).put(URI_A, setCookie("id=1; Expires=Sun, 13 Sep 2020 13:26:40 GMT"));
+
+        Assert.assertEquals(store.getAllCookies().get(0).expiryTimeMillis(), expiry);
+        Assert.assertEquals(manager(store, expiry).get(URI_A, Map.of()), Map.of("Cookie", List.of("id=1")));
+        Assert.assertEquals(manager(store, expiry + 1).get(URI_A, Map.of()), Map.of());
+    }
+
+    @Test
+    public void testTheCreationTimeFollowsTheClock() {
+        final CookieStore store = new InMemoryCookieStore();
+        manager(store, NOW).put(URI_A, setCookie("id=1"));
+
+        final Cookie cookie = store.getAllCookies().get(0);
+        Assert.assertEquals(cookie.creationTimeMillis(), NOW);
+        Assert.assertEquals(cookie.lastAccessTimeMillis(), NOW);
+        Assert.assertFalse(cookie.isPersistent());
+    }
+
+    @Test
+    public void testAZeroMaxAgeExpiresTheCookie() {
+        final CookieStore store = new InMemoryCookieStore();
+        manager(store, NOW).put(URI_A, setCookie("id=1; Max-Age=60"));
+        manager(store, NOW + 1_000).put(URI_A, setCookie("id=1; Max-Age=0"));
+
+        Assert.assertEquals(manager(store, NOW + 1_001).get(URI_A, Map.of()), Map.of());
+    }
+
+    @NonNull
+    private static CookieManager manager(@NonNull CookieStore store, long now) {
+        return CookieManager.builder().cookieStore(store).clock(CookieClock.fixed(now)).build();
+    }
+}
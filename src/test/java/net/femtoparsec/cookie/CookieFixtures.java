@@ -0,0 +1,130 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie;
+
+import lombok.NonNull;
+import org.testng.Assert;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Flow;
+import java.util.stream.Collectors;
+
+/**
+ * Requests, cookies and subscribers shared by the tests
+ */
+public final class CookieFixtures {
+
+    /**
+     * The time used by the tests that do not depend on the wall clock
+     */
+    public static final long NOW = 1_600_000_000_000L;
+
+    private CookieFixtures() {
+    }
+
+    @NonNull
+    public static RequestInfo request(@NonNull String host) {
+        return request(host, "/");
+    }
+
+    @NonNull
+    public static RequestInfo request(@NonNull String host, @NonNull String path) {
+        return RequestInfo.create(URI.create("https://" + host + path));
+    }
+
+    /**
+     * @return a builder of a host-only cookie with the value "v", on the path "/", created and last accessed at {@link #NOW}
+     */
+    @NonNull
+    public static Cookie.Builder cookie(@NonNull String domain, @NonNull String name) {
+        return cookie(domain, name, "v");
+    }
+
+    /**
+     * @return a builder of a host-only cookie on the path "/", created and last accessed at {@link #NOW}
+     */
+    @NonNull
+    public static Cookie.Builder cookie(@NonNull String domain, @NonNull String name, @NonNull String value) {
+        return Cookie.builder()
+                     .name(name)
+                     .value(value)
+                     .domain(domain)
+                     .path("/")
+                     .hostOnly(true)
+                     .creationTimeMillis(NOW)
+                     .lastAccessTimeMillis(NOW);
+    }
+
+    /**
+     * @return the sorted names of the cookies
+     */
+    @NonNull
+    public static List<String> names(@NonNull Collection<Cookie> cookies) {
+        return cookies.stream().map(Cookie::name).sorted().collect(Collectors.toList());
+    }
+
+    @NonNull
+    public static Map<String,List<String>> setCookie(@NonNull String... values) {
+        return Map.of("Set-Cookie", List.of(values));
+    }
+
+    /**
+     * Subscriber requesting every change and recording them in a thread-safe list. Errors fail the test.
+     */
+    public static class EventRecorder implements Flow.Subscriber<CookieChangeEvent> {
+
+        private final List<CookieChangeEvent> events = Collections.synchronizedList(new ArrayList<>());
+
+        @NonNull
+        public List<CookieChangeEvent> events() {
+            return events;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(CookieChangeEvent item) {
+            events.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            Assert.fail("unexpected error", throwable);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
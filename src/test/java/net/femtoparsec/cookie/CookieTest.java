@@ -0,0 +1,95 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.beans.ConstructorProperties;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static net.femtoparsec.cookie.CookieFixtures.NOW;
+
+public class CookieTest {
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testTheCreationTimeIsMandatory() {
+        Cookie.builder().name("id").value("1").domain("a.com").path("/").lastAccessTimeMillis(NOW).build();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testTheLastAccessTimeIsMandatory() {
+        Cookie.builder().name("id").value("1").domain("a.com").path("/").creationTimeMillis(NOW).build();
+    }
+
+    @Test
+    public void testToBuilderKeepsTheTimes() {
+        final Cookie cookie = Cookie.builder()
+                                    .name("id").value("1").domain("a.com").path("/")
+                                    .creationTimeMillis(NOW).lastAccessTimeMillis(NOW + 1).expiryTimeMillis(NOW + 2)
+                                    .build();
+        final Cookie copy = cookie.toBuilder().value("2").build();
+        Assert.assertEquals(copy.creationTimeMillis(), NOW);
+        Assert.assertEquals(copy.lastAccessTimeMillis(), NOW + 1);
+        Assert.assertEquals(copy.expiryTimeMillis(), NOW + 2);
+    }
+
+    @Test
+    public void testTheBeanConstructorAcceptsTheInstantProperties() {
+        final Cookie cookie = new Cookie(null, null, "id", "a.com", "/", "1", null, true, false, true, null, null,
+                                         Instant.ofEpochMilli(NOW), Instant.ofEpochMilli(NOW + 1), Instant.ofEpochMilli(NOW + 2));
+        Assert.assertEquals(cookie.creationTimeMillis(), NOW);
+        Assert.assertEquals(cookie.lastAccessTimeMillis(), NOW + 1);
+        Assert.assertEquals(cookie.expiryTimeMillis(), NOW + 2);
+        Assert.assertTrue(cookie.securedOnly());
+    }
+
+    @Test
+    public void testTheBeanConstructorAcceptsTheMillisProperties() {
+        final Cookie cookie = new Cookie(NOW, NOW + 1, "id", "a.com", "/", "1", null, false, false, true, null, null,
+                                         null, null, null);
+        Assert.assertEquals(cookie.creationTimeMillis(), NOW);
+        Assert.assertEquals(cookie.lastAccessTimeMillis(), NOW + 1);
+        Assert.assertFalse(cookie.isPersistent());
+    }
+
+    @Test
+    public void testTheBeanConstructorKeepsThePreviousPropertyNames() {
+        final List<String> names = Arrays.stream(Cookie.class.getConstructors())
+                                         .map(c -> c.getAnnotation(ConstructorProperties.class))
+                                         .filter(a -> a != null)
+                                         .flatMap(a -> Arrays.stream(a.value()))
+                                         .toList();
+        Assert.assertTrue(names.containsAll(List.of("creationTime", "lastAccessTime", "expiryTime",
+                                                    "creationTimeMillis", "lastAccessTimeMillis", "expiryTimeMillis")));
+        Assert.assertEquals(Arrays.stream(Cookie.class.getConstructors())
+                                  .map(c -> c.getAnnotation(ConstructorProperties.class))
+                                  .filter(a -> a != null)
+                                  .count(), 1);
+    }
+}
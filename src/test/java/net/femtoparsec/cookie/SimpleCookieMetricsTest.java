@@ -0,0 +1,139 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.rfc6265.InMemoryCookieStore;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.Map;
+
+import static net.femtoparsec.cookie.CookieFixtures.NOW;
+import static net.femtoparsec.cookie.CookieFixtures.setCookie;
+
+public class SimpleCookieMetricsTest {
+
+    private static final URI URI_A = URI.create("https://www.a.com/");
+
+    @Test
+    public void testTheCookieManagerCountsParsedAndRejectedCookies() {
+        final SimpleCookieMetrics metrics = new SimpleCookieMetrics();
+        final CookieManager manager = manager(new InMemoryCookieStore(metrics), metrics, NOW);
+
+        manager.put(URI_A, setCookie("id=1", "=", "id=2; Domain=b.com", "id=3; SameSite=None"));
+
+        Assert.assertEquals(metrics.parsedCount(), 4);
+        Assert.assertEquals(metrics.rejectedCount(CookieRejectReason.INVALID_SYNTAX), 1);
+        Assert.assertEquals(metrics.rejectedCount(CookieRejectReason.DOMAIN_MISMATCH), 1);
+        Assert.assertEquals(metrics.rejectedCount(CookieRejectReason.SAME_SITE_NONE_NOT_SECURE), 1);
+        Assert.assertEquals(metrics.rejectedCount(CookieRejectReason.PUBLIC_SUFFIX), 0);
+    }
+
+    @Test
+    public void testTheCookieManagerCountsHitsAndMisses() {
+        final SimpleCookieMetrics metrics = new SimpleCookieMetrics();
+        final CookieManager manager = manager(new InMemoryCookieStore(metrics), metrics, NOW);
+
+        manager.get(URI_A, Map.of());
+        manager.put(URI_A, setCookie("id=1"));
+        manager.get(URI_A, Map.of());
+        manager.get(URI_A, Map.of());
+        manager.get(URI.create("https://b.com/"), Map.of());
+
+        Assert.assertEquals(metrics.hitCount(), 2);
+        Assert.assertEquals(metrics.missCount(), 2);
+    }
+
+    @Test
+    public void testTheStoreCountsExpiredCookies() {
+        final SimpleCookieMetrics metrics = new SimpleCookieMetrics();
+        final InMemoryCookieStore store = new InMemoryCookieStore(metrics);
+        manager(store, metrics, NOW).put(URI_A, setCookie("a=1; Max-Age=10", "b=1; Max-Age=10", "c=1"));
+
+        store.cleanUp(NOW + 20_000);
+
+        Assert.assertEquals(metrics.expiredCount(), 2);
+        Assert.assertEquals(store.getAllCookies().size(), 1);
+    }
+
+    @Test
+    public void testTheSnapshotContainsEveryCounter() {
+        final SimpleCookieMetrics metrics = new SimpleCookieMetrics();
+        metrics.parsed();
+        metrics.rejected(CookieRejectReason.PUBLIC_SUFFIX);
+        metrics.hit();
+        metrics.miss();
+        metrics.evicted(3);
+        metrics.expired(4);
+        metrics.getDuration(10);
+        metrics.getDuration(30);
+        metrics.putDuration(5);
+
+        final Map<String,Long> snapshot = metrics.snapshot();
+
+        Assert.assertEquals(snapshot.get("cookie.parsed"), 1L);
+        Assert.assertEquals(snapshot.get("cookie.rejected.public_suffix"), 1L);
+        Assert.assertEquals(snapshot.get("cookie.rejected.domain_mismatch"), 0L);
+        Assert.assertEquals(snapshot.get("cookie.hits"), 1L);
+        Assert.assertEquals(snapshot.get("cookie.misses"), 1L);
+        Assert.assertEquals(snapshot.get("cookie.evicted"), 3L);
+        Assert.assertEquals(snapshot.get("cookie.expired"), 4L);
+        Assert.assertEquals(snapshot.get("cookie.get.count"), 2L);
+        Assert.assertEquals(snapshot.get("cookie.get.total"), 40L);
+        Assert.assertEquals(snapshot.get("cookie.get.max"), 30L);
+        Assert.assertEquals(snapshot.get("cookie.put.count"), 1L);
+        for (CookieRejectReason reason : CookieRejectReason.values()) {
+            Assert.assertTrue(snapshot.containsKey("cookie.rejected." + reason.name().toLowerCase()), reason.name());
+        }
+    }
+
+    @Test
+    public void testTheCountersAreThreadSafe() throws InterruptedException {
+        final SimpleCookieMetrics metrics = new SimpleCookieMetrics();
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    metrics.hit();
+                    metrics.rejected(CookieRejectReason.INVALID_SYNTAX);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(metrics.hitCount(), 40_000);
+        Assert.assertEquals(metrics.rejectedCount(CookieRejectReason.INVALID_SYNTAX), 40_000);
+    }
+
+    @NonNull
+    private static CookieManager manager(@NonNull CookieStore store, @NonNull CookieMetrics metrics, long now) {
+        return CookieManager.builder().cookieStore(store).metrics(metrics).clock(CookieClock.fixed(now)).build();
+    }
+}
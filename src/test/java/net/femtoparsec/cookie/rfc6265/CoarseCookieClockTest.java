@@ -0,0 +1,78 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import net.femtoparsec.cookie.CookieClock;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class CoarseCookieClockTest {
+
+    @Test
+    public void testTheCachedTimeIsRefreshed() throws InterruptedException {
+        try (CoarseCookieClock clock = new CoarseCookieClock(1)) {
+            final long first = clock.millis();
+            final long deadline = System.currentTimeMillis() + 5_000;
+            while (clock.millis() == first && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            Assert.assertTrue(clock.millis() > first);
+        }
+    }
+
+    @Test
+    public void testTheCachedTimeIsLateByAtMostAFewTicks() {
+        try (CoarseCookieClock clock = new CoarseCookieClock(CoarseCookieClock.DEFAULT_TICK_MILLIS)) {
+            final long before = System.currentTimeMillis();
+            final long millis = clock.millis();
+            Assert.assertTrue(millis <= System.currentTimeMillis());
+            Assert.assertTrue(millis >= before - 1_000, "clock is late by " + (before - millis) + "ms");
+        }
+    }
+
+    @Test
+    public void testTheClosedClockStops() throws InterruptedException {
+        final CoarseCookieClock clock = new CoarseCookieClock(1);
+        clock.close();
+        Thread.sleep(20);
+        final long millis = clock.millis();
+        Thread.sleep(20);
+        Assert.assertEquals(clock.millis(), millis);
+    }
+
+    @Test
+    public void testTheSharedClockCannotBeClosed() {
+        final CookieClock shared = CookieClock.coarse();
+        Assert.assertSame(shared, CoarseCookieClock.shared());
+        Assert.assertFalse(shared instanceof AutoCloseable);
+        Assert.assertTrue(Math.abs(shared.millis() - System.currentTimeMillis()) < 1_000);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testTheTickMustBePositive() {
+        new CoarseCookieClock(0).close();
+    }
+}
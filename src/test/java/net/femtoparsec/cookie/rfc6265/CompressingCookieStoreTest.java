@@ -0,0 +1,170 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieFixtures;
+import net.femtoparsec.cookie.CookieFixtures.EventRecorder;
+import net.femtoparsec.cookie.CookieStore;
+import net.femtoparsec.cookie.ObservableCookieStore;
+import net.femtoparsec.cookie.RequestInfo;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static net.femtoparsec.cookie.CookieFixtures.NOW;
+
+public class CompressingCookieStoreTest {
+
+    private static final RequestInfo REQUEST = RequestInfo.create(URI.create("https://example.com/"));
+
+    private static final String LARGE_VALUE = "eyJ1c2VyIjoiYWxpY2UiLCJyb2xlcyI6WyJhZG1pbiJdfQ".repeat(40);
+
+    @Test
+    public void testLargeValuesAreCompressedAndRestored() {
+        final InMemoryCookieStore delegate = new InMemoryCookieStore();
+        final CookieStore store = CompressingCookieStore.create(delegate);
+        store.addCookie(REQUEST, cookie("large", LARGE_VALUE), NOW);
+        store.addCookie(REQUEST, cookie("small", "v"), NOW);
+
+        Assert.assertEquals(value(store.getCookies(REQUEST, NOW), "large"), LARGE_VALUE);
+        Assert.assertEquals(value(store.getAllCookies(), "small"), "v");
+
+        final String stored = value(delegate.getAllCookies(), "large");
+        Assert.assertEquals(stored.charAt(0), '\u0000');
+        Assert.assertTrue(stored.length() < LARGE_VALUE.length() / 4, "stored length " + stored.length());
+        Assert.assertEquals(value(delegate.getAllCookies(), "small"), "v");
+    }
+
+    @Test
+    public void testDecompressedCookiesAreCachedUntilReplaced() {
+        final CookieStore store = CompressingCookieStore.create(new InMemoryCookieStore());
+        store.addCookie(REQUEST, cookie("large", LARGE_VALUE), NOW);
+
+        final Cookie first = store.getCookies(REQUEST, NOW).get(0);
+        Assert.assertSame(store.getCookies(REQUEST, NOW).get(0), first);
+        Assert.assertSame(store.find(first).orElseThrow(), first);
+
+        store.addCookie(REQUEST, cookie("large", "x" + LARGE_VALUE), NOW);
+        final Cookie replaced = store.getCookies(REQUEST, NOW).get(0);
+        Assert.assertEquals(replaced.value(), "x" + LARGE_VALUE);
+        Assert.assertSame(store.getCookies(REQUEST, NOW).get(0), replaced);
+    }
+
+    @Test
+    public void testTheLeastRecentlyDecompressedCookiesAreEvicted() {
+        final CookieStore store = CompressingCookieStore.create(new InMemoryCookieStore());
+        store.addCookie(REQUEST, cookie("first", LARGE_VALUE), NOW);
+        final Cookie first = store.find(cookie("first", "")).orElseThrow();
+        for (int i = 0; i < CompressingCookieStore.MAX_CACHE_SIZE; i++) {
+            store.addCookie(REQUEST, cookie("c" + i, LARGE_VALUE), NOW);
+            store.find(cookie("c" + i, ""));
+        }
+
+        final Cookie decodedAgain = store.find(first).orElseThrow();
+        Assert.assertNotSame(decodedAgain, first);
+        Assert.assertEquals(decodedAgain.value(), LARGE_VALUE);
+    }
+
+    @Test
+    public void testDictionaryAndMarkerValuesRoundTrip() {
+        final byte[] dictionary = LARGE_VALUE.substring(0, 64).getBytes(StandardCharsets.UTF_8);
+        final CookieStore store = CompressingCookieStore.create(new InMemoryCookieStore(), 16, dictionary);
+        final String marked = "\u0000not compressed";
+        store.addCookie(REQUEST, cookie("large", LARGE_VALUE), NOW);
+        store.addCookie(REQUEST, cookie("marked", marked), NOW);
+        store.addCookie(REQUEST, cookie("unicode", "é€".repeat(20)), NOW);
+
+        Assert.assertEquals(value(store.getAllCookies(), "large"), LARGE_VALUE);
+        Assert.assertEquals(value(store.getAllCookies(), "marked"), marked);
+        Assert.assertEquals(value(store.getAllCookies(), "unicode"), "é€".repeat(20));
+    }
+
+    @Test
+    public void testChangesArePublishedDecompressed() {
+        final CookieStore store = CookieStore.compressing(new InMemoryCookieStore());
+        Assert.assertTrue(store instanceof ObservableCookieStore);
+        final ObservableCookieStore observable = (ObservableCookieStore) store;
+        final EventRecorder recorder = new EventRecorder();
+        observable.changes(observable.lastSequence() + 1, Runnable::run).subscribe(recorder);
+        store.addCookie(REQUEST, cookie("large", LARGE_VALUE), NOW);
+
+        Assert.assertEquals(recorder.events().size(), 1);
+        Assert.assertEquals(recorder.events().get(0).cookie().value(), LARGE_VALUE);
+    }
+
+    @Test
+    public void testPersistingDelegatesAreRejected() {
+        final Duration never = Duration.ofDays(1);
+        try (DeltaReplicatedCookieStore replicated = new DeltaReplicatedCookieStore("a", new LoopbackReplicationNetwork().connect(),
+                                                                                   never, 10, never)) {
+            Assert.assertThrows(IllegalArgumentException.class, () -> CookieStore.compressing(replicated));
+        }
+    }
+
+    @Test
+    public void testCompressionFromSeveralThreads() throws Exception {
+        final CookieStore store = CompressingCookieStore.create(new InMemoryCookieStore(), 16, new byte[0]);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final String name = "c" + t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        final String value = name + LARGE_VALUE.substring(i);
+                        store.addCookie(REQUEST, cookie(name, value), NOW);
+                        Assert.assertEquals(value(store.getAllCookies(), name), value);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @NonNull
+    private static String value(@NonNull List<Cookie> cookies, @NonNull String name) {
+        return cookies.stream().filter(c -> c.name().equals(name)).findFirst().orElseThrow().value();
+    }
+
+    @NonNull
+    private static Cookie cookie(@NonNull String name, @NonNull String value) {
+        return CookieFixtures.cookie("example.com", name, value).build();
+    }
+}
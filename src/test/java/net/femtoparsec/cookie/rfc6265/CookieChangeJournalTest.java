@@ -0,0 +1,186 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieChangeEvent;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.stream.Collectors;
+
+import static net.femtoparsec.cookie.CookieFixtures.NOW;
+
+public class CookieChangeJournalTest {
+
+    @Test
+    public void testEventsAreDeliveredInOrder() {
+        final CookieChangeJournal journal = enabled(16);
+        final Recorder recorder = subscribe(journal, 1, Runnable::run);
+        recorder.subscription.request(Long.MAX_VALUE);
+        publish(journal, 5);
+
+        Assert.assertEquals(sequences(recorder), List.of(1L, 2L, 3L, 4L, 5L));
+        Assert.assertEquals(recorder.events.get(2).cookie().name(), "c2");
+        Assert.assertNull(recorder.error);
+    }
+
+    @Test
+    public void testEventsFollowTheDemand() {
+        final CookieChangeJournal journal = enabled(16);
+        publish(journal, 3);
+        final Recorder recorder = subscribe(journal, 2, Runnable::run);
+        Assert.assertTrue(recorder.events.isEmpty());
+
+        recorder.subscription.request(1);
+        Assert.assertEquals(sequences(recorder), List.of(2L));
+        publish(journal, 2);
+        Assert.assertEquals(sequences(recorder), List.of(2L));
+
+        recorder.subscription.request(10);
+        Assert.assertEquals(sequences(recorder), List.of(2L, 3L, 4L, 5L));
+    }
+
+    @Test
+    public void testOverwrittenEventsFailTheSubscription() {
+        final CookieChangeJournal journal = enabled(4);
+        publish(journal, 10);
+        final Recorder recorder = subscribe(journal, 1, Runnable::run);
+        recorder.subscription.request(Long.MAX_VALUE);
+
+        Assert.assertTrue(recorder.events.isEmpty());
+        Assert.assertTrue(recorder.error instanceof IllegalStateException);
+        Assert.assertTrue(recorder.error.getMessage().contains("no longer available"), recorder.error.getMessage());
+    }
+
+    @Test
+    public void testCancelledSubscriptionReceivesNothing() {
+        final CookieChangeJournal journal = enabled(16);
+        final Recorder recorder = subscribe(journal, 1, Runnable::run);
+        recorder.subscription.request(Long.MAX_VALUE);
+        publish(journal, 1);
+        recorder.subscription.cancel();
+        publish(journal, 2);
+
+        Assert.assertEquals(sequences(recorder), List.of(1L));
+        Assert.assertNull(recorder.error);
+    }
+
+    @Test
+    public void testInvalidRequestFailsInTheDrainLoop() {
+        final CookieChangeJournal journal = enabled(16);
+        final Queue<Runnable> tasks = new ArrayDeque<>();
+        final Recorder recorder = subscribe(journal, 1, tasks::add);
+        runAll(tasks);
+
+        recorder.subscription.request(0);
+        Assert.assertNull(recorder.error, "the error must not be delivered on the caller thread");
+        runAll(tasks);
+        Assert.assertTrue(recorder.error instanceof IllegalArgumentException);
+
+        publish(journal, 1);
+        recorder.subscription.request(1);
+        runAll(tasks);
+        Assert.assertTrue(recorder.events.isEmpty());
+    }
+
+    @NonNull
+    private static CookieChangeJournal enabled(int capacity) {
+        final CookieChangeJournal journal = new CookieChangeJournal(capacity);
+        journal.enable();
+        return journal;
+    }
+
+    private static void publish(@NonNull CookieChangeJournal journal, int count) {
+        for (int i = 0; i < count; i++) {
+            final long sequence = journal.lastSequence();
+            journal.publish(CookieChangeEvent.Type.ADDED, Cookie.builder()
+                                                                .name("c" + sequence)
+                                                                .value("v")
+                                                                .domain("example.com")
+                                                                .path("/")
+                                                                .creationTimeMillis(NOW)
+                                                                .lastAccessTimeMillis(NOW)
+                                                                .build());
+        }
+    }
+
+    @NonNull
+    private static Recorder subscribe(@NonNull CookieChangeJournal journal, long fromSequence, @NonNull Executor executor) {
+        final Recorder recorder = new Recorder();
+        journal.publisher(fromSequence, executor).subscribe(recorder);
+        return recorder;
+    }
+
+    private static void runAll(@NonNull Queue<Runnable> tasks) {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    @NonNull
+    private static List<Long> sequences(@NonNull Recorder recorder) {
+        return recorder.events.stream().map(CookieChangeEvent::sequence).collect(Collectors.toList());
+    }
+
+    private static class Recorder implements Flow.Subscriber<CookieChangeEvent> {
+
+        private final List<CookieChangeEvent> events = new ArrayList<>();
+
+        private Flow.Subscription subscription;
+
+        private Throwable error;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(CookieChangeEvent item) {
+            events.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            Assert.assertNull(error, "a single error is expected");
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            Assert.fail("the journal never completes");
+        }
+    }
+}
@@ -63,4 +63,47 @@ public class CookieDateParserTest {
         final Optional<Instant> date =  CookieDateParser.parse(cookieDate);
         Assert.assertTrue(date.isPresent());
     }
+
+    @DataProvider(name = "exactDates")
+    public static Object[][] exactDates() {
+        return new Object[][]{
+                {"Sun, 06 Nov 1994 08:49:37 GMT", "1994-11-06T08:49:37Z"},
+                {"Sunday, 06-Nov-94 08:49:37 GMT", "1994-11-06T08:49:37Z"},
+                {"Sun Nov  6 08:49:37 1994", "1994-11-06T08:49:37Z"},
+                {"Tue, 03-Nov-20 08:04:08 GMT", "2020-11-03T08:04:08Z"},
+                {"03 nOV 2020 8:4:8", "2020-11-03T08:04:08Z"},
+                {"Thu, 01 Jan 70 00:00:00 GMT", "1970-01-01T00:00:00Z"},
+                {"Fri, 31 Dec 69 23:59:59 GMT", "2069-12-31T23:59:59Z"},
+                {"1 Jan 1601 00:00:00", "1601-01-01T00:00:00Z"},
+                {"Wed, 09 Jun 2021 10:18:14 GMT; extra 12 tokens", "2021-06-09T10:18:14Z"},
+        };
+    }
+
+    @DataProvider(name = "invalidDates")
+    public static Object[][] invalidDates() {
+        return new Object[][]{
+                {""},
+                {"not a date"},
+                {"Sun, 06 Nov 1994"},
+                {"06 Nov 1994 24:00:00"},
+                {"06 Nov 1994 23:60:00"},
+                {"32 Nov 1994 08:49:37"},
+                {"00 Nov 1994 08:49:37"},
+                {"06 Nov 1600 08:49:37"},
+                {"06 Foo 1994 08:49:37"},
+                {"06 Nov 19945 08:49:37"},
+                {"06 Nov 1994 123:49:37"},
+                {"06 Nov 1994 ٠٨:49:37"},
+        };
+    }
+
+    @Test(dataProvider = "exactDates")
+    public void testDateValue(@NonNull String cookieDate, @NonNull String expected) {
+        Assert.assertEquals(CookieDateParser.parse(cookieDate), Optional.of(Instant.parse(expected)));
+    }
+
+    @Test(dataProvider = "invalidDates")
+    public void testInvalidDateIsIgnored(@NonNull String cookieDate) {
+        Assert.assertEquals(CookieDateParser.parse(cookieDate), Optional.empty());
+    }
 }
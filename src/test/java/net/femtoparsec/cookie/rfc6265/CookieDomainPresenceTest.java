@@ -0,0 +1,81 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import static net.femtoparsec.cookie.CookieFixtures.cookie;
+import static net.femtoparsec.cookie.CookieFixtures.request;
+
+public class CookieDomainPresenceTest {
+
+    @Test
+    public void testEmptyPresenceHasNoCookies() {
+        Assert.assertFalse(new CookieDomainPresence().mayHaveCookiesFor(request("a.com")));
+    }
+
+    @Test
+    public void testTheDomainStaysPresentUntilItsLastCookieIsRemoved() {
+        final CookieDomainPresence presence = new CookieDomainPresence();
+        presence.added(cookie("a.com", "c1").build());
+        presence.added(cookie("a.com", "c2").build());
+
+        presence.removed(cookie("a.com", "c1").build());
+        Assert.assertTrue(presence.mayHaveCookiesFor(request("a.com")));
+
+        presence.removed(cookie("a.com", "c2").build());
+        Assert.assertFalse(presence.mayHaveCookiesFor(request("a.com")));
+
+        presence.removed(cookie("a.com", "c2").build());
+        presence.added(cookie("a.com", "c3").build());
+        Assert.assertTrue(presence.mayHaveCookiesFor(request("a.com")));
+    }
+
+    @Test
+    public void testTheCookiesOfParentDomainsArePresent() {
+        final CookieDomainPresence presence = new CookieDomainPresence();
+        presence.added(cookie("example.com", "id").build());
+
+        Assert.assertTrue(presence.mayHaveCookiesFor(request("example.com")));
+        Assert.assertTrue(presence.mayHaveCookiesFor(request("www.example.com")));
+        Assert.assertTrue(presence.mayHaveCookiesFor(request("a.b.example.com")));
+        Assert.assertFalse(presence.mayHaveCookiesFor(request("com")));
+        Assert.assertFalse(presence.mayHaveCookiesFor(request("badexample.com")));
+        Assert.assertFalse(presence.mayHaveCookiesFor(request("example.org")));
+    }
+
+    @Test
+    public void testClearRemovesAllDomains() {
+        final CookieDomainPresence presence = new CookieDomainPresence();
+        presence.added(cookie("a.com", "id").build());
+        presence.added(cookie("b.com", "id").build());
+        presence.clear();
+
+        Assert.assertFalse(presence.mayHaveCookiesFor(request("a.com")));
+        Assert.assertFalse(presence.mayHaveCookiesFor(request("b.com")));
+    }
+}
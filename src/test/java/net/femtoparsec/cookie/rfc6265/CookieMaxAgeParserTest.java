@@ -0,0 +1,106 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieMetrics;
+import net.femtoparsec.cookie.RequestInfo;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.Optional;
+
+import static net.femtoparsec.cookie.CookieFixtures.NOW;
+
+public class CookieMaxAgeParserTest {
+
+    @DataProvider(name = "maxAges")
+    public static Object[][] maxAges() {
+        return new Object[][]{
+                {"0", 0L},
+                {"3600", 3600L},
+                {"-1", -1L},
+                {"-0", 0L},
+                {"007", 7L},
+                {"9223372036854775807", Long.MAX_VALUE},
+                {"-9223372036854775807", -Long.MAX_VALUE},
+        };
+    }
+
+    @DataProvider(name = "invalidMaxAges")
+    public static Object[][] invalidMaxAges() {
+        return new Object[][]{
+                {""},
+                {"-"},
+                {"+1"},
+                {"12x"},
+                {"1 2"},
+                {" 1"},
+                {"1.5"},
+                {"--1"},
+                {"١"},
+                {"9223372036854775808"},
+                {"-9223372036854775808"},
+                {"99999999999999999999999"},
+        };
+    }
+
+    @Test(dataProvider = "maxAges")
+    public void testValidMaxAge(@NonNull String value, long expected) {
+        Assert.assertEquals(CookieMaxAgeParser.parse(value), Optional.of(expected));
+    }
+
+    @Test(dataProvider = "invalidMaxAges")
+    public void testInvalidMaxAgeIsIgnored(@NonNull String value) {
+        Assert.assertEquals(CookieMaxAgeParser.parse(value), Optional.empty());
+    }
+
+    @Test
+    public void testTheExpiryOfAHugeMaxAgeDoesNotOverflow() {
+        Assert.assertEquals(expiry("a=b; Max-Age=9223372036854775807"), Long.MAX_VALUE);
+        Assert.assertEquals(expiry("a=b; Max-Age=9223372036854775"), Long.MAX_VALUE);
+        final long negative = expiry("a=b; Max-Age=-9223372036854775807");
+        Assert.assertNotEquals(negative, Cookie.NO_EXPIRY);
+        Assert.assertTrue(negative < NOW);
+    }
+
+    @Test
+    public void testAnOverflowingMaxAgeFallsBackToExpires() {
+        Assert.assertEquals(expiry("a=b; Max-Age=9223372036854775808; Expires=Sun, 13 Sep 2020 13:26:40 GMT"), NOW + 3_600_000);
+        Assert.assertEquals(expiry("a=b; Max-Age=9223372036854775808"), Cookie.NO_EXPIRY);
+    }
+
+    private static long expiry(@NonNull String setCookie) {
+        final CookieParser parser = CookieParser.create(RequestInfo.create(URI.create("https://a.com/")),
+                                                        null,
+                                                        CookieMetrics.NONE,
+                                                        NOW);
+        return parser.parse(setCookie).orElseThrow().expiryTimeMillis();
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieQuery;
+import net.femtoparsec.cookie.CookieStore;
+import net.femtoparsec.cookie.RequestInfo;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static net.femtoparsec.cookie.CookieFixtures.NOW;
+import static net.femtoparsec.cookie.CookieFixtures.cookie;
+
+public class CookieQueryTest {
+
+    private static final String[] DOMAINS = {"example.com", "www.example.com", "shop.example.com", "a.shop.example.com",
+                                             "example.org", "myexample.com"};
+
+    private static final String[] NAMES = {"consent", "id", "lang", "tracker"};
+
+    private static final Duration NEVER = Duration.ofDays(1);
+
+    @DataProvider(name = "stores")
+    public static Object[][] stores() {
+        return new Object[][]{
+                {(Supplier<CookieStore>) InMemoryCookieStore::new},
+                {(Supplier<CookieStore>) () -> new ShardedCookieStore(4, ForkJoinPool.commonPool())},
+                {(Supplier<CookieStore>) () -> new MemoryBoundedCookieStore(1 << 20)},
+                {(Supplier<CookieStore>) PersistentCookieStore::new},
+                {(Supplier<CookieStore>) () -> new BlockingCookieStore(new ExecutorAsyncCookieStore(new InMemoryCookieStore(), Runnable::run))},
+                {(Supplier<CookieStore>) () -> new DeltaReplicatedCookieStore("a", new SilentTransport(), NEVER, 16, NEVER)},
+                {(Supplier<CookieStore>) () -> new FileTieredCookieStore(tempPath("tiered"), 2_000, NEVER)},
+                {(Supplier<CookieStore>) () -> sharedMemoryStore(tempPath("shared").resolve("cookies.seg"))},
+                {(Supplier<CookieStore>) () -> new InMemoryMultiTenantCookieStore().forTenant("tenant")},
+        };
+    }
+
+    @DataProvider(name = "queries")
+    public static Object[][] queries() {
+        return new Object[][]{
+                {CookieQuery.forDomain("example.com")},
+                {CookieQuery.forDomain(".EXAMPLE.com")},
+                {CookieQuery.forDomainTree("example.com")},
+                {CookieQuery.forDomainTree("shop.example.com")},
+                {CookieQuery.forName("tracker")},
+                {CookieQuery.forDomainTree("example.com").andName("consent")},
+                {CookieQuery.forDomain("www.example.com").andName("id")},
+                {CookieQuery.expiringBetween(java.time.Instant.ofEpochMilli(NOW), java.time.Instant.ofEpochMilli(NOW + 50_000))},
+                {CookieQuery.forName("lang").andExpiringBetween(NOW + 10_000, NOW + 90_000)},
+                {CookieQuery.all()},
+        };
+    }
+
+    @Test(dataProvider = "queries")
+    public void testQueryMatchesScan(CookieQuery query) {
+        for (Object[] store : stores()) {
+            @SuppressWarnings("unchecked") final CookieStore cookieStore = ((Supplier<CookieStore>) store[0]).get();
+            final List<Cookie> cookies = fill(cookieStore);
+            Assert.assertEquals(keys(cookieStore.query(query)), keys(filter(cookies, query)));
+        }
+    }
+
+    @Test(dataProvider = "queries")
+    public void testRemove(CookieQuery query) {
+        for (Object[] store : stores()) {
+            @SuppressWarnings("unchecked") final CookieStore cookieStore = ((Supplier<CookieStore>) store[0]).get();
+            final List<Cookie> cookies = fill(cookieStore);
+            final List<Cookie> expected = filter(cookies, query);
+
+            Assert.assertEquals(keys(cookieStore.remove(query)), keys(expected));
+            Assert.assertTrue(cookieStore.query(query).isEmpty());
+            Assert.assertEquals(cookieStore.getAllCookies().size(), cookies.size() - expected.size());
+        }
+    }
+
+    @Test(dataProvider = "stores")
+    public void testIndexesFollowMutations(Supplier<CookieStore> supplier) {
+        final CookieStore cookieStore = supplier.get();
+        fill(cookieStore);
+        final RequestInfo requestInfo = RequestInfo.create(URI.create("https://shop.example.com/"));
+        cookieStore.remove(requestInfo);
+        cookieStore.cleanUp(NOW + 45_000);
+
+        final List<Cookie> remaining = cookieStore.getAllCookies();
+        for (Object[] query : queries()) {
+            final CookieQuery cookieQuery = (CookieQuery) query[0];
+            Assert.assertEquals(keys(cookieStore.query(cookieQuery)), keys(filter(remaining, cookieQuery)));
+        }
+    }
+
+    private static Path tempPath(String prefix) {
+        try {
+            final Path path = Files.createTempDirectory(prefix);
+            path.toFile().deleteOnExit();
+            return path;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static CookieStore sharedMemoryStore(Path file) {
+        try {
+            file.toFile().deleteOnExit();
+            return new SharedMemoryCookieStore(file, 1 << 16);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class SilentTransport implements net.femtoparsec.cookie.ReplicationTransport {
+
+        @Override
+        public void send(byte[] message) {}
+
+        @Override
+        public void receive(java.util.function.Consumer<byte[]> receiver) {}
+    }
+
+    private static List<Cookie> fill(CookieStore cookieStore) {
+        final Random random = new Random(7);
+        final List<Cookie> cookies = new ArrayList<>();
+        for (String domain : DOMAINS) {
+            for (String name : NAMES) {
+                for (String path : new String[]{"/", "/account"}) {
+                    final boolean session = random.nextInt(4) == 0;
+                    final Cookie cookie = cookie(domain, name)
+                                                .hostOnly(false)
+                                                .path(path)
+                                                .expiryTimeMillis(session ? Cookie.NO_EXPIRY : NOW + random.nextInt(100) * 1000L)
+                                                .build();
+                    cookies.add(cookie);
+                }
+            }
+        }
+        cookieStore.initialize(cookies);
+        return cookies;
+    }
+
+    private static List<Cookie> filter(List<Cookie> cookies, CookieQuery query) {
+        return cookies.stream().filter(query::matches).collect(Collectors.toList());
+    }
+
+    private static Set<String> keys(List<Cookie> cookies) {
+        return cookies.stream().map(c -> c.name() + "|" + c.domain() + "|" + c.path()).collect(Collectors.toCollection(TreeSet::new));
+    }
+}
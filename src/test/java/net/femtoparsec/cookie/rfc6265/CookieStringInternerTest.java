@@ -0,0 +1,113 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import net.femtoparsec.cookie.Cookie;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static net.femtoparsec.cookie.CookieFixtures.NOW;
+
+public class CookieStringInternerTest {
+
+    @Test
+    public void testEqualStringsShareAnInstance() {
+        final CookieStringInterner interner = new CookieStringInterner();
+        final String first = interner.intern(new String("example.com"));
+        Assert.assertSame(interner.intern(new String("example.com")), first);
+        Assert.assertEquals(interner.size(), 1);
+    }
+
+    @Test
+    public void testInternedCookieIsReused() {
+        final CookieStringInterner interner = new CookieStringInterner();
+        final Cookie cookie = interner.intern(cookie());
+        Assert.assertSame(interner.intern(cookie), cookie);
+
+        final Cookie copy = interner.intern(cookie());
+        Assert.assertSame(copy.domain(), cookie.domain());
+        Assert.assertSame(copy.path(), cookie.path());
+        Assert.assertSame(copy.name(), cookie.name());
+    }
+
+    @Test(timeOut = 30_000)
+    public void testUnusedStringsAreDropped() throws InterruptedException {
+        final CookieStringInterner interner = new CookieStringInterner();
+        final String kept = interner.intern(new String("kept.example.com"));
+        for (int i = 0; i < 10_000; i++) {
+            interner.intern("host" + i + ".example.com");
+        }
+        while (interner.size() > 1) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertSame(interner.intern(new String("kept.example.com")), kept);
+    }
+
+    @Test
+    public void testConcurrentInterningReturnsASingleInstance() throws Exception {
+        final CookieStringInterner interner = new CookieStringInterner();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<List<String>>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    final List<String> interned = new ArrayList<>();
+                    for (int i = 0; i < 1_000; i++) {
+                        interned.add(interner.intern("domain" + i + ".com"));
+                    }
+                    return interned;
+                }));
+            }
+            final List<String> reference = futures.get(0).get();
+            for (Future<List<String>> future : futures) {
+                final List<String> interned = future.get();
+                for (int i = 0; i < interned.size(); i++) {
+                    Assert.assertSame(interned.get(i), reference.get(i));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Cookie cookie() {
+        return Cookie.builder()
+                     .name(new String("id"))
+                     .value("v")
+                     .domain(new String("example.com"))
+                     .path(new String("/"))
+                     .creationTimeMillis(NOW)
+                     .lastAccessTimeMillis(NOW)
+                     .build();
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieManager;
+import net.femtoparsec.cookie.ReplicatedCookieStore;
+import net.femtoparsec.cookie.ReplicationTransport;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static net.femtoparsec.cookie.CookieFixtures.NOW;
+import static net.femtoparsec.cookie.CookieFixtures.cookie;
+import static net.femtoparsec.cookie.CookieFixtures.request;
+
+public class DeltaReplicatedCookieStoreTest {
+
+    private static final Duration NEVER = Duration.ofDays(1);
+
+    private LoopbackReplicationNetwork network;
+
+    private LoopbackReplicationNetwork.Endpoint endpointC;
+
+    private ReplicatedCookieStore nodeA;
+
+    private ReplicatedCookieStore nodeB;
+
+    private ReplicatedCookieStore nodeC;
+
+    @BeforeMethod
+    public void setUp() {
+        network = new LoopbackReplicationNetwork();
+        endpointC = network.connect();
+        nodeA = new DeltaReplicatedCookieStore("a", network.connect(), NEVER, 16, NEVER);
+        nodeB = new DeltaReplicatedCookieStore("b", network.connect(), NEVER, 16, NEVER);
+        nodeC = new DeltaReplicatedCookieStore("c", endpointC, NEVER, 16, NEVER);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        nodeA.close();
+        nodeB.close();
+        nodeC.close();
+    }
+
+    @Test
+    public void testDeltasAndAntiEntropyConverge() {
+        final URI site = URI.create("https://example.com/");
+        put(nodeA, site, "session=1", "theme=dark", "lang=fr");
+        nodeA.flush();
+        Assert.assertEquals(content(nodeC), content(nodeA));
+
+        endpointC.connected(false);
+        put(nodeA, site, "session=2", "lang=en; Max-Age=-1");
+        put(nodeB, URI.create("https://other.org/"), "id=42");
+        nodeA.flush();
+        nodeB.flush();
+        Assert.assertEquals(content(nodeB), content(nodeA));
+        Assert.assertNotEquals(content(nodeC), content(nodeA));
+
+        endpointC.connected(true);
+        nodeC.synchronize();
+
+        final Set<String> expected = Set.of("example.com:session=2", "example.com:theme=dark", "other.org:id=42");
+        Assert.assertEquals(content(nodeA), expected);
+        Assert.assertEquals(content(nodeB), expected);
+        Assert.assertEquals(content(nodeC), expected);
+    }
+
+    @Test
+    public void testExpiredCookiesDoNotBreakDigests() {
+        final AtomicLong time = new AtomicLong(NOW);
+        final AtomicInteger sent = new AtomicInteger();
+        final LoopbackReplicationNetwork partitioned = new LoopbackReplicationNetwork();
+        final LoopbackReplicationNetwork.Endpoint endpointY = partitioned.connect();
+        final ReplicationTransport counting = new CountingTransport(partitioned.connect(), sent);
+        try (ReplicatedCookieStore x = new DeltaReplicatedCookieStore("x", counting, NEVER, 16, NEVER, time::get);
+             ReplicatedCookieStore y = new DeltaReplicatedCookieStore("y", endpointY, NEVER, 16, NEVER, time::get)) {
+            endpointY.connected(false);
+            CookieManager.builder().cookieStore(x).clock(time::get).build()
+                         .put(URI.create("https://example.com/"), Map.of("Set-Cookie", List.of("session=1; Max-Age=10")));
+            x.flush();
+            time.addAndGet(60_000);
+            endpointY.connected(true);
+
+            sent.set(0);
+            x.synchronize();
+            Assert.assertEquals(sent.get(), 1, "only the digest should be sent");
+            Assert.assertTrue(y.getAllCookies().isEmpty());
+        }
+    }
+
+    @Test
+    public void testVersionsFollowTheClock() {
+        final AtomicLong time = new AtomicLong(NOW);
+        final LoopbackReplicationNetwork partitioned = new LoopbackReplicationNetwork();
+        try (ReplicatedCookieStore x = new DeltaReplicatedCookieStore("x", partitioned.connect(), NEVER, 16, NEVER, time::get);
+             ReplicatedCookieStore y = new DeltaReplicatedCookieStore("y", partitioned.connect(), NEVER, 16, NEVER, time::get)) {
+            final URI site = URI.create("https://example.com/");
+            time.addAndGet(1_000);
+            put(y, site, "session=y");
+            time.addAndGet(-1_000);
+            put(x, site, "session=x");
+            y.flush();
+            x.flush();
+            Assert.assertEquals(content(x), Set.of("example.com:session=y"));
+            Assert.assertEquals(content(y), Set.of("example.com:session=y"));
+        }
+    }
+
+    @Test
+    public void testValuesLargerThan64KiBAreReplicated() {
+        final String value = "0123456789abcdef".repeat(8_192);
+        final Cookie cookie = cookie("example.com", "large", value).build();
+        nodeA.addCookie(request("example.com"), cookie, NOW);
+        nodeA.flush();
+
+        Assert.assertEquals(nodeB.find(cookie).map(Cookie::value).orElse(null), value);
+        Assert.assertEquals(nodeC.find(cookie).map(Cookie::value).orElse(null), value);
+    }
+
+    @Test
+    public void testAFailedSendIsThrownAndRetried() {
+        final AtomicInteger failures = new AtomicInteger(1);
+        final LoopbackReplicationNetwork failing = new LoopbackReplicationNetwork();
+        final ReplicationTransport transport = new FailingTransport(failing.connect(), failures);
+        try (ReplicatedCookieStore x = new DeltaReplicatedCookieStore("x", transport, NEVER, 16, NEVER);
+             ReplicatedCookieStore y = new DeltaReplicatedCookieStore("y", failing.connect(), NEVER, 16, NEVER)) {
+            final URI site = URI.create("https://example.com/");
+            put(x, site, "session=1", "theme=dark");
+            Assert.assertThrows(IllegalStateException.class, x::flush);
+            Assert.assertTrue(y.getAllCookies().isEmpty());
+
+            put(x, site, "session=2");
+            x.flush();
+            Assert.assertEquals(content(y), Set.of("example.com:session=2", "example.com:theme=dark"));
+        }
+    }
+
+    @Test
+    public void testTheBackgroundFlushSurvivesAFailedSend() throws InterruptedException {
+        final AtomicInteger failures = new AtomicInteger(3);
+        final LoopbackReplicationNetwork failing = new LoopbackReplicationNetwork();
+        final ReplicationTransport transport = new FailingTransport(failing.connect(), failures);
+        try (ReplicatedCookieStore x = new DeltaReplicatedCookieStore("x", transport, Duration.ofMillis(5), 16, Duration.ofMillis(5));
+             ReplicatedCookieStore y = new DeltaReplicatedCookieStore("y", failing.connect(), NEVER, 16, NEVER)) {
+            put(x, URI.create("https://example.com/"), "session=1");
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (y.getAllCookies().isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            Assert.assertEquals(content(y), Set.of("example.com:session=1"));
+            Assert.assertEquals(failures.get(), 0);
+        }
+    }
+
+    private static void put(ReplicatedCookieStore store, URI uri, String... setCookies) {
+        CookieManager.create(store).put(uri, Map.of("Set-Cookie", List.of(setCookies)));
+    }
+
+    private static class CountingTransport implements ReplicationTransport {
+
+        private final ReplicationTransport delegate;
+
+        private final AtomicInteger sent;
+
+        private CountingTransport(ReplicationTransport delegate, AtomicInteger sent) {
+            this.delegate = delegate;
+            this.sent = sent;
+        }
+
+        @Override
+        public void send(byte[] message) {
+            sent.incrementAndGet();
+            delegate.send(message);
+        }
+
+        @Override
+        public void receive(Consumer<byte[]> receiver) {
+            delegate.receive(receiver);
+        }
+    }
+
+    /**
+     * Fails the provided number of sends with an {@link IllegalStateException}
+     */
+    private static class FailingTransport implements ReplicationTransport {
+
+        private final ReplicationTransport delegate;
+
+        private final AtomicInteger failures;
+
+        private FailingTransport(ReplicationTransport delegate, AtomicInteger failures) {
+            this.delegate = delegate;
+            this.failures = failures;
+        }
+
+        @Override
+        public void send(byte[] message) {
+            if (failures.getAndUpdate(f -> Math.max(0, f - 1)) > 0) {
+                throw new IllegalStateException("network down");
+            }
+            delegate.send(message);
+        }
+
+        @Override
+        public void receive(Consumer<byte[]> receiver) {
+            delegate.receive(receiver);
+        }
+    }
+
+    private static Set<String> content(ReplicatedCookieStore store) {
+        return store.getAllCookies()
+                    .stream()
+                    .map(c -> c.domain() + ":" + c.formHeaderString())
+                    .collect(Collectors.toSet());
+    }
+}
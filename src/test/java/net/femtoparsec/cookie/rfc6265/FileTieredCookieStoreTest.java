@@ -0,0 +1,184 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.Cookie;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static net.femtoparsec.cookie.CookieFixtures.NOW;
+import static net.femtoparsec.cookie.CookieFixtures.cookie;
+import static net.femtoparsec.cookie.CookieFixtures.request;
+
+public class FileTieredCookieStoreTest {
+
+    private static final Duration NEVER = Duration.ofDays(1);
+
+    private static final long COOKIE_SIZE = CookieSizeEstimator.estimate(cookie("a.com", "id").build());
+
+    private Path directory;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("tiered");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyUsedBucketIsDemotedAndPromotedBack() {
+        try (FileTieredCookieStore store = new FileTieredCookieStore(directory, 2 * COOKIE_SIZE, NEVER)) {
+            add(store, "a.com");
+            add(store, "b.com");
+            Assert.assertEquals(store.hotDomains(), Set.of("a.com", "b.com"));
+
+            add(store, "c.com");
+            Assert.assertEquals(store.hotDomains(), Set.of("b.com", "c.com"));
+            Assert.assertTrue(Files.isRegularFile(directory.resolve("a.com.cookies")));
+            Assert.assertTrue(store.byteUsage() <= store.byteBudget());
+
+            Assert.assertEquals(names(store, "a.com"), List.of("id"));
+            Assert.assertEquals(store.hotDomains(), Set.of("a.com", "c.com"));
+        }
+    }
+
+    @Test(timeOut = 10_000)
+    public void testIdleBucketsAreDemoted() throws InterruptedException {
+        try (FileTieredCookieStore store = new FileTieredCookieStore(directory, 1 << 20, Duration.ofMillis(20))) {
+            add(store, "a.com");
+            while (!store.hotDomains().isEmpty() || !Files.isRegularFile(directory.resolve("a.com.cookies"))) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(store.byteUsage(), 0);
+            Assert.assertEquals(names(store, "a.com"), List.of("id"));
+        }
+    }
+
+    @Test
+    public void testCookiesAreReloaded() {
+        try (FileTieredCookieStore store = new FileTieredCookieStore(directory, 1 << 20, NEVER)) {
+            add(store, "a.com");
+            add(store, "b.com");
+        }
+        try (FileTieredCookieStore store = new FileTieredCookieStore(directory, 1 << 20, NEVER)) {
+            Assert.assertTrue(store.hotDomains().isEmpty());
+            Assert.assertEquals(store.getAllCookies().stream().map(Cookie::domain).collect(Collectors.toSet()),
+                                Set.of("a.com", "b.com"));
+            Assert.assertEquals(names(store, "b.com"), List.of("id"));
+            Assert.assertEquals(store.hotDomains(), Set.of("b.com"));
+        }
+    }
+
+    @Test
+    public void testCleanUpReachesColdBuckets() {
+        try (FileTieredCookieStore store = new FileTieredCookieStore(directory, COOKIE_SIZE, NEVER)) {
+            store.addCookie(request("a.com"), cookie("a.com", "id").expiryTimeMillis(NOW + 1000).build(), NOW);
+            add(store, "b.com");
+            Assert.assertEquals(store.hotDomains(), Set.of("b.com"));
+
+            store.cleanUp(NOW + 2000);
+            Assert.assertFalse(Files.exists(directory.resolve("a.com.cookies")));
+            Assert.assertEquals(store.hotDomains(), Set.of("b.com"));
+            Assert.assertEquals(store.getAllCookies().size(), 1);
+        }
+    }
+
+    @Test(timeOut = 30_000)
+    public void testConcurrentPromotionsAndDemotionsLoseNoCookie() throws Exception {
+        final int threads = 4;
+        final int domains = 20;
+        try (FileTieredCookieStore store = new FileTieredCookieStore(directory, 3 * COOKIE_SIZE, NEVER)) {
+            final ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                final List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    final String name = "c" + t;
+                    futures.add(executor.submit(() -> {
+                        for (int d = 0; d < domains; d++) {
+                            final String host = "d" + d + ".com";
+                            store.addCookie(request(host), cookie(host, name).build(), NOW);
+                            store.getCookies(request("d" + (d / 2) + ".com"), NOW);
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+            Assert.assertEquals(store.getAllCookies().size(), threads * domains);
+            for (int d = 0; d < domains; d++) {
+                Assert.assertEquals(names(store, "d" + d + ".com").size(), threads);
+            }
+        }
+    }
+
+    @Test
+    public void testBucketsAreSites() {
+        final Set<String> publicSuffixes = Set.of("uk", "co.uk");
+        try (FileTieredCookieStore store = new FileTieredCookieStore(directory, 1 << 20, NEVER,
+                                                                     CookieSite.siteFunction(publicSuffixes::contains))) {
+            add(store, "www.a.co.uk");
+            add(store, "b.co.uk");
+            add(store, "192.168.0.1");
+            Assert.assertEquals(store.hotDomains(), Set.of("a.co.uk", "b.co.uk", "192.168.0.1"));
+        }
+    }
+
+    private static void add(@NonNull FileTieredCookieStore store, @NonNull String host) {
+        store.addCookie(request(host), cookie(host, "id").build(), NOW);
+    }
+
+    @NonNull
+    private static List<String> names(@NonNull FileTieredCookieStore store, @NonNull String host) {
+        return store.getCookies(request(host), NOW).stream().map(Cookie::name).collect(Collectors.toList());
+    }
+}
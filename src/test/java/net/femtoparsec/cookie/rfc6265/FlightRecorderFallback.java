@@ -0,0 +1,62 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import net.femtoparsec.cookie.CookieManager;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Use a store and a manager in a JVM where <code>jdk.jfr</code> is not resolved.
+ * Run by {@link FlightRecorderSupportTest}, exits with a non-zero status on failure.
+ */
+public class FlightRecorderFallback {
+
+    public static void main(String[] args) {
+        check(!FlightRecorderSupport.AVAILABLE, "jdk.jfr should not be available");
+
+        final InMemoryCookieStore store = new InMemoryCookieStore();
+        final CookieManager manager = CookieManager.create(store);
+        final URI uri = URI.create("https://a.com/");
+        manager.put(uri, Map.of("Set-Cookie", List.of("id=1; Max-Age=60", "=", "other=2")));
+
+        check(store.getAllCookies().size() == 2, "two cookies should be stored");
+        check(manager.get(uri, Map.of()).containsKey("Cookie"), "the cookies should be sent");
+
+        store.cleanUp(Instant.now().plusSeconds(120));
+        check(store.getAllCookies().size() == 1, "the expired cookie should be removed");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            System.err.println(message);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.lang.module.ModuleDescriptor;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+public class FlightRecorderSupportTest {
+
+    @Test
+    public void testTheFlightRecorderModuleIsOptional() {
+        final ModuleDescriptor descriptor = FlightRecorderSupport.class.getModule().getDescriptor();
+        if (descriptor == null) {
+            return;
+        }
+        final ModuleDescriptor.Requires jfr = descriptor.requires()
+                                                        .stream()
+                                                        .filter(r -> r.name().equals("jdk.jfr"))
+                                                        .findFirst()
+                                                        .orElseThrow();
+        Assert.assertTrue(jfr.modifiers().contains(ModuleDescriptor.Requires.Modifier.STATIC));
+    }
+
+    /**
+     * Run {@link FlightRecorderFallback} with the module graph limited to the mandatory dependencies
+     * so that the stores and the parser go through their path without events
+     */
+    @Test
+    public void testTheStoreWorksWithoutFlightRecorder() throws IOException, InterruptedException {
+        final Path java = Path.of(System.getProperty("java.home"), "bin", "java");
+        final Process process = new ProcessBuilder(java.toString(),
+                                                   "--limit-modules", "java.base",
+                                                   "--module-path", Path.of("target", "classes").toString(),
+                                                   "--patch-module", "fpc.cookie=" + Path.of("target", "test-classes"),
+                                                   "--module", "fpc.cookie/" + FlightRecorderFallback.class.getName())
+                .redirectErrorStream(true)
+                .start();
+        final String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        Assert.assertTrue(process.waitFor(30, TimeUnit.SECONDS));
+        Assert.assertEquals(process.exitValue(), 0, output);
+    }
+}
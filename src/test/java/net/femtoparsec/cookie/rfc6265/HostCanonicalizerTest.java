@@ -0,0 +1,87 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import net.femtoparsec.cookie.CookieManager;
+import net.femtoparsec.cookie.RequestInfo;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+public class HostCanonicalizerTest {
+
+    @DataProvider(name = "hosts")
+    public static Object[][] hosts() {
+        return new Object[][]{
+                {"example.com", "example.com"},
+                {"Example.COM", "example.com"},
+                {"bücher.example", "xn--bcher-kva.example"},
+                {"BÜCHER.example", "xn--bcher-kva.example"},
+                {"xn--bcher-kva.example", "xn--bcher-kva.example"},
+                {"例え.テスト", "xn--r8jz45g.xn--zckzah"},
+        };
+    }
+
+    @Test(dataProvider = "hosts")
+    public void testCanonicalize(String host, String expected) {
+        Assert.assertEquals(HostCanonicalizer.canonicalize(host), expected);
+    }
+
+    @Test
+    public void testTheLeastRecentlyUsedConversionIsEvicted() {
+        HostCanonicalizer.canonicalize("première.example");
+        HostCanonicalizer.canonicalize("deuxième.example");
+        HostCanonicalizer.canonicalize("première.example");
+        for (int i = 1; i < HostCanonicalizer.MAX_CACHE_SIZE; i++) {
+            HostCanonicalizer.canonicalize("hôte" + i + ".example");
+        }
+
+        Assert.assertTrue(HostCanonicalizer.isCached("première.example"));
+        Assert.assertFalse(HostCanonicalizer.isCached("deuxième.example"));
+        Assert.assertEquals(HostCanonicalizer.canonicalize("deuxième.example"), "xn--deuxime-6xa.example");
+        Assert.assertTrue(HostCanonicalizer.isCached("deuxième.example"));
+    }
+
+    @Test
+    public void testUnicodeHostOfUri() {
+        final RequestInfo requestInfo = RequestInfo.create(URI.create("https://user@bücher.example:8443/shop"));
+        Assert.assertEquals(requestInfo.hostName(), "xn--bcher-kva.example");
+    }
+
+    @Test
+    public void testUnicodeAndPunycodeFormsMatch() {
+        final CookieManager cookieManager = CookieManager.create();
+        cookieManager.put(URI.create("https://shop.bücher.example/"),
+                          Map.of("Set-Cookie", List.of("id=1; Domain=bücher.example")));
+
+        final Map<String,List<String>> headers = cookieManager.get(URI.create("https://xn--bcher-kva.example/"), Map.of());
+        Assert.assertEquals(headers.get("Cookie"), List.of("id=1"));
+    }
+}
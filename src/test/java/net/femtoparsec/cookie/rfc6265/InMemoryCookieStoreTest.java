@@ -0,0 +1,171 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieChangeEvent;
+import net.femtoparsec.cookie.CookieFixtures.EventRecorder;
+import net.femtoparsec.cookie.SimpleCookieMetrics;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static net.femtoparsec.cookie.CookieFixtures.NOW;
+import static net.femtoparsec.cookie.CookieFixtures.cookie;
+import static net.femtoparsec.cookie.CookieFixtures.names;
+import static net.femtoparsec.cookie.CookieFixtures.request;
+
+public class InMemoryCookieStoreTest {
+
+    @Test
+    public void testExpiredCookiesFoundByALookupAreRemoved() {
+        final SimpleCookieMetrics metrics = new SimpleCookieMetrics();
+        final InMemoryCookieStore store = new InMemoryCookieStore(metrics);
+        store.addCookie(request("a.com"), cookie("a.com", "short", "1").expiryTimeMillis(NOW + 1_000).build(), NOW);
+        store.addCookie(request("a.com"), cookie("a.com", "long", "1").expiryTimeMillis(NOW + 60_000).build(), NOW);
+
+        final List<Cookie> found = store.getCookies(request("a.com"), NOW + 2_000);
+
+        Assert.assertEquals(names(found), List.of("long"));
+        Assert.assertEquals(names(store.getAllCookies()), List.of("long"));
+        Assert.assertEquals(metrics.expiredCount(), 1);
+    }
+
+    @Test
+    public void testALookupOnlyLooksAtTheHostAndItsParentDomains() {
+        final InMemoryCookieStore store = new InMemoryCookieStore();
+        store.addCookie(request("shop.a.com"), cookie("shop.a.com", "host").build(), NOW);
+        store.addCookie(request("shop.a.com"), cookie("a.com", "parent").hostOnly(false).build(), NOW);
+        store.addCookie(request("other.a.com"), cookie("other.a.com", "sibling").build(), NOW);
+        store.addCookie(request("b.com"), cookie("b.com", "expired").expiryTimeMillis(NOW + 1_000).build(), NOW);
+
+        final List<Cookie> found = store.getCookies(request("shop.a.com"), NOW + 2_000);
+
+        Assert.assertEquals(names(found), List.of("host", "parent"));
+        Assert.assertEquals(names(store.getAllCookies()), List.of("expired", "host", "parent", "sibling"));
+        store.cleanUp(NOW + 2_000);
+        Assert.assertEquals(names(store.getAllCookies()), List.of("host", "parent", "sibling"));
+    }
+
+    @Test
+    public void testExpiredCookiesFoundByALookupArePublished() {
+        final InMemoryCookieStore store = new InMemoryCookieStore();
+        final EventRecorder recorder = new EventRecorder();
+        store.changes(store.lastSequence() + 1, Runnable::run).subscribe(recorder);
+        store.addCookie(request("a.com"), cookie("a.com", "short", "1").expiryTimeMillis(NOW + 1_000).build(), NOW);
+
+        store.getCookies(request("a.com"), NOW + 2_000);
+
+        Assert.assertEquals(recorder.events().stream().map(CookieChangeEvent::type).collect(Collectors.toList()),
+                            List.of(CookieChangeEvent.Type.ADDED, CookieChangeEvent.Type.EXPIRED));
+    }
+
+    /**
+     * The cookies are replaced by a synchronous subscriber while the expired cookies found
+     * under the read lock are being removed
+     */
+    @Test
+    public void testAReplacementIsNotRemovedAsExpired() {
+        final InMemoryCookieStore store = new InMemoryCookieStore();
+        final List<String> names = List.of("a", "b", "c");
+        for (String name : names) {
+            store.addCookie(request("a.com"), cookie("a.com", name, "old").expiryTimeMillis(NOW + 1_000).build(), NOW);
+        }
+        store.changes(store.lastSequence() + 1, Runnable::run).subscribe(new EventRecorder() {
+            @Override
+            public void onNext(CookieChangeEvent item) {
+                super.onNext(item);
+                if (events().size() == 1) {
+                    names.stream()
+                         .filter(name -> !name.equals(item.cookie().name()))
+                         .forEach(name -> store.addCookie(request("a.com"), cookie("a.com", name, "new").build(), NOW + 2_000));
+                }
+            }
+        });
+
+        store.getCookies(request("a.com"), NOW + 2_000);
+
+        Assert.assertEquals(store.getAllCookies().size(), 2);
+        Assert.assertTrue(store.getAllCookies().stream().allMatch(c -> c.value().equals("new")));
+    }
+
+    @Test
+    public void testConcurrentReadersAndWritersKeepTheStoreConsistent() throws Exception {
+        final InMemoryCookieStore store = new InMemoryCookieStore();
+        final int threadCount = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 2_000; i++) {
+                        final String domain = "d" + (i % 16) + ".com";
+                        final long now = NOW + i;
+                        if (thread % 2 == 0) {
+                            for (Cookie cookie : store.getCookies(request(domain), now)) {
+                                Assert.assertEquals(cookie.domain(), domain);
+                                Assert.assertFalse(cookie.isExpired(now));
+                            }
+                        } else if (i % 100 == 0) {
+                            store.cleanUp(now);
+                        } else {
+                            store.addCookie(request(domain), cookie(domain, "c" + (i % 8), "v" + thread)
+                                    .expiryTimeMillis(now + (i % 3) * 10)
+                                    .build(), now);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final List<Cookie> all = store.getAllCookies();
+        for (int d = 0; d < 16; d++) {
+            final String domain = "d" + d + ".com";
+            Assert.assertEquals(store.getCookies(request(domain), 0).size(),
+                                all.stream().filter(c -> c.domain().equals(domain)).count());
+        }
+        store.cleanUp(Long.MAX_VALUE);
+        Assert.assertTrue(store.getAllCookies().isEmpty());
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieQuery;
+import net.femtoparsec.cookie.CookieStore;
+import net.femtoparsec.cookie.MultiTenantCookieStore;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static net.femtoparsec.cookie.CookieFixtures.NOW;
+import static net.femtoparsec.cookie.CookieFixtures.cookie;
+import static net.femtoparsec.cookie.CookieFixtures.names;
+import static net.femtoparsec.cookie.CookieFixtures.request;
+
+public class InMemoryMultiTenantCookieStoreTest {
+
+    @Test
+    public void testATenantKeepsItsStore() {
+        final MultiTenantCookieStore tenants = MultiTenantCookieStore.inMemory();
+        final CookieStore store = tenants.forTenant("t1");
+
+        Assert.assertSame(tenants.forTenant("t1"), store);
+        Assert.assertNotSame(tenants.forTenant("t2"), store);
+        Assert.assertEquals(tenants.tenantIds(), Set.of("t1", "t2"));
+    }
+
+    @Test
+    public void testTenantsDoNotShareTheirCookies() {
+        final MultiTenantCookieStore tenants = MultiTenantCookieStore.inMemory();
+        tenants.forTenant("t1").addCookie(request("example.com"), cookie("example.com", "a").build(), NOW);
+        tenants.forTenant("t2").addCookie(request("example.com"), cookie("example.com", "b").build(), NOW);
+
+        Assert.assertEquals(names(tenants.forTenant("t1").getCookies(request("example.com"), NOW)), List.of("a"));
+        Assert.assertEquals(names(tenants.forTenant("t2").getCookies(request("example.com"), NOW)), List.of("b"));
+    }
+
+    @Test
+    public void testTheStringsAreSharedByAllTheTenants() {
+        final MultiTenantCookieStore tenants = MultiTenantCookieStore.inMemory();
+        tenants.forTenant("t1").addCookie(request("example.com"), copy(cookie("example.com", "id").build()), NOW);
+        tenants.forTenant("t2").addCookie(request("example.com"), copy(cookie("example.com", "id").build()), NOW);
+
+        final Cookie first = tenants.forTenant("t1").getAllCookies().get(0);
+        final Cookie second = tenants.forTenant("t2").getAllCookies().get(0);
+        Assert.assertSame(second.domain(), first.domain());
+        Assert.assertSame(second.path(), first.path());
+        Assert.assertSame(second.name(), first.name());
+    }
+
+    @Test
+    public void testAnEvictedStoreIsDetached() {
+        final MultiTenantCookieStore tenants = MultiTenantCookieStore.inMemory();
+        final CookieStore evicted = tenants.forTenant("t1");
+        evicted.addCookie(request("example.com"), cookie("example.com", "id").build(), NOW);
+
+        Assert.assertTrue(tenants.evict("t1"));
+        Assert.assertFalse(tenants.evict("t1"));
+        Assert.assertEquals(tenants.tenantIds(), Set.of());
+
+        final CookieStore store = tenants.forTenant("t1");
+        Assert.assertNotSame(store, evicted);
+        Assert.assertTrue(store.getAllCookies().isEmpty());
+        store.addCookie(request("other.com"), cookie("other.com", "other").build(), NOW);
+        Assert.assertEquals(names(evicted.getAllCookies()), List.of("id"));
+    }
+
+    @Test
+    public void testEvictIfEvictsTheMatchingTenants() {
+        final MultiTenantCookieStore tenants = MultiTenantCookieStore.inMemory();
+        for (String tenantId : List.of("a1", "a2", "b1")) {
+            tenants.forTenant(tenantId);
+        }
+
+        Assert.assertEquals(tenants.evictIf(id -> id.startsWith("a")), 2);
+        Assert.assertEquals(tenants.tenantIds(), Set.of("b1"));
+        Assert.assertEquals(tenants.evictIf(id -> id.startsWith("a")), 0);
+    }
+
+    @Test
+    public void testATenantStoreFindsTheCookiesOfTheParentDomains() {
+        final CookieStore store = MultiTenantCookieStore.inMemory().forTenant("t");
+        store.addCookie(request("example.com"), cookie("example.com", "parent").hostOnly(false).build(), NOW);
+        store.addCookie(request("example.com"), cookie("example.com", "host").build(), NOW);
+        store.addCookie(request("api.example.com"), cookie("api.example.com", "api").build(), NOW);
+        store.addCookie(request("api.example.com"), cookie("api.example.com", "short").expiryTimeMillis(NOW + 1_000).build(), NOW);
+
+        Assert.assertEquals(names(store.getCookies(request("api.example.com"), NOW + 2_000)), List.of("api", "parent"));
+        Assert.assertEquals(names(store.getCookies(request("example.com"), NOW)), List.of("host", "parent"));
+        Assert.assertEquals(store.getAllCookies().size(), 3, "the expired cookie found by the lookup is removed");
+
+        Assert.assertEquals(names(store.remove(CookieQuery.forDomainTree("example.com").andName("api"))), List.of("api"));
+        store.remove(request("example.com"));
+        Assert.assertTrue(store.getAllCookies().isEmpty());
+    }
+
+    @Test
+    public void testTheInterningStoreInternsTheAddedAndInitialCookies() {
+        final CookieStringInterner interner = new CookieStringInterner();
+        final String domain = interner.intern(new String("example.com"));
+        final CookieStore store = new InterningCookieStore(new InMemoryCookieStore(), interner);
+
+        store.addCookie(request("example.com"), copy(cookie("example.com", "a").build()), NOW);
+        Assert.assertSame(store.getAllCookies().get(0).domain(), domain);
+
+        store.initialize(List.of(copy(cookie("example.com", "b").build())));
+        Assert.assertEquals(names(store.getAllCookies()), List.of("b"));
+        Assert.assertSame(store.getAllCookies().get(0).domain(), domain);
+    }
+
+    /**
+     * @return a copy of the cookie whose strings are not interned
+     */
+    private static Cookie copy(Cookie cookie) {
+        return cookie.toBuilder()
+                     .name(new String(cookie.name()))
+                     .domain(new String(cookie.domain()))
+                     .path(new String(cookie.path()))
+                     .build();
+    }
+}
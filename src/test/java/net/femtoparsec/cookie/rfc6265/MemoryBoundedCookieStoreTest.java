@@ -0,0 +1,152 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieChangeEvent;
+import net.femtoparsec.cookie.CookieFixtures.EventRecorder;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static net.femtoparsec.cookie.CookieFixtures.NOW;
+import static net.femtoparsec.cookie.CookieFixtures.cookie;
+import static net.femtoparsec.cookie.CookieFixtures.request;
+
+public class MemoryBoundedCookieStoreTest {
+
+    @Test
+    public void testByteUsageFollowsReplacementsAndRemovals() {
+        final MemoryBoundedCookieStore store = new MemoryBoundedCookieStore(1 << 20);
+        store.addCookie(request("a.com"), cookie("a.com", "id", "short").build(), NOW);
+        store.addCookie(request("a.com"), cookie("a.com", "id", "a much longer value").build(), NOW);
+        store.addCookie(request("b.com"), cookie("b.com", "id", "v").build(), NOW);
+        Assert.assertEquals(store.byteUsage(), size(store.getAllCookies()));
+        Assert.assertEquals(store.byteUsageByDomain(),
+                            Map.of("a.com", size(store.find(cookie("a.com", "id", "").build()).stream().collect(Collectors.toList())),
+                                   "b.com", size(store.find(cookie("b.com", "id", "").build()).stream().collect(Collectors.toList()))));
+
+        store.getCookies(request("a.com"), NOW + 1000);
+        Assert.assertEquals(store.byteUsage(), size(store.getAllCookies()));
+
+        store.remove(request("a.com"));
+        Assert.assertEquals(store.byteUsage(), size(store.getAllCookies()));
+        Assert.assertEquals(store.byteUsageByDomain().keySet(), java.util.Set.of("b.com"));
+    }
+
+    @Test
+    public void testLeastRecentlyAccessedCookieOfTheLargestDomainIsEvicted() {
+        final long size = CookieSizeEstimator.estimate(cookie("a.com", "c1", "v").path("/x").build());
+        final MemoryBoundedCookieStore store = new MemoryBoundedCookieStore(3 * size);
+        store.addCookie(request("a.com", "/x"), cookie("a.com", "c1", "v").path("/x").build(), NOW);
+        store.addCookie(request("a.com", "/y"), cookie("a.com", "c1", "v").path("/y").build(), NOW);
+        store.addCookie(request("b.com", "/x"), cookie("b.com", "c1", "v").path("/x").build(), NOW);
+        store.getCookies(request("a.com", "/x"), NOW);
+
+        store.addCookie(request("b.com", "/y"), cookie("b.com", "c1", "v").path("/y").build(), NOW);
+        Assert.assertEquals(paths(store, "a.com"), List.of("/x"));
+        Assert.assertEquals(store.byteUsage(), 3 * size);
+
+        store.addCookie(request("b.com", "/z"), cookie("b.com", "c1", "v").path("/z").build(), NOW);
+        Assert.assertEquals(paths(store, "b.com"), List.of("/y", "/z"));
+        Assert.assertEquals(store.byteUsage(), 3 * size);
+    }
+
+    @Test
+    public void testEvictionPublishesTheCurrentCookie() {
+        final long size = CookieSizeEstimator.estimate(cookie("a.com", "id", "2").build());
+        final MemoryBoundedCookieStore store = new MemoryBoundedCookieStore(size);
+        final EventRecorder recorder = new EventRecorder();
+        store.changes(store.lastSequence() + 1, Runnable::run).subscribe(recorder);
+
+        store.addCookie(request("a.com"), cookie("a.com", "id", "1").build(), NOW);
+        store.addCookie(request("a.com"), cookie("a.com", "id", "2").build(), NOW);
+        store.addCookie(request("a.com"), cookie("a.com", "ix", "3").build(), NOW);
+
+        final List<CookieChangeEvent> evicted = recorder.events().stream()
+                                                     .filter(e -> e.type() == CookieChangeEvent.Type.EVICTED)
+                                                     .collect(Collectors.toList());
+        Assert.assertEquals(evicted.size(), 1);
+        Assert.assertEquals(evicted.get(0).cookie().value(), "2");
+    }
+
+    @Test
+    public void testConcurrentLookupsAndAdditionsKeepTheByteUsage() throws Exception {
+        final long size = CookieSizeEstimator.estimate(cookie("d0.com", "c0", "v0").build());
+        final MemoryBoundedCookieStore store = new MemoryBoundedCookieStore(20 * size);
+        final int threadCount = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 2_000; i++) {
+                        final String domain = "d" + (i % 8) + ".com";
+                        if (thread % 2 == 0) {
+                            store.getCookies(request(domain), NOW + i);
+                        } else {
+                            store.addCookie(request(domain), cookie(domain, "c" + (i % 5), "v" + thread).build(), NOW + i);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals(store.byteUsage(), size(store.getAllCookies()));
+        Assert.assertTrue(store.byteUsage() <= store.byteBudget());
+        Assert.assertEquals(store.byteUsageByDomain().values().stream().mapToLong(Long::longValue).sum(), store.byteUsage());
+    }
+
+    private static long size(@NonNull List<Cookie> cookies) {
+        return cookies.stream().mapToLong(CookieSizeEstimator::estimate).sum();
+    }
+
+    @NonNull
+    private static List<String> paths(@NonNull MemoryBoundedCookieStore store, @NonNull String domain) {
+        return store.getAllCookies()
+                    .stream()
+                    .filter(c -> c.domain().equals(domain))
+                    .map(Cookie::path)
+                    .sorted()
+                    .collect(Collectors.toList());
+    }
+}
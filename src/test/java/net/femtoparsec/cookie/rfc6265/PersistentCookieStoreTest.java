@@ -0,0 +1,193 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieQuery;
+import net.femtoparsec.cookie.ForkableCookieStore;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static net.femtoparsec.cookie.CookieFixtures.NOW;
+import static net.femtoparsec.cookie.CookieFixtures.cookie;
+import static net.femtoparsec.cookie.CookieFixtures.names;
+import static net.femtoparsec.cookie.CookieFixtures.request;
+
+public class PersistentCookieStoreTest {
+
+    @Test
+    public void testTheModificationsOfAForkAreNotSeenByItsParent() {
+        final ForkableCookieStore parent = new PersistentCookieStore();
+        parent.addCookie(request("a.com"), cookie("a.com", "kept").build(), NOW);
+        parent.addCookie(request("a.com"), cookie("a.com", "removed").build(), NOW);
+        parent.addCookie(request("b.com"), cookie("b.com", "expiring").expiryTimeMillis(NOW + 1_000).build(), NOW);
+
+        final ForkableCookieStore child = parent.fork();
+        child.addCookie(request("c.com"), cookie("c.com", "added").build(), NOW);
+        child.remove(CookieQuery.forName("removed"));
+        child.cleanUp(NOW + 2_000);
+        Assert.assertEquals(names(child.getAllCookies()), List.of("added", "kept"));
+        Assert.assertEquals(names(parent.getAllCookies()), List.of("expiring", "kept", "removed"));
+
+        child.clean();
+        Assert.assertTrue(child.getAllCookies().isEmpty());
+        Assert.assertEquals(names(parent.getAllCookies()), List.of("expiring", "kept", "removed"));
+    }
+
+    @Test
+    public void testTheModificationsOfAParentAreNotSeenByItsForks() {
+        final ForkableCookieStore parent = new PersistentCookieStore();
+        parent.addCookie(request("a.com"), cookie("a.com", "kept").build(), NOW);
+        parent.addCookie(request("a.com"), cookie("a.com", "removed").build(), NOW);
+        parent.addCookie(request("b.com"), cookie("b.com", "expiring").expiryTimeMillis(NOW + 1_000).build(), NOW);
+
+        final ForkableCookieStore child = parent.fork();
+        parent.addCookie(request("c.com"), cookie("c.com", "added").build(), NOW);
+        parent.remove(request("a.com"));
+        parent.getCookies(request("b.com"), NOW + 2_000);
+        Assert.assertEquals(names(parent.getAllCookies()), List.of("added"));
+        Assert.assertEquals(names(child.getAllCookies()), List.of("expiring", "kept", "removed"));
+
+        parent.clean();
+        Assert.assertEquals(names(child.getAllCookies()), List.of("expiring", "kept", "removed"));
+    }
+
+    @Test
+    public void testACookieReplacedDuringTheExpiryScanIsKept() {
+        final PersistentCookieStore store = new PersistentCookieStore();
+        final Cookie replacement = cookie("a.com", "id", "new").build();
+        final HookedCookie hooked = new HookedCookie(cookie("a.com", "id", "old").expiryTimeMillis(NOW + 1_000).build(),
+                                                     () -> store.addCookie(request("a.com"), replacement, NOW + 2_000));
+        store.addCookie(request("a.com"), hooked, NOW);
+        hooked.arm();
+
+        Assert.assertTrue(store.getCookies(request("a.com"), NOW + 2_000).isEmpty());
+        Assert.assertSame(store.find(replacement).orElseThrow(), replacement);
+    }
+
+    @Test
+    public void testACleanUpInterruptedByAnAdditionIsRetried() {
+        final PersistentCookieStore store = new PersistentCookieStore();
+        final Cookie added = cookie("a.com", "added").expiryTimeMillis(NOW + 1_000).build();
+        final Cookie kept = cookie("a.com", "kept").build();
+        final HookedCookie hooked = new HookedCookie(cookie("a.com", "hooked").expiryTimeMillis(NOW + 1_000).build(), () -> {
+            store.addCookie(request("a.com"), added, NOW);
+            store.addCookie(request("a.com"), kept, NOW);
+        });
+        store.addCookie(request("a.com"), hooked, NOW);
+        hooked.arm();
+
+        store.cleanUp(NOW + 2_000);
+
+        Assert.assertEquals(names(store.getAllCookies()), List.of("kept"));
+    }
+
+    @Test
+    public void testConcurrentRemovalsReturnEachCookieOnce() throws Exception {
+        final PersistentCookieStore store = new PersistentCookieStore();
+        final int writerCount = 4;
+        final int cookieCount = 2_000;
+        final ExecutorService executor = Executors.newFixedThreadPool(writerCount + 1);
+        try {
+            final AtomicBoolean writing = new AtomicBoolean(true);
+            final Future<List<Cookie>> remover = executor.submit(() -> {
+                final List<Cookie> removed = new ArrayList<>();
+                while (writing.get()) {
+                    removed.addAll(store.remove(CookieQuery.forName("id")));
+                }
+                return removed;
+            });
+            final List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < writerCount; w++) {
+                final int writer = w;
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < cookieCount; i++) {
+                        final String domain = "w" + writer + "-" + i + ".com";
+                        store.addCookie(request(domain), cookie(domain, "id").build(), NOW);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get(30, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+
+            final List<Cookie> removed = remover.get(30, TimeUnit.SECONDS);
+            final Set<String> domains = new HashSet<>();
+            for (Cookie cookie : removed) {
+                Assert.assertTrue(domains.add(cookie.domain()), "removed twice: " + cookie.domain());
+            }
+            for (Cookie cookie : store.getAllCookies()) {
+                Assert.assertTrue(domains.add(cookie.domain()), "removed but still present: " + cookie.domain());
+            }
+            Assert.assertEquals(domains.size(), writerCount * cookieCount);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * A cookie calling a hook the first time its expiry is checked once armed, to run
+     * a concurrent modification in the middle of an operation of the store
+     */
+    private static class HookedCookie extends Cookie {
+
+        private final AtomicBoolean armed = new AtomicBoolean();
+
+        private final Runnable hook;
+
+        private HookedCookie(@NonNull Cookie cookie, @NonNull Runnable hook) {
+            super(cookie.creationTimeMillis(), cookie.lastAccessTimeMillis(), cookie.name(), cookie.domain(), cookie.path(),
+                  cookie.value(), cookie.expiryTimeMillis(), cookie.securedOnly(), cookie.httpOnly(), cookie.hostOnly(),
+                  cookie.sameSite(), cookie.partitionKey());
+            this.hook = hook;
+        }
+
+        private void arm() {
+            armed.set(true);
+        }
+
+        @Override
+        public boolean isExpired(long nowMillis) {
+            if (armed.compareAndSet(true, false)) {
+                hook.run();
+            }
+            return super.isExpired(nowMillis);
+        }
+    }
+}
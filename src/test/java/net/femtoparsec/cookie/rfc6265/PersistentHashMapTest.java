@@ -0,0 +1,99 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.RequiredArgsConstructor;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class PersistentHashMapTest {
+
+    @RequiredArgsConstructor
+    private static class Key {
+        private final int id;
+        private final int hash;
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    @DataProvider(name = "hashRanges")
+    public static Object[][] hashRanges() {
+        return new Object[][]{{Integer.MAX_VALUE}, {64}, {3}};
+    }
+
+    @Test(dataProvider = "hashRanges")
+    public void testRandomOperationsMatchHashMap(int hashRange) {
+        final Random random = new Random(hashRange);
+        final Map<Key,Integer> expected = new HashMap<>();
+        PersistentHashMap<Key,Integer> actual = PersistentHashMap.empty();
+
+        for (int i = 0; i < 20_000; i++) {
+            final int id = random.nextInt(2_000);
+            final Key key = new Key(id, Integer.hashCode(id) % hashRange);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                actual = actual.remove(key);
+            } else {
+                expected.put(key, i);
+                actual = actual.put(key, i);
+            }
+        }
+
+        Assert.assertEquals(actual.size(), expected.size());
+        final Map<Key,Integer> content = new HashMap<>();
+        actual.forEach(content::put);
+        Assert.assertEquals(content, expected);
+        for (Map.Entry<Key,Integer> entry : expected.entrySet()) {
+            Assert.assertEquals(actual.get(entry.getKey()), entry.getValue());
+        }
+    }
+
+    @Test
+    public void testModificationsDoNotAlterPreviousVersion() {
+        final Key key = new Key(1, 1);
+        final PersistentHashMap<Key,Integer> first = PersistentHashMap.<Key,Integer>empty().put(key, 1);
+        final PersistentHashMap<Key,Integer> second = first.put(key, 2).put(new Key(2, 2), 3);
+
+        Assert.assertEquals(first.size(), 1);
+        Assert.assertEquals(first.get(key), Integer.valueOf(1));
+        Assert.assertEquals(second.size(), 2);
+        Assert.assertEquals(second.get(key), Integer.valueOf(2));
+        Assert.assertTrue(second.remove(key).remove(new Key(2, 2)).isEmpty());
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+public class SetCookieBytesParserTest {
+
+    @DataProvider(name = "setCookies")
+    public static Object[][] setCookies() {
+        return new Object[][]{
+                {"SID=31d4d96e407aad42"},
+                {" SID = 31d4d96e407aad42 ; Path=/; Domain=Example.COM"},
+                {"SID=31d4d96e407aad42; Path=/; Secure; HttpOnly"},
+                {"lang=en-US; Expires=Wed, 09 Jun 2021 10:18:14 GMT"},
+                {"lang=en-US; Max-Age=3600; Expires=Wed, 09 Jun 2021 10:18:14 GMT"},
+                {"lang=; max-age=-1"},
+                {"a=b; Max-Age=9223372036854775807"},
+                {"a=b; Max-Age=9223372036854775808; Expires=Wed, 09 Jun 2021 10:18:14 GMT"},
+                {"a=b; Max-Age=-9223372036854775808"},
+                {"a=b; MAX-AGE=12x; PATH=relative; domain=.example.com"},
+                {"a=b; Domain=first.com; Domain=; path=/a; Path=/b"},
+                {"a=b; Domain=."},
+                {"a=b=c; ; unknown=1;  secure  "},
+                {"__Host-id=1; Secure; Path=/; SameSite=None; Partitioned"},
+                {"a=b; samesite=LAX; SameSite=unknown; PARTITIONED"},
+                {"a=b; SameSite; samesite= Strict "},
+                {"=missing-name"},
+                {"no-equal-sign"},
+                {""},
+        };
+    }
+
+    @Test(dataProvider = "setCookies")
+    public void testSameResultAsStringParser(@NonNull String setCookie) {
+        final Optional<CookieData> expected = SetCookieStringParser.parse(setCookie);
+        final byte[] bytes = ("xx" + setCookie + "yy").getBytes(StandardCharsets.ISO_8859_1);
+        final Optional<CookieData> actual = SetCookieBytesParser.parse(ByteBuffer.wrap(bytes, 2, bytes.length - 4).slice());
+
+        Assert.assertEquals(actual.isPresent(), expected.isPresent());
+        if (expected.isPresent()) {
+            Assert.assertEquals(describe(actual.get()), describe(expected.get()));
+        }
+    }
+
+    /**
+     * Expires is only compared when there is no max-age, the bytes parser skips it otherwise
+     */
+    @NonNull
+    private static String describe(@NonNull CookieData data) {
+        final String expiry = data.maxAge() != null ? "max-age=" + data.maxAge() : String.valueOf(data.expires());
+        return String.join("|", data.name(), data.value(), expiry,
+                           String.valueOf(data.domain()), String.valueOf(data.path()),
+                           String.valueOf(data.secured()), String.valueOf(data.httpOnly()),
+                           String.valueOf(data.sameSite()), String.valueOf(data.partitioned()));
+    }
+}
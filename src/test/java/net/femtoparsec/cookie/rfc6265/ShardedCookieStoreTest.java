@@ -0,0 +1,147 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieQuery;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static net.femtoparsec.cookie.CookieFixtures.NOW;
+import static net.femtoparsec.cookie.CookieFixtures.cookie;
+import static net.femtoparsec.cookie.CookieFixtures.names;
+import static net.femtoparsec.cookie.CookieFixtures.request;
+
+public class ShardedCookieStoreTest {
+
+    private static final int SHARD_COUNT = 16;
+
+    @Test
+    public void testTheCookiesOfParentDomainsAreFoundInTheirShards() {
+        final ShardedCookieStore store = new ShardedCookieStore(SHARD_COUNT, Runnable::run);
+        store.addCookie(request("api.example.com"), cookie("example.com", "parent").hostOnly(false).build(), NOW);
+        store.addCookie(request("api.example.com"), cookie("api.example.com", "host").hostOnly(true).build(), NOW);
+        store.addCookie(request("a.b.example.com"), cookie("b.example.com", "middle").hostOnly(false).build(), NOW);
+
+        Assert.assertEquals(names(store.getCookies(request("api.example.com"), NOW)), List.of("host", "parent"));
+        Assert.assertEquals(names(store.getCookies(request("a.b.example.com"), NOW)), List.of("middle", "parent"));
+        Assert.assertEquals(names(store.getCookies(request("example.com"), NOW)), List.of("parent"));
+        Assert.assertEquals(names(store.getCookies(request("other.com"), NOW)), List.of());
+    }
+
+    @Test
+    public void testRemovingARequestRemovesTheCookiesOfItsParentDomains() {
+        final ShardedCookieStore store = new ShardedCookieStore(SHARD_COUNT, Runnable::run);
+        store.addCookie(request("api.example.com"), cookie("example.com", "parent").hostOnly(false).build(), NOW);
+        store.addCookie(request("api.example.com"), cookie("api.example.com", "host").hostOnly(true).build(), NOW);
+        store.addCookie(request("other.com"), cookie("other.com", "other").hostOnly(true).build(), NOW);
+
+        store.remove(request("api.example.com"));
+
+        Assert.assertEquals(names(store.getAllCookies()), List.of("other"));
+    }
+
+    @Test
+    public void testASingleCookieOperationDoesNotUseTheExecutor() {
+        final CountingExecutor executor = new CountingExecutor();
+        final ShardedCookieStore store = new ShardedCookieStore(SHARD_COUNT, executor);
+        store.addCookie(request("a.com"), cookie("a.com", "id").build(), NOW);
+        store.addCookie(request("b.com"), cookie("b.com", "id").build(), NOW);
+
+        Assert.assertEquals(store.query(CookieQuery.forDomain("a.com")).size(), 1);
+        Assert.assertTrue(store.find(cookie("b.com", "id").build()).isPresent());
+        Assert.assertEquals(store.getCookies(request("a.com"), NOW).size(), 1);
+        Assert.assertEquals(executor.tasks.get(), 0);
+    }
+
+    @Test
+    public void testBulkOperationsRunOnEveryShardWithTheExecutor() {
+        final CountingExecutor executor = new CountingExecutor();
+        final ShardedCookieStore store = new ShardedCookieStore(SHARD_COUNT, executor);
+        final List<Cookie> cookies = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            cookies.add(cookie("d" + i + ".com", "id").expiryTimeMillis(i % 2 == 0 ? NOW + 1_000 : Cookie.NO_EXPIRY).build());
+        }
+
+        store.initialize(cookies);
+        Assert.assertEquals(executor.tasks.getAndSet(0), SHARD_COUNT);
+
+        Assert.assertEquals(store.getAllCookies().size(), 100);
+        Assert.assertEquals(executor.tasks.getAndSet(0), SHARD_COUNT);
+
+        Assert.assertEquals(store.query(CookieQuery.forName("id")).size(), 100);
+        Assert.assertEquals(executor.tasks.getAndSet(0), SHARD_COUNT);
+
+        store.cleanUp(NOW + 2_000);
+        Assert.assertEquals(executor.tasks.getAndSet(0), SHARD_COUNT);
+        Assert.assertEquals(store.getAllCookies().size(), 50);
+        executor.reset();
+
+        store.clean();
+        Assert.assertEquals(executor.tasks.get(), SHARD_COUNT);
+        Assert.assertTrue(store.getAllCookies().isEmpty());
+    }
+
+    @Test
+    public void testADomainTreeQueryIsAnsweredByAllShards() {
+        final ShardedCookieStore store = new ShardedCookieStore(SHARD_COUNT, ForkJoinPool.commonPool());
+        store.addCookie(request("example.com"), cookie("example.com", "a").build(), NOW);
+        store.addCookie(request("api.example.com"), cookie("api.example.com", "b").build(), NOW);
+        store.addCookie(request("a.b.example.com"), cookie("a.b.example.com", "c").build(), NOW);
+        store.addCookie(request("example.org"), cookie("example.org", "d").build(), NOW);
+
+        Assert.assertEquals(names(store.query(CookieQuery.forDomainTree("example.com"))), List.of("a", "b", "c"));
+        Assert.assertEquals(names(store.remove(CookieQuery.forDomainTree("example.com"))), List.of("a", "b", "c"));
+        Assert.assertEquals(names(store.getAllCookies()), List.of("d"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testTheShardCountMustBePositive() {
+        new ShardedCookieStore(0, Runnable::run);
+    }
+
+    private static class CountingExecutor implements Executor {
+
+        private final AtomicInteger tasks = new AtomicInteger();
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            tasks.incrementAndGet();
+            ForkJoinPool.commonPool().execute(command);
+        }
+
+        private void reset() {
+            tasks.set(0);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookieFixtures;
+import net.femtoparsec.cookie.RequestInfo;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static net.femtoparsec.cookie.CookieFixtures.NOW;
+
+public class SharedMemoryCookieStoreTest {
+
+    private static final int SEQUENCE_OFFSET = 8;
+
+    private static final int LENGTH_OFFSET = 16;
+
+    private static final RequestInfo REQUEST = RequestInfo.create(URI.create("https://example.com/"));
+
+    private Path file;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        file = Files.createTempFile("cookies", ".seg");
+        Files.delete(file);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testWritesAreSeenByTheOtherStores() throws IOException {
+        try (SharedMemoryCookieStore writer = new SharedMemoryCookieStore(file, 1 << 16);
+             SharedMemoryCookieStore reader = new SharedMemoryCookieStore(file, 1 << 16)) {
+            Assert.assertTrue(reader.getAllCookies().isEmpty());
+            writer.addCookie(REQUEST, cookie("a", NOW), NOW);
+            Assert.assertEquals(names(reader.getCookies(REQUEST, NOW)), Set.of("a"));
+            writer.remove(REQUEST);
+            Assert.assertTrue(reader.getAllCookies().isEmpty());
+        }
+    }
+
+    @Test(timeOut = 10_000)
+    public void testSegmentLeftByADeadWriterIsRepaired() throws IOException {
+        try (SharedMemoryCookieStore store = new SharedMemoryCookieStore(file, 1 << 16)) {
+            store.addCookie(REQUEST, cookie("a", NOW), NOW);
+            store.addCookie(REQUEST, cookie("b", NOW), NOW);
+        }
+        final long sequence;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final MappedByteBuffer segment = map(channel);
+            sequence = segment.getLong(SEQUENCE_OFFSET);
+            segment.putLong(SEQUENCE_OFFSET, sequence + 1);
+        }
+
+        try (SharedMemoryCookieStore store = new SharedMemoryCookieStore(file, 1 << 16)) {
+            Assert.assertEquals(names(store.getAllCookies()), Set.of("a", "b"));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            Assert.assertEquals(map(channel).getLong(SEQUENCE_OFFSET), sequence + 2);
+        }
+    }
+
+    @Test(timeOut = 10_000)
+    public void testTornReadsFallBackToALockedRead() throws IOException {
+        try (SharedMemoryCookieStore store = new SharedMemoryCookieStore(file, 1 << 16)) {
+            store.addCookie(REQUEST, cookie("a", NOW), NOW);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                final MappedByteBuffer segment = map(channel);
+                segment.putInt(LENGTH_OFFSET, Integer.MAX_VALUE);
+                segment.putLong(SEQUENCE_OFFSET, segment.getLong(SEQUENCE_OFFSET) + 2);
+            }
+            Assert.assertTrue(store.getAllCookies().isEmpty());
+
+            store.addCookie(REQUEST, cookie("b", NOW), NOW);
+            Assert.assertEquals(names(store.getAllCookies()), Set.of("b"));
+        }
+    }
+
+    @Test(timeOut = 30_000)
+    public void testConcurrentWritersAndReaders() throws Exception {
+        final int writers = 4;
+        final int cookiesPerWriter = 50;
+        final ExecutorService executor = Executors.newFixedThreadPool(writers + 1);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        try (SharedMemoryCookieStore first = new SharedMemoryCookieStore(file, 1 << 20);
+             SharedMemoryCookieStore second = new SharedMemoryCookieStore(file, 1 << 20)) {
+            final Future<Integer> reader = executor.submit(() -> {
+                int previous = 0;
+                while (running.get()) {
+                    final int size = second.getAllCookies().size();
+                    Assert.assertTrue(size >= previous, size + " < " + previous);
+                    previous = size;
+                }
+                return previous;
+            });
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                final SharedMemoryCookieStore store = w % 2 == 0 ? first : second;
+                final String prefix = "w" + w + "-";
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < cookiesPerWriter; i++) {
+                        store.addCookie(REQUEST, cookie(prefix + i, NOW), NOW);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            running.set(false);
+            reader.get();
+            Assert.assertEquals(first.getAllCookies().size(), writers * cookiesPerWriter);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyAccessedCookiesAreEvictedWhenFull() throws IOException {
+        final int lineSize = CookieLineFormat.format(cookie("c0", NOW)).length() + 1;
+        try (SharedMemoryCookieStore store = new SharedMemoryCookieStore(file, 3 * lineSize)) {
+            for (int i = 0; i < 4; i++) {
+                store.addCookie(REQUEST, cookie("c" + i, NOW + i), NOW);
+            }
+            Assert.assertEquals(names(store.getAllCookies()), Set.of("c1", "c2", "c3"));
+
+            store.addCookie(REQUEST, cookie("c4", NOW + 10).toBuilder().value("v".repeat(4 * lineSize)).build(), NOW);
+            Assert.assertEquals(names(store.getAllCookies()), Set.of("c1", "c2", "c3"));
+        }
+    }
+
+    @Test
+    public void testTheWriteLockIsReleasedWithTheLastStoreOfTheFile() throws IOException {
+        final int before = SharedMemoryCookieStore.writeLockCount();
+        final SharedMemoryCookieStore first = new SharedMemoryCookieStore(file, 1 << 16);
+        final SharedMemoryCookieStore second = new SharedMemoryCookieStore(file, 1 << 16);
+        Assert.assertEquals(SharedMemoryCookieStore.writeLockCount(), before + 1);
+
+        first.close();
+        first.close();
+        Assert.assertEquals(SharedMemoryCookieStore.writeLockCount(), before + 1);
+        second.addCookie(REQUEST, cookie("a", NOW), NOW);
+
+        second.close();
+        Assert.assertEquals(SharedMemoryCookieStore.writeLockCount(), before);
+    }
+
+    @NonNull
+    private static MappedByteBuffer map(@NonNull FileChannel channel) throws IOException {
+        final MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        segment.order(ByteOrder.nativeOrder());
+        return segment;
+    }
+
+    @NonNull
+    private static Set<String> names(@NonNull List<Cookie> cookies) {
+        return cookies.stream().map(Cookie::name).collect(Collectors.toSet());
+    }
+
+    @NonNull
+    private static Cookie cookie(@NonNull String name, long lastAccessTime) {
+        return CookieFixtures.cookie("example.com", name).lastAccessTimeMillis(lastAccessTime).build();
+    }
+}
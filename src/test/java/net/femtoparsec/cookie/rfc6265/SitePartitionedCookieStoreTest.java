@@ -0,0 +1,193 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.*;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.net.CookieHandler;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class SitePartitionedCookieStoreTest {
+
+    private static final URI WIDGET = URI.create("https://widget.embed.com/frame");
+    private static final URI NEWS = URI.create("https://www.news.com/");
+    private static final URI SHOP = URI.create("https://shop.example.com/");
+
+    @DataProvider(name = "stores")
+    public static Object[][] stores() {
+        return new Object[][]{
+                {CookieStore.inMemory()},
+                {CookieStore.partitioned()},
+        };
+    }
+
+    @Test(dataProvider = "stores")
+    public void testPartitionedCookiesAreIsolatedByTopLevelSite(@NonNull CookieStore store) {
+        final CookieManager manager = CookieManager.create(store);
+        final CookieHandler inNews = manager.embeddedIn(NEWS);
+        final CookieHandler inShop = manager.embeddedIn(SHOP);
+
+        put(inNews, "chips=news; Secure; Path=/; SameSite=None; Partitioned");
+        put(inShop, "chips=shop; Secure; Path=/; SameSite=None; Partitioned");
+        put(manager, "global=1; Secure; Path=/; SameSite=None");
+
+        Assert.assertEquals(Set.of(get(inNews).split("; ")), Set.of("chips=news", "global=1"));
+        Assert.assertEquals(Set.of(get(inShop).split("; ")), Set.of("chips=shop", "global=1"));
+        Assert.assertEquals(get(manager), "global=1");
+        Assert.assertEquals(store.getAllCookies().size(), 3);
+    }
+
+    @Test(dataProvider = "stores")
+    public void testSameSiteCookiesAreNotSentCrossSite(@NonNull CookieStore store) {
+        final CookieManager manager = CookieManager.create(store);
+        put(manager, "strict=1; Path=/; SameSite=Strict", "lax=1; Path=/; SameSite=lax", "none=1; Path=/; Secure; SameSite=None", "legacy=1; Path=/");
+
+        Assert.assertEquals(names(manager), Set.of("strict", "lax", "none", "legacy"));
+        Assert.assertEquals(names(manager.embeddedIn(NEWS)), Set.of("none", "legacy"));
+        Assert.assertEquals(names(manager.embeddedIn(URI.create("https://other.embed.com/"))), Set.of("strict", "lax", "none", "legacy"));
+    }
+
+    @Test
+    public void testSitesUseThePublicSuffixes() {
+        final Set<String> publicSuffixes = Set.of("com", "io", "github.io", "uk", "co.uk");
+        Assert.assertEquals(CookieSite.of("a.b.github.io", publicSuffixes::contains), "b.github.io");
+        Assert.assertEquals(CookieSite.of("shop.example.co.uk", publicSuffixes::contains), "example.co.uk");
+        Assert.assertEquals(CookieSite.of("github.io", publicSuffixes::contains), "github.io");
+        Assert.assertEquals(CookieSite.of("www.example.com", null), "example.com");
+        Assert.assertEquals(CookieSite.of("10.0.0.1", publicSuffixes::contains), "10.0.0.1");
+
+        final CookieManager manager = CookieManager.create(CookieStore.partitioned(), publicSuffixes::contains);
+        final URI victim = URI.create("https://victim.github.io/");
+        putTo(manager, victim, "strict=1; Path=/; SameSite=Strict", "chips=1; Secure; Path=/; Partitioned");
+
+        final CookieHandler inAttacker = manager.embeddedIn(URI.create("https://attacker.github.io/"));
+        Assert.assertEquals(getFrom(inAttacker, victim), "");
+        Assert.assertEquals(Set.of(getFrom(manager.embeddedIn(URI.create("https://www.victim.github.io/")), victim).split("; ")),
+                            Set.of("strict=1", "chips=1"));
+    }
+
+    @Test
+    public void testByteAndAsyncIngestionArePartitioned() {
+        final PartitionedCookieStore store = CookieStore.partitioned();
+        final CookieManager manager = CookieManager.create(store);
+        manager.putSetCookies(WIDGET, NEWS, List.of(ByteBuffer.wrap("bytes=1; Secure; Partitioned".getBytes(StandardCharsets.ISO_8859_1))));
+        AsyncCookieManager.create(AsyncCookieStore.fromSync(store, Runnable::run))
+                          .put(WIDGET, SHOP, Map.of("Set-Cookie", List.of("async=1; Secure; Partitioned", "lax=1; SameSite=Lax")))
+                          .join();
+
+        Assert.assertEquals(store.partitionKeys(), Set.of("news.com", "example.com"));
+        Assert.assertEquals(get(manager.embeddedIn(NEWS)), "bytes=1");
+        Assert.assertEquals(get(manager.embeddedIn(SHOP)), "async=1");
+        Assert.assertEquals(get(manager), "");
+    }
+
+    @Test
+    public void testInvalidCookiesAreRejected() {
+        final SimpleCookieMetrics metrics = new SimpleCookieMetrics();
+        final CookieParser parser = CookieParser.create(RequestInfo.create(WIDGET, NEWS), null, metrics);
+
+        Assert.assertTrue(parser.parse("a=1; Partitioned").isEmpty());
+        Assert.assertTrue(parser.parse("b=1; SameSite=None").isEmpty());
+        Assert.assertTrue(parser.parse("c=1; Secure; SameSite=Strict").isEmpty());
+        Assert.assertTrue(parser.parse("d=1; Secure; SameSite=Lax").isEmpty());
+        Assert.assertTrue(parser.parse("e=1; Secure; SameSite=None; Partitioned").isPresent());
+        Assert.assertEquals(metrics.rejectedCount(CookieRejectReason.PARTITIONED_NOT_SECURE), 1);
+        Assert.assertEquals(metrics.rejectedCount(CookieRejectReason.SAME_SITE_NONE_NOT_SECURE), 1);
+        Assert.assertEquals(metrics.rejectedCount(CookieRejectReason.SAME_SITE_FROM_CROSS_SITE), 2);
+    }
+
+    @Test
+    public void testDropPartition() {
+        final PartitionedCookieStore store = CookieStore.partitioned();
+        final CookieManager manager = CookieManager.create(store);
+        put(manager.embeddedIn(NEWS), "a=1; Secure; Partitioned", "b=1; Secure; Partitioned");
+        put(manager.embeddedIn(SHOP), "a=1; Secure; Partitioned");
+        put(manager, "c=1; Secure");
+
+        Assert.assertEquals(store.partitionKeys(), Set.of("news.com", "example.com"));
+        Assert.assertTrue(store.dropPartition("news.com"));
+        Assert.assertFalse(store.dropPartition("news.com"));
+
+        Assert.assertEquals(store.partitionKeys(), Set.of("example.com"));
+        Assert.assertEquals(get(manager.embeddedIn(NEWS)), "c=1");
+        Assert.assertEquals(store.getAllCookies().size(), 2);
+    }
+
+    @Test
+    public void testLineFormatKeepsPartitionAndSameSite() {
+        final Cookie cookie = CookieParser.create(RequestInfo.create(WIDGET, NEWS))
+                                          .parse("id=a\tb; Secure; SameSite=None; Partitioned")
+                                          .orElseThrow();
+        final Cookie parsed = CookieLineFormat.parse(CookieLineFormat.format(cookie)).orElseThrow();
+
+        Assert.assertEquals(parsed, cookie);
+        Assert.assertEquals(parsed.partitionKey(), "news.com");
+        Assert.assertEquals(parsed.sameSite(), SameSite.NONE);
+        Assert.assertEquals(parsed.value(), "a\tb");
+    }
+
+    private static void put(@NonNull CookieHandler handler, @NonNull String... setCookies) {
+        putTo(handler, WIDGET, setCookies);
+    }
+
+    private static void putTo(@NonNull CookieHandler handler, @NonNull URI uri, @NonNull String... setCookies) {
+        try {
+            handler.put(uri, Map.of("Set-Cookie", List.of(setCookies)));
+        } catch (java.io.IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @NonNull
+    private static Set<String> names(@NonNull CookieHandler handler) {
+        return Arrays.stream(get(handler).split("; ")).map(c -> c.substring(0, c.indexOf('='))).collect(Collectors.toSet());
+    }
+
+    @NonNull
+    private static String get(@NonNull CookieHandler handler) {
+        return getFrom(handler, WIDGET);
+    }
+
+    @NonNull
+    private static String getFrom(@NonNull CookieHandler handler, @NonNull URI uri) {
+        try {
+            return String.join("", handler.get(uri, Map.of()).getOrDefault("Cookie", List.of()));
+        } catch (java.io.IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Bastien Aracil
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package net.femtoparsec.cookie.rfc6265;
+
+import lombok.NonNull;
+import net.femtoparsec.cookie.Cookie;
+import net.femtoparsec.cookie.CookiePersister;
+import net.femtoparsec.cookie.CookieStore;
+import net.femtoparsec.cookie.RequestInfo;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+import static net.femtoparsec.cookie.CookieFixtures.NOW;
+import static net.femtoparsec.cookie.CookieFixtures.cookie;
+
+public class WriteBehindCookieStoreTest {
+
+    private static final Duration NEVER = Duration.ofDays(1);
+
+    private static final RequestInfo REQUEST = RequestInfo.create(URI.create("https://example.com/"));
+
+    @Test
+    public void testModificationsOfACookieAreCoalesced() {
+        final RecordingPersister persister = new RecordingPersister();
+        try (WriteBehindCookieStore store = new WriteBehindCookieStore(new InMemoryCookieStore(), persister, NEVER, 100)) {
+            add(store, "a", "1");
+            add(store, "a", "2");
+            add(store, "b", "1");
+            store.flush();
+
+            Assert.assertEquals(persister.writes, 1);
+            Assert.assertEquals(persister.persisted, Map.of("a", "2", "b", "1"));
+        }
+    }
+
+    @Test
+    public void testFailedBatchIsRequeued() {
+        final RecordingPersister persister = new RecordingPersister();
+        try (WriteBehindCookieStore store = new WriteBehindCookieStore(new InMemoryCookieStore(), persister, NEVER, 100)) {
+            add(store, "a", "1");
+            persister.failing = true;
+            Assert.assertThrows(UncheckedIOException.class, store::flush);
+            Assert.assertTrue(persister.persisted.isEmpty());
+
+            add(store, "b", "1");
+            persister.failing = false;
+            store.flush();
+            Assert.assertEquals(persister.persisted, Map.of("a", "1", "b", "1"));
+        }
+    }
+
+    @Test(timeOut = 10_000)
+    public void testFailingPersisterDoesNotBlockWriters() {
+        final RecordingPersister persister = new RecordingPersister();
+        persister.failing = true;
+        final WriteBehindCookieStore store = new WriteBehindCookieStore(new InMemoryCookieStore(), persister, NEVER, 1);
+        for (int i = 0; i < 100; i++) {
+            add(store, "c" + i, "v");
+        }
+        persister.failing = false;
+        store.close();
+
+        Assert.assertEquals(persister.persisted.size(), 100);
+        Assert.assertTrue(persister.replacements > 0);
+    }
+
+    @Test
+    public void testCookiesExpiredByTheDelegateArePersisted() {
+        final RecordingPersister persister = new RecordingPersister();
+        try (WriteBehindCookieStore store = new WriteBehindCookieStore(new InMemoryCookieStore(), persister, NEVER, 100)) {
+            store.addCookie(REQUEST, cookie("example.com", "short", "1").expiryTimeMillis(NOW + 1000).build(), NOW);
+            add(store, "long", "1");
+            store.flush();
+            Assert.assertEquals(persister.persisted.keySet(), Set.of("short", "long"));
+
+            Assert.assertEquals(store.getCookies(REQUEST, NOW + 2000).size(), 1);
+            store.flush();
+            Assert.assertEquals(persister.persisted.keySet(), Set.of("long"));
+        }
+    }
+
+    @Test
+    public void testCookiesEvictedByTheDelegateArePersisted() {
+        final RecordingPersister persister = new RecordingPersister();
+        final CookieStore delegate = new MemoryBoundedCookieStore(3 * CookieSizeEstimator.estimate(cookie("example.com", "c0", "v").build()));
+        try (WriteBehindCookieStore store = new WriteBehindCookieStore(delegate, persister, NEVER, 100)) {
+            for (int i = 0; i < 5; i++) {
+                add(store, "c" + i, "v");
+            }
+            store.flush();
+            Assert.assertEquals(persister.persisted.keySet(), Set.of("c2", "c3", "c4"));
+        }
+    }
+
+    private static void add(@NonNull CookieStore store, @NonNull String name, @NonNull String value) {
+        store.addCookie(REQUEST, cookie("example.com", name, value).build(), NOW);
+    }
+
+    private static class RecordingPersister implements CookiePersister {
+
+        private final Map<String,String> persisted = new HashMap<>();
+
+        private volatile boolean failing = false;
+
+        private int writes = 0;
+
+        private int replacements = 0;
+
+        @Override
+        public @NonNull Collection<Cookie> load() {
+            return List.of();
+        }
+
+        @Override
+        public void write(@NonNull Collection<Cookie> upserts, @NonNull Collection<Cookie> removals) throws IOException {
+            checkFailure();
+            writes++;
+            upserts.forEach(c -> persisted.put(c.name(), c.value()));
+            removals.forEach(c -> persisted.remove(c.name()));
+        }
+
+        @Override
+        public void replaceAll(@NonNull Collection<Cookie> cookies) throws IOException {
+            checkFailure();
+            replacements++;
+            persisted.clear();
+            cookies.forEach(c -> persisted.put(c.name(), c.value()));
+        }
+
+        @Override
+        public void removeExpired(@NonNull Instant now) throws IOException {
+            checkFailure();
+        }
+
+        private void checkFailure() throws IOException {
+            if (failing) {
+                throw new IOException("disk full");
+            }
+        }
+    }
+}